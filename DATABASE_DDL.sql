@@ -122,10 +122,12 @@ CREATE TABLE mascotas (
     fecha_registro DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     activo BOOLEAN DEFAULT TRUE NOT NULL,
     propietario_documento VARCHAR(20) NOT NULL,
+    fecha_actualizacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT 'Marca de agua de la exportación incremental',
     INDEX idx_mascotas_nombre (nombre),
     INDEX idx_mascotas_especie (especie),
     INDEX idx_mascotas_propietario (propietario_documento),
     INDEX idx_mascotas_activo (activo),
+    INDEX idx_mascotas_actualizacion (fecha_actualizacion, id),
     CONSTRAINT fk_mascota_propietario 
         FOREIGN KEY (propietario_documento) 
         REFERENCES usuarios(documento) 
@@ -136,6 +138,7 @@ CREATE TABLE mascotas (
 CREATE TABLE citas (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     fecha_hora DATETIME NOT NULL,
+    duracion_minutos INT NOT NULL DEFAULT 30 COMMENT 'Duración de la cita en minutos',
     motivo TEXT,
     estado ENUM('PROGRAMADA', 'CONFIRMADA', 'EN_CURSO', 'COMPLETADA', 'CANCELADA', 'NO_ASISTIO') DEFAULT 'PROGRAMADA' NOT NULL,
     observaciones TEXT,
@@ -144,12 +147,26 @@ CREATE TABLE citas (
     mascota_id BIGINT NOT NULL,
     veterinario_documento VARCHAR(20),
     veterinaria_id BIGINT,
+    -- Solo las citas activas ocupan horario: la veterinaria y el veterinario de la cita, o NULL en
+    -- canceladas/no asistidas (y sin veterinaria/veterinario) para quedar fuera de los índices únicos.
+    -- Es la misma regla que aplica ReservaCitaService en memoria.
+    reserva_veterinaria BIGINT AS (
+        CASE WHEN estado IN ('CANCELADA', 'NO_ASISTIO') THEN NULL ELSE veterinaria_id END
+    ) STORED,
+    reserva_veterinario VARCHAR(20) AS (
+        CASE WHEN estado IN ('CANCELADA', 'NO_ASISTIO') THEN NULL ELSE veterinario_documento END
+    ) STORED,
+    fecha_actualizacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT 'Marca de agua de la exportación incremental',
     INDEX idx_citas_fecha_hora (fecha_hora),
     INDEX idx_citas_estado (estado),
+    INDEX idx_citas_estado_fecha (estado, fecha_hora),
     INDEX idx_citas_cliente (cliente_documento),
-    INDEX idx_citas_mascota (mascota_id),
+    INDEX idx_citas_mascota_fecha (mascota_id, fecha_hora),
     INDEX idx_citas_veterinario (veterinario_documento),
     INDEX idx_citas_veterinaria (veterinaria_id),
+    INDEX idx_citas_actualizacion (fecha_actualizacion, id),
+    UNIQUE KEY uk_citas_reserva_veterinaria (reserva_veterinaria, fecha_hora),
+    UNIQUE KEY uk_citas_reserva_veterinario (reserva_veterinario, fecha_hora),
     CONSTRAINT fk_cita_cliente 
         FOREIGN KEY (cliente_documento) 
         REFERENCES usuarios(documento) 
@@ -168,6 +185,20 @@ CREATE TABLE citas (
         ON DELETE SET NULL
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Registro de citas médicas';
 
+-- Resumen diario de citas (veterinaria, veterinario, día, estado) para estadísticas y tendencias.
+-- Se mantiene con cada escritura de citas y se reconstruye por lotes; 0 / '' = sin veterinaria / sin veterinario
+CREATE TABLE citas_resumen_diario (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    veterinaria_id BIGINT NOT NULL DEFAULT 0,
+    veterinario_documento VARCHAR(20) NOT NULL DEFAULT '',
+    fecha DATE NOT NULL,
+    estado ENUM('PROGRAMADA', 'CONFIRMADA', 'EN_CURSO', 'COMPLETADA', 'CANCELADA', 'NO_ASISTIO') NOT NULL,
+    total BIGINT NOT NULL DEFAULT 0,
+    UNIQUE KEY uk_resumen_clave (veterinaria_id, veterinario_documento, fecha, estado),
+    INDEX idx_resumen_fecha (fecha),
+    INDEX idx_resumen_veterinaria_fecha (veterinaria_id, fecha)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Conteo diario de citas por veterinaria, veterinario y estado';
+
 -- Tabla de historias clínicas
 CREATE TABLE historias_clinicas (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -188,10 +219,12 @@ CREATE TABLE historias_clinicas (
     mascota_id BIGINT NOT NULL,
     veterinario_documento VARCHAR(20) NOT NULL,
     cita_id BIGINT,
+    fecha_actualizacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT 'Marca de agua de la exportación incremental',
     INDEX idx_historias_fecha (fecha_consulta),
     INDEX idx_historias_mascota (mascota_id),
     INDEX idx_historias_veterinario (veterinario_documento),
     INDEX idx_historias_cita (cita_id),
+    INDEX idx_historias_actualizacion (fecha_actualizacion, id),
     CONSTRAINT fk_historia_mascota 
         FOREIGN KEY (mascota_id) 
         REFERENCES mascotas(id) 
@@ -217,15 +250,41 @@ CREATE TABLE reportes (
     contenido_json TEXT,
     fecha_generacion DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     generado_por VARCHAR(20) NOT NULL,
+    estado_trabajo VARCHAR(20) NOT NULL DEFAULT 'COMPLETADO',
+    progreso INT NOT NULL DEFAULT 100,
+    formato VARCHAR(10),
+    clave_trabajo VARCHAR(500),
+    mensaje_error TEXT,
+    archivo_ruta VARCHAR(500),
+    archivo_nombre VARCHAR(255),
+    archivo_tipo VARCHAR(100),
+    archivo_sha256 CHAR(64),
+    archivo_tamano BIGINT,
+    archivo_tamano_almacenado BIGINT,
+    archivo_compresion VARCHAR(10),
+    fecha_fin_trabajo DATETIME,
+    fecha_ultimo_acceso DATETIME,
     INDEX idx_reportes_tipo (tipo),
     INDEX idx_reportes_fecha (fecha_generacion),
     INDEX idx_reportes_generado_por (generado_por),
+    INDEX idx_reportes_estado_trabajo (estado_trabajo),
+    INDEX idx_reportes_archivo_ruta (archivo_ruta),
     CONSTRAINT fk_reporte_generado_por 
         FOREIGN KEY (generado_por) 
         REFERENCES usuarios(documento) 
         ON DELETE RESTRICT
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Reportes generados por el sistema';
 
+-- Borrados de citas, mascotas e historias clínicas para la exportación incremental.
+-- Las inserta la aplicación en la misma transacción que el borrado (ver EliminacionesListener)
+CREATE TABLE eliminaciones (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entidad VARCHAR(20) NOT NULL COMMENT 'CITAS, MASCOTAS o HISTORIAS',
+    entidad_id BIGINT NOT NULL,
+    fecha_eliminacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_eliminaciones_entidad_fecha (entidad, fecha_eliminacion, entidad_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Marcas de borrado para la exportación incremental';
+
 -- ============================================================================
 -- VISTAS ÚTILES
 -- ============================================================================
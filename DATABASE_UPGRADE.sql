@@ -0,0 +1,120 @@
+-- ============================================================================
+-- DATABASE UPGRADE - VETERINARIA
+-- Descripción: Actualiza una base de datos creada con la versión anterior de
+-- DATABASE_DDL.sql a la estructura actual, sin perder datos.
+-- Incluye: columnas e índices nuevos, restricciones únicas de reserva, tablas
+-- de resumen diario y de borrados, y columnas de los reportes en segundo plano
+-- Requiere: MySQL 5.7 o superior (columnas generadas)
+-- ============================================================================
+
+USE veterinaria;
+
+-- ============================================================================
+-- COMPROBACIÓN PREVIA
+-- ============================================================================
+
+-- Citas activas que ocupan el mismo horario: las restricciones únicas de reserva
+-- no se pueden crear mientras existan. Esta consulta debe devolver 0 filas; si no,
+-- cancelar o reprogramar esas citas antes de continuar.
+SELECT 'veterinaria' AS ambito, veterinaria_id AS reserva, fecha_hora, COUNT(*) AS citas
+FROM citas
+WHERE estado NOT IN ('CANCELADA', 'NO_ASISTIO') AND veterinaria_id IS NOT NULL
+GROUP BY veterinaria_id, fecha_hora
+HAVING COUNT(*) > 1
+UNION ALL
+SELECT 'veterinario', veterinario_documento, fecha_hora, COUNT(*)
+FROM citas
+WHERE estado NOT IN ('CANCELADA', 'NO_ASISTIO') AND veterinario_documento IS NOT NULL
+GROUP BY veterinario_documento, fecha_hora
+HAVING COUNT(*) > 1;
+
+-- ============================================================================
+-- CITAS
+-- ============================================================================
+
+-- Duración de la cita (las existentes quedan en 30 minutos)
+ALTER TABLE citas
+    ADD COLUMN duracion_minutos INT NOT NULL DEFAULT 30 COMMENT 'Duración de la cita en minutos' AFTER fecha_hora;
+
+-- Restricciones únicas de reserva: solo las citas activas ocupan horario (ver ReservaCitaService)
+ALTER TABLE citas
+    ADD COLUMN reserva_veterinaria BIGINT AS (
+        CASE WHEN estado IN ('CANCELADA', 'NO_ASISTIO') THEN NULL ELSE veterinaria_id END
+    ) STORED AFTER veterinaria_id,
+    ADD COLUMN reserva_veterinario VARCHAR(20) AS (
+        CASE WHEN estado IN ('CANCELADA', 'NO_ASISTIO') THEN NULL ELSE veterinario_documento END
+    ) STORED AFTER reserva_veterinaria,
+    ADD UNIQUE KEY uk_citas_reserva_veterinaria (reserva_veterinaria, fecha_hora),
+    ADD UNIQUE KEY uk_citas_reserva_veterinario (reserva_veterinario, fecha_hora);
+
+-- Índices de consulta por estado y por mascota; el compuesto sustituye al de mascota_id
+-- (se crea antes de borrar el anterior porque la clave foránea necesita uno)
+ALTER TABLE citas
+    ADD INDEX idx_citas_estado_fecha (estado, fecha_hora),
+    ADD INDEX idx_citas_mascota_fecha (mascota_id, fecha_hora);
+ALTER TABLE citas
+    DROP INDEX idx_citas_mascota;
+
+-- Marca de agua de la exportación incremental (las filas existentes toman la hora de la actualización)
+ALTER TABLE citas
+    ADD COLUMN fecha_actualizacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT 'Marca de agua de la exportación incremental',
+    ADD INDEX idx_citas_actualizacion (fecha_actualizacion, id);
+
+-- Resumen diario de citas; la aplicación lo rellena al arrancar si está vacío
+CREATE TABLE citas_resumen_diario (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    veterinaria_id BIGINT NOT NULL DEFAULT 0,
+    veterinario_documento VARCHAR(20) NOT NULL DEFAULT '',
+    fecha DATE NOT NULL,
+    estado ENUM('PROGRAMADA', 'CONFIRMADA', 'EN_CURSO', 'COMPLETADA', 'CANCELADA', 'NO_ASISTIO') NOT NULL,
+    total BIGINT NOT NULL DEFAULT 0,
+    UNIQUE KEY uk_resumen_clave (veterinaria_id, veterinario_documento, fecha, estado),
+    INDEX idx_resumen_fecha (fecha),
+    INDEX idx_resumen_veterinaria_fecha (veterinaria_id, fecha)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Conteo diario de citas por veterinaria, veterinario y estado';
+
+-- ============================================================================
+-- MASCOTAS E HISTORIAS CLÍNICAS
+-- ============================================================================
+
+ALTER TABLE mascotas
+    ADD COLUMN fecha_actualizacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT 'Marca de agua de la exportación incremental',
+    ADD INDEX idx_mascotas_actualizacion (fecha_actualizacion, id);
+
+ALTER TABLE historias_clinicas
+    ADD COLUMN fecha_actualizacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT 'Marca de agua de la exportación incremental',
+    ADD INDEX idx_historias_actualizacion (fecha_actualizacion, id);
+
+-- Borrados para la exportación incremental
+CREATE TABLE eliminaciones (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entidad VARCHAR(20) NOT NULL COMMENT 'CITAS, MASCOTAS o HISTORIAS',
+    entidad_id BIGINT NOT NULL,
+    fecha_eliminacion DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_eliminaciones_entidad_fecha (entidad, fecha_eliminacion, entidad_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Marcas de borrado para la exportación incremental';
+
+-- ============================================================================
+-- REPORTES EN SEGUNDO PLANO
+-- ============================================================================
+
+-- Los reportes existentes quedan como completados (valores por defecto)
+ALTER TABLE reportes
+    ADD COLUMN estado_trabajo VARCHAR(20) NOT NULL DEFAULT 'COMPLETADO',
+    ADD COLUMN progreso INT NOT NULL DEFAULT 100,
+    ADD COLUMN formato VARCHAR(10),
+    ADD COLUMN clave_trabajo VARCHAR(500),
+    ADD COLUMN mensaje_error TEXT,
+    ADD COLUMN archivo_ruta VARCHAR(500),
+    ADD COLUMN archivo_nombre VARCHAR(255),
+    ADD COLUMN archivo_tipo VARCHAR(100),
+    ADD COLUMN archivo_sha256 CHAR(64),
+    ADD COLUMN archivo_tamano BIGINT,
+    ADD COLUMN archivo_tamano_almacenado BIGINT,
+    ADD COLUMN archivo_compresion VARCHAR(10),
+    ADD COLUMN fecha_fin_trabajo DATETIME,
+    ADD COLUMN fecha_ultimo_acceso DATETIME,
+    ADD INDEX idx_reportes_estado_trabajo (estado_trabajo),
+    ADD INDEX idx_reportes_archivo_ruta (archivo_ruta);
+
+SELECT '✅ BASE DE DATOS ACTUALIZADA' AS RESULTADO;
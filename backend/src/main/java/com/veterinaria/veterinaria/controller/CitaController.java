@@ -1,5 +1,6 @@
 package com.veterinaria.veterinaria.controller;
 
+import com.veterinaria.veterinaria.dto.AgendaDiaDTO;
 import com.veterinaria.veterinaria.dto.CitaRequest;
 import com.veterinaria.veterinaria.dto.CitaResponse;
 import com.veterinaria.veterinaria.dto.ApiResponse;
@@ -11,6 +12,10 @@ import com.veterinaria.veterinaria.entity.Veterinaria;
 import com.veterinaria.veterinaria.service.CitaService;
 import com.veterinaria.veterinaria.service.UsuarioService;
 import com.veterinaria.veterinaria.service.MascotaService;
+import com.veterinaria.veterinaria.service.OcupacionHorariosService;
+import com.veterinaria.veterinaria.service.ReservaCitaService;
+import com.veterinaria.veterinaria.service.BusquedaHuecosService;
+import com.veterinaria.veterinaria.service.CitasHoyService;
 import com.veterinaria.veterinaria.service.VeterinariaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -25,6 +30,7 @@ import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -44,6 +50,15 @@ public class CitaController {
     @Autowired
     private VeterinariaService veterinariaService;
     
+    @Autowired
+    private ReservaCitaService reservaCitaService;
+    
+    @Autowired
+    private BusquedaHuecosService busquedaHuecosService;
+    
+    @Autowired
+    private CitasHoyService citasHoyService;
+    
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('VETERINARIO') or hasRole('CLIENTE')")
     public ResponseEntity<List<CitaResponse>> getAllCitas() {
@@ -270,11 +285,12 @@ public class CitaController {
     
     @GetMapping("/hoy")
     @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('VETERINARIO')")
-    public ResponseEntity<List<CitaResponse>> getCitasDeHoy() {
-    List<Cita> citas = citaService.findCitasDeHoy();
-        List<CitaResponse> response = citas.stream()
-                .map(CitaResponse::new)
-                .collect(Collectors.toList());
+    public ResponseEntity<List<CitaResponse>> getCitasDeHoy(
+            @RequestParam(value = "veterinariaId", required = false) Long veterinariaId) {
+        // Servido desde la caché del día, sin consultar la tabla
+        List<CitaResponse> response = veterinariaId != null
+                ? citasHoyService.getCitasDeHoy(veterinariaId)
+                : citasHoyService.getCitasDeHoy();
         return ResponseEntity.ok(response);
     }
     
@@ -300,6 +316,7 @@ public class CitaController {
             // Crear la entidad Cita
             Cita cita = new Cita();
             cita.setFechaHora(request.getFechaHora());
+            cita.setDuracionMinutos(request.getDuracionMinutos());
             cita.setMotivo(request.getMotivo());
             cita.setObservaciones(request.getObservaciones());
             cita.setEstado(request.getEstado() != null ? request.getEstado() : Cita.EstadoCita.PROGRAMADA);
@@ -325,26 +342,23 @@ public class CitaController {
             }
             
             // Obtener veterinaria: usar la del request, o la del usuario autenticado
-            Long veterinariaId = null;
             if (request.getVeterinariaId() != null) {
                 Optional<Veterinaria> veterinariaOpt = veterinariaService.findById(request.getVeterinariaId());
                 if (veterinariaOpt.isPresent()) {
                     cita.setVeterinaria(veterinariaOpt.get());
-                    veterinariaId = veterinariaOpt.get().getId();
                 }
             } else if (usuarioAutenticado.getVeterinaria() != null) {
                 cita.setVeterinaria(usuarioAutenticado.getVeterinaria());
-                veterinariaId = usuarioAutenticado.getVeterinaria().getId();
                 System.out.println("=== Veterinaria auto-asignada: " + usuarioAutenticado.getVeterinaria().getNombre());
             }
             
-            // VALIDAR DISPONIBILIDAD DE HORARIO
-            if (veterinariaId != null && !citaService.isHorarioDisponible(request.getFechaHora(), veterinariaId)) {
-                return ResponseEntity.badRequest().body("El horario seleccionado ya está ocupado. Por favor, elija otro horario.");
-            }
-            
-            Cita savedCita = citaService.save(cita);
+            // VALIDAR DISPONIBILIDAD Y GUARDAR DE FORMA ATÓMICA
+            Cita savedCita = reservaCitaService.reservar(cita);
             return ResponseEntity.ok(new CitaResponse(savedCita));
+        } catch (ReservaCitaService.HorarioNoDisponibleException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             System.err.println("Error creating cita: " + e.getMessage());
             e.printStackTrace();
@@ -354,13 +368,27 @@ public class CitaController {
     
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('VETERINARIO')")
-    public ResponseEntity<Cita> updateCita(@PathVariable Long id, @RequestBody Cita cita) {
+    public ResponseEntity<?> updateCita(@PathVariable Long id, @RequestBody Cita cita) {
         Optional<Cita> existingCitaOpt = citaService.findById(id);
         if (existingCitaOpt.isPresent()) {
             Cita existingCita = existingCitaOpt.get();
+            ResponseEntity<String> duracionInvalida = validarDuracion(cita.getDuracionMinutos());
+            if (duracionInvalida != null) {
+                return duracionInvalida;
+            }
+            
+            // Datos que determinan el horario ocupado antes del cambio
+            LocalDateTime fechaHoraAnterior = existingCita.getFechaHora();
+            int duracionAnterior = OcupacionHorariosService.duracionDe(existingCita);
+            boolean ocupabaAnterior = OcupacionHorariosService.ocupaHorario(existingCita.getEstado());
+            Long veterinariaAnterior = existingCita.getVeterinaria() != null ? existingCita.getVeterinaria().getId() : null;
+            String veterinarioAnterior = existingCita.getVeterinario() != null ? existingCita.getVeterinario().getDocumento() : null;
             
             // Actualizar solo los campos que pueden cambiar
             existingCita.setFechaHora(cita.getFechaHora());
+            if (cita.getDuracionMinutos() != null) {
+                existingCita.setDuracionMinutos(cita.getDuracionMinutos());
+            }
             existingCita.setMotivo(cita.getMotivo());
             existingCita.setObservaciones(cita.getObservaciones());
             existingCita.setEstado(cita.getEstado());
@@ -378,8 +406,23 @@ public class CitaController {
             // NO actualizar cliente ni mascota - estos no deben cambiar en una cita existente
             // existingCita mantiene su cliente y mascota originales
             
-            Cita updatedCita = citaService.update(existingCita);
-            return ResponseEntity.ok(updatedCita);
+            // Si cambia el horario que ocupa (hora, duración, veterinaria, veterinario o vuelve a estar activa),
+            // se reserva de nuevo con la misma verificación atómica que al crearla
+            boolean cambiaHorario = !Objects.equals(fechaHoraAnterior, existingCita.getFechaHora())
+                    || duracionAnterior != OcupacionHorariosService.duracionDe(existingCita)
+                    || ocupabaAnterior != OcupacionHorariosService.ocupaHorario(existingCita.getEstado())
+                    || !Objects.equals(veterinariaAnterior, existingCita.getVeterinaria() != null ? existingCita.getVeterinaria().getId() : null)
+                    || !Objects.equals(veterinarioAnterior, existingCita.getVeterinario() != null ? existingCita.getVeterinario().getDocumento() : null);
+            try {
+                Cita updatedCita = cambiaHorario
+                        ? reservaCitaService.reservar(existingCita)
+                        : citaService.update(existingCita);
+                return ResponseEntity.ok(updatedCita);
+            } catch (ReservaCitaService.HorarioNoDisponibleException e) {
+                return ResponseEntity.status(409).body(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
         }
         return ResponseEntity.notFound().build();
     }
@@ -472,15 +515,71 @@ public class CitaController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('CLIENTE') or hasRole('VETERINARIO')")
     public ResponseEntity<?> getHorariosDisponibles(
             @RequestParam("fecha") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) java.time.LocalDate fecha,
-            @RequestParam("veterinariaId") Long veterinariaId) {
+            @RequestParam("veterinariaId") Long veterinariaId,
+            @RequestParam(value = "duracion", defaultValue = "30") int duracion) {
+        ResponseEntity<String> duracionInvalida = validarDuracion(duracion);
+        if (duracionInvalida != null) {
+            return duracionInvalida;
+        }
         try {
-            List<com.veterinaria.veterinaria.dto.HorarioDisponibleDTO> horarios = citaService.getHorariosDisponibles(fecha, veterinariaId);
+            List<com.veterinaria.veterinaria.dto.HorarioDisponibleDTO> horarios = citaService.getHorariosDisponibles(fecha, veterinariaId, duracion);
             return ResponseEntity.ok(horarios);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Error al obtener horarios disponibles: " + e.getMessage());
         }
     }
     
+    @GetMapping("/proximo-hueco")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('CLIENTE') or hasRole('VETERINARIO')")
+    public ResponseEntity<?> getProximoHuecoVeterinario(
+            @RequestParam("veterinarioDocumento") String veterinarioDocumento,
+            @RequestParam("desde") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(value = "duracion", defaultValue = "30") int duracion) {
+        ResponseEntity<String> duracionInvalida = validarDuracion(duracion);
+        if (duracionInvalida != null) {
+            return duracionInvalida;
+        }
+        try {
+            Optional<LocalDateTime> hueco = citaService.buscarProximoHuecoVeterinario(
+                veterinarioDocumento, desde, duracion, CitaService.MAX_DIAS_AGENDA);
+            if (hueco.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(new com.veterinaria.veterinaria.dto.HorarioDisponibleDTO(hueco.get(), true, null, veterinarioDocumento));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Error al buscar horario disponible: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/proximos-huecos")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('CLIENTE') or hasRole('VETERINARIO')")
+    public ResponseEntity<?> getProximosHuecosPorCiudad(
+            @RequestParam("ciudad") String ciudad,
+            @RequestParam(value = "especie", required = false) String especie,
+            @RequestParam(value = "servicio", required = false) String servicio,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(value = "duracion", defaultValue = "30") int duracion,
+            @RequestParam(value = "k", defaultValue = "5") int k) {
+        ResponseEntity<String> duracionInvalida = validarDuracion(duracion);
+        if (duracionInvalida != null) {
+            return duracionInvalida;
+        }
+        if (k <= 0 || k > BusquedaHuecosService.MAX_RESULTADOS) {
+            return ResponseEntity.badRequest().body("k debe estar entre 1 y " + BusquedaHuecosService.MAX_RESULTADOS);
+        }
+        LocalDateTime inicio = desde != null ? desde : LocalDateTime.now();
+        LocalDateTime fin = hasta != null ? hasta : inicio.plusDays(7);
+        if (!fin.isAfter(inicio) || fin.isAfter(inicio.plusDays(BusquedaHuecosService.MAX_DIAS_VENTANA))) {
+            return ResponseEntity.badRequest().body("La ventana de búsqueda debe ser de como máximo " + BusquedaHuecosService.MAX_DIAS_VENTANA + " días");
+        }
+        try {
+            return ResponseEntity.ok(busquedaHuecosService.buscarPrimerosHuecos(ciudad, especie, servicio, inicio, fin, duracion, k));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Error al buscar horarios disponibles: " + e.getMessage());
+        }
+    }
+    
     @GetMapping("/dia")
     @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('VETERINARIO')")
     public ResponseEntity<?> getCitasDelDia(
@@ -496,4 +595,43 @@ public class CitaController {
             return ResponseEntity.internalServerError().body("Error al obtener citas del día: " + e.getMessage());
         }
     }
+    
+    @GetMapping("/agenda")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('CLIENTE') or hasRole('VETERINARIO')")
+    public ResponseEntity<?> getAgenda(
+            @RequestParam("desde") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) java.time.LocalDate desde,
+            @RequestParam(value = "dias", defaultValue = "7") int dias,
+            @RequestParam(value = "veterinariaId", required = false) Long veterinariaId,
+            @RequestParam(value = "veterinarioDocumento", required = false) String veterinarioDocumento) {
+        if (dias < 1 || dias > CitaService.MAX_DIAS_AGENDA) {
+            return ResponseEntity.badRequest().body("El número de días debe estar entre 1 y " + CitaService.MAX_DIAS_AGENDA);
+        }
+        if ((veterinariaId == null) == (veterinarioDocumento == null || veterinarioDocumento.isEmpty())) {
+            return ResponseEntity.badRequest().body("Debe indicar veterinariaId o veterinarioDocumento");
+        }
+        try {
+            List<AgendaDiaDTO> agenda = veterinariaId != null
+                ? citaService.getAgendaPorVeterinaria(desde, dias, veterinariaId)
+                : citaService.getAgendaPorVeterinario(desde, dias, veterinarioDocumento);
+            
+            // Un cliente solo ve la disponibilidad, no las citas de otros clientes
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            boolean soloCliente = authentication.getAuthorities().stream()
+                .allMatch(auth -> auth.getAuthority().equals("ROLE_CLIENTE"));
+            if (soloCliente) {
+                agenda.forEach(dia -> dia.setCitas(List.of()));
+            }
+            return ResponseEntity.ok(agenda);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Error al obtener la agenda: " + e.getMessage());
+        }
+    }
+    
+    // 400 si la duración no está entre 1 y MAX_DURACION_MINUTOS; null si es válida o no se indica
+    private static ResponseEntity<String> validarDuracion(Integer duracion) {
+        if (duracion != null && (duracion <= 0 || duracion > OcupacionHorariosService.MAX_DURACION_MINUTOS)) {
+            return ResponseEntity.badRequest().body("La duración debe estar entre 1 y " + OcupacionHorariosService.MAX_DURACION_MINUTOS + " minutos");
+        }
+        return null;
+    }
 }
\ No newline at end of file
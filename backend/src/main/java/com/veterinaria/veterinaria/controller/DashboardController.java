@@ -1,25 +1,35 @@
 package com.veterinaria.veterinaria.controller;
 
 import com.veterinaria.veterinaria.dto.DashboardStatsResponse;
-import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
 import com.veterinaria.veterinaria.service.*;
+import com.veterinaria.veterinaria.service.EstadisticasService.Metrica;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/api/dashboard")
 public class DashboardController {
     
     @Autowired
-    private UsuarioService usuarioService;
+    private CitaService citaService;
     
     @Autowired
-    private MascotaService mascotaService;
+    private EstadisticasService estadisticasService;
     
     @Autowired
-    private CitaService citaService;
+    private DashboardService dashboardService;
+    
+    @Autowired
+    private UsuarioService usuarioService;
     
     @Autowired
     private VeterinariaService veterinariaService;
@@ -28,23 +38,20 @@ public class DashboardController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('VETERINARIO')")
     public ResponseEntity<DashboardStatsResponse> getDashboardStats() {
         try {
-            // Obtener estadísticas de usuarios
-            long totalUsuarios = usuarioService.count();
-            long usuariosActivos = usuarioService.countByActivoTrue();
+            // Contadores en memoria, mantenidos en cada escritura y reconciliados periódicamente
+            long totalUsuarios = estadisticasService.get(Metrica.USUARIOS);
+            long usuariosActivos = estadisticasService.get(Metrica.USUARIOS_ACTIVOS);
             
-            // Obtener estadísticas de mascotas
-            long totalMascotas = mascotaService.count();
-            long mascotasActivas = mascotaService.countByActivoTrue();
+            long totalMascotas = estadisticasService.get(Metrica.MASCOTAS);
+            long mascotasActivas = estadisticasService.get(Metrica.MASCOTAS_ACTIVAS);
             
-            // Obtener estadísticas de citas
-            long totalCitas = citaService.count();
+            long totalCitas = estadisticasService.get(Metrica.CITAS);
             long citasHoy = citaService.countCitasHoy();
-            long citasPendientes = citaService.countByEstado(Cita.EstadoCita.PROGRAMADA);
-            long citasConfirmadas = citaService.countByEstado(Cita.EstadoCita.CONFIRMADA);
+            long citasPendientes = estadisticasService.get(Metrica.CITAS_PROGRAMADAS);
+            long citasConfirmadas = estadisticasService.get(Metrica.CITAS_CONFIRMADAS);
             
-            // Obtener estadísticas de veterinarias
-            long totalVeterinarias = veterinariaService.count();
-            long veterinariasActivas = veterinariaService.countByActivoTrue();
+            long totalVeterinarias = estadisticasService.get(Metrica.VETERINARIAS);
+            long veterinariasActivas = estadisticasService.get(Metrica.VETERINARIAS_ACTIVAS);
             
             DashboardStatsResponse stats = new DashboardStatsResponse(
                 totalUsuarios, usuariosActivos, totalMascotas, mascotasActivas,
@@ -57,4 +64,47 @@ public class DashboardController {
             return ResponseEntity.badRequest().build();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Dashboard de la veterinaria del usuario; un admin ve las veterinarias que creó
+     * (o solo una de ellas si indica veterinariaId).
+     */
+    @GetMapping("/stats/veterinaria")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA') or hasRole('VETERINARIO')")
+    public ResponseEntity<?> getDashboardStatsVeterinaria(
+            @RequestParam(value = "veterinariaId", required = false) Long veterinariaId) {
+        try {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            Optional<Usuario> usuarioOpt = usuarioService.findByUsername(authentication.getName());
+            if (usuarioOpt.isEmpty()) {
+                return ResponseEntity.status(403).body("Usuario no encontrado");
+            }
+            Usuario usuario = usuarioOpt.get();
+            boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+            
+            List<Veterinaria> veterinarias;
+            if (isAdmin) {
+                veterinarias = veterinariaService.findByCreadoPorDocumento(usuario.getDocumento());
+                if (veterinariaId != null) {
+                    veterinarias = veterinarias.stream().filter(v -> v.getId().equals(veterinariaId)).toList();
+                    if (veterinarias.isEmpty()) {
+                        return ResponseEntity.status(403).body("No tiene acceso a la veterinaria " + veterinariaId);
+                    }
+                }
+            } else if (usuario.getVeterinaria() != null) {
+                if (veterinariaId != null && !veterinariaId.equals(usuario.getVeterinaria().getId())) {
+                    return ResponseEntity.status(403).body("No tiene acceso a la veterinaria " + veterinariaId);
+                }
+                veterinarias = veterinariaService.findById(usuario.getVeterinaria().getId())
+                    .map(List::of).orElse(List.of());
+            } else {
+                return ResponseEntity.badRequest().body("El usuario no tiene una veterinaria asignada");
+            }
+            
+            return ResponseEntity.ok(dashboardService.getStats(veterinarias));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error al obtener estadísticas: " + e.getMessage());
+        }
+    }
+}
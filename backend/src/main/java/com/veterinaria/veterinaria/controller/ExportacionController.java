@@ -0,0 +1,91 @@
+package com.veterinaria.veterinaria.controller;
+
+import com.veterinaria.veterinaria.service.ExportacionIncrementalService;
+import com.veterinaria.veterinaria.service.ExportacionIncrementalService.Entidad;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación incremental para el almacén de datos: GET /api/exportacion/{citas|mascotas|historias}
+ * devuelve en NDJSON las filas cambiadas después de {@code since}, ordenadas por
+ * {@code (fechaActualizacion, id)}. Para reanudar o pedir la página siguiente se repite la
+ * petición con {@code since} y {@code despuesId} de la última línea recibida y el mismo
+ * {@code hasta} (cabecera X-Exportacion-Hasta de la primera respuesta); ese {@code hasta} es
+ * también el {@code since} de la exportación siguiente. Las filas borradas llegan como líneas
+ * con {@code "eliminado": true}, su id y la fecha del borrado.
+ */
+@RestController
+@RequestMapping("/api/exportacion")
+@CrossOrigin(origins = "http://localhost:3000")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportacionController {
+
+    @Autowired
+    private ExportacionIncrementalService exportacionIncrementalService;
+
+    @GetMapping("/{entidad}")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @PathVariable String entidad,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Long despuesId,
+            @RequestParam(required = false) String hasta,
+            @RequestParam(required = false) Integer limite,
+            HttpServletRequest request) {
+        // Los datos inválidos llegan como IllegalArgumentException al GlobalExceptionHandler (400)
+        Entidad tipo = Entidad.desdeRuta(entidad);
+        LocalDateTime desde = since != null ? parsearFecha(since) : null;
+        // Nunca más reciente que el margen actual, aunque el cliente pida otro hasta
+        LocalDateTime maximo = exportacionIncrementalService.calcularHasta();
+        LocalDateTime pedido = hasta != null ? parsearFecha(hasta) : null;
+        LocalDateTime corte = pedido != null && pedido.isBefore(maximo) ? pedido : maximo;
+        if (limite != null && limite <= 0) {
+            throw new IllegalArgumentException("El límite debe ser mayor que cero");
+        }
+        int filas = limite != null ? Math.min(limite, exportacionIncrementalService.getLimiteMax())
+                : exportacionIncrementalService.getLimiteMax();
+
+        String aceptadas = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = aceptadas != null && aceptadas.toLowerCase(Locale.ROOT).contains("gzip");
+        System.out.println("🔍 Exportación incremental de " + tipo + " desde " + desde + " (id > " + despuesId
+                + ") hasta " + corte + ", límite " + filas + (gzip ? ", gzip" : ""));
+
+        StreamingResponseBody cuerpo = salida -> {
+            if (gzip) {
+                GZIPOutputStream comprimida = new GZIPOutputStream(salida, 64 * 1024, true);
+                exportacionIncrementalService.escribir(tipo, desde, despuesId, corte, filas, comprimida);
+                comprimida.finish();
+                comprimida.flush();
+            } else {
+                exportacionIncrementalService.escribir(tipo, desde, despuesId, corte, filas, salida);
+            }
+        };
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header("X-Exportacion-Hasta", corte.toString())
+                .header("X-Exportacion-Limite", String.valueOf(filas));
+        if (gzip) {
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(cuerpo);
+    }
+
+    private static LocalDateTime parsearFecha(String fecha) {
+        try {
+            return LocalDateTime.parse(fecha);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Formato de fecha inválido: " + fecha + ", se espera yyyy-MM-ddTHH:mm:ss[.SSS]");
+        }
+    }
+}
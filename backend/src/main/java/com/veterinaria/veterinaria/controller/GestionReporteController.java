@@ -3,10 +3,13 @@ package com.veterinaria.veterinaria.controller;
 import com.veterinaria.veterinaria.dto.*;
 import com.veterinaria.veterinaria.entity.Usuario;
 import com.veterinaria.veterinaria.service.CSVExportService;
+import com.veterinaria.veterinaria.service.CacheReportesService;
 import com.veterinaria.veterinaria.service.GestionReporteService;
 import com.veterinaria.veterinaria.service.PDFExportService;
 import com.veterinaria.veterinaria.service.UsuarioService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -14,11 +17,14 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -37,6 +43,9 @@ public class GestionReporteController {
     
     @Autowired
     private UsuarioService usuarioService;
+
+    @Autowired
+    private CacheReportesService cacheReportesService;
     
     /**
      * Obtiene el ID de la veterinaria del usuario autenticado (admin)
@@ -66,6 +75,14 @@ public class GestionReporteController {
         return ResponseEntity.ok(reporte);
     }
 
+    @GetMapping("/usuarios/paginado")
+    public ResponseEntity<Page<ReporteUsuarioDTO>> getReporteUsuariosPaginado(
+            @RequestParam(required = false) String rol,
+            @RequestParam(required = false) Long veterinariaId,
+            Pageable pageable) {
+        return ResponseEntity.ok(gestionReporteService.getReporteUsuariosPaginado(rol, veterinariaId, pageable));
+    }
+
     @GetMapping("/usuarios/estadisticas")
     public ResponseEntity<EstadisticasUsuariosDTO> getEstadisticasUsuarios(
             @RequestParam(required = false) Long veterinariaId) {
@@ -128,14 +145,31 @@ public class GestionReporteController {
 
     @GetMapping("/citas")
     public ResponseEntity<List<ReporteCitaDTO>> getReporteCitas(
-            @RequestParam(required = false) Long veterinariaId) {
-        List<ReporteCitaDTO> reporte;
-        if (veterinariaId != null) {
-            reporte = gestionReporteService.getReporteCitasPorVeterinaria(veterinariaId);
-        } else {
-            reporte = gestionReporteService.getReporteCitas();
-        }
-        return ResponseEntity.ok(reporte);
+            @RequestParam(required = false) Long veterinariaId,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String fechaInicio,
+            @RequestParam(required = false) String fechaFin,
+            @RequestParam(required = false) String veterinarioDocumento,
+            @RequestParam(required = false) String especie,
+            @RequestParam(required = false) String search) {
+        FiltroReporteCitas filtro = FiltroReporteCitas.deParametros(
+                veterinariaId, estado, fechaInicio, fechaFin, veterinarioDocumento, especie, search);
+        return ResponseEntity.ok(gestionReporteService.getReporteCitas(filtro));
+    }
+
+    @GetMapping("/citas/paginado")
+    public ResponseEntity<Page<ReporteCitaDTO>> getReporteCitasPaginado(
+            @RequestParam(required = false) Long veterinariaId,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String fechaInicio,
+            @RequestParam(required = false) String fechaFin,
+            @RequestParam(required = false) String veterinarioDocumento,
+            @RequestParam(required = false) String especie,
+            @RequestParam(required = false) String search,
+            Pageable pageable) {
+        FiltroReporteCitas filtro = FiltroReporteCitas.deParametros(
+                veterinariaId, estado, fechaInicio, fechaFin, veterinarioDocumento, especie, search);
+        return ResponseEntity.ok(gestionReporteService.getReporteCitasPaginado(filtro, pageable));
     }
 
     @GetMapping("/citas/estadisticas")
@@ -150,6 +184,23 @@ public class GestionReporteController {
         return ResponseEntity.ok(estadisticas);
     }
 
+    @GetMapping("/citas/tendencia")
+    public ResponseEntity<?> getTendenciaCitas(
+            @RequestParam String fechaInicio,
+            @RequestParam String fechaFin,
+            @RequestParam(required = false) Long veterinariaId,
+            @RequestParam(required = false) String veterinarioDocumento) {
+        try {
+            LocalDate desde = LocalDate.parse(fechaInicio);
+            LocalDate hasta = LocalDate.parse(fechaFin);
+            return ResponseEntity.ok(gestionReporteService.getTendenciaCitas(desde, hasta, veterinariaId, veterinarioDocumento));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body("Formato de fecha inválido, se espera yyyy-MM-dd");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @GetMapping("/citas/estado/{estado}")
     public ResponseEntity<List<ReporteCitaDTO>> getReporteCitasPorEstado(@PathVariable String estado) {
         Long veterinariaId = getVeterinariaIdFromAuthenticatedUser();
@@ -178,331 +229,122 @@ public class GestionReporteController {
         return ResponseEntity.ok(reporte);
     }
 
+    // ==================== CACHÉ DE REPORTES ====================
+
+    @GetMapping("/cache/metricas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getMetricasCache() {
+        return ResponseEntity.ok(cacheReportesService.getMetricas());
+    }
+
     // ==================== ENDPOINTS DE EXPORTACIÓN CSV ====================
     
     @GetMapping("/usuarios/export/csv")
-    public ResponseEntity<byte[]> exportarReporteUsuariosCSV(
+    public ResponseEntity<StreamingResponseBody> exportarReporteUsuariosCSV(
             @RequestParam(required = false) Long veterinariaId,
             @RequestParam(required = false) String rol,
             @RequestParam(required = false) String search) {
-        List<ReporteUsuarioDTO> usuarios;
-        
-        // Obtener usuarios según los filtros
-        if (veterinariaId != null) {
-            usuarios = gestionReporteService.getReporteUsuariosPorVeterinaria(veterinariaId);
-        } else {
-            usuarios = gestionReporteService.getReporteUsuarios();
-        }
-        
-        // Aplicar filtro por rol si está presente
-        if (rol != null && !rol.isEmpty()) {
-            String rolFiltro = rol.startsWith("ROLE_") ? rol : "ROLE_" + rol;
-            usuarios = usuarios.stream()
-                    .filter(u -> u.getRol().equals(rolFiltro))
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro de búsqueda si está presente
-        if (search != null && !search.isEmpty()) {
-            String searchLower = search.toLowerCase();
-            usuarios = usuarios.stream()
-                    .filter(u -> 
-                        u.getUsername().toLowerCase().contains(searchLower) ||
-                        (u.getNombres() != null && u.getNombres().toLowerCase().contains(searchLower)) ||
-                        (u.getApellidos() != null && u.getApellidos().toLowerCase().contains(searchLower)) ||
-                        (u.getEmail() != null && u.getEmail().toLowerCase().contains(searchLower)) ||
-                        u.getDocumento().toLowerCase().contains(searchLower)
-                    )
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        byte[] csvBytes = csvExportService.exportarUsuariosCSV(usuarios);
-        
-        String filename = "reporte_usuarios_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".csv";
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.parseMediaType("text/csv"))
-                .body(csvBytes);
+        // Las filas se leen de un cursor y se escriben según llegan, sin cargar la lista en memoria
+        StreamingResponseBody cuerpo = salida -> csvExportService.escribirUsuariosCSV(salida,
+                fila -> gestionReporteService.recorrerReporteUsuarios(veterinariaId, rol, search, fila));
+        return respuestaArchivo("reporte_usuarios_", ".csv", MediaType.parseMediaType("text/csv"), cuerpo);
     }
 
     @GetMapping("/mascotas/export/csv")
-    public ResponseEntity<byte[]> exportarReporteMascotasCSV(
+    public ResponseEntity<StreamingResponseBody> exportarReporteMascotasCSV(
             @RequestParam(required = false) Long veterinariaId,
             @RequestParam(required = false) String especie,
             @RequestParam(required = false) String search) {
-        List<ReporteMascotaDTO> mascotas;
-        
-        // Obtener mascotas según los filtros
-        if (veterinariaId != null) {
-            mascotas = gestionReporteService.getReporteMascotasPorVeterinaria(veterinariaId);
-        } else {
-            mascotas = gestionReporteService.getReporteMascotas();
-        }
-        
-        // Aplicar filtro por especie si está presente
-        if (especie != null && !especie.isEmpty()) {
-            mascotas = mascotas.stream()
-                    .filter(m -> m.getEspecie().equalsIgnoreCase(especie))
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro de búsqueda si está presente
-        if (search != null && !search.isEmpty()) {
-            String searchLower = search.toLowerCase();
-            mascotas = mascotas.stream()
-                    .filter(m -> 
-                        m.getNombre().toLowerCase().contains(searchLower) ||
-                        (m.getPropietarioNombre() != null && m.getPropietarioNombre().toLowerCase().contains(searchLower)) ||
-                        (m.getPropietarioApellido() != null && m.getPropietarioApellido().toLowerCase().contains(searchLower)) ||
-                        (m.getRaza() != null && m.getRaza().toLowerCase().contains(searchLower))
-                    )
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        byte[] csvBytes = csvExportService.exportarMascotasCSV(mascotas);
-        
-        String filename = "reporte_mascotas_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".csv";
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.parseMediaType("text/csv"))
-                .body(csvBytes);
+        StreamingResponseBody cuerpo = salida -> csvExportService.escribirMascotasCSV(salida,
+                fila -> gestionReporteService.recorrerReporteMascotas(veterinariaId, especie, search, fila));
+        return respuestaArchivo("reporte_mascotas_", ".csv", MediaType.parseMediaType("text/csv"), cuerpo);
     }
 
     @GetMapping("/citas/export/csv")
-    public ResponseEntity<byte[]> exportarReporteCitasCSV(
+    public ResponseEntity<StreamingResponseBody> exportarReporteCitasCSV(
             @RequestParam(required = false) Long veterinariaId,
             @RequestParam(required = false) String estado,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String fechaInicio,
-            @RequestParam(required = false) String fechaFin) {
-        List<ReporteCitaDTO> citas;
-        
-        // Obtener citas según los filtros
-        if (veterinariaId != null) {
-            citas = gestionReporteService.getReporteCitasPorVeterinaria(veterinariaId);
-        } else {
-            citas = gestionReporteService.getReporteCitas();
-        }
-        
-        // Aplicar filtro por estado si está presente
-        if (estado != null && !estado.isEmpty()) {
-            citas = citas.stream()
-                    .filter(c -> c.getEstado().equals(estado))
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro de búsqueda si está presente
-        if (search != null && !search.isEmpty()) {
-            String searchLower = search.toLowerCase();
-            citas = citas.stream()
-                    .filter(c -> 
-                        (c.getClienteNombre() != null && c.getClienteNombre().toLowerCase().contains(searchLower)) ||
-                        (c.getMascotaNombre() != null && c.getMascotaNombre().toLowerCase().contains(searchLower)) ||
-                        (c.getVeterinarioNombre() != null && c.getVeterinarioNombre().toLowerCase().contains(searchLower)) ||
-                        (c.getMotivo() != null && c.getMotivo().toLowerCase().contains(searchLower))
-                    )
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro por rango de fechas si están presentes
-        if (fechaInicio != null && !fechaInicio.isEmpty() && fechaFin != null && !fechaFin.isEmpty()) {
-            try {
-                LocalDate inicio = LocalDate.parse(fechaInicio);
-                LocalDate fin = LocalDate.parse(fechaFin);
-                citas = citas.stream()
-                        .filter(c -> {
-                            try {
-                                if (c.getFechaHora() != null) {
-                                    LocalDate fechaCitaDate = c.getFechaHora().toLocalDate();
-                                    return !fechaCitaDate.isBefore(inicio) && !fechaCitaDate.isAfter(fin);
-                                }
-                                return false;
-                            } catch (Exception e) {
-                                return false;
-                            }
-                        })
-                        .collect(java.util.stream.Collectors.toList());
-            } catch (Exception e) {
-                // Si hay error al parsear fechas, ignorar el filtro de fechas
-            }
-        }
-        
-        byte[] csvBytes = csvExportService.exportarCitasCSV(citas);
-        
-        String filename = "reporte_citas_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".csv";
+            @RequestParam(required = false) String fechaFin,
+            @RequestParam(required = false) String veterinarioDocumento,
+            @RequestParam(required = false) String especie) {
+        // Todos los filtros se aplican en la consulta
+        FiltroReporteCitas filtro = FiltroReporteCitas.deParametros(
+                veterinariaId, estado, fechaInicio, fechaFin, veterinarioDocumento, especie, search);
+        StreamingResponseBody cuerpo = salida -> csvExportService.escribirCitasCSV(salida,
+                fila -> gestionReporteService.recorrerReporteCitas(filtro, fila));
+        return respuestaArchivo("reporte_citas_", ".csv", MediaType.parseMediaType("text/csv"), cuerpo);
+    }
+
+    private ResponseEntity<StreamingResponseBody> respuestaArchivo(String prefijo, String extension,
+                                                                   MediaType tipo, StreamingResponseBody cuerpo) {
+        String filename = prefijo + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + extension;
         
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.parseMediaType("text/csv"))
-                .body(csvBytes);
+                .contentType(tipo)
+                .body(cuerpo);
     }
 
     // ==================== ENDPOINTS DE EXPORTACIÓN PDF ====================
     
     @GetMapping("/usuarios/export/pdf")
-    public ResponseEntity<byte[]> exportarReporteUsuariosPDF(
+    public ResponseEntity<StreamingResponseBody> exportarReporteUsuariosPDF(
             @RequestParam(required = false) Long veterinariaId,
             @RequestParam(required = false) String rol,
             @RequestParam(required = false) String search) {
-        List<ReporteUsuarioDTO> usuarios;
         EstadisticasUsuariosDTO estadisticas;
-        
         if (veterinariaId != null) {
-            usuarios = gestionReporteService.getReporteUsuariosPorVeterinaria(veterinariaId);
             estadisticas = gestionReporteService.getEstadisticasUsuariosPorVeterinaria(veterinariaId);
         } else {
-            usuarios = gestionReporteService.getReporteUsuarios();
             estadisticas = gestionReporteService.getEstadisticasUsuarios();
         }
         
-        // Aplicar filtro por rol si está presente
-        if (rol != null && !rol.isEmpty()) {
-            String rolFiltro = rol.startsWith("ROLE_") ? rol : "ROLE_" + rol;
-            usuarios = usuarios.stream()
-                    .filter(u -> u.getRol().equals(rolFiltro))
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro de búsqueda si está presente
-        if (search != null && !search.isEmpty()) {
-            String searchLower = search.toLowerCase();
-            usuarios = usuarios.stream()
-                    .filter(u -> 
-                        u.getUsername().toLowerCase().contains(searchLower) ||
-                        (u.getNombres() != null && u.getNombres().toLowerCase().contains(searchLower)) ||
-                        (u.getApellidos() != null && u.getApellidos().toLowerCase().contains(searchLower)) ||
-                        (u.getEmail() != null && u.getEmail().toLowerCase().contains(searchLower)) ||
-                        u.getDocumento().toLowerCase().contains(searchLower)
-                    )
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        byte[] pdfBytes = pdfExportService.generarReporteUsuariosPDF(usuarios, estadisticas);
-        
-        String filename = "reporte_usuarios_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.valueOf("application/pdf"))
-                .body(pdfBytes);
+        // Las filas se maquetan y se envían por bloques según llegan del cursor
+        StreamingResponseBody cuerpo = salida -> pdfExportService.escribirReporteUsuariosPDF(salida, estadisticas,
+                fila -> gestionReporteService.recorrerReporteUsuarios(veterinariaId, rol, search, fila));
+        return respuestaArchivo("reporte_usuarios_", ".pdf", MediaType.APPLICATION_PDF, cuerpo);
     }
 
     @GetMapping("/mascotas/export/pdf")
-    public ResponseEntity<byte[]> exportarReporteMascotasPDF(
+    public ResponseEntity<StreamingResponseBody> exportarReporteMascotasPDF(
             @RequestParam(required = false) Long veterinariaId,
             @RequestParam(required = false) String especie,
             @RequestParam(required = false) String search) {
-        List<ReporteMascotaDTO> mascotas;
         EstadisticasMascotasDTO estadisticas;
-        
         if (veterinariaId != null) {
-            mascotas = gestionReporteService.getReporteMascotasPorVeterinaria(veterinariaId);
             estadisticas = gestionReporteService.getEstadisticasMascotasPorVeterinaria(veterinariaId);
         } else {
-            mascotas = gestionReporteService.getReporteMascotas();
             estadisticas = gestionReporteService.getEstadisticasMascotas();
         }
         
-        // Aplicar filtro por especie si está presente
-        if (especie != null && !especie.isEmpty()) {
-            mascotas = mascotas.stream()
-                    .filter(m -> m.getEspecie().equalsIgnoreCase(especie))
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro de búsqueda si está presente
-        if (search != null && !search.isEmpty()) {
-            String searchLower = search.toLowerCase();
-            mascotas = mascotas.stream()
-                    .filter(m -> 
-                        m.getNombre().toLowerCase().contains(searchLower) ||
-                        (m.getPropietarioNombre() != null && m.getPropietarioNombre().toLowerCase().contains(searchLower)) ||
-                        (m.getPropietarioApellido() != null && m.getPropietarioApellido().toLowerCase().contains(searchLower)) ||
-                        (m.getRaza() != null && m.getRaza().toLowerCase().contains(searchLower))
-                    )
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        byte[] pdfBytes = pdfExportService.generarReporteMascotasPDF(mascotas, estadisticas);
-        
-        String filename = "reporte_mascotas_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.valueOf("application/pdf"))
-                .body(pdfBytes);
+        StreamingResponseBody cuerpo = salida -> pdfExportService.escribirReporteMascotasPDF(salida, estadisticas,
+                fila -> gestionReporteService.recorrerReporteMascotas(veterinariaId, especie, search, fila));
+        return respuestaArchivo("reporte_mascotas_", ".pdf", MediaType.APPLICATION_PDF, cuerpo);
     }
 
     @GetMapping("/citas/export/pdf")
-    public ResponseEntity<byte[]> exportarReporteCitasPDF(
+    public ResponseEntity<StreamingResponseBody> exportarReporteCitasPDF(
             @RequestParam(required = false) Long veterinariaId,
             @RequestParam(required = false) String estado,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String fechaInicio,
-            @RequestParam(required = false) String fechaFin) {
-        List<ReporteCitaDTO> citas;
+            @RequestParam(required = false) String fechaFin,
+            @RequestParam(required = false) String veterinarioDocumento,
+            @RequestParam(required = false) String especie) {
+        // Todos los filtros se aplican en la consulta
+        FiltroReporteCitas filtro = FiltroReporteCitas.deParametros(
+                veterinariaId, estado, fechaInicio, fechaFin, veterinarioDocumento, especie, search);
         EstadisticasCitasDTO estadisticas;
-        
         if (veterinariaId != null) {
-            citas = gestionReporteService.getReporteCitasPorVeterinaria(veterinariaId);
             estadisticas = gestionReporteService.getEstadisticasCitasPorVeterinaria(veterinariaId);
         } else {
-            citas = gestionReporteService.getReporteCitas();
             estadisticas = gestionReporteService.getEstadisticasCitas();
         }
         
-        // Aplicar filtro por estado si está presente
-        if (estado != null && !estado.isEmpty()) {
-            citas = citas.stream()
-                    .filter(c -> c.getEstado().equals(estado))
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro de búsqueda si está presente
-        if (search != null && !search.isEmpty()) {
-            String searchLower = search.toLowerCase();
-            citas = citas.stream()
-                    .filter(c -> 
-                        (c.getClienteNombre() != null && c.getClienteNombre().toLowerCase().contains(searchLower)) ||
-                        (c.getMascotaNombre() != null && c.getMascotaNombre().toLowerCase().contains(searchLower)) ||
-                        (c.getVeterinarioNombre() != null && c.getVeterinarioNombre().toLowerCase().contains(searchLower)) ||
-                        (c.getMotivo() != null && c.getMotivo().toLowerCase().contains(searchLower))
-                    )
-                    .collect(java.util.stream.Collectors.toList());
-        }
-        
-        // Aplicar filtro por rango de fechas si están presentes
-        if (fechaInicio != null && !fechaInicio.isEmpty() && fechaFin != null && !fechaFin.isEmpty()) {
-            try {
-                LocalDate inicio = LocalDate.parse(fechaInicio);
-                LocalDate fin = LocalDate.parse(fechaFin);
-                citas = citas.stream()
-                        .filter(c -> {
-                            try {
-                                if (c.getFechaHora() != null) {
-                                    LocalDate fechaCitaDate = c.getFechaHora().toLocalDate();
-                                    return !fechaCitaDate.isBefore(inicio) && !fechaCitaDate.isAfter(fin);
-                                }
-                                return false;
-                            } catch (Exception e) {
-                                return false;
-                            }
-                        })
-                        .collect(java.util.stream.Collectors.toList());
-            } catch (Exception e) {
-                // Si hay error al parsear fechas, ignorar el filtro de fechas
-            }
-        }
-        
-        byte[] pdfBytes = pdfExportService.generarReporteCitasPDF(citas, estadisticas);
-        
-        String filename = "reporte_citas_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.valueOf("application/pdf"))
-                .body(pdfBytes);
+        StreamingResponseBody cuerpo = salida -> pdfExportService.escribirReporteCitasPDF(salida, estadisticas,
+                fila -> gestionReporteService.recorrerReporteCitas(filtro, fila));
+        return respuestaArchivo("reporte_citas_", ".pdf", MediaType.APPLICATION_PDF, cuerpo);
     }
 }
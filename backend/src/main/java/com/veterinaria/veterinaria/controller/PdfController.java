@@ -1,19 +1,27 @@
 package com.veterinaria.veterinaria.controller;
 
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.service.CacheHistoriasPdfService;
+import com.veterinaria.veterinaria.service.ExportacionHistoriasService;
 import com.veterinaria.veterinaria.service.PdfHistoriaClinicaService;
+import com.veterinaria.veterinaria.service.UsuarioService;
 import com.veterinaria.veterinaria.security.JwtUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/pdf")
@@ -25,6 +33,15 @@ public class PdfController {
     
     @Autowired
     private JwtUtils jwtUtils;
+
+    @Autowired
+    private ExportacionHistoriasService exportacionHistoriasService;
+
+    @Autowired
+    private CacheHistoriasPdfService cacheHistoriasPdfService;
+
+    @Autowired
+    private UsuarioService usuarioService;
     
     @GetMapping("/historia-clinica/{mascotaId}")
     @PreAuthorize("hasRole('CLIENTE') or hasRole('ADMIN') or hasRole('VETERINARIO') or hasRole('RECEPCIONISTA')")
@@ -144,6 +161,51 @@ public class PdfController {
         }
     }
     
+    /**
+     * Historias clínicas de una veterinaria o de una lista de mascotas en un ZIP, con un PDF por
+     * mascota. El ZIP se envía a medida que se generan los PDF. Quien no es administrador
+     * solo exporta mascotas de su propia veterinaria.
+     */
+    @GetMapping("/historias-clinicas/zip")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('VETERINARIO') or hasRole('RECEPCIONISTA')")
+    public ResponseEntity<StreamingResponseBody> descargarHistoriasClinicasZip(
+            @RequestParam(required = false) Long veterinariaId,
+            @RequestParam(required = false) List<Long> mascotaIds) {
+        // Fuera de los administradores, solo la veterinaria del usuario
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = auth.getAuthorities().stream()
+            .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+        Long veterinariaPermitida = null;
+        if (!isAdmin) {
+            Usuario usuario = usuarioService.findByUsername(auth.getName())
+                .orElseThrow(() -> new AccessDeniedException("Usuario no encontrado"));
+            if (usuario.getVeterinaria() == null) {
+                throw new AccessDeniedException("El usuario no tiene una veterinaria asignada");
+            }
+            veterinariaPermitida = usuario.getVeterinaria().getId();
+            veterinariaId = veterinariaPermitida;
+        }
+
+        // Los datos inválidos llegan como IllegalArgumentException al GlobalExceptionHandler (400)
+        List<Long> ids = exportacionHistoriasService.resolverMascotas(veterinariaId, mascotaIds, veterinariaPermitida);
+        System.out.println("🔍 Exportación ZIP de " + ids.size() + " historias clínicas");
+
+        String nombre = veterinariaId != null && (mascotaIds == null || mascotaIds.isEmpty())
+                ? "historias_clinicas_veterinaria_" + veterinariaId + ".zip"
+                : "historias_clinicas.zip";
+        StreamingResponseBody cuerpo = salida -> exportacionHistoriasService.escribirZip(ids, salida);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + nombre + "\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(cuerpo);
+    }
+    
+    @GetMapping("/historias-clinicas/cache/metricas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getMetricasCache() {
+        return ResponseEntity.ok(cacheHistoriasPdfService.getMetricas());
+    }
+    
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         
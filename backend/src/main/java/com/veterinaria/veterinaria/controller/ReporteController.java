@@ -4,6 +4,7 @@ import com.veterinaria.veterinaria.entity.Reporte;
 import com.veterinaria.veterinaria.entity.Usuario;
 import com.veterinaria.veterinaria.entity.Veterinaria;
 import com.veterinaria.veterinaria.service.ReporteService;
+import com.veterinaria.veterinaria.service.TrabajoReporteService;
 import com.veterinaria.veterinaria.service.UsuarioService;
 import com.veterinaria.veterinaria.service.VeterinariaService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +34,9 @@ public class ReporteController {
     @Autowired
     private VeterinariaService veterinariaService;
     
+    @Autowired
+    private TrabajoReporteService trabajoReporteService;
+    
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<Reporte>> getAllReportes() {
@@ -151,6 +155,47 @@ public class ReporteController {
         }
     }
     
+    // ==================== GENERACIÓN EN SEGUNDO PLANO ====================
+    // Igual que los /generar-* pero responden 202 al momento; el estado se consulta en /api/reportes/trabajos/{id}
+    
+    @PostMapping("/generar-citas/trabajo")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> enviarReporteCitas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(required = false) Long veterinariaId,
+            @AuthenticationPrincipal org.springframework.security.core.userdetails.UserDetails userDetails) {
+        if (veterinariaId != null && !validarAccesoVeterinaria(userDetails, veterinariaId)) {
+            return ResponseEntity.status(403).build();
+        }
+        return TrabajoReporteController.enviar(() -> trabajoReporteService.enviarReporteCitas(
+                fechaInicio, fechaFin, veterinariaId, reporteService.getUsuarioActual()));
+    }
+    
+    @PostMapping("/generar-mascotas/trabajo")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> enviarReporteMascotas(
+            @RequestParam(required = false) Long veterinariaId,
+            @AuthenticationPrincipal org.springframework.security.core.userdetails.UserDetails userDetails) {
+        if (veterinariaId != null && !validarAccesoVeterinaria(userDetails, veterinariaId)) {
+            return ResponseEntity.status(403).build();
+        }
+        return TrabajoReporteController.enviar(() -> trabajoReporteService.enviarReporteMascotas(
+                veterinariaId, reporteService.getUsuarioActual()));
+    }
+    
+    @PostMapping("/generar-usuarios/trabajo")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> enviarReporteUsuarios(
+            @RequestParam(required = false) Long veterinariaId,
+            @AuthenticationPrincipal org.springframework.security.core.userdetails.UserDetails userDetails) {
+        if (veterinariaId != null && !validarAccesoVeterinaria(userDetails, veterinariaId)) {
+            return ResponseEntity.status(403).build();
+        }
+        return TrabajoReporteController.enviar(() -> trabajoReporteService.enviarReporteUsuarios(
+                veterinariaId, reporteService.getUsuarioActual()));
+    }
+    
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Reporte> updateReporte(@PathVariable Long id, @Valid @RequestBody Reporte reporteDetails) {
@@ -0,0 +1,247 @@
+package com.veterinaria.veterinaria.controller;
+
+import com.veterinaria.veterinaria.dto.FiltroReporteCitas;
+import com.veterinaria.veterinaria.dto.TrabajoReporteDTO;
+import com.veterinaria.veterinaria.entity.Reporte;
+import com.veterinaria.veterinaria.service.AlmacenArtefactosService;
+import com.veterinaria.veterinaria.service.ReporteService;
+import com.veterinaria.veterinaria.service.TrabajoReporteService;
+import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Exportaciones en segundo plano: se envía el trabajo (202 con su estado), se consulta
+ * en /api/reportes/trabajos/{id} y se descarga en /api/reportes/trabajos/{id}/descarga.
+ */
+@RestController
+@RequestMapping("/api/reportes/trabajos")
+@PreAuthorize("hasRole('ADMIN') or hasRole('RECEPCIONISTA')")
+public class TrabajoReporteController {
+
+    // Atributos de petición con los que Tomcat hace el envío por sendfile
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private TrabajoReporteService trabajoReporteService;
+
+    @Autowired
+    private ReporteService reporteService;
+
+    @PostMapping("/usuarios/export")
+    public ResponseEntity<?> exportarUsuarios(
+            @RequestParam String formato,
+            @RequestParam(required = false) Long veterinariaId,
+            @RequestParam(required = false) String rol,
+            @RequestParam(required = false) String search) {
+        return enviar(() -> trabajoReporteService.enviarExportacionUsuarios(
+                formato, veterinariaId, rol, search, reporteService.getUsuarioActual()));
+    }
+
+    @PostMapping("/mascotas/export")
+    public ResponseEntity<?> exportarMascotas(
+            @RequestParam String formato,
+            @RequestParam(required = false) Long veterinariaId,
+            @RequestParam(required = false) String especie,
+            @RequestParam(required = false) String search) {
+        return enviar(() -> trabajoReporteService.enviarExportacionMascotas(
+                formato, veterinariaId, especie, search, reporteService.getUsuarioActual()));
+    }
+
+    @PostMapping("/citas/export")
+    public ResponseEntity<?> exportarCitas(
+            @RequestParam String formato,
+            @RequestParam(required = false) Long veterinariaId,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String fechaInicio,
+            @RequestParam(required = false) String fechaFin,
+            @RequestParam(required = false) String veterinarioDocumento,
+            @RequestParam(required = false) String especie) {
+        FiltroReporteCitas filtro = FiltroReporteCitas.deParametros(
+                veterinariaId, estado, fechaInicio, fechaFin, veterinarioDocumento, especie, search);
+        return enviar(() -> trabajoReporteService.enviarExportacionCitas(
+                formato, filtro, reporteService.getUsuarioActual()));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<TrabajoReporteDTO> getTrabajo(@PathVariable Long id, Authentication authentication) {
+        return findTrabajo(id, authentication)
+                .map(reporte -> ResponseEntity.ok(new TrabajoReporteDTO(reporte)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Sirve el archivo guardado sin regenerarlo. Admite Range (un solo rango) e If-Range, y
+     * ETag con el checksum. Los CSV se guardan comprimidos y se envían con Content-Encoding: gzip;
+     * solo se descomprimen para clientes que no aceptan gzip. Con Tomcat el envío es por sendfile,
+     * sin copiar el archivo por la JVM.
+     */
+    @GetMapping("/{id}/descarga")
+    public ResponseEntity<?> descargar(@PathVariable Long id, Authentication authentication, HttpServletRequest request,
+                                       HttpServletResponse response) throws IOException {
+        Optional<Reporte> reporteOpt = findTrabajo(id, authentication);
+        if (reporteOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Reporte reporte = reporteOpt.get();
+        if (reporte.getEstadoTrabajo() != Reporte.EstadoTrabajo.COMPLETADO) {
+            // Todavía no hay nada que descargar: se devuelve el estado para seguir consultando
+            return ResponseEntity.status(409).body(new TrabajoReporteDTO(reporte));
+        }
+
+        Path ruta = trabajoReporteService.getRutaArchivo(reporte);
+        if (ruta != null && Files.exists(ruta)) {
+            trabajoReporteService.registrarDescarga(reporte);
+            servirArchivo(reporte, ruta, request, response);
+            return null;
+        }
+        if (reporte.getArchivoNombre() == null && reporte.getContenido() != null) {
+            // Reportes de texto: el resultado es el propio contenido
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"reporte_" + reporte.getId() + ".txt\"")
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .body(reporte.getContenido());
+        }
+        // El archivo ya se borró por la política de retención
+        return ResponseEntity.status(410).body("El archivo del reporte ya no está disponible, vuelva a generarlo");
+    }
+
+    private void servirArchivo(Reporte reporte, Path ruta, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        boolean comprimido = AlmacenArtefactosService.GZIP.equals(reporte.getArchivoCompresion());
+        String aceptadas = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean enviarGzip = comprimido && aceptadas != null && aceptadas.toLowerCase(Locale.ROOT).contains("gzip");
+        // El ETag distingue la versión comprimida, porque los rangos se cuentan sobre los bytes enviados
+        String etag = reporte.getArchivoSha256() != null
+                ? "\"" + reporte.getArchivoSha256() + (enviarGzip ? "-gz" : "") + "\""
+                : null;
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + reporte.getArchivoNombre() + "\"");
+        response.setContentType(reporte.getArchivoTipo());
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+        if (comprimido) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (etag != null && etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (comprimido && !enviarGzip) {
+            // Cliente sin gzip: se descomprime al vuelo, sin rangos
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+            if (reporte.getArchivoTamano() != null) {
+                response.setContentLengthLong(reporte.getArchivoTamano());
+            }
+            try (InputStream entrada = new GZIPInputStream(Files.newInputStream(ruta), 64 * 1024)) {
+                entrada.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        if (enviarGzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long longitud = Files.size(ruta);
+        long inicio = 0;
+        long cantidad = longitud;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        String siRango = request.getHeader(HttpHeaders.IF_RANGE);
+        // Con If-Range solo se respeta el rango si el archivo es el mismo que tiene el cliente
+        if (rango != null && (siRango == null || siRango.equals(etag))) {
+            try {
+                List<HttpRange> rangos = HttpRange.parseRanges(rango);
+                // Varios rangos se responden con el archivo entero, que también es válido
+                if (rangos.size() == 1) {
+                    inicio = rangos.get(0).getRangeStart(longitud);
+                    if (inicio >= longitud) {
+                        throw new IllegalArgumentException("Rango fuera del archivo");
+                    }
+                    cantidad = rangos.get(0).getRangeEnd(longitud) - inicio + 1;
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE,
+                            "bytes " + inicio + "-" + (inicio + cantidad - 1) + "/" + longitud);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + longitud);
+                return;
+            }
+        }
+        enviarArchivo(ruta, inicio, cantidad, request, response);
+    }
+
+    private static void enviarArchivo(Path ruta, long inicio, long cantidad, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(cantidad);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat envía el archivo con sendfile al terminar la petición
+            request.setAttribute(SENDFILE_ARCHIVO, ruta.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, inicio + cantidad);
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(response.getOutputStream());
+            long enviados = 0;
+            while (enviados < cantidad) {
+                enviados += canal.transferTo(inicio + enviados, cantidad - enviados, destino);
+            }
+        }
+    }
+
+    /**
+     * Solo los trabajos que el usuario puede ver (los suyos o, si es administrador, los de su
+     * veterinaria); el resto se trata como inexistente.
+     */
+    private Optional<Reporte> findTrabajo(Long id, Authentication authentication) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+            .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+        return trabajoReporteService.findTrabajo(id, reporteService.getUsuarioActual(), isAdmin);
+    }
+
+    /**
+     * Respuesta común al enviar un trabajo (también la usan los endpoints de ReporteController):
+     * 202 con su estado, 400 con el motivo si los parámetros no son válidos y 503 si la cola
+     * está llena. El resto de errores los trata GlobalExceptionHandler.
+     */
+    static ResponseEntity<?> enviar(Supplier<Reporte> envio) {
+        try {
+            return ResponseEntity.accepted().body(new TrabajoReporteDTO(envio.get()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body("Hay demasiados reportes en cola, inténtelo más tarde");
+        }
+    }
+}
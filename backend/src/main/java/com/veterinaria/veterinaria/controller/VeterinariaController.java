@@ -6,6 +6,7 @@ import com.veterinaria.veterinaria.dto.VeterinariaResponse;
 import com.veterinaria.veterinaria.dto.ApiResponse;
 import com.veterinaria.veterinaria.service.VeterinariaService;
 import com.veterinaria.veterinaria.service.UsuarioService;
+import com.veterinaria.veterinaria.service.HorarioAtencionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -30,6 +31,9 @@ public class VeterinariaController {
     @Autowired
     private UsuarioService usuarioService;
     
+    @Autowired
+    private HorarioAtencionService horarioAtencionService;
+    
     @GetMapping
     public ResponseEntity<ApiResponse<List<VeterinariaResponse>>> getAllVeterinarias(@AuthenticationPrincipal org.springframework.security.core.userdetails.UserDetails userDetails) {
         System.out.println("=== DEBUG GET VETERINARIAS ===");
@@ -282,6 +286,8 @@ public class VeterinariaController {
             }
             
             Veterinaria veterinariaActualizada = veterinariaService.save(veterinaria);
+            // El horario de atención puede haber cambiado: se recompila en el próximo uso
+            horarioAtencionService.invalidar(id);
             return ResponseEntity.ok(
                 ApiResponse.success("Veterinaria actualizada exitosamente", veterinariaActualizada)
             );
@@ -327,6 +333,7 @@ public class VeterinariaController {
         
         if (veterinaria.isPresent()) {
             veterinariaService.deleteById(id);
+            horarioAtencionService.invalidar(id);
             return ResponseEntity.ok(
                 ApiResponse.success("Veterinaria eliminada exitosamente")
             );
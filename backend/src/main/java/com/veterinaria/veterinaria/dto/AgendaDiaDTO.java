@@ -0,0 +1,47 @@
+package com.veterinaria.veterinaria.dto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AgendaDiaDTO {
+    private LocalDate fecha;
+    private List<HorarioDisponibleDTO> horarios;
+    private List<CitaResponse> citas;
+
+    public AgendaDiaDTO() {
+        this.horarios = new ArrayList<>();
+        this.citas = new ArrayList<>();
+    }
+
+    public AgendaDiaDTO(LocalDate fecha) {
+        this.fecha = fecha;
+        this.horarios = new ArrayList<>();
+        this.citas = new ArrayList<>();
+    }
+
+    // Getters y Setters
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(LocalDate fecha) {
+        this.fecha = fecha;
+    }
+
+    public List<HorarioDisponibleDTO> getHorarios() {
+        return horarios;
+    }
+
+    public void setHorarios(List<HorarioDisponibleDTO> horarios) {
+        this.horarios = horarios;
+    }
+
+    public List<CitaResponse> getCitas() {
+        return citas;
+    }
+
+    public void setCitas(List<CitaResponse> citas) {
+        this.citas = citas;
+    }
+}
@@ -9,6 +9,9 @@ public class CitaRequest {
     @NotNull(message = "La fecha y hora son obligatorias")
     private LocalDateTime fechaHora;
     
+    // Duración en minutos (30 por defecto)
+    private Integer duracionMinutos;
+    
     private String motivo;
     
     @NotNull(message = "El ID de la mascota es obligatorio")
@@ -45,6 +48,14 @@ public class CitaRequest {
         this.fechaHora = fechaHora;
     }
     
+    public Integer getDuracionMinutos() {
+        return duracionMinutos;
+    }
+    
+    public void setDuracionMinutos(Integer duracionMinutos) {
+        this.duracionMinutos = duracionMinutos;
+    }
+    
     public String getMotivo() {
         return motivo;
     }
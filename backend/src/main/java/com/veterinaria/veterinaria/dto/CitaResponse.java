@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 public class CitaResponse {
     private Long id;
     private LocalDateTime fechaHora;
+    private Integer duracionMinutos;
     private String motivo;
     private String observaciones;
     private String estado;
@@ -35,6 +36,7 @@ public class CitaResponse {
         try {
             this.id = cita.getId();
             this.fechaHora = cita.getFechaHora();
+            this.duracionMinutos = cita.getDuracionMinutos();
             this.motivo = cita.getMotivo();
             this.observaciones = cita.getObservaciones();
             this.estado = cita.getEstado() != null ? cita.getEstado().name() : null;
@@ -95,6 +97,9 @@ public class CitaResponse {
     public LocalDateTime getFechaHora() { return fechaHora; }
     public void setFechaHora(LocalDateTime fechaHora) { this.fechaHora = fechaHora; }
     
+    public Integer getDuracionMinutos() { return duracionMinutos; }
+    public void setDuracionMinutos(Integer duracionMinutos) { this.duracionMinutos = duracionMinutos; }
+    
     public String getMotivo() { return motivo; }
     public void setMotivo(String motivo) { this.motivo = motivo; }
     
@@ -1,22 +1,30 @@
 package com.veterinaria.veterinaria.dto;
 
+import java.util.List;
+
 public class DashboardStatsResponse {
     private long totalUsuarios;
     private long usuariosActivos;
     private long totalMascotas;
     private long mascotasActivas;
     private long totalCitas;
-    private long citasHoy;
+    // null si no se pudo calcular a tiempo y no hay un valor anterior
+    private Long citasHoy;
     private long citasPendientes;
     private long citasConfirmadas;
     private long totalVeterinarias;
     private long veterinariasActivas;
     
+    // Solo en el dashboard por veterinaria: alcance y agregados que no llegaron a tiempo
+    private List<Long> veterinariaIds;
+    private Boolean parcial;
+    private List<String> agregadosDesactualizados;
+    
     // Constructores
     public DashboardStatsResponse() {}
     
     public DashboardStatsResponse(long totalUsuarios, long usuariosActivos, long totalMascotas, 
-                                 long mascotasActivas, long totalCitas, long citasHoy, 
+                                 long mascotasActivas, long totalCitas, Long citasHoy, 
                                  long citasPendientes, long citasConfirmadas, 
                                  long totalVeterinarias, long veterinariasActivas) {
         this.totalUsuarios = totalUsuarios;
@@ -72,11 +80,11 @@ public class DashboardStatsResponse {
         this.totalCitas = totalCitas;
     }
     
-    public long getCitasHoy() {
+    public Long getCitasHoy() {
         return citasHoy;
     }
     
-    public void setCitasHoy(long citasHoy) {
+    public void setCitasHoy(Long citasHoy) {
         this.citasHoy = citasHoy;
     }
     
@@ -111,4 +119,28 @@ public class DashboardStatsResponse {
     public void setVeterinariasActivas(long veterinariasActivas) {
         this.veterinariasActivas = veterinariasActivas;
     }
-}
\ No newline at end of file
+    
+    public List<Long> getVeterinariaIds() {
+        return veterinariaIds;
+    }
+    
+    public void setVeterinariaIds(List<Long> veterinariaIds) {
+        this.veterinariaIds = veterinariaIds;
+    }
+    
+    public Boolean getParcial() {
+        return parcial;
+    }
+    
+    public void setParcial(Boolean parcial) {
+        this.parcial = parcial;
+    }
+    
+    public List<String> getAgregadosDesactualizados() {
+        return agregadosDesactualizados;
+    }
+    
+    public void setAgregadosDesactualizados(List<String> agregadosDesactualizados) {
+        this.agregadosDesactualizados = agregadosDesactualizados;
+    }
+}
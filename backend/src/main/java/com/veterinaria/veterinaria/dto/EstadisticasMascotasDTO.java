@@ -1,6 +1,7 @@
 package com.veterinaria.veterinaria.dto;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class EstadisticasMascotasDTO {
@@ -9,16 +10,22 @@ public class EstadisticasMascotasDTO {
     private Map<String, Long> totalPorSexo;
     private Double promedioEdad;
     private Double promedioPeso;
+    private Map<String, Long> histogramaEdad;
+    private Map<String, Map<String, Double>> percentilesPesoPorEspecie;
 
     public EstadisticasMascotasDTO() {
         this.totalPorEspecie = new HashMap<>();
         this.totalPorSexo = new HashMap<>();
+        this.histogramaEdad = new LinkedHashMap<>();
+        this.percentilesPesoPorEspecie = new HashMap<>();
     }
 
     public EstadisticasMascotasDTO(Long totalMascotas) {
         this.totalMascotas = totalMascotas;
         this.totalPorEspecie = new HashMap<>();
         this.totalPorSexo = new HashMap<>();
+        this.histogramaEdad = new LinkedHashMap<>();
+        this.percentilesPesoPorEspecie = new HashMap<>();
     }
 
     // Getters y Setters
@@ -61,4 +68,20 @@ public class EstadisticasMascotasDTO {
     public void setPromedioPeso(Double promedioPeso) {
         this.promedioPeso = promedioPeso;
     }
+
+    public Map<String, Long> getHistogramaEdad() {
+        return histogramaEdad;
+    }
+
+    public void setHistogramaEdad(Map<String, Long> histogramaEdad) {
+        this.histogramaEdad = histogramaEdad;
+    }
+
+    public Map<String, Map<String, Double>> getPercentilesPesoPorEspecie() {
+        return percentilesPesoPorEspecie;
+    }
+
+    public void setPercentilesPesoPorEspecie(Map<String, Map<String, Double>> percentilesPesoPorEspecie) {
+        this.percentilesPesoPorEspecie = percentilesPesoPorEspecie;
+    }
 }
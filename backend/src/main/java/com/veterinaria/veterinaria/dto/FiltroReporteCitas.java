@@ -0,0 +1,107 @@
+package com.veterinaria.veterinaria.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Filtros combinables del reporte de citas. Todos son opcionales; los que son null no filtran.
+ */
+public class FiltroReporteCitas {
+    private Long veterinariaId;
+    private String estado;
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    private String veterinarioDocumento;
+    private String especie;
+    private String busqueda;
+
+    public FiltroReporteCitas() {
+    }
+
+    /**
+     * Construye el filtro a partir de los parámetros de los endpoints de reportes (fechas yyyy-MM-dd).
+     * Igual que antes, el rango de fechas solo se aplica si vienen las dos y son válidas.
+     */
+    public static FiltroReporteCitas deParametros(Long veterinariaId, String estado, String fechaInicio, String fechaFin,
+                                                  String veterinarioDocumento, String especie, String busqueda) {
+        FiltroReporteCitas filtro = new FiltroReporteCitas();
+        filtro.setVeterinariaId(veterinariaId);
+        filtro.setEstado(vacioANull(estado));
+        filtro.setVeterinarioDocumento(vacioANull(veterinarioDocumento));
+        filtro.setEspecie(vacioANull(especie));
+        filtro.setBusqueda(vacioANull(busqueda));
+        if (vacioANull(fechaInicio) != null && vacioANull(fechaFin) != null) {
+            try {
+                filtro.setDesde(LocalDate.parse(fechaInicio).atStartOfDay());
+                filtro.setHasta(LocalDate.parse(fechaFin).atTime(23, 59, 59));
+            } catch (DateTimeParseException e) {
+                // Si hay error al parsear fechas, se ignora el filtro de fechas
+                filtro.setDesde(null);
+                filtro.setHasta(null);
+            }
+        }
+        return filtro;
+    }
+
+    private static String vacioANull(String valor) {
+        return valor == null || valor.isEmpty() ? null : valor;
+    }
+
+    // Getters y Setters
+    public Long getVeterinariaId() {
+        return veterinariaId;
+    }
+
+    public void setVeterinariaId(Long veterinariaId) {
+        this.veterinariaId = veterinariaId;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public void setEstado(String estado) {
+        this.estado = estado;
+    }
+
+    public LocalDateTime getDesde() {
+        return desde;
+    }
+
+    public void setDesde(LocalDateTime desde) {
+        this.desde = desde;
+    }
+
+    public LocalDateTime getHasta() {
+        return hasta;
+    }
+
+    public void setHasta(LocalDateTime hasta) {
+        this.hasta = hasta;
+    }
+
+    public String getVeterinarioDocumento() {
+        return veterinarioDocumento;
+    }
+
+    public void setVeterinarioDocumento(String veterinarioDocumento) {
+        this.veterinarioDocumento = veterinarioDocumento;
+    }
+
+    public String getEspecie() {
+        return especie;
+    }
+
+    public void setEspecie(String especie) {
+        this.especie = especie;
+    }
+
+    public String getBusqueda() {
+        return busqueda;
+    }
+
+    public void setBusqueda(String busqueda) {
+        this.busqueda = busqueda;
+    }
+}
@@ -0,0 +1,63 @@
+package com.veterinaria.veterinaria.dto;
+
+import java.time.LocalDateTime;
+
+public class HuecoDisponibleDTO {
+    private LocalDateTime fechaHora;
+    private Long veterinariaId;
+    private String veterinariaNombre;
+    private String veterinariaDireccion;
+    private String veterinariaTelefono;
+
+    public HuecoDisponibleDTO() {}
+
+    public HuecoDisponibleDTO(LocalDateTime fechaHora, Long veterinariaId, String veterinariaNombre,
+                              String veterinariaDireccion, String veterinariaTelefono) {
+        this.fechaHora = fechaHora;
+        this.veterinariaId = veterinariaId;
+        this.veterinariaNombre = veterinariaNombre;
+        this.veterinariaDireccion = veterinariaDireccion;
+        this.veterinariaTelefono = veterinariaTelefono;
+    }
+
+    // Getters y Setters
+    public LocalDateTime getFechaHora() {
+        return fechaHora;
+    }
+
+    public void setFechaHora(LocalDateTime fechaHora) {
+        this.fechaHora = fechaHora;
+    }
+
+    public Long getVeterinariaId() {
+        return veterinariaId;
+    }
+
+    public void setVeterinariaId(Long veterinariaId) {
+        this.veterinariaId = veterinariaId;
+    }
+
+    public String getVeterinariaNombre() {
+        return veterinariaNombre;
+    }
+
+    public void setVeterinariaNombre(String veterinariaNombre) {
+        this.veterinariaNombre = veterinariaNombre;
+    }
+
+    public String getVeterinariaDireccion() {
+        return veterinariaDireccion;
+    }
+
+    public void setVeterinariaDireccion(String veterinariaDireccion) {
+        this.veterinariaDireccion = veterinariaDireccion;
+    }
+
+    public String getVeterinariaTelefono() {
+        return veterinariaTelefono;
+    }
+
+    public void setVeterinariaTelefono(String veterinariaTelefono) {
+        this.veterinariaTelefono = veterinariaTelefono;
+    }
+}
@@ -53,6 +53,31 @@ public class ReporteCitaDTO {
         }
     }
 
+    // Usado por ConsultaReporteCitasService: los datos llegan ya proyectados en la consulta
+    public ReporteCitaDTO(Long id, LocalDateTime fechaHora, String motivo, Cita.EstadoCita estado,
+                          String clienteDocumento, String clienteNombres, String clienteApellidos,
+                          Long mascotaId, String mascotaNombre, String mascotaEspecie,
+                          String veterinarioDocumento, String veterinarioNombres, String veterinarioApellidos,
+                          String veterinariaNombre, LocalDateTime fechaCreacion) {
+        this.id = id;
+        this.fechaHora = fechaHora;
+        this.motivo = motivo;
+        this.estado = estado != null ? estado.name() : null;
+        this.fechaCreacion = fechaCreacion;
+        this.clienteDocumento = clienteDocumento;
+        if (clienteDocumento != null) {
+            this.clienteNombre = clienteNombres + " " + clienteApellidos;
+        }
+        this.mascotaId = mascotaId;
+        this.mascotaNombre = mascotaNombre;
+        this.mascotaEspecie = mascotaEspecie;
+        this.veterinarioDocumento = veterinarioDocumento;
+        if (veterinarioDocumento != null) {
+            this.veterinarioNombre = veterinarioNombres + " " + veterinarioApellidos;
+        }
+        this.veterinariaNombre = veterinariaNombre;
+    }
+
     // Getters y Setters
     public Long getId() {
         return id;
@@ -51,6 +51,28 @@ public class ReporteMascotaDTO {
         }
     }
 
+    // Usado por la proyección de MascotaRepository: los conteos y la última cita llegan ya calculados
+    public ReporteMascotaDTO(Long id, String nombre, String especie, String raza, String sexo, LocalDate fechaNacimiento,
+                             BigDecimal peso, String propietarioDocumento, String propietarioNombre, String propietarioApellido,
+                             Long totalCitas, Long totalHistorias, LocalDateTime ultimaCita, LocalDateTime fechaRegistro) {
+        this.id = id;
+        this.nombre = nombre;
+        this.especie = especie;
+        this.raza = raza;
+        this.sexo = sexo;
+        this.peso = peso;
+        this.propietarioDocumento = propietarioDocumento;
+        this.propietarioNombre = propietarioNombre;
+        this.propietarioApellido = propietarioApellido;
+        this.totalCitas = totalCitas != null ? totalCitas : 0L;
+        this.totalHistorias = totalHistorias != null ? totalHistorias : 0L;
+        this.ultimaCita = ultimaCita;
+        this.fechaRegistro = fechaRegistro;
+        if (fechaNacimiento != null) {
+            this.edad = Period.between(fechaNacimiento, LocalDate.now()).getYears();
+        }
+    }
+
     // Getters y Setters
     public Long getId() {
         return id;
@@ -42,6 +42,23 @@ public class ReporteUsuarioDTO {
         }
     }
 
+    // Usado por la proyección de UsuarioRepository: los conteos llegan ya calculados en la consulta
+    public ReporteUsuarioDTO(String documento, String username, String nombres, String apellidos, String email,
+                             String telefono, String rol, Boolean activo, LocalDateTime fechaRegistro,
+                             Long totalMascotas, Long totalCitas) {
+        this.documento = documento;
+        this.username = username;
+        this.nombres = nombres;
+        this.apellidos = apellidos;
+        this.email = email;
+        this.telefono = telefono;
+        this.rol = rol != null ? rol : "SIN_ROL";
+        this.activo = activo;
+        this.fechaRegistro = fechaRegistro;
+        this.totalMascotas = totalMascotas != null ? totalMascotas : 0L;
+        this.totalCitas = totalCitas != null ? totalCitas : 0L;
+    }
+
     // Getters y Setters
     public String getDocumento() {
         return documento;
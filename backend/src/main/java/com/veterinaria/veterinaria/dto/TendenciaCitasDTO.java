@@ -0,0 +1,46 @@
+package com.veterinaria.veterinaria.dto;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TendenciaCitasDTO {
+    private LocalDate fecha;
+    private Long total;
+    private Map<String, Long> totalPorEstado;
+
+    public TendenciaCitasDTO() {
+        this.totalPorEstado = new HashMap<>();
+    }
+
+    public TendenciaCitasDTO(LocalDate fecha) {
+        this.fecha = fecha;
+        this.total = 0L;
+        this.totalPorEstado = new HashMap<>();
+    }
+
+    // Getters y Setters
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(LocalDate fecha) {
+        this.fecha = fecha;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public Map<String, Long> getTotalPorEstado() {
+        return totalPorEstado;
+    }
+
+    public void setTotalPorEstado(Map<String, Long> totalPorEstado) {
+        this.totalPorEstado = totalPorEstado;
+    }
+}
@@ -0,0 +1,61 @@
+package com.veterinaria.veterinaria.dto;
+
+import com.veterinaria.veterinaria.entity.Reporte;
+
+import java.time.LocalDateTime;
+
+/**
+ * Estado de un reporte generado en segundo plano, para consultarlo mientras se genera.
+ */
+public class TrabajoReporteDTO {
+    private Long id;
+    private String titulo;
+    private String tipo;
+    private String formato;
+    private String estado;
+    private Integer progreso;
+    private String mensajeError;
+    private LocalDateTime fechaGeneracion;
+    private LocalDateTime fechaFinTrabajo;
+    private String archivoNombre;
+    private Long archivoTamano;
+    private String checksum;
+    private boolean descargable;
+    private String urlDescarga;
+
+    public TrabajoReporteDTO(Reporte reporte) {
+        this.id = reporte.getId();
+        this.titulo = reporte.getTitulo();
+        this.tipo = reporte.getTipo() != null ? reporte.getTipo().name() : null;
+        this.formato = reporte.getFormato();
+        this.estado = reporte.getEstadoTrabajo() != null ? reporte.getEstadoTrabajo().name() : null;
+        this.progreso = reporte.getProgreso();
+        this.mensajeError = reporte.getMensajeError();
+        this.fechaGeneracion = reporte.getFechaGeneracion();
+        this.fechaFinTrabajo = reporte.getFechaFinTrabajo();
+        this.archivoNombre = reporte.getArchivoNombre();
+        this.archivoTamano = reporte.getArchivoTamano();
+        this.checksum = reporte.getArchivoSha256();
+        this.descargable = reporte.getEstadoTrabajo() == Reporte.EstadoTrabajo.COMPLETADO
+                && (reporte.getArchivoRuta() != null || reporte.getContenido() != null);
+        if (this.descargable) {
+            this.urlDescarga = "/api/reportes/trabajos/" + reporte.getId() + "/descarga";
+        }
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public String getTitulo() { return titulo; }
+    public String getTipo() { return tipo; }
+    public String getFormato() { return formato; }
+    public String getEstado() { return estado; }
+    public Integer getProgreso() { return progreso; }
+    public String getMensajeError() { return mensajeError; }
+    public LocalDateTime getFechaGeneracion() { return fechaGeneracion; }
+    public LocalDateTime getFechaFinTrabajo() { return fechaFinTrabajo; }
+    public String getArchivoNombre() { return archivoNombre; }
+    public Long getArchivoTamano() { return archivoTamano; }
+    public String getChecksum() { return checksum; }
+    public boolean isDescargable() { return descargable; }
+    public String getUrlDescarga() { return urlDescarga; }
+}
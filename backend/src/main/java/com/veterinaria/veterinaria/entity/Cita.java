@@ -1,11 +1,13 @@
 package com.veterinaria.veterinaria.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.veterinaria.veterinaria.service.CacheHistoriasPdfListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "citas")
+@EntityListeners(CacheHistoriasPdfListener.class)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Cita {
     
@@ -16,6 +18,9 @@ public class Cita {
     @Column(name = "fecha_hora", nullable = false)
     private LocalDateTime fechaHora;
     
+    @Column(name = "duracion_minutos", nullable = false)
+    private Integer duracionMinutos = 30;
+    
     @Column(columnDefinition = "TEXT")
     private String motivo;
     
@@ -29,6 +34,10 @@ public class Cita {
     @Column(name = "fecha_creacion", nullable = false)
     private LocalDateTime fechaCreacion = LocalDateTime.now();
     
+    // La mantiene la base de datos (ON UPDATE); es la marca de agua de la exportación incremental
+    @Column(name = "fecha_actualizacion", insertable = false, updatable = false)
+    private LocalDateTime fechaActualizacion;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cliente_documento", nullable = false)
     @JsonIgnoreProperties({"mascotas", "citasComoCliente", "citasComoVeterinario", "password"})
@@ -85,6 +94,14 @@ public class Cita {
         this.fechaHora = fechaHora;
     }
     
+    public Integer getDuracionMinutos() {
+        return duracionMinutos;
+    }
+    
+    public void setDuracionMinutos(Integer duracionMinutos) {
+        this.duracionMinutos = duracionMinutos;
+    }
+    
     public String getMotivo() {
         return motivo;
     }
@@ -117,6 +134,10 @@ public class Cita {
         this.fechaCreacion = fechaCreacion;
     }
     
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
     public Usuario getCliente() {
         return cliente;
     }
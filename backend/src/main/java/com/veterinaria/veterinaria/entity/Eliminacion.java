@@ -0,0 +1,64 @@
+package com.veterinaria.veterinaria.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Marca de una fila borrada de citas, mascotas o historias clínicas, para que la exportación
+ * incremental pueda avisar del borrado. Las filas las inserta EliminacionesListener en la misma
+ * transacción que el borrado; la entidad solo se usa para leerlas.
+ */
+@Entity
+@Table(name = "eliminaciones")
+public class Eliminacion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // CITAS, MASCOTAS o HISTORIAS (ver ExportacionIncrementalService.Entidad)
+    @Column(nullable = false, length = 20)
+    private String entidad;
+
+    @Column(name = "entidad_id", nullable = false)
+    private Long entidadId;
+
+    @Column(name = "fecha_eliminacion", nullable = false)
+    private LocalDateTime fechaEliminacion;
+
+    // Constructores
+    public Eliminacion() {}
+
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntidad() {
+        return entidad;
+    }
+
+    public void setEntidad(String entidad) {
+        this.entidad = entidad;
+    }
+
+    public Long getEntidadId() {
+        return entidadId;
+    }
+
+    public void setEntidadId(Long entidadId) {
+        this.entidadId = entidadId;
+    }
+
+    public LocalDateTime getFechaEliminacion() {
+        return fechaEliminacion;
+    }
+
+    public void setFechaEliminacion(LocalDateTime fechaEliminacion) {
+        this.fechaEliminacion = fechaEliminacion;
+    }
+}
@@ -1,12 +1,14 @@
 package com.veterinaria.veterinaria.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.veterinaria.veterinaria.service.CacheHistoriasPdfListener;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "historias_clinicas")
+@EntityListeners(CacheHistoriasPdfListener.class)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class HistoriaClinica {
     
@@ -56,6 +58,10 @@ public class HistoriaClinica {
     @Column(nullable = false)
     private Boolean activo = true;
     
+    // La mantiene la base de datos (ON UPDATE); es la marca de agua de la exportación incremental
+    @Column(name = "fecha_actualizacion", insertable = false, updatable = false)
+    private LocalDateTime fechaActualizacion;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "mascota_id", nullable = false)
     private Mascota mascota;
@@ -222,4 +228,8 @@ public class HistoriaClinica {
     public void setActivo(Boolean activo) {
         this.activo = activo;
     }
+    
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
 }
\ No newline at end of file
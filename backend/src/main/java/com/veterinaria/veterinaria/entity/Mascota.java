@@ -1,6 +1,7 @@
 package com.veterinaria.veterinaria.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.veterinaria.veterinaria.service.CacheHistoriasPdfListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import java.math.BigDecimal;
@@ -11,6 +12,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "mascotas")
+@EntityListeners(CacheHistoriasPdfListener.class)
 public class Mascota {
     
     @Id
@@ -48,6 +50,10 @@ public class Mascota {
     @Column(nullable = false, columnDefinition = "BOOLEAN DEFAULT true")
     private Boolean activo = true;
     
+    // La mantiene la base de datos (ON UPDATE); es la marca de agua de la exportación incremental
+    @Column(name = "fecha_actualizacion", insertable = false, updatable = false)
+    private LocalDateTime fechaActualizacion;
+    
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "propietario_documento", nullable = false)
     @JsonIgnoreProperties({"mascotas", "citasComoCliente", "citasComoVeterinario", "password", "hibernateLazyInitializer", "handler"})
@@ -159,6 +165,10 @@ public class Mascota {
         this.activo = activo;
     }
     
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
     public Usuario getPropietario() {
         return propietario;
     }
@@ -1,5 +1,6 @@
 package com.veterinaria.veterinaria.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -38,6 +39,59 @@ public class Reporte {
     @JoinColumn(name = "generado_por", nullable = false)
     private Usuario generadoPor;
     
+    // Estado de la generación en segundo plano (los reportes síncronos nacen COMPLETADO)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_trabajo", nullable = false)
+    private EstadoTrabajo estadoTrabajo = EstadoTrabajo.COMPLETADO;
+    
+    @Column(nullable = false)
+    private Integer progreso = 100;
+    
+    // TEXTO, CSV o PDF
+    @Column(length = 10)
+    private String formato;
+    
+    // Identifica trabajos idénticos (tipo, formato y parámetros) para no generarlos dos veces a la vez
+    @JsonIgnore
+    @Column(name = "clave_trabajo", length = 500)
+    private String claveTrabajo;
+    
+    @Column(name = "mensaje_error", columnDefinition = "TEXT")
+    private String mensajeError;
+    
+    @JsonIgnore
+    @Column(name = "archivo_ruta", length = 500)
+    private String archivoRuta;
+    
+    @Column(name = "archivo_nombre")
+    private String archivoNombre;
+    
+    @Column(name = "archivo_tipo", length = 100)
+    private String archivoTipo;
+    
+    // SHA-256 del contenido sin comprimir; también es la dirección del archivo en el almacén
+    @Column(name = "archivo_sha256", length = 64)
+    private String archivoSha256;
+    
+    @Column(name = "archivo_tamano")
+    private Long archivoTamano;
+    
+    @JsonIgnore
+    @Column(name = "archivo_tamano_almacenado")
+    private Long archivoTamanoAlmacenado;
+    
+    @JsonIgnore
+    @Column(name = "archivo_compresion", length = 10)
+    private String archivoCompresion;
+    
+    @Column(name = "fecha_fin_trabajo")
+    private LocalDateTime fechaFinTrabajo;
+    
+    // Última generación o descarga del archivo; el tope de disco libera primero los menos usados
+    @JsonIgnore
+    @Column(name = "fecha_ultimo_acceso")
+    private LocalDateTime fechaUltimoAcceso;
+    
     // Enum para tipos de reporte
     public enum TipoReporte {
         CITAS_DIARIAS,
@@ -49,6 +103,13 @@ public class Reporte {
         ESTADISTICAS_GENERALES
     }
     
+    public enum EstadoTrabajo {
+        PENDIENTE,
+        EN_PROCESO,
+        COMPLETADO,
+        ERROR
+    }
+    
     // Constructores
     public Reporte() {}
     
@@ -130,4 +191,116 @@ public class Reporte {
     public void setGeneradoPor(Usuario generadoPor) {
         this.generadoPor = generadoPor;
     }
+    
+    public EstadoTrabajo getEstadoTrabajo() {
+        return estadoTrabajo;
+    }
+    
+    public void setEstadoTrabajo(EstadoTrabajo estadoTrabajo) {
+        this.estadoTrabajo = estadoTrabajo;
+    }
+    
+    public Integer getProgreso() {
+        return progreso;
+    }
+    
+    public void setProgreso(Integer progreso) {
+        this.progreso = progreso;
+    }
+    
+    public String getFormato() {
+        return formato;
+    }
+    
+    public void setFormato(String formato) {
+        this.formato = formato;
+    }
+    
+    public String getClaveTrabajo() {
+        return claveTrabajo;
+    }
+    
+    public void setClaveTrabajo(String claveTrabajo) {
+        this.claveTrabajo = claveTrabajo;
+    }
+    
+    public String getMensajeError() {
+        return mensajeError;
+    }
+    
+    public void setMensajeError(String mensajeError) {
+        this.mensajeError = mensajeError;
+    }
+    
+    public String getArchivoRuta() {
+        return archivoRuta;
+    }
+    
+    public void setArchivoRuta(String archivoRuta) {
+        this.archivoRuta = archivoRuta;
+    }
+    
+    public String getArchivoNombre() {
+        return archivoNombre;
+    }
+    
+    public void setArchivoNombre(String archivoNombre) {
+        this.archivoNombre = archivoNombre;
+    }
+    
+    public String getArchivoTipo() {
+        return archivoTipo;
+    }
+    
+    public void setArchivoTipo(String archivoTipo) {
+        this.archivoTipo = archivoTipo;
+    }
+    
+    public String getArchivoSha256() {
+        return archivoSha256;
+    }
+    
+    public void setArchivoSha256(String archivoSha256) {
+        this.archivoSha256 = archivoSha256;
+    }
+    
+    public Long getArchivoTamano() {
+        return archivoTamano;
+    }
+    
+    public void setArchivoTamano(Long archivoTamano) {
+        this.archivoTamano = archivoTamano;
+    }
+    
+    public Long getArchivoTamanoAlmacenado() {
+        return archivoTamanoAlmacenado;
+    }
+    
+    public void setArchivoTamanoAlmacenado(Long archivoTamanoAlmacenado) {
+        this.archivoTamanoAlmacenado = archivoTamanoAlmacenado;
+    }
+    
+    public String getArchivoCompresion() {
+        return archivoCompresion;
+    }
+    
+    public void setArchivoCompresion(String archivoCompresion) {
+        this.archivoCompresion = archivoCompresion;
+    }
+    
+    public LocalDateTime getFechaFinTrabajo() {
+        return fechaFinTrabajo;
+    }
+    
+    public void setFechaFinTrabajo(LocalDateTime fechaFinTrabajo) {
+        this.fechaFinTrabajo = fechaFinTrabajo;
+    }
+    
+    public LocalDateTime getFechaUltimoAcceso() {
+        return fechaUltimoAcceso;
+    }
+    
+    public void setFechaUltimoAcceso(LocalDateTime fechaUltimoAcceso) {
+        this.fechaUltimoAcceso = fechaUltimoAcceso;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.veterinaria.veterinaria.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Número de citas de un día por veterinaria, veterinario y estado.
+ * Las filas se crean y ajustan con consultas nativas (ver ResumenCitaDiarioRepository);
+ * la entidad solo se usa para leerlas.
+ */
+@Entity
+@Table(name = "citas_resumen_diario")
+public class ResumenCitaDiario {
+
+    // Valores guardados cuando la cita no tiene veterinaria o veterinario asignado
+    public static final Long SIN_VETERINARIA = 0L;
+    public static final String SIN_VETERINARIO = "";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "veterinaria_id", nullable = false)
+    private Long veterinariaId;
+
+    @Column(name = "veterinario_documento", length = 20, nullable = false)
+    private String veterinarioDocumento;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Cita.EstadoCita estado;
+
+    @Column(nullable = false)
+    private Long total;
+
+    // Constructores
+    public ResumenCitaDiario() {}
+
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getVeterinariaId() {
+        return veterinariaId;
+    }
+
+    public void setVeterinariaId(Long veterinariaId) {
+        this.veterinariaId = veterinariaId;
+    }
+
+    public String getVeterinarioDocumento() {
+        return veterinarioDocumento;
+    }
+
+    public void setVeterinarioDocumento(String veterinarioDocumento) {
+        this.veterinarioDocumento = veterinarioDocumento;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(LocalDate fecha) {
+        this.fecha = fecha;
+    }
+
+    public Cita.EstadoCita getEstado() {
+        return estado;
+    }
+
+    public void setEstado(Cita.EstadoCita estado) {
+        this.estado = estado;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+}
@@ -2,6 +2,7 @@ package com.veterinaria.veterinaria.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.veterinaria.veterinaria.service.CacheHistoriasPdfListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -12,6 +13,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "usuarios")
+@EntityListeners(CacheHistoriasPdfListener.class)
 public class Usuario {
     
     @Id
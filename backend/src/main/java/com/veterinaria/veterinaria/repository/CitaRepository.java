@@ -5,16 +5,19 @@ import com.veterinaria.veterinaria.entity.Mascota;
 import com.veterinaria.veterinaria.entity.Usuario;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CitaRepository extends JpaRepository<Cita, Long> {
+public interface CitaRepository extends JpaRepository<Cita, Long>, JpaSpecificationExecutor<Cita> {
     
     @EntityGraph(attributePaths = {"cliente", "mascota", "veterinario", "veterinaria"})
     @Query("SELECT c FROM Cita c")
@@ -88,12 +91,17 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
                                                                           @Param("fin") LocalDateTime fin, 
                                                                           @Param("veterinarioDocumento") String veterinarioDocumento);
     
-    @Query("SELECT c FROM Cita c WHERE DATE(c.fechaHora) = CURRENT_DATE")
-    List<Cita> findCitasDeHoy();
+    // Citas de un día como rango semiabierto [inicio, fin) para usar idx_citas_fecha_hora
+    @Query("SELECT COUNT(c) FROM Cita c WHERE c.fechaHora >= :inicio AND c.fechaHora < :fin")
+    long countCitasDelRango(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
 
     @EntityGraph(attributePaths = {"cliente", "mascota", "veterinario", "veterinaria"})
-    @Query("SELECT c FROM Cita c WHERE DATE(c.fechaHora) = CURRENT_DATE")
-    List<Cita> findCitasDeHoyWithRelations();
+    @Query("SELECT c FROM Cita c WHERE c.fechaHora >= :inicio AND c.fechaHora < :fin ORDER BY c.fechaHora")
+    List<Cita> findCitasDelRangoWithRelations(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    @EntityGraph(attributePaths = {"cliente", "mascota", "veterinario", "veterinaria"})
+    @Query("SELECT c FROM Cita c WHERE c.id IN :ids")
+    List<Cita> findByIdInWithRelations(@Param("ids") List<Long> ids);
     
     // Verificar disponibilidad de horario
     @Query("SELECT COUNT(c) > 0 FROM Cita c WHERE c.fechaHora = :fechaHora AND c.veterinaria.id = :veterinariaId AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO')")
@@ -102,6 +110,60 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
     @Query("SELECT COUNT(c) > 0 FROM Cita c WHERE c.fechaHora = :fechaHora AND c.veterinario.documento = :veterinarioDocumento AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO')")
     boolean existsCitaEnHorarioParaVeterinario(@Param("fechaHora") LocalDateTime fechaHora, @Param("veterinarioDocumento") String veterinarioDocumento);
     
-    @Query("SELECT c FROM Cita c WHERE DATE(c.fechaHora) = DATE(:fecha) AND c.veterinaria.id = :veterinariaId AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO')")
-    List<Cita> findCitasDelDia(@Param("fecha") LocalDateTime fecha, @Param("veterinariaId") Long veterinariaId);
-}
\ No newline at end of file
+    @Query("SELECT c FROM Cita c WHERE c.fechaHora >= :inicio AND c.fechaHora < :fin AND c.veterinaria.id = :veterinariaId AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO')")
+    List<Cita> findCitasDelDia(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin, @Param("veterinariaId") Long veterinariaId);
+    
+    // Ocupación de horarios en un rango (id, fecha_hora y duración de las citas activas)
+    @Query("SELECT c.id, c.fechaHora, c.duracionMinutos FROM Cita c WHERE c.veterinaria.id = :veterinariaId AND c.fechaHora >= :inicio AND c.fechaHora < :fin AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO')")
+    List<Object[]> findOcupacionPorVeterinaria(@Param("veterinariaId") Long veterinariaId, 
+                                               @Param("inicio") LocalDateTime inicio, 
+                                               @Param("fin") LocalDateTime fin);
+    
+    @Query("SELECT c.id, c.fechaHora, c.duracionMinutos FROM Cita c WHERE c.veterinario.documento = :veterinarioDocumento AND c.fechaHora >= :inicio AND c.fechaHora < :fin AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO')")
+    List<Object[]> findOcupacionPorVeterinario(@Param("veterinarioDocumento") String veterinarioDocumento, 
+                                               @Param("inicio") LocalDateTime inicio, 
+                                               @Param("fin") LocalDateTime fin);
+    
+    // Agenda de varios días (una sola consulta ordenada por fecha_hora)
+    @EntityGraph(attributePaths = {"cliente", "mascota", "veterinario", "veterinaria"})
+    @Query("SELECT c FROM Cita c WHERE c.veterinaria.id = :veterinariaId AND c.fechaHora >= :inicio AND c.fechaHora < :fin AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO') ORDER BY c.fechaHora")
+    List<Cita> findAgendaPorVeterinaria(@Param("veterinariaId") Long veterinariaId, 
+                                        @Param("inicio") LocalDateTime inicio, 
+                                        @Param("fin") LocalDateTime fin);
+    
+    @EntityGraph(attributePaths = {"cliente", "mascota", "veterinario", "veterinaria"})
+    @Query("SELECT c FROM Cita c WHERE c.veterinario.documento = :veterinarioDocumento AND c.fechaHora >= :inicio AND c.fechaHora < :fin AND c.estado NOT IN ('CANCELADA', 'NO_ASISTIO') ORDER BY c.fechaHora")
+    List<Cita> findAgendaPorVeterinario(@Param("veterinarioDocumento") String veterinarioDocumento, 
+                                        @Param("inicio") LocalDateTime inicio, 
+                                        @Param("fin") LocalDateTime fin);
+    
+    // Ciclo de vida: citas pendientes de transición (id, fecha_hora y estado) en un rango
+    @Query("SELECT c.id, c.fechaHora, c.estado FROM Cita c WHERE c.estado IN ('PROGRAMADA', 'CONFIRMADA') AND c.fechaHora >= :inicio AND c.fechaHora < :fin")
+    List<Object[]> findPendientesCicloVida(@Param("inicio") LocalDateTime inicio, 
+                                           @Param("fin") LocalDateTime fin);
+    
+    @Query("SELECT COUNT(c) FROM Cita c WHERE c.estado IN ('PROGRAMADA', 'CONFIRMADA') AND c.fechaHora < :fin")
+    long countPendientesCicloVidaAntes(@Param("fin") LocalDateTime fin);
+    
+    // Transición en lote: solo cambia las citas que siguen en el estado esperado y cuya hora ya llegó
+    @Modifying
+    @Transactional
+    @Query("UPDATE Cita c SET c.estado = :nuevoEstado WHERE c.id IN :ids AND c.estado = :estadoActual AND c.fechaHora <= :limite")
+    int actualizarEstadoEnLote(@Param("ids") List<Long> ids, 
+                               @Param("estadoActual") Cita.EstadoCita estadoActual, 
+                               @Param("nuevoEstado") Cita.EstadoCita nuevoEstado, 
+                               @Param("limite") LocalDateTime limite);
+    
+    // (id, veterinaria_id, veterinario_documento, fecha_hora, mascota_id) de las citas del lote que quedaron en el estado indicado
+    @Query("SELECT c.id, v.id, vet.documento, c.fechaHora, c.mascota.id FROM Cita c LEFT JOIN c.veterinaria v LEFT JOIN c.veterinario vet " +
+           "WHERE c.id IN :ids AND c.estado = :estado")
+    List<Object[]> findCambiosDeEstado(@Param("ids") List<Long> ids, @Param("estado") Cita.EstadoCita estado);
+    
+    // Estadísticas: (veterinaria_id, estado, total) en una sola consulta agrupada
+    @Query("SELECT v.id, c.estado, COUNT(c) FROM Cita c LEFT JOIN c.veterinaria v GROUP BY v.id, c.estado")
+    List<Object[]> countPorVeterinariaYEstado();
+    
+    // Primera y última fecha con citas, para reconstruir el resumen diario por tramos
+    @Query("SELECT MIN(c.fechaHora), MAX(c.fechaHora) FROM Cita c")
+    List<Object[]> findRangoFechas();
+}
@@ -0,0 +1,129 @@
+package com.veterinaria.veterinaria.repository;
+
+import com.veterinaria.veterinaria.dto.FiltroReporteCitas;
+import com.veterinaria.veterinaria.entity.Cita;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Condiciones del reporte de citas como Specifications combinables. Las relaciones se unen
+ * una sola vez por consulta (ver {@link #join}) y con LEFT JOIN las que pueden ser nulas,
+ * para que un filtro de texto no descarte las citas sin veterinario o sin veterinaria.
+ */
+public final class CitaSpecifications {
+
+    private CitaSpecifications() {
+    }
+
+    /**
+     * Todas las condiciones del filtro; los campos null no añaden ninguna.
+     */
+    public static Specification<Cita> deFiltro(FiltroReporteCitas filtro) {
+        return Specification.where(deVeterinaria(filtro.getVeterinariaId()))
+                .and(conEstado(filtro.getEstado()))
+                .and(desde(filtro.getDesde()))
+                .and(hasta(filtro.getHasta()))
+                .and(deVeterinario(filtro.getVeterinarioDocumento()))
+                .and(deEspecie(filtro.getEspecie()))
+                .and(conTexto(filtro.getBusqueda()));
+    }
+
+    public static Specification<Cita> deVeterinaria(Long veterinariaId) {
+        if (veterinariaId == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("veterinaria").get("id"), veterinariaId);
+    }
+
+    public static Specification<Cita> conEstado(String estado) {
+        if (estado == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            try {
+                return cb.equal(root.get("estado"), Cita.EstadoCita.valueOf(estado));
+            } catch (IllegalArgumentException e) {
+                // Un estado desconocido no coincide con ninguna cita
+                return cb.disjunction();
+            }
+        };
+    }
+
+    public static Specification<Cita> desde(LocalDateTime desde) {
+        if (desde == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("fechaHora"), desde);
+    }
+
+    public static Specification<Cita> hasta(LocalDateTime hasta) {
+        if (hasta == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("fechaHora"), hasta);
+    }
+
+    public static Specification<Cita> deVeterinario(String veterinarioDocumento) {
+        if (veterinarioDocumento == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("veterinario").get("documento"), veterinarioDocumento);
+    }
+
+    public static Specification<Cita> deEspecie(String especie) {
+        if (especie == null) {
+            return null;
+        }
+        // Sin distinguir mayúsculas por la collation de la columna
+        return (root, query, cb) -> cb.equal(join(root, "mascota", JoinType.INNER).get("especie"), especie);
+    }
+
+    /**
+     * Texto libre sobre el nombre del cliente, de la mascota, del veterinario y el motivo.
+     */
+    public static Specification<Cita> conTexto(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        String patron = "%" + texto.toLowerCase()
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, cb) -> {
+            Join<Cita, ?> cliente = join(root, "cliente", JoinType.INNER);
+            Join<Cita, ?> mascota = join(root, "mascota", JoinType.INNER);
+            Join<Cita, ?> veterinario = join(root, "veterinario", JoinType.LEFT);
+            return cb.or(
+                    contiene(cb, nombreCompleto(cb, cliente), patron),
+                    contiene(cb, mascota.get("nombre"), patron),
+                    contiene(cb, nombreCompleto(cb, veterinario), patron),
+                    contiene(cb, root.get("motivo"), patron));
+        };
+    }
+
+    /**
+     * Devuelve la unión ya creada con la relación indicada o la crea, para no repetir JOINs.
+     */
+    @SuppressWarnings("unchecked")
+    public static <X> Join<X, ?> join(From<?, X> origen, String atributo, JoinType tipo) {
+        for (Join<X, ?> existente : origen.getJoins()) {
+            if (existente.getAttribute().getName().equals(atributo) && existente.getJoinType() == tipo) {
+                return existente;
+            }
+        }
+        return (Join<X, ?>) origen.join(atributo, tipo);
+    }
+
+    private static Expression<String> nombreCompleto(CriteriaBuilder cb, Join<Cita, ?> usuario) {
+        return cb.concat(cb.concat(usuario.<String>get("nombres"), " "), usuario.<String>get("apellidos"));
+    }
+
+    private static Predicate contiene(CriteriaBuilder cb, Expression<String> campo, String patron) {
+        return cb.like(cb.lower(campo), patron, '\\');
+    }
+}
@@ -1,13 +1,20 @@
 package com.veterinaria.veterinaria.repository;
 
+import com.veterinaria.veterinaria.dto.ReporteMascotaDTO;
 import com.veterinaria.veterinaria.entity.Mascota;
 import com.veterinaria.veterinaria.entity.Usuario;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MascotaRepository extends JpaRepository<Mascota, Long> {
@@ -20,6 +27,18 @@ public interface MascotaRepository extends JpaRepository<Mascota, Long> {
     // Encontrar mascotas cuyos propietarios pertenecen a una veterinaria específica
     @Query("SELECT m FROM Mascota m WHERE m.propietario.veterinaria.id = :veterinariaId")
     List<Mascota> findByPropietarioVeterinariaId(@Param("veterinariaId") Long veterinariaId);
+
+    // Solo el documento del propietario, para validar el acceso sin cargar la mascota
+    @Query("SELECT m.propietario.documento FROM Mascota m WHERE m.id = :id")
+    Optional<String> findPropietarioDocumentoById(@Param("id") Long id);
+
+    // Solo los ids, para la exportación masiva de historias clínicas
+    @Query("SELECT m.id FROM Mascota m WHERE m.propietario.veterinaria.id = :veterinariaId ORDER BY m.id")
+    List<Long> findIdsByPropietarioVeterinariaId(@Param("veterinariaId") Long veterinariaId);
+
+    // Cuántas de las mascotas indicadas son de la veterinaria (para limitar la exportación a la propia)
+    @Query("SELECT COUNT(m) FROM Mascota m WHERE m.id IN :ids AND m.propietario.veterinaria.id = :veterinariaId")
+    long countByIdInAndPropietarioVeterinariaId(@Param("ids") List<Long> ids, @Param("veterinariaId") Long veterinariaId);
     
     // Métodos de conteo
     long countByActivoTrue();
@@ -34,4 +53,53 @@ public interface MascotaRepository extends JpaRepository<Mascota, Long> {
     
     // Métodos para reportes
     List<Mascota> findByEspecie(String especie);
-}
\ No newline at end of file
+    
+    // Estadísticas: (veterinaria_id del propietario, activo, total) en una sola consulta agrupada
+    @Query("SELECT v.id, m.activo, COUNT(m) FROM Mascota m JOIN m.propietario p LEFT JOIN p.veterinaria v GROUP BY v.id, m.activo")
+    List<Object[]> countPorVeterinariaYActivo();
+    
+    // Reportes: (especie, sexo, total), de todas las mascotas o de los clientes de una veterinaria
+    @Query("SELECT m.especie, m.sexo, COUNT(m) FROM Mascota m " +
+           "WHERE (:veterinariaId IS NULL OR m.propietario.veterinaria.id = :veterinariaId) GROUP BY m.especie, m.sexo")
+    List<Object[]> countPorEspecieYSexo(@Param("veterinariaId") Long veterinariaId);
+    
+    // Reportes: (especie, peso, total) por cada peso distinto, ordenado para calcular percentiles
+    @Query("SELECT m.especie, m.peso, COUNT(m) FROM Mascota m WHERE m.peso IS NOT NULL " +
+           "AND (:veterinariaId IS NULL OR m.propietario.veterinaria.id = :veterinariaId) " +
+           "GROUP BY m.especie, m.peso ORDER BY m.especie, m.peso")
+    List<Object[]> countPorEspecieYPeso(@Param("veterinariaId") Long veterinariaId);
+    
+    // Reportes: (edad en años cumplidos a la fecha indicada, total)
+    @Query(value = "SELECT TIMESTAMPDIFF(YEAR, m.fecha_nacimiento, :hoy), COUNT(*) FROM mascotas m " +
+                   "JOIN usuarios u ON u.documento = m.propietario_documento " +
+                   "WHERE m.fecha_nacimiento IS NOT NULL AND (:veterinariaId IS NULL OR u.veterinaria_id = :veterinariaId) " +
+                   "GROUP BY TIMESTAMPDIFF(YEAR, m.fecha_nacimiento, :hoy)", nativeQuery = true)
+    List<Object[]> countPorEdad(@Param("hoy") LocalDate hoy, @Param("veterinariaId") Long veterinariaId);
+    
+    // Reporte de mascotas en una sola consulta: conteos y última cita de tablas derivadas agrupadas por
+    // mascota (una pasada por citas y otra por historias, en lugar de tres subconsultas por fila). La
+    // comparación de especie no distingue mayúsculas por la collation de la columna; especie y
+    // veterinariaId son filtros opcionales
+    String REPORTE_MASCOTAS =
+            "SELECT new com.veterinaria.veterinaria.dto.ReporteMascotaDTO(" +
+            "m.id, m.nombre, m.especie, m.raza, m.sexo, m.fechaNacimiento, m.peso, " +
+            "p.documento, p.nombres, p.apellidos, " +
+            "COALESCE(cs.total, 0L), COALESCE(hs.total, 0L), cs.ultima, " +
+            "m.fechaRegistro) " +
+            "FROM Mascota m JOIN m.propietario p " +
+            "LEFT JOIN (SELECT c.mascota.id AS mascotaId, COUNT(c) AS total, MAX(c.fechaHora) AS ultima " +
+            "           FROM Cita c GROUP BY c.mascota.id) cs ON cs.mascotaId = m.id " +
+            "LEFT JOIN (SELECT h.mascota.id AS mascotaId, COUNT(h) AS total " +
+            "           FROM HistoriaClinica h GROUP BY h.mascota.id) hs ON hs.mascotaId = m.id " +
+            "WHERE (:especie IS NULL OR m.especie = :especie) " +
+            "AND (:veterinariaId IS NULL OR p.veterinaria.id = :veterinariaId) " +
+            "ORDER BY m.id";
+    
+    @Query(REPORTE_MASCOTAS)
+    List<ReporteMascotaDTO> findReporteMascotas(@Param("especie") String especie, @Param("veterinariaId") Long veterinariaId);
+    
+    // Debe consumirse dentro de una transacción y cerrarse al terminar
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = UsuarioRepository.FETCH_SIZE_STREAMING))
+    @Query(REPORTE_MASCOTAS)
+    Stream<ReporteMascotaDTO> streamReporteMascotas(@Param("especie") String especie, @Param("veterinariaId") Long veterinariaId);
+}
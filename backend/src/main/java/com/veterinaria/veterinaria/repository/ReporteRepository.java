@@ -2,10 +2,15 @@ package com.veterinaria.veterinaria.repository;
 
 import com.veterinaria.veterinaria.entity.Reporte;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReporteRepository extends JpaRepository<Reporte, Long> {
@@ -13,4 +18,46 @@ public interface ReporteRepository extends JpaRepository<Reporte, Long> {
     List<Reporte> findByTipo(Reporte.TipoReporte tipo);
     List<Reporte> findByFechaGeneracionBetween(LocalDateTime inicio, LocalDateTime fin);
     List<Reporte> findByOrderByFechaGeneracionDesc();
-}
\ No newline at end of file
+
+    // Trabajo en segundo plano con su autor y la veterinaria del autor, para comprobar el acceso
+    @Query("SELECT r FROM Reporte r JOIN FETCH r.generadoPor u LEFT JOIN FETCH u.veterinaria " +
+           "WHERE r.id = :id AND r.claveTrabajo IS NOT NULL")
+    Optional<Reporte> findTrabajoConAutor(@Param("id") Long id);
+
+    // Trabajos terminados cuyo archivo ya superó el plazo de retención
+    List<Reporte> findByArchivoRutaIsNotNullAndFechaFinTrabajoBefore(LocalDateTime limite);
+
+    // Archivos del almacén en uso: ruta, último acceso (generación o descarga de cualquiera de los
+    // reportes que lo comparten) y tamaño en disco, del usado hace más tiempo al más reciente
+    @Query("SELECT r.archivoRuta, MAX(COALESCE(r.fechaUltimoAcceso, r.fechaFinTrabajo)), MAX(r.archivoTamanoAlmacenado) " +
+           "FROM Reporte r WHERE r.archivoRuta IS NOT NULL GROUP BY r.archivoRuta " +
+           "ORDER BY MAX(COALESCE(r.fechaUltimoAcceso, r.fechaFinTrabajo))")
+    List<Object[]> findArchivosEnUso();
+
+    // Descarga de un archivo: cuenta como uso para el desalojo por espacio
+    @Modifying
+    @Transactional
+    @Query("UPDATE Reporte r SET r.fechaUltimoAcceso = :ahora WHERE r.id = :id")
+    int registrarAcceso(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    // Los reportes que comparten un archivo (mismo contenido) dejan de apuntar a él
+    @Modifying
+    @Transactional
+    @Query("UPDATE Reporte r SET r.archivoRuta = NULL WHERE r.archivoRuta = :ruta")
+    int liberarArchivo(@Param("ruta") String ruta);
+
+    // Estado y progreso de un trabajo en segundo plano, sin reescribir el resto del reporte
+    @Modifying
+    @Transactional
+    @Query("UPDATE Reporte r SET r.estadoTrabajo = :estado, r.progreso = :progreso WHERE r.id = :id")
+    int actualizarProgreso(@Param("id") Long id,
+                           @Param("estado") Reporte.EstadoTrabajo estado,
+                           @Param("progreso") Integer progreso);
+
+    // Trabajos que quedaron a medias (p. ej. por un reinicio) pasan a ERROR
+    @Modifying
+    @Transactional
+    @Query("UPDATE Reporte r SET r.estadoTrabajo = 'ERROR', r.mensajeError = :mensaje, r.fechaFinTrabajo = :ahora " +
+           "WHERE r.estadoTrabajo IN ('PENDIENTE', 'EN_PROCESO')")
+    int marcarInterrumpidos(@Param("mensaje") String mensaje, @Param("ahora") LocalDateTime ahora);
+}
@@ -0,0 +1,67 @@
+package com.veterinaria.veterinaria.repository;
+
+import com.veterinaria.veterinaria.entity.ResumenCitaDiario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ResumenCitaDiarioRepository extends JpaRepository<ResumenCitaDiario, Long> {
+
+    // Suma (o resta) citas a una fila del resumen, creándola si no existe
+    @Modifying
+    @Query(value = "INSERT INTO citas_resumen_diario (veterinaria_id, veterinario_documento, fecha, estado, total) " +
+                   "VALUES (:veterinariaId, :veterinarioDocumento, :fecha, :estado, :delta) " +
+                   "ON DUPLICATE KEY UPDATE total = total + VALUES(total)", nativeQuery = true)
+    int sumar(@Param("veterinariaId") Long veterinariaId,
+              @Param("veterinarioDocumento") String veterinarioDocumento,
+              @Param("fecha") LocalDate fecha,
+              @Param("estado") String estado,
+              @Param("delta") long delta);
+
+    // Totales por estado, con los de hoy, la última semana y el mes en curso (veterinariaId null = todas)
+    @Query("SELECT r.estado, SUM(r.total), " +
+           "SUM(CASE WHEN r.fecha = :hoy THEN r.total ELSE 0L END), " +
+           "SUM(CASE WHEN r.fecha >= :inicioSemana AND r.fecha <= :hoy THEN r.total ELSE 0L END), " +
+           "SUM(CASE WHEN r.fecha >= :inicioMes AND r.fecha <= :hoy THEN r.total ELSE 0L END) " +
+           "FROM ResumenCitaDiario r WHERE (:veterinariaId IS NULL OR r.veterinariaId = :veterinariaId) GROUP BY r.estado")
+    List<Object[]> resumenPorEstado(@Param("hoy") LocalDate hoy,
+                                    @Param("inicioSemana") LocalDate inicioSemana,
+                                    @Param("inicioMes") LocalDate inicioMes,
+                                    @Param("veterinariaId") Long veterinariaId);
+
+    // Serie diaria por estado entre dos fechas (incluidas)
+    @Query("SELECT r.fecha, r.estado, SUM(r.total) FROM ResumenCitaDiario r " +
+           "WHERE r.fecha >= :desde AND r.fecha <= :hasta " +
+           "AND (:veterinariaId IS NULL OR r.veterinariaId = :veterinariaId) " +
+           "AND (:veterinarioDocumento IS NULL OR r.veterinarioDocumento = :veterinarioDocumento) " +
+           "GROUP BY r.fecha, r.estado ORDER BY r.fecha")
+    List<Object[]> findSerie(@Param("desde") LocalDate desde,
+                             @Param("hasta") LocalDate hasta,
+                             @Param("veterinariaId") Long veterinariaId,
+                             @Param("veterinarioDocumento") String veterinarioDocumento);
+
+    @Modifying
+    @Query("DELETE FROM ResumenCitaDiario r WHERE r.fecha >= :desde AND r.fecha < :hasta")
+    int deleteByFechaRango(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    // Filas de días sin citas posibles (fuera del rango [desde, hasta) de la tabla de citas)
+    @Modifying
+    @Query("DELETE FROM ResumenCitaDiario r WHERE r.fecha < :desde OR r.fecha >= :hasta")
+    int deleteFueraDeRango(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    // Recalcula desde la tabla de citas las filas del rango [inicio, fin)
+    @Modifying
+    @Query(value = "INSERT INTO citas_resumen_diario (veterinaria_id, veterinario_documento, fecha, estado, total) " +
+                   "SELECT IFNULL(c.veterinaria_id, 0), IFNULL(c.veterinario_documento, ''), DATE(c.fecha_hora), c.estado, COUNT(*) " +
+                   "FROM citas c WHERE c.fecha_hora >= :inicio AND c.fecha_hora < :fin " +
+                   "GROUP BY IFNULL(c.veterinaria_id, 0), IFNULL(c.veterinario_documento, ''), DATE(c.fecha_hora), c.estado",
+           nativeQuery = true)
+    int reconstruirRango(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+}
@@ -1,13 +1,20 @@
 package com.veterinaria.veterinaria.repository;
 
+import com.veterinaria.veterinaria.dto.ReporteUsuarioDTO;
 import com.veterinaria.veterinaria.entity.Usuario;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UsuarioRepository extends JpaRepository<Usuario, String> {
@@ -36,4 +43,49 @@ public interface UsuarioRepository extends JpaRepository<Usuario, String> {
     // Métodos de conteo filtrados por veterinaria
     long countByVeterinariaId(Long veterinariaId);
     long countByActivoTrueAndVeterinariaId(Long veterinariaId);
-}
\ No newline at end of file
+    
+    // Estadísticas: (veterinaria_id, activo, total) en una sola consulta agrupada
+    @Query("SELECT v.id, u.activo, COUNT(u) FROM Usuario u LEFT JOIN u.veterinaria v GROUP BY v.id, u.activo")
+    List<Object[]> countPorVeterinariaYActivo();
+    
+    // Reportes: (activo, total) de todos los usuarios o de los de una veterinaria
+    @Query("SELECT u.activo, COUNT(u) FROM Usuario u " +
+           "WHERE (:veterinariaId IS NULL OR u.veterinaria.id = :veterinariaId) GROUP BY u.activo")
+    List<Object[]> countPorActivo(@Param("veterinariaId") Long veterinariaId);
+    
+    // Reportes: (rol, total) de todos los usuarios o de los de una veterinaria
+    @Query("SELECT r.nombre, COUNT(u) FROM Usuario u JOIN u.roles r " +
+           "WHERE (:veterinariaId IS NULL OR u.veterinaria.id = :veterinariaId) GROUP BY r.nombre")
+    List<Object[]> countPorRol(@Param("veterinariaId") Long veterinariaId);
+    
+    // ==================== REPORTE DE USUARIOS ====================
+    // Una sola consulta con los conteos de mascotas y citas como subconsultas correlacionadas
+    // (por índice); rol y veterinariaId son filtros opcionales
+    
+    String REPORTE_USUARIOS_SELECT =
+            "SELECT new com.veterinaria.veterinaria.dto.ReporteUsuarioDTO(" +
+            "u.documento, u.username, u.nombres, u.apellidos, u.email, u.telefono, " +
+            "(SELECT MIN(r.nombre) FROM Usuario ur JOIN ur.roles r WHERE ur = u), " +
+            "u.activo, u.fechaRegistro, " +
+            "(SELECT COUNT(m) FROM Mascota m WHERE m.propietario = u), " +
+            "(SELECT COUNT(c) FROM Cita c WHERE c.cliente = u)) ";
+    
+    String REPORTE_USUARIOS_FILTRO =
+            "FROM Usuario u WHERE (:veterinariaId IS NULL OR u.veterinaria.id = :veterinariaId) " +
+            "AND (:rol IS NULL OR EXISTS (SELECT 1 FROM Usuario uf JOIN uf.roles rf WHERE uf = u AND rf.nombre = :rol))";
+    
+    // Con MySQL, un fetch size de Integer.MIN_VALUE hace que el driver entregue las filas de una en una
+    String FETCH_SIZE_STREAMING = "" + Integer.MIN_VALUE;
+    
+    @Query(REPORTE_USUARIOS_SELECT + REPORTE_USUARIOS_FILTRO + " ORDER BY u.documento")
+    List<ReporteUsuarioDTO> findReporteUsuarios(@Param("rol") String rol, @Param("veterinariaId") Long veterinariaId);
+    
+    @Query(value = REPORTE_USUARIOS_SELECT + REPORTE_USUARIOS_FILTRO + " ORDER BY u.documento",
+           countQuery = "SELECT COUNT(u) " + REPORTE_USUARIOS_FILTRO)
+    Page<ReporteUsuarioDTO> findReporteUsuarios(@Param("rol") String rol, @Param("veterinariaId") Long veterinariaId, Pageable pageable);
+    
+    // Debe consumirse dentro de una transacción y cerrarse al terminar
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE_STREAMING))
+    @Query(REPORTE_USUARIOS_SELECT + REPORTE_USUARIOS_FILTRO + " ORDER BY u.documento")
+    Stream<ReporteUsuarioDTO> streamReporteUsuarios(@Param("rol") String rol, @Param("veterinariaId") Long veterinariaId);
+}
@@ -2,6 +2,7 @@ package com.veterinaria.veterinaria.repository;
 
 import com.veterinaria.veterinaria.entity.Veterinaria;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +14,8 @@ public interface VeterinariaRepository extends JpaRepository<Veterinaria, Long>
     List<Veterinaria> findByCiudadIgnoreCase(String ciudad);
     List<Veterinaria> findByActivoTrueAndCiudadIgnoreCase(String ciudad);
     List<Veterinaria> findByCreadoPorDocumento(String creadoPorDocumento);
-}
\ No newline at end of file
+    
+    // Estadísticas: (activo, total)
+    @Query("SELECT v.activo, COUNT(v) FROM Veterinaria v GROUP BY v.activo")
+    List<Object[]> countPorActivo();
+}
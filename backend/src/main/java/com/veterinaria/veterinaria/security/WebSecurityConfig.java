@@ -82,6 +82,7 @@ public class WebSecurityConfig {
                 .requestMatchers("/api/citas/**").hasAnyRole("ADMIN", "RECEPCIONISTA", "VETERINARIO", "CLIENTE")
                 .requestMatchers("/api/historias-clinicas/**").hasAnyRole("ADMIN", "RECEPCIONISTA", "VETERINARIO", "CLIENTE")
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                .requestMatchers("/api/exportacion/**").hasRole("ADMIN")
                 .requestMatchers("/api/veterinario/**").hasAnyRole("ADMIN", "VETERINARIO")
                 .requestMatchers("/api/recepcionista/**").hasAnyRole("ADMIN", "RECEPCIONISTA")
                 .requestMatchers("/api/cliente/**").hasAnyRole("ADMIN", "CLIENTE")
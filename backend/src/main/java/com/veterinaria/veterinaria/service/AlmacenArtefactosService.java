@@ -0,0 +1,225 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Reporte;
+import com.veterinaria.veterinaria.repository.ReporteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Almacén de los archivos generados por los reportes en segundo plano, direccionado por
+ * contenido: cada archivo se guarda una sola vez con su SHA-256 como nombre, comprimido con
+ * gzip si es texto. Los reportes guardan la ruta, el checksum, los tamaños y la compresión, y
+ * la descarga sirve el archivo tal cual. Un archivo se borra cuando ningún reporte lo usa, ya
+ * sea por la retención en horas o por el tope de espacio en disco.
+ */
+@Service
+public class AlmacenArtefactosService {
+
+    public static final String GZIP = "GZIP";
+    public static final String SIN_COMPRIMIR = "NINGUNA";
+
+    @FunctionalInterface
+    public interface EscrituraArchivo {
+        void escribir(OutputStream salida) throws IOException;
+    }
+
+    // Minutos que se respeta un archivo sin referencias: el reporte que lo usa puede no haberse guardado aún
+    private static final long GRACIA_MINUTOS = 10;
+
+    @Autowired
+    private ReporteRepository reporteRepository;
+
+    @Value("${app.reportes.trabajos.directorio:${java.io.tmpdir}/veterinaria-reportes}")
+    private String directorio;
+
+    @Value("${app.reportes.trabajos.retencion-horas:24}")
+    private int retencionHoras;
+
+    @Value("${app.reportes.trabajos.max-disco-mb:2048}")
+    private long maxDiscoMb;
+
+    /**
+     * Escribe el archivo en el almacén y completa en el reporte la ruta, el checksum, los
+     * tamaños y la compresión. Si ya existe un archivo con el mismo contenido se reutiliza.
+     */
+    public void guardar(Reporte reporte, EscrituraArchivo escritura, String extension, boolean comprimir) throws IOException {
+        Path raiz = Paths.get(directorio);
+        Path temporales = raiz.resolve("tmp");
+        Files.createDirectories(temporales);
+        Path temporal = Files.createTempFile(temporales, "artefacto-", ".tmp");
+
+        MessageDigest sha256 = nuevoDigest();
+        long tamano;
+        try {
+            OutputStream archivo = new BufferedOutputStream(Files.newOutputStream(temporal), 64 * 1024);
+            OutputStream destino = comprimir ? new GZIPOutputStream(archivo, 64 * 1024) : archivo;
+            // El checksum y el tamaño son del contenido sin comprimir, el que recibe el cliente
+            try (Conteo conteo = new Conteo(new DigestOutputStream(destino, sha256))) {
+                escritura.escribir(conteo);
+                tamano = conteo.bytes;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+
+        String checksum = HexFormat.of().formatHex(sha256.digest());
+        Path carpeta = raiz.resolve(checksum.substring(0, 2));
+        Files.createDirectories(carpeta);
+        Path ruta = carpeta.resolve(checksum + "." + extension + (comprimir ? ".gz" : ""));
+        if (Files.exists(ruta)) {
+            reutilizar(temporal, ruta);
+        } else {
+            Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        reporte.setArchivoRuta(ruta.toAbsolutePath().toString());
+        reporte.setArchivoSha256(checksum);
+        reporte.setArchivoTamano(tamano);
+        reporte.setArchivoTamanoAlmacenado(Files.size(ruta));
+        reporte.setArchivoCompresion(comprimir ? GZIP : SIN_COMPRIMIR);
+    }
+
+    /**
+     * Mismo contenido ya guardado: se descarta el temporal y se renueva la fecha del existente
+     * para que la limpieza no lo borre antes de que el reporte nuevo lo referencie.
+     */
+    private static void reutilizar(Path temporal, Path ruta) throws IOException {
+        Files.deleteIfExists(temporal);
+        Files.setLastModifiedTime(ruta, FileTime.from(Instant.now()));
+    }
+
+    /**
+     * Retención del almacén: los reportes terminados hace más de {@code retencion-horas} dejan de
+     * apuntar a su archivo, si el total en disco supera {@code max-disco-mb} se liberan los
+     * archivos usados hace más tiempo (último acceso: generación o descarga), y después se
+     * borra todo archivo sin referencias.
+     */
+    @Scheduled(fixedDelay = 3600000)
+    public void limpiar() {
+        try {
+            List<Reporte> vencidos = reporteRepository.findByArchivoRutaIsNotNullAndFechaFinTrabajoBefore(
+                    LocalDateTime.now().minusHours(retencionHoras));
+            for (Reporte reporte : vencidos) {
+                reporte.setArchivoRuta(null);
+                reporteRepository.save(reporte);
+            }
+
+            List<Object[]> enUso = reporteRepository.findArchivosEnUso();
+            long total = 0;
+            for (Object[] archivo : enUso) {
+                total += tamano(archivo);
+            }
+            long maximo = maxDiscoMb * 1024 * 1024;
+            Set<String> referenciados = new HashSet<>();
+            for (Object[] archivo : enUso) {
+                if (total > maximo) {
+                    reporteRepository.liberarArchivo((String) archivo[0]);
+                    total -= tamano(archivo);
+                } else {
+                    referenciados.add((String) archivo[0]);
+                }
+            }
+
+            int borrados = borrarSinReferencias(referenciados);
+            if (!vencidos.isEmpty() || borrados > 0) {
+                System.out.println("🧹 Almacén de reportes: " + vencidos.size() + " reportes vencidos, "
+                        + borrados + " archivos borrados, " + (total / (1024 * 1024)) + " MB en uso");
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ Error limpiando el almacén de reportes: " + e.getMessage());
+        }
+    }
+
+    private int borrarSinReferencias(Set<String> referenciados) throws IOException {
+        Path raiz = Paths.get(directorio);
+        if (!Files.isDirectory(raiz)) {
+            return 0;
+        }
+        Path temporales = raiz.resolve("tmp");
+        Instant limite = Instant.now().minus(GRACIA_MINUTOS, ChronoUnit.MINUTES);
+        // Un temporal puede ser de un trabajo que sigue esperando su consulta
+        Instant limiteTemporales = Instant.now().minus(retencionHoras, ChronoUnit.HOURS);
+        int borrados = 0;
+        try (Stream<Path> archivos = Files.walk(raiz)) {
+            for (Path archivo : archivos.filter(Files::isRegularFile).toList()) {
+                Instant modificado = Files.getLastModifiedTime(archivo).toInstant();
+                if (referenciados.contains(archivo.toAbsolutePath().toString())
+                        || modificado.isAfter(archivo.startsWith(temporales) ? limiteTemporales : limite)) {
+                    continue;
+                }
+                if (Files.deleteIfExists(archivo)) {
+                    borrados++;
+                }
+            }
+        }
+        return borrados;
+    }
+
+    private static long tamano(Object[] archivo) {
+        if (archivo[2] != null) {
+            return ((Number) archivo[2]).longValue();
+        }
+        // Archivos anteriores al almacén, sin tamaño registrado
+        try {
+            return Files.size(Paths.get((String) archivo[0]));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MessageDigest nuevoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Cuenta los bytes escritos
+     */
+    private static final class Conteo extends FilterOutputStream {
+        private long bytes;
+
+        Conteo(OutputStream salida) {
+            super(salida);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes += len;
+        }
+    }
+}
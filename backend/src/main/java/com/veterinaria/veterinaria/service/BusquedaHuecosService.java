@@ -0,0 +1,188 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.HuecoDisponibleDTO;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Búsqueda de los primeros horarios libres entre todas las veterinarias activas de una ciudad.
+ * Cada veterinaria aporta un cursor que recorre sus franjas libres en orden cronológico; una
+ * cola de prioridad mezcla los cursores y solo avanza el que entregó el último resultado, de
+ * modo que no se evalúan días de una veterinaria que no pueden aportar al resultado.
+ */
+@Service
+public class BusquedaHuecosService {
+
+    // Límites de trabajo por petición
+    public static final int MAX_RESULTADOS = 20;
+    public static final int MAX_DIAS_VENTANA = 14;
+    static final int MAX_VETERINARIAS = 50;
+    static final int MAX_DIAS_EVALUADOS = 200;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private OcupacionHorariosService ocupacionHorariosService;
+
+    @Autowired
+    private HorarioAtencionService horarioAtencionService;
+
+    /**
+     * Los k primeros horarios libres en [desde, hasta) entre las veterinarias activas de la ciudad.
+     * especie y servicio, si se indican, se buscan en los servicios y la descripción de la veterinaria.
+     */
+    public List<HuecoDisponibleDTO> buscarPrimerosHuecos(String ciudad, String especie, String servicio,
+                                                         LocalDateTime desde, LocalDateTime hasta,
+                                                         int duracionMinutos, int k) {
+        List<HuecoDisponibleDTO> huecos = new ArrayList<>();
+        int limite = Math.min(k, MAX_RESULTADOS);
+        Presupuesto presupuesto = new Presupuesto(MAX_DIAS_EVALUADOS);
+
+        PriorityQueue<Cursor> cola = new PriorityQueue<>(
+                Comparator.comparing((Cursor c) -> c.actual).thenComparing(c -> c.veterinaria.getId()));
+        int veterinarias = 0;
+        for (Veterinaria veterinaria : veterinariaRepository.findByActivoTrueAndCiudadIgnoreCase(ciudad)) {
+            if (!ofrece(veterinaria, especie) || !ofrece(veterinaria, servicio)) {
+                continue;
+            }
+            if (++veterinarias > MAX_VETERINARIAS) {
+                System.out.println("⚠️ Búsqueda de horarios en " + ciudad + " limitada a " + MAX_VETERINARIAS + " veterinarias");
+                break;
+            }
+            Cursor cursor = new Cursor(veterinaria, horarioAtencionService.getHorario(veterinaria.getId()),
+                    desde, hasta, duracionMinutos);
+            if (cursor.avanzar(presupuesto)) {
+                cola.add(cursor);
+            }
+        }
+
+        while (huecos.size() < limite && !cola.isEmpty()) {
+            Cursor cursor = cola.poll();
+            Veterinaria veterinaria = cursor.veterinaria;
+            huecos.add(new HuecoDisponibleDTO(cursor.actual, veterinaria.getId(), veterinaria.getNombre(),
+                    veterinaria.getDireccion(), veterinaria.getTelefono()));
+            if (cursor.avanzar(presupuesto)) {
+                cola.add(cursor);
+            }
+        }
+
+        if (presupuesto.agotado()) {
+            System.out.println("⚠️ Búsqueda de horarios en " + ciudad + " cortada tras evaluar "
+                    + MAX_DIAS_EVALUADOS + " días de veterinaria");
+        }
+        return huecos;
+    }
+
+    private static boolean ofrece(Veterinaria veterinaria, String termino) {
+        if (termino == null || termino.isBlank()) {
+            return true;
+        }
+        String texto = normalizar(veterinaria.getServicios()) + " " + normalizar(veterinaria.getDescripcion());
+        return texto.contains(normalizar(termino).trim());
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase();
+    }
+
+    // Días de veterinaria que todavía se pueden cargar en esta petición
+    private static final class Presupuesto {
+        private int restante;
+        private boolean agotado;
+
+        Presupuesto(int dias) {
+            this.restante = dias;
+        }
+
+        boolean consumir() {
+            if (restante == 0) {
+                agotado = true;
+                return false;
+            }
+            restante--;
+            return true;
+        }
+
+        boolean agotado() {
+            return agotado;
+        }
+    }
+
+    /**
+     * Recorre las franjas libres de una veterinaria; los días se cargan de uno en uno al llegar a ellos.
+     */
+    private final class Cursor {
+        final Veterinaria veterinaria;
+        private final HorarioSemanal horario;
+        private final LocalDateTime desde;
+        private final LocalDateTime hasta;
+        private final int duracion;
+
+        private LocalDate fecha;
+        private HorarioSemanal.Plantilla plantilla;
+        private IntervalosOcupados ocupados;
+        private int siguiente;
+        LocalDateTime actual;
+
+        Cursor(Veterinaria veterinaria, HorarioSemanal horario, LocalDateTime desde, LocalDateTime hasta, int duracion) {
+            this.veterinaria = veterinaria;
+            this.horario = horario;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.duracion = duracion;
+        }
+
+        /**
+         * Deja en actual la siguiente franja libre; false si no hay más dentro de la ventana o del presupuesto.
+         */
+        boolean avanzar(Presupuesto presupuesto) {
+            while (true) {
+                if (plantilla != null) {
+                    while (siguiente < plantilla.inicios.length) {
+                        int i = siguiente++;
+                        int inicio = plantilla.inicios[i];
+                        LocalDateTime fechaHora = LocalDateTime.of(fecha, plantilla.horas[i]);
+                        if (!fechaHora.isBefore(hasta)) {
+                            return false;
+                        }
+                        if (fechaHora.isBefore(desde) || inicio + duracion > plantilla.cierres[i]) {
+                            continue;
+                        }
+                        if (ocupados == null) {
+                            // El día solo se carga si tiene franjas candidatas
+                            if (!presupuesto.consumir()) {
+                                return false;
+                            }
+                            ocupados = ocupacionHorariosService.getOcupacionDia(fecha, veterinaria.getId());
+                        }
+                        if (!ocupados.solapa(inicio, inicio + duracion)) {
+                            actual = fechaHora;
+                            return true;
+                        }
+                    }
+                }
+                fecha = fecha == null ? desde.toLocalDate() : fecha.plusDays(1);
+                if (!fecha.atStartOfDay().isBefore(hasta)) {
+                    return false;
+                }
+                plantilla = horario.plantillaDe(fecha);
+                ocupados = null;
+                siguiente = 0;
+            }
+        }
+    }
+}
@@ -4,11 +4,14 @@ import com.opencsv.CSVWriter;
 import com.veterinaria.veterinaria.dto.*;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class CSVExportService {
@@ -16,18 +19,59 @@ public class CSVExportService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
+    // Cada cuántas filas se vacía el buffer hacia el cliente
+    private static final int FILAS_POR_ENVIO = 1000;
+
+    /**
+     * Escribe el BOM y abre el escritor CSV sobre la salida, sin cerrarla al terminar.
+     * BOM para UTF-8 (ayuda a Excel a detectar la codificación).
+     */
+    private static CSVWriter abrir(OutputStream salida) throws IOException {
+        salida.write(0xEF);
+        salida.write(0xBB);
+        salida.write(0xBF);
+        return new CSVWriter(new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 64 * 1024));
+    }
+
     /**
-     * Exporta el reporte de usuarios a CSV
+     * Escribe filas y vacía el buffer cada {@link #FILAS_POR_ENVIO}. CSVWriter no lanza los
+     * errores de escritura, así que se comprueban en cada envío para dejar de leer la consulta
+     * si el cliente cortó la descarga.
      */
-    public byte[] exportarUsuariosCSV(List<ReporteUsuarioDTO> usuarios) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             OutputStreamWriter osw = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
-             CSVWriter writer = new CSVWriter(osw)) {
+    private static final class Envio {
+        private final CSVWriter writer;
+        private int pendientes;
+
+        Envio(CSVWriter writer) {
+            this.writer = writer;
+        }
+
+        void escribir(String[] fila) {
+            writer.writeNext(fila);
+            if (++pendientes >= FILAS_POR_ENVIO) {
+                pendientes = 0;
+                terminar();
+            }
+        }
+
+        void terminar() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (writer.checkError()) {
+                throw new UncheckedIOException(new IOException("Error de escritura, descarga interrumpida"));
+            }
+        }
+    }
 
-            // BOM para UTF-8 (ayuda a Excel a detectar la codificación)
-            baos.write(0xEF);
-            baos.write(0xBB);
-            baos.write(0xBF);
+    /**
+     * Escribe el reporte de usuarios en CSV a medida que {@code recorrido} entrega las filas
+     */
+    public void escribirUsuariosCSV(OutputStream salida, Consumer<Consumer<ReporteUsuarioDTO>> recorrido) {
+        try {
+            CSVWriter writer = abrir(salida);
 
             // Encabezados
             String[] headers = {
@@ -46,7 +90,8 @@ public class CSVExportService {
             writer.writeNext(headers);
 
             // Datos
-            for (ReporteUsuarioDTO usuario : usuarios) {
+            Envio envio = new Envio(writer);
+            recorrido.accept(usuario -> {
                 String[] data = {
                     usuario.getDocumento(),
                     usuario.getUsername(),
@@ -62,28 +107,21 @@ public class CSVExportService {
                         ? usuario.getFechaRegistro().format(DATE_FORMATTER) 
                         : ""
                 };
-                writer.writeNext(data);
-            }
+                envio.escribir(data);
+            });
 
-            writer.flush();
-            return baos.toByteArray();
+            envio.terminar();
         } catch (Exception e) {
             throw new RuntimeException("Error al generar CSV de usuarios", e);
         }
     }
 
     /**
-     * Exporta el reporte de mascotas a CSV
+     * Escribe el reporte de mascotas en CSV a medida que {@code recorrido} entrega las filas
      */
-    public byte[] exportarMascotasCSV(List<ReporteMascotaDTO> mascotas) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             OutputStreamWriter osw = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
-             CSVWriter writer = new CSVWriter(osw)) {
-
-            // BOM para UTF-8
-            baos.write(0xEF);
-            baos.write(0xBB);
-            baos.write(0xBF);
+    public void escribirMascotasCSV(OutputStream salida, Consumer<Consumer<ReporteMascotaDTO>> recorrido) {
+        try {
+            CSVWriter writer = abrir(salida);
 
             // Encabezados
             String[] headers = {
@@ -103,7 +141,8 @@ public class CSVExportService {
             writer.writeNext(headers);
 
             // Datos
-            for (ReporteMascotaDTO mascota : mascotas) {
+            Envio envio = new Envio(writer);
+            recorrido.accept(mascota -> {
                 String[] data = {
                     String.valueOf(mascota.getId()),
                     mascota.getNombre(),
@@ -123,28 +162,21 @@ public class CSVExportService {
                         ? mascota.getFechaRegistro().format(DATE_FORMATTER) 
                         : ""
                 };
-                writer.writeNext(data);
-            }
+                envio.escribir(data);
+            });
 
-            writer.flush();
-            return baos.toByteArray();
+            envio.terminar();
         } catch (Exception e) {
             throw new RuntimeException("Error al generar CSV de mascotas", e);
         }
     }
 
     /**
-     * Exporta el reporte de citas a CSV
+     * Escribe el reporte de citas en CSV a medida que {@code recorrido} entrega las filas
      */
-    public byte[] exportarCitasCSV(List<ReporteCitaDTO> citas) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             OutputStreamWriter osw = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
-             CSVWriter writer = new CSVWriter(osw)) {
-
-            // BOM para UTF-8
-            baos.write(0xEF);
-            baos.write(0xBB);
-            baos.write(0xBF);
+    public void escribirCitasCSV(OutputStream salida, Consumer<Consumer<ReporteCitaDTO>> recorrido) {
+        try {
+            CSVWriter writer = abrir(salida);
 
             // Encabezados
             String[] headers = {
@@ -162,7 +194,8 @@ public class CSVExportService {
             writer.writeNext(headers);
 
             // Datos
-            for (ReporteCitaDTO cita : citas) {
+            Envio envio = new Envio(writer);
+            recorrido.accept(cita -> {
                 String[] data = {
                     String.valueOf(cita.getId()),
                     cita.getFechaHora() != null 
@@ -179,11 +212,10 @@ public class CSVExportService {
                         ? cita.getFechaCreacion().format(DATE_FORMATTER) 
                         : ""
                 };
-                writer.writeNext(data);
-            }
+                envio.escribir(data);
+            });
 
-            writer.flush();
-            return baos.toByteArray();
+            envio.terminar();
         } catch (Exception e) {
             throw new RuntimeException("Error al generar CSV de citas", e);
         }
@@ -0,0 +1,60 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.HistoriaClinica;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Listener JPA que sube la versión del PDF de historia clínica de la mascota afectada cuando
+ * cambian ella, una de sus historias o una de sus citas. Los cambios de usuario invalidan
+ * todas, ya que el PDF incluye datos del propietario y de los veterinarios. Los cambios de
+ * estado en lote del ciclo de vida no pasan por los listeners: los notifica CicloVidaCitasService.
+ */
+public class CacheHistoriasPdfListener {
+
+    // Hibernate instancia el listener por su cuenta; el servicio se registra al arrancar
+    private static volatile CacheHistoriasPdfService servicio;
+
+    static void registrar(CacheHistoriasPdfService cacheHistoriasPdfService) {
+        servicio = cacheHistoriasPdfService;
+    }
+
+    @PostPersist
+    public void creado(Object entidad) {
+        // Un usuario nuevo todavía no aparece en ningún PDF
+        if (!(entidad instanceof Usuario)) {
+            notificar(entidad);
+        }
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void actualizadoOEliminado(Object entidad) {
+        notificar(entidad);
+    }
+
+    private static void notificar(Object entidad) {
+        CacheHistoriasPdfService actual = servicio;
+        if (actual == null) {
+            return;
+        }
+        if (entidad instanceof Mascota mascota) {
+            actual.registrarCambio(mascota.getId());
+        } else if (entidad instanceof HistoriaClinica historia) {
+            // getId() de un proxy de Mascota no lo inicializa
+            if (historia.getMascota() != null) {
+                actual.registrarCambio(historia.getMascota().getId());
+            }
+        } else if (entidad instanceof Cita cita) {
+            if (cita.getMascota() != null) {
+                actual.registrarCambio(cita.getMascota().getId());
+            }
+        } else if (entidad instanceof Usuario) {
+            actual.registrarCambio(null);
+        }
+    }
+}
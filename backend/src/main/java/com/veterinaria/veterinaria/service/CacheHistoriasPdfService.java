@@ -0,0 +1,320 @@
+package com.veterinaria.veterinaria.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Caché de los PDF de historia clínica por mascota y versión de su contenido. La versión de una
+ * mascota sube (tras el commit) cada vez que cambian ella, sus historias o sus citas; un cambio
+ * de usuario la sube en todas, porque el PDF lleva nombres del propietario y del veterinario.
+ * Hay dos niveles: uno pequeño en memoria con LRU por bytes y, para lo que sale de él, archivos
+ * que el sistema operativo mantiene en su caché de páginas sin ocupar heap. Los archivos se leen
+ * enteros en lugar de mapearse: un archivo mapeado no se puede borrar en Windows hasta que el
+ * recolector libera el mapeo. Las versiones viven en memoria, así que la carpeta de archivos se
+ * vacía al arrancar.
+ */
+@Service
+public class CacheHistoriasPdfService {
+
+    @FunctionalInterface
+    public interface Generador {
+        byte[] generar() throws Exception;
+    }
+
+    private record EnMemoria(long version, byte[] datos) {}
+
+    private record EnDisco(long version, Path ruta, long tamano) {}
+
+    // Recurso de la transacción en curso con las mascotas pendientes de invalidar (null = todas)
+    private static final Object PENDIENTES = new Object();
+
+    @Value("${app.historias.pdf-cache.memoria-max-kb:16384}")
+    private long memoriaMaxKb;
+
+    @Value("${app.historias.pdf-cache.disco-max-mb:512}")
+    private long discoMaxMb;
+
+    @Value("${app.historias.pdf-cache.directorio:${java.io.tmpdir}/veterinaria-historias-pdf}")
+    private String directorio;
+
+    @Value("${app.historias.pdf-cache.versiones-max:50000}")
+    private int versionesMax;
+
+    private final Object lock = new Object();
+
+    // Versión del contenido por mascota; las que no están aquí van por versionBase. Las versiones
+    // salen de un contador único, así que nunca se repite una ya usada para la misma mascota
+    private Map<Long, Long> versiones = new HashMap<>();
+    private long ultimaVersion;
+    private long versionBase;
+
+    // Se incrementa cuando se invalida todo, para descartar PDF que empezaron a generarse antes
+    private long epoca;
+
+    // Ordenadas por acceso para el desalojo LRU
+    private final LinkedHashMap<Long, EnMemoria> memoria = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Long, EnDisco> disco = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long bytesMemoria;
+    private long bytesDisco;
+
+    private final LongAdder aciertosMemoria = new LongAdder();
+    private final LongAdder aciertosDisco = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    private Path carpeta;
+
+    @PostConstruct
+    public void preparar() throws IOException {
+        carpeta = Paths.get(directorio);
+        Files.createDirectories(carpeta);
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            for (Path archivo : archivos.filter(a -> a.getFileName().toString().endsWith(".pdf")).toList()) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        CacheHistoriasPdfListener.registrar(this);
+    }
+
+    /**
+     * Devuelve el PDF de la versión actual de la mascota o lo genera y lo guarda. Si la versión
+     * cambia mientras se genera, el PDF se devuelve pero no se guarda.
+     */
+    public byte[] obtener(Long mascotaId, Generador generador) throws Exception {
+        long version;
+        long epocaInicial;
+        EnDisco enDisco;
+        synchronized (lock) {
+            version = versionDe(mascotaId);
+            epocaInicial = epoca;
+            EnMemoria enMemoria = memoria.get(mascotaId);
+            if (enMemoria != null && enMemoria.version() == version) {
+                aciertosMemoria.increment();
+                return enMemoria.datos();
+            }
+            enDisco = disco.get(mascotaId);
+        }
+        if (enDisco != null && enDisco.version() == version) {
+            // Se lee fuera del lock; si se desalojó y borró mientras, se genera de nuevo
+            try {
+                byte[] datos = Files.readAllBytes(enDisco.ruta());
+                aciertosDisco.increment();
+                guardar(mascotaId, version, epocaInicial, datos);
+                return datos;
+            } catch (IOException e) {
+                // Archivo ya borrado: cuenta como fallo
+            }
+        }
+
+        fallos.increment();
+        byte[] datos = generador.generar();
+        guardar(mascotaId, version, epocaInicial, datos);
+        return datos;
+    }
+
+    private void guardar(Long mascotaId, long version, long epocaInicial, byte[] datos) {
+        List<Map.Entry<Long, EnMemoria>> desalojadas = new ArrayList<>();
+        synchronized (lock) {
+            if (epoca != epocaInicial || versionDe(mascotaId) != version
+                    || datos.length > memoriaMaxKb * 1024) {
+                return;
+            }
+            EnMemoria anterior = memoria.put(mascotaId, new EnMemoria(version, datos));
+            if (anterior != null) {
+                bytesMemoria -= anterior.datos().length;
+            }
+            bytesMemoria += datos.length;
+            Iterator<Map.Entry<Long, EnMemoria>> iterador = memoria.entrySet().iterator();
+            while (bytesMemoria > memoriaMaxKb * 1024 && iterador.hasNext()) {
+                Map.Entry<Long, EnMemoria> masAntigua = iterador.next();
+                iterador.remove();
+                bytesMemoria -= masAntigua.getValue().datos().length;
+                desalojadas.add(masAntigua);
+            }
+        }
+        // Lo que sale de memoria baja al nivel de disco, escribiendo fuera del lock
+        for (Map.Entry<Long, EnMemoria> entrada : desalojadas) {
+            bajarADisco(entrada.getKey(), entrada.getValue(), epocaInicial);
+        }
+    }
+
+    private void bajarADisco(Long mascotaId, EnMemoria entrada, long epocaInicial) {
+        if (entrada.datos().length > discoMaxMb * 1024 * 1024) {
+            return;
+        }
+        synchronized (lock) {
+            // Si subió desde disco, esa misma versión sigue allí
+            EnDisco existente = disco.get(mascotaId);
+            if (existente != null && existente.version() == entrada.version()) {
+                return;
+            }
+        }
+        Path ruta = carpeta.resolve("mascota-" + mascotaId + "-v" + entrada.version() + "-e" + epocaInicial + ".pdf");
+        try {
+            Files.write(ruta, entrada.datos());
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo guardar en disco el PDF de la mascota " + mascotaId + ": " + e.getMessage());
+            borrar(ruta);
+            return;
+        }
+
+        List<Path> sobrantes = new ArrayList<>();
+        synchronized (lock) {
+            if (epoca != epocaInicial || versionDe(mascotaId) != entrada.version()) {
+                sobrantes.add(ruta);
+            } else {
+                EnDisco anterior = disco.put(mascotaId, new EnDisco(entrada.version(), ruta, entrada.datos().length));
+                if (anterior != null) {
+                    bytesDisco -= anterior.tamano();
+                    sobrantes.add(anterior.ruta());
+                }
+                bytesDisco += entrada.datos().length;
+                Iterator<Map.Entry<Long, EnDisco>> iterador = disco.entrySet().iterator();
+                while (bytesDisco > discoMaxMb * 1024 * 1024 && iterador.hasNext()) {
+                    EnDisco masAntigua = iterador.next().getValue();
+                    iterador.remove();
+                    bytesDisco -= masAntigua.tamano();
+                    sobrantes.add(masAntigua.ruta());
+                }
+            }
+        }
+        sobrantes.forEach(CacheHistoriasPdfService::borrar);
+    }
+
+    /**
+     * Registra el cambio de una mascota (null = todas); se aplica al confirmar la transacción
+     * (o al momento si no hay ninguna), para que nadie guarde el PDF anterior con la versión nueva.
+     */
+    void registrarCambio(Long mascotaId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidar(Collections.singleton(mascotaId));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Long> pendientes = (Set<Long>) TransactionSynchronizationManager.getResource(PENDIENTES);
+        if (pendientes == null) {
+            Set<Long> deTransaccion = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(PENDIENTES, deTransaccion);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidar(deTransaccion);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDIENTES);
+                }
+            });
+            pendientes = deTransaccion;
+        }
+        pendientes.add(mascotaId);
+    }
+
+    private void invalidar(Set<Long> mascotaIds) {
+        List<Path> sobrantes = new ArrayList<>();
+        synchronized (lock) {
+            if (mascotaIds.contains(null)) {
+                epoca++;
+                invalidaciones.add(memoria.size() + disco.size());
+                memoria.clear();
+                bytesMemoria = 0;
+                disco.values().forEach(enDisco -> sobrantes.add(enDisco.ruta()));
+                disco.clear();
+                bytesDisco = 0;
+            } else {
+                for (Long mascotaId : mascotaIds) {
+                    versiones.put(mascotaId, ++ultimaVersion);
+                    EnMemoria enMemoria = memoria.remove(mascotaId);
+                    if (enMemoria != null) {
+                        bytesMemoria -= enMemoria.datos().length;
+                        invalidaciones.increment();
+                    }
+                    EnDisco enDisco = disco.remove(mascotaId);
+                    if (enDisco != null) {
+                        bytesDisco -= enDisco.tamano();
+                        sobrantes.add(enDisco.ruta());
+                        invalidaciones.increment();
+                    }
+                }
+                podarVersiones();
+            }
+        }
+        sobrantes.forEach(CacheHistoriasPdfService::borrar);
+    }
+
+    private long versionDe(Long mascotaId) {
+        return versiones.getOrDefault(mascotaId, versionBase);
+    }
+
+    /**
+     * Con demasiadas mascotas recordadas se olvidan las que no tienen PDF en caché: pasan
+     * todas a una versión base nueva, distinta de cualquiera que esté generándose ahora.
+     * Llamar con el lock tomado.
+     */
+    private void podarVersiones() {
+        int enCache = memoria.size() + disco.size();
+        // Con la mitad o más en caché no se libera lo suficiente para que compense recorrerlas
+        if (versiones.size() <= versionesMax || versiones.size() <= 2 * enCache) {
+            return;
+        }
+        Map<Long, Long> conservadas = new HashMap<>();
+        memoria.forEach((mascotaId, enMemoria) -> conservadas.put(mascotaId, enMemoria.version()));
+        disco.forEach((mascotaId, enDisco) -> conservadas.put(mascotaId, enDisco.version()));
+        versionBase = ++ultimaVersion;
+        versiones = conservadas;
+    }
+
+    private static void borrar(Path ruta) {
+        try {
+            Files.deleteIfExists(ruta);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo borrar " + ruta + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Aciertos por nivel, fallos, invalidaciones y ocupación de cada nivel
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        synchronized (lock) {
+            resultado.put("entradasMemoria", memoria.size());
+            resultado.put("bytesMemoria", bytesMemoria);
+            resultado.put("entradasDisco", disco.size());
+            resultado.put("bytesDisco", bytesDisco);
+            resultado.put("versiones", versiones.size());
+        }
+        resultado.put("aciertosMemoria", aciertosMemoria.sum());
+        resultado.put("aciertosDisco", aciertosDisco.sum());
+        resultado.put("fallos", fallos.sum());
+        resultado.put("invalidaciones", invalidaciones.sum());
+        return resultado;
+    }
+}
@@ -0,0 +1,125 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.HistoriaClinica;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.service.CacheReportesService.Cambio;
+import com.veterinaria.veterinaria.service.CacheReportesService.Dominio;
+import org.hibernate.Hibernate;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Listener de Hibernate que avisa a {@link CacheReportesService} de los cambios en usuarios,
+ * mascotas, citas e historias clínicas. Los reportes se agrupan por la veterinaria del usuario
+ * dueño del dato (el propio usuario, el propietario de la mascota o el cliente de la cita); si
+ * ese usuario no está cargado no se consulta durante el flush y se invalida el dominio en todas.
+ * En una actualización también se avisa con el estado que Hibernate tenía cargado (oldState),
+ * así se invalida la veterinaria de origen cuando el dato pasa de una a otra.
+ */
+class CacheReportesListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final CacheReportesService servicio;
+
+    CacheReportesListener(CacheReportesService servicio) {
+        this.servicio = servicio;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Dominio dominio = dominioDe(event.getEntity());
+        if (dominio != null) {
+            servicio.registrarCambio(cambioDe(dominio, event.getPersister(), event.getState()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Dominio dominio = dominioDe(event.getEntity());
+        if (dominio == null) {
+            return;
+        }
+        Cambio nuevo = cambioDe(dominio, event.getPersister(), event.getState());
+        servicio.registrarCambio(nuevo);
+        // Sin estado anterior (entidad actualizada sin cargar) solo se conoce el destino
+        if (event.getOldState() != null) {
+            Cambio anterior = cambioDe(dominio, event.getPersister(), event.getOldState());
+            if (!anterior.equals(nuevo)) {
+                servicio.registrarCambio(anterior);
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Dominio dominio = dominioDe(event.getEntity());
+        if (dominio != null) {
+            servicio.registrarCambio(cambioDe(dominio, event.getPersister(), event.getDeletedState()));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private static Dominio dominioDe(Object entidad) {
+        if (entidad instanceof Usuario) {
+            return Dominio.USUARIOS;
+        } else if (entidad instanceof Mascota) {
+            return Dominio.MASCOTAS;
+        } else if (entidad instanceof Cita) {
+            return Dominio.CITAS;
+        } else if (entidad instanceof HistoriaClinica) {
+            return Dominio.HISTORIAS;
+        }
+        return null;
+    }
+
+    private static Cambio cambioDe(Dominio dominio, EntityPersister persister, Object[] estado) {
+        if (estado == null) {
+            return new Cambio(dominio, null, true);
+        }
+        switch (dominio) {
+            case USUARIOS: {
+                // getId() de un proxy de Veterinaria no lo inicializa
+                Veterinaria veterinaria = (Veterinaria) propiedad(persister, estado, "veterinaria");
+                return new Cambio(dominio, veterinaria != null ? veterinaria.getId() : null, false);
+            }
+            case MASCOTAS:
+                return cambioDe(dominio, (Usuario) propiedad(persister, estado, "propietario"));
+            case CITAS:
+                return cambioDe(dominio, (Usuario) propiedad(persister, estado, "cliente"));
+            default: {
+                Mascota mascota = (Mascota) propiedad(persister, estado, "mascota");
+                return mascota != null && Hibernate.isInitialized(mascota)
+                        ? cambioDe(dominio, mascota.getPropietario())
+                        : new Cambio(dominio, null, true);
+            }
+        }
+    }
+
+    private static Cambio cambioDe(Dominio dominio, Usuario dueno) {
+        if (dueno == null || !Hibernate.isInitialized(dueno)) {
+            return new Cambio(dominio, null, true);
+        }
+        return new Cambio(dominio, dueno.getVeterinaria() != null ? dueno.getVeterinaria().getId() : null, false);
+    }
+
+    private static Object propiedad(EntityPersister persister, Object[] estado, String nombre) {
+        String[] propiedades = persister.getPropertyNames();
+        for (int i = 0; i < propiedades.length; i++) {
+            if (propiedades[i].equals(nombre)) {
+                return estado[i];
+            }
+        }
+        return null;
+    }
+}
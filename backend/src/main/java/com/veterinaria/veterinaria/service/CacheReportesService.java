@@ -0,0 +1,256 @@
+package com.veterinaria.veterinaria.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caché de resultados de {@link GestionReporteService} por tipo de reporte, veterinaria
+ * (null = todas) y filtros. Se desaloja por LRU cuando las filas guardadas superan el máximo
+ * y por antigüedad, pero sobre todo se invalida con precisión: {@link CacheReportesListener}
+ * avisa de cada alta, cambio o baja de usuarios, mascotas, citas e historias, y tras el commit
+ * se descartan solo los reportes que dependen de ese dominio en esa veterinaria (y los globales).
+ */
+@Service
+public class CacheReportesService {
+
+    public enum Dominio { USUARIOS, MASCOTAS, CITAS, HISTORIAS }
+
+    public enum TipoReporte {
+        ESTADISTICAS_USUARIOS(Dominio.USUARIOS),
+        // La veterinaria de una mascota es la de su propietario
+        ESTADISTICAS_MASCOTAS(Dominio.MASCOTAS, Dominio.USUARIOS),
+        REPORTE_USUARIOS(Dominio.USUARIOS, Dominio.MASCOTAS, Dominio.CITAS),
+        REPORTE_MASCOTAS(Dominio.MASCOTAS, Dominio.USUARIOS, Dominio.CITAS, Dominio.HISTORIAS);
+
+        private final Set<Dominio> dependencias;
+
+        TipoReporte(Dominio primero, Dominio... resto) {
+            this.dependencias = EnumSet.of(primero, resto);
+        }
+    }
+
+    /**
+     * Cambio en un dominio: en una veterinaria (null = usuarios sin veterinaria) o, si no se
+     * sabe a cuál pertenece, en todas.
+     */
+    record Cambio(Dominio dominio, Long veterinariaId, boolean todas) {}
+
+    private record Clave(TipoReporte tipo, Long veterinariaId, String filtros) {}
+
+    private record Entrada(Object valor, long filas, long expira) {}
+
+    private static final class Metricas {
+        final LongAdder aciertos = new LongAdder();
+        final LongAdder fallos = new LongAdder();
+        final LongAdder invalidaciones = new LongAdder();
+        final LongAdder desalojos = new LongAdder();
+        final LongAdder caducadas = new LongAdder();
+    }
+
+    // Recurso de la transacción en curso con los cambios pendientes de invalidar
+    private static final Object PENDIENTES = new Object();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${app.reportes.cache.ttl-segundos:600}")
+    private long ttlSegundos;
+
+    @Value("${app.reportes.cache.max-filas:20000}")
+    private long maxFilas;
+
+    private final Object lock = new Object();
+
+    // Entradas ordenadas por acceso para el desalojo LRU
+    private final LinkedHashMap<Clave, Entrada> entradas = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long filasGuardadas;
+
+    // Se incrementa con cada invalidación para descartar cálculos que empezaron antes
+    private long generacion;
+
+    private final Map<TipoReporte, Metricas> metricas = new EnumMap<>(TipoReporte.class);
+
+    {
+        for (TipoReporte tipo : TipoReporte.values()) {
+            metricas.put(tipo, new Metricas());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        EventListenerRegistry registro = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        CacheReportesListener listener = new CacheReportesListener(this);
+        registro.appendListeners(EventType.POST_INSERT, listener);
+        registro.appendListeners(EventType.POST_UPDATE, listener);
+        registro.appendListeners(EventType.POST_DELETE, listener);
+    }
+
+    /**
+     * Devuelve el reporte guardado o lo calcula y lo guarda. El valor es compartido entre
+     * peticiones: quien lo reciba no debe modificarlo.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T obtener(TipoReporte tipo, Long veterinariaId, String filtros, Supplier<T> calculo) {
+        Clave clave = new Clave(tipo, veterinariaId, filtros);
+        Metricas metricasTipo = metricas.get(tipo);
+        long generacionInicial;
+        synchronized (lock) {
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null) {
+                if (entrada.expira() - System.nanoTime() > 0) {
+                    metricasTipo.aciertos.increment();
+                    return (T) entrada.valor();
+                }
+                quitar(clave, entrada);
+                metricasTipo.caducadas.increment();
+            }
+            generacionInicial = generacion;
+        }
+        metricasTipo.fallos.increment();
+
+        // Se calcula fuera del lock; dos fallos simultáneos de la misma clave calculan los dos
+        T valor = calculo.get();
+        long filas = valor instanceof Collection<?> coleccion ? Math.max(1, coleccion.size()) : 1;
+        synchronized (lock) {
+            // Si hubo una invalidación mientras se calculaba, el valor puede estar ya desfasado
+            if (generacion == generacionInicial && filas <= maxFilas) {
+                Entrada anterior = entradas.put(clave, new Entrada(valor, filas,
+                        System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSegundos)));
+                if (anterior != null) {
+                    filasGuardadas -= anterior.filas();
+                }
+                filasGuardadas += filas;
+                desalojarExceso();
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Registra un cambio; se aplica al confirmar la transacción (o al momento si no hay ninguna),
+     * para que nadie vuelva a guardar el dato anterior mientras la transacción sigue abierta.
+     */
+    void registrarCambio(Cambio cambio) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidar(Set.of(cambio));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Cambio> pendientes = (Set<Cambio>) TransactionSynchronizationManager.getResource(PENDIENTES);
+        if (pendientes == null) {
+            Set<Cambio> deTransaccion = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(PENDIENTES, deTransaccion);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidar(deTransaccion);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDIENTES);
+                }
+            });
+            pendientes = deTransaccion;
+        }
+        pendientes.add(cambio);
+    }
+
+    private void invalidar(Collection<Cambio> cambios) {
+        synchronized (lock) {
+            generacion++;
+            Iterator<Map.Entry<Clave, Entrada>> iterador = entradas.entrySet().iterator();
+            while (iterador.hasNext()) {
+                Map.Entry<Clave, Entrada> entry = iterador.next();
+                Clave clave = entry.getKey();
+                for (Cambio cambio : cambios) {
+                    if (afecta(cambio, clave)) {
+                        iterador.remove();
+                        filasGuardadas -= entry.getValue().filas();
+                        metricas.get(clave.tipo()).invalidaciones.increment();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean afecta(Cambio cambio, Clave clave) {
+        return clave.tipo().dependencias.contains(cambio.dominio())
+                && (cambio.todas() || clave.veterinariaId() == null
+                    || Objects.equals(clave.veterinariaId(), cambio.veterinariaId()));
+    }
+
+    private void desalojarExceso() {
+        Iterator<Map.Entry<Clave, Entrada>> iterador = entradas.entrySet().iterator();
+        while (filasGuardadas > maxFilas && iterador.hasNext()) {
+            Map.Entry<Clave, Entrada> masAntigua = iterador.next();
+            iterador.remove();
+            filasGuardadas -= masAntigua.getValue().filas();
+            metricas.get(masAntigua.getKey().tipo()).desalojos.increment();
+        }
+    }
+
+    private void quitar(Clave clave, Entrada entrada) {
+        entradas.remove(clave);
+        filasGuardadas -= entrada.filas();
+    }
+
+    /**
+     * Aciertos, fallos, invalidaciones, desalojos y caducadas por tipo de reporte, más el
+     * tamaño actual, para dimensionar la caché.
+     */
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        synchronized (lock) {
+            resultado.put("entradas", entradas.size());
+            resultado.put("filasGuardadas", filasGuardadas);
+        }
+        resultado.put("maxFilas", maxFilas);
+        resultado.put("ttlSegundos", ttlSegundos);
+        long aciertos = 0;
+        long fallos = 0;
+        Map<String, Map<String, Long>> porTipo = new LinkedHashMap<>();
+        for (Map.Entry<TipoReporte, Metricas> entry : metricas.entrySet()) {
+            Metricas m = entry.getValue();
+            Map<String, Long> valores = new LinkedHashMap<>();
+            valores.put("aciertos", m.aciertos.sum());
+            valores.put("fallos", m.fallos.sum());
+            valores.put("invalidaciones", m.invalidaciones.sum());
+            valores.put("desalojos", m.desalojos.sum());
+            valores.put("caducadas", m.caducadas.sum());
+            porTipo.put(entry.getKey().name(), valores);
+            aciertos += valores.get("aciertos");
+            fallos += valores.get("fallos");
+        }
+        resultado.put("aciertos", aciertos);
+        resultado.put("fallos", fallos);
+        resultado.put("tasaAciertos", aciertos + fallos == 0 ? 0.0 : (double) aciertos / (aciertos + fallos));
+        resultado.put("porTipo", porTipo);
+        return resultado;
+    }
+}
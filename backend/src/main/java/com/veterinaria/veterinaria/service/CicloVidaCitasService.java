@@ -0,0 +1,184 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Avanza automáticamente el estado de las citas cuando llega su hora:
+ *  - CONFIRMADA pasa a EN_CURSO al llegar la fecha de la cita
+ *  - PROGRAMADA (nunca confirmada) pasa a NO_ASISTIO tras el periodo de gracia
+ * Las citas de las próximas horas se mantienen en una rueda temporal jerárquica; en cada
+ * tic se aplican los vencimientos con un UPDATE en lote por tipo de transición, sin
+ * consultar la tabla completa. Al arrancar se recupera el estado pendiente desde la base
+ * de datos, incluidas las citas que vencieron mientras el servicio estaba detenido, pero
+ * solo las de las últimas horizonte-horas: las anteriores se dejan como están (solo se
+ * cuentan en el log) para no lanzar una transición masiva sobre el histórico.
+ */
+@Service
+public class CicloVidaCitasService {
+
+    private static final int TAMANIO_LOTE = 500;
+
+    private enum Transicion {
+        INICIO(Cita.EstadoCita.CONFIRMADA, Cita.EstadoCita.EN_CURSO),
+        AUSENCIA(Cita.EstadoCita.PROGRAMADA, Cita.EstadoCita.NO_ASISTIO);
+
+        final Cita.EstadoCita desde;
+        final Cita.EstadoCita hacia;
+
+        Transicion(Cita.EstadoCita desde, Cita.EstadoCita hacia) {
+            this.desde = desde;
+            this.hacia = hacia;
+        }
+    }
+
+    private record Evento(Long citaId, Transicion transicion) {}
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private OcupacionHorariosService ocupacionHorariosService;
+
+    @Autowired
+    private CitasHoyService citasHoyService;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @Autowired
+    private ResumenCitasService resumenCitasService;
+
+    @Autowired
+    private CacheHistoriasPdfService cacheHistoriasPdfService;
+
+    @Value("${app.citas.ciclo-vida.gracia-minutos:15}")
+    private int graciaMinutos;
+
+    @Value("${app.citas.ciclo-vida.horizonte-horas:48}")
+    private int horizonteHoras;
+
+    private volatile RuedaTemporal<Evento> rueda;
+
+    // Las citas con fecha anterior a este instante ya están en la rueda
+    private volatile LocalDateTime cargadoHasta;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        RuedaTemporal<Evento> nueva = new RuedaTemporal<>(minutoActual(ahora));
+        cargadoHasta = ahora.plusHours(horizonteHoras);
+        // Se publica antes de consultar para no perder citas guardadas durante la recuperación
+        rueda = nueva;
+        LocalDateTime desde = ahora.minusHours(horizonteHoras);
+        List<Object[]> pendientes = citaRepository.findPendientesCicloVida(desde, cargadoHasta);
+        pendientes.forEach(fila -> programar(nueva, (Long) fila[0], (LocalDateTime) fila[1], (Cita.EstadoCita) fila[2]));
+        System.out.println("=== Ciclo de vida de citas: " + pendientes.size() + " citas pendientes recuperadas");
+        long anteriores = citaRepository.countPendientesCicloVidaAntes(desde);
+        if (anteriores > 0) {
+            System.out.println("⚠️ Ciclo de vida de citas: " + anteriores + " citas pendientes anteriores a " + desde
+                    + " no se actualizan automáticamente");
+        }
+    }
+
+    /**
+     * Programa las transiciones de una cita recién guardada si vence dentro del horizonte cargado.
+     */
+    public void programar(Cita cita) {
+        RuedaTemporal<Evento> actual = rueda;
+        if (actual == null || cita == null || cita.getId() == null || cita.getFechaHora() == null) {
+            return;
+        }
+        if (cita.getFechaHora().isBefore(cargadoHasta)) {
+            programar(actual, cita.getId(), cita.getFechaHora(), cita.getEstado());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.citas.ciclo-vida.tick-ms:30000}")
+    public void tic() {
+        RuedaTemporal<Evento> actual = rueda;
+        if (actual == null) {
+            return;
+        }
+        try {
+            LocalDateTime ahora = LocalDateTime.now();
+            ampliarHorizonte(actual, ahora);
+
+            List<Long> inicios = new ArrayList<>();
+            List<Long> ausencias = new ArrayList<>();
+            for (Evento evento : actual.avanzarHasta(minutoActual(ahora))) {
+                (evento.transicion() == Transicion.INICIO ? inicios : ausencias).add(evento.citaId());
+            }
+            aplicar(Transicion.INICIO, inicios, ahora);
+            aplicar(Transicion.AUSENCIA, ausencias, ahora.minusMinutes(graciaMinutos));
+        } catch (Exception e) {
+            System.err.println("❌ Error en el ciclo de vida de citas: " + e.getMessage());
+        }
+    }
+
+    // Carga con una consulta por rango las citas que entran en el horizonte desde el último tic
+    private void ampliarHorizonte(RuedaTemporal<Evento> actual, LocalDateTime ahora) {
+        LocalDateTime desde = cargadoHasta;
+        LocalDateTime hasta = ahora.plusHours(horizonteHoras);
+        if (!hasta.isAfter(desde.plusHours(1))) {
+            return;
+        }
+        // Se publica antes de consultar: una cita guardada a partir de aquí se programa sola
+        cargadoHasta = hasta;
+        citaRepository.findPendientesCicloVida(desde, hasta)
+                .forEach(fila -> programar(actual, (Long) fila[0], (LocalDateTime) fila[1], (Cita.EstadoCita) fila[2]));
+    }
+
+    private void aplicar(Transicion transicion, List<Long> ids, LocalDateTime limite) {
+        for (int i = 0; i < ids.size(); i += TAMANIO_LOTE) {
+            List<Long> lote = ids.subList(i, Math.min(ids.size(), i + TAMANIO_LOTE));
+            int actualizadas = citaRepository.actualizarEstadoEnLote(lote, transicion.desde, transicion.hacia, limite);
+            if (actualizadas == 0) {
+                continue;
+            }
+            System.out.println("=== " + actualizadas + " citas pasaron de " + transicion.desde + " a " + transicion.hacia);
+            List<Long> cambiadas = new ArrayList<>();
+            for (Object[] fila : citaRepository.findCambiosDeEstado(lote, transicion.hacia)) {
+                cambiadas.add((Long) fila[0]);
+                estadisticasService.aplicarTransicion((Long) fila[1], transicion.desde, transicion.hacia);
+                resumenCitasService.aplicarTransicion((Long) fila[1], (String) fila[2], (LocalDateTime) fila[3],
+                        transicion.desde, transicion.hacia);
+                // El PDF de historia clínica muestra el estado de las citas
+                cacheHistoriasPdfService.registrarCambio((Long) fila[4]);
+            }
+            if (!OcupacionHorariosService.ocupaHorario(transicion.hacia)) {
+                // El horario queda libre: se quita del índice de ocupación
+                cambiadas.forEach(ocupacionHorariosService::eliminar);
+            }
+            citasHoyService.refrescar(cambiadas);
+        }
+    }
+
+    private void programar(RuedaTemporal<Evento> destino, Long citaId, LocalDateTime fechaHora, Cita.EstadoCita estado) {
+        if (estado == Cita.EstadoCita.CONFIRMADA) {
+            destino.programar(minutoDe(fechaHora), new Evento(citaId, Transicion.INICIO));
+        } else if (estado == Cita.EstadoCita.PROGRAMADA) {
+            destino.programar(minutoDe(fechaHora.plusMinutes(graciaMinutos)), new Evento(citaId, Transicion.AUSENCIA));
+        }
+    }
+
+    // Minuto absoluto del vencimiento, redondeado hacia arriba para no disparar antes de la hora exacta
+    private static long minutoDe(LocalDateTime fechaHora) {
+        return Math.floorDiv(fechaHora.toEpochSecond(ZoneOffset.UTC) + 59, 60);
+    }
+
+    private static long minutoActual(LocalDateTime ahora) {
+        return Math.floorDiv(ahora.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+}
@@ -1,7 +1,10 @@
 package com.veterinaria.veterinaria.service;
 
+import com.veterinaria.veterinaria.dto.AgendaDiaDTO;
+import com.veterinaria.veterinaria.dto.CitaResponse;
 import com.veterinaria.veterinaria.dto.HorarioDisponibleDTO;
 import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Usuario;
 import com.veterinaria.veterinaria.repository.CitaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -10,17 +13,32 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class CitaService {
     
+    public static final int MAX_DIAS_AGENDA = 62;
+    
     @Autowired
     private CitaRepository citaRepository;
     
+    @Autowired
+    private OcupacionHorariosService ocupacionHorariosService;
+    
+    @Autowired
+    private HorarioAtencionService horarioAtencionService;
+    
+    @Autowired
+    private CicloVidaCitasService cicloVidaCitasService;
+    
+    @Autowired
+    private CitasHoyService citasHoyService;
+    
     public List<Cita> findAll() {
         return citaRepository.findAll();
     }
@@ -66,26 +84,33 @@ public class CitaService {
     }
     
     public List<Cita> findCitasDeHoy() {
-        return citaRepository.findCitasDeHoyWithRelations();
+        LocalDateTime inicio = LocalDate.now().atStartOfDay();
+        return citaRepository.findCitasDelRangoWithRelations(inicio, inicio.plusDays(1));
     }
     
     public Cita save(Cita cita) {
-        return citaRepository.save(cita);
+        Cita saved = citaRepository.save(cita);
+        ocupacionHorariosService.registrar(saved);
+        cicloVidaCitasService.programar(saved);
+        citasHoyService.registrar(saved);
+        return saved;
     }
     
     public Cita update(Cita cita) {
-        return citaRepository.save(cita);
+        return save(cita);
     }
     
     public void deleteById(Long id) {
         citaRepository.deleteById(id);
+        ocupacionHorariosService.eliminar(id);
+        citasHoyService.eliminar(id);
     }
     
     public Cita updateEstado(Long id, Cita.EstadoCita nuevoEstado) {
         Optional<Cita> cita = citaRepository.findById(id);
         if (cita.isPresent()) {
             cita.get().setEstado(nuevoEstado);
-            return citaRepository.save(cita.get());
+            return save(cita.get());
         }
         throw new RuntimeException("Cita no encontrada con ID: " + id);
     }
@@ -107,7 +132,11 @@ public class CitaService {
     }
     
     public long countCitasHoy() {
-        return citaRepository.findCitasDeHoy().size();
+        return citasHoyService.countCitasHoy();
+    }
+    
+    public long countCitasHoy(Long veterinariaId) {
+        return citasHoyService.countCitasHoy(veterinariaId);
     }
     
     public long countByEstado(Cita.EstadoCita estado) {
@@ -118,36 +147,159 @@ public class CitaService {
         return citaRepository.findByVeterinariaId(veterinariaId);
     }
     
-    // Métodos para verificar disponibilidad
+    // Métodos para verificar disponibilidad (la cita ocupa [fechaHora, fechaHora + duración))
     public boolean isHorarioDisponible(LocalDateTime fechaHora, Long veterinariaId) {
-        return !citaRepository.existsCitaEnHorario(fechaHora, veterinariaId);
+        return isHorarioDisponible(fechaHora, OcupacionHorariosService.DURACION_POR_DEFECTO, veterinariaId);
+    }
+    
+    public boolean isHorarioDisponible(LocalDateTime fechaHora, int duracionMinutos, Long veterinariaId) {
+        return ocupacionHorariosService.isHorarioDisponible(fechaHora, duracionMinutos, veterinariaId);
+    }
+    
+    public boolean isHorarioDisponible(LocalDateTime fechaHora, int duracionMinutos, Long veterinariaId, Long excluirCitaId) {
+        return ocupacionHorariosService.isHorarioDisponible(fechaHora, duracionMinutos, veterinariaId, excluirCitaId);
     }
     
     public boolean isHorarioDisponibleParaVeterinario(LocalDateTime fechaHora, String veterinarioDocumento) {
-        return !citaRepository.existsCitaEnHorarioParaVeterinario(fechaHora, veterinarioDocumento);
+        return isHorarioDisponibleParaVeterinario(fechaHora, OcupacionHorariosService.DURACION_POR_DEFECTO, veterinarioDocumento);
+    }
+    
+    public boolean isHorarioDisponibleParaVeterinario(LocalDateTime fechaHora, int duracionMinutos, String veterinarioDocumento) {
+        return ocupacionHorariosService.isHorarioDisponibleParaVeterinario(fechaHora, duracionMinutos, veterinarioDocumento);
+    }
+    
+    public boolean isHorarioDisponibleParaVeterinario(LocalDateTime fechaHora, int duracionMinutos, String veterinarioDocumento,
+                                                      Long excluirCitaId) {
+        return ocupacionHorariosService.isHorarioDisponibleParaVeterinario(fechaHora, duracionMinutos, veterinarioDocumento, excluirCitaId);
     }
     
     public List<HorarioDisponibleDTO> getHorariosDisponibles(LocalDate fecha, Long veterinariaId) {
-        List<HorarioDisponibleDTO> horarios = new ArrayList<>();
+        return getHorariosDisponibles(fecha, veterinariaId, OcupacionHorariosService.DURACION_POR_DEFECTO);
+    }
+    
+    public List<HorarioDisponibleDTO> getHorariosDisponibles(LocalDate fecha, Long veterinariaId, int duracionMinutos) {
+        // Franjas del día según el horario de atención compilado de la veterinaria
+        HorarioSemanal.Plantilla plantilla = horarioAtencionService.getHorario(veterinariaId).plantillaDe(fecha);
+        List<HorarioDisponibleDTO> horarios = new ArrayList<>(plantilla.inicios.length);
+        if (plantilla.isCerrado()) {
+            return horarios;
+        }
         
-        // Horario de atención: 8:00 AM a 6:00 PM, intervalos de 30 minutos
-        LocalTime horaInicio = LocalTime.of(8, 0);
-        LocalTime horaFin = LocalTime.of(18, 0);
+        // Ocupación del día desde el índice en memoria (se carga con una sola consulta si está frío)
+        IntervalosOcupados ocupados = ocupacionHorariosService.getOcupacionDia(fecha, veterinariaId);
         
-        LocalTime horaActual = horaInicio;
-        while (horaActual.isBefore(horaFin)) {
-            LocalDateTime fechaHora = LocalDateTime.of(fecha, horaActual);
-            boolean disponible = isHorarioDisponible(fechaHora, veterinariaId);
-            horarios.add(new HorarioDisponibleDTO(fechaHora, disponible));
-            horaActual = horaActual.plusMinutes(30);
+        for (int i = 0; i < plantilla.inicios.length; i++) {
+            int inicio = plantilla.inicios[i];
+            // Disponible si la cita completa cabe antes del cierre del tramo y no solapa con otra
+            boolean disponible = inicio + duracionMinutos <= plantilla.cierres[i]
+                    && !ocupados.solapa(inicio, inicio + duracionMinutos);
+            horarios.add(new HorarioDisponibleDTO(LocalDateTime.of(fecha, plantilla.horas[i]), disponible));
         }
         
         return horarios;
     }
     
+    /**
+     * Primer horario libre del veterinario a partir de desde, dentro del horario de atención
+     * de su veterinaria.
+     */
+    public Optional<LocalDateTime> buscarProximoHuecoVeterinario(String veterinarioDocumento, LocalDateTime desde,
+                                                                 int duracionMinutos, int maxDias) {
+        HorarioSemanal horario = horarioAtencionService.getHorarioDeVeterinario(veterinarioDocumento);
+        for (int d = 0; d < maxDias; d++) {
+            LocalDate fecha = desde.toLocalDate().plusDays(d);
+            for (int[] tramo : horario.plantillaDe(fecha).tramos) {
+                LocalDateTime apertura = fecha.atStartOfDay().plusMinutes(tramo[0]);
+                LocalDateTime inicio = desde.isAfter(apertura) ? desde : apertura;
+                LocalDateTime cierre = fecha.atStartOfDay().plusMinutes(tramo[1]);
+                if (!inicio.isBefore(cierre)) {
+                    continue;
+                }
+                Optional<LocalDateTime> hueco = ocupacionHorariosService.buscarHuecoParaVeterinario(
+                        veterinarioDocumento, inicio, cierre, duracionMinutos);
+                if (hueco.isPresent()) {
+                    return hueco;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+    
     public List<Cita> getCitasDelDia(LocalDate fecha, Long veterinariaId) {
-        LocalDateTime fechaHora = LocalDateTime.of(fecha, LocalTime.of(0, 0));
-        return citaRepository.findCitasDelDia(fechaHora, veterinariaId);
+        return citaRepository.findCitasDelDia(fecha.atStartOfDay(), fecha.plusDays(1).atStartOfDay(), veterinariaId);
+    }
+    
+    // Agenda de varios días: una consulta por rango y un solo recorrido lineal
+    public List<AgendaDiaDTO> getAgendaPorVeterinaria(LocalDate desde, int dias, Long veterinariaId) {
+        List<Cita> citas = citaRepository.findAgendaPorVeterinaria(
+                veterinariaId, inicioAgenda(desde), desde.plusDays(dias).atStartOfDay());
+        return construirAgenda(desde, dias, citas, horarioAtencionService.getHorario(veterinariaId));
+    }
+    
+    public List<AgendaDiaDTO> getAgendaPorVeterinario(LocalDate desde, int dias, String veterinarioDocumento) {
+        List<Cita> citas = citaRepository.findAgendaPorVeterinario(
+                veterinarioDocumento, inicioAgenda(desde), desde.plusDays(dias).atStartOfDay());
+        return construirAgenda(desde, dias, citas, horarioAtencionService.getHorarioDeVeterinario(veterinarioDocumento));
+    }
+    
+    // Incluye las citas del día anterior que pueden prolongarse hasta el primer día
+    private static LocalDateTime inicioAgenda(LocalDate desde) {
+        return desde.atStartOfDay().minusMinutes(OcupacionHorariosService.MAX_DURACION_MINUTOS);
+    }
+    
+    private List<AgendaDiaDTO> construirAgenda(LocalDate desde, int dias, List<Cita> citas, HorarioSemanal horario) {
+        List<AgendaDiaDTO> agenda = new ArrayList<>(dias);
+        Map<Long, Cita> citasPorId = new HashMap<>();
+        int primera = 0;   // primera cita que todavía puede ocupar el día actual
+        int siguiente = 0; // primera cita que empieza después del día actual
+        
+        for (int d = 0; d < dias; d++) {
+            LocalDate fecha = desde.plusDays(d);
+            LocalDateTime inicioDia = fecha.atStartOfDay();
+            LocalDateTime finDia = fecha.plusDays(1).atStartOfDay();
+            LocalDateTime limiteSolape = inicioDia.minusMinutes(OcupacionHorariosService.MAX_DURACION_MINUTOS);
+            AgendaDiaDTO dia = new AgendaDiaDTO(fecha);
+            
+            // Las citas vienen ordenadas por fecha_hora: cada una entra y sale de la ventana una sola vez
+            while (primera < citas.size() && citas.get(primera).getFechaHora().isBefore(limiteSolape)) {
+                primera++;
+            }
+            while (siguiente < citas.size() && citas.get(siguiente).getFechaHora().isBefore(finDia)) {
+                siguiente++;
+            }
+            
+            IntervalosOcupados ocupados = new IntervalosOcupados();
+            for (int i = primera; i < siguiente; i++) {
+                Cita cita = citas.get(i);
+                int[] tramo = IntervalosOcupados.tramoDelDia(fecha, cita.getFechaHora(),
+                        cita.getFechaHora().plusMinutes(OcupacionHorariosService.duracionDe(cita)));
+                if (tramo != null) {
+                    ocupados.agregar(cita.getId(), tramo[0], tramo[1]);
+                    citasPorId.put(cita.getId(), cita);
+                }
+                if (!cita.getFechaHora().isBefore(inicioDia)) {
+                    dia.getCitas().add(new CitaResponse(cita));
+                }
+            }
+            
+            HorarioSemanal.Plantilla plantilla = horario.plantillaDe(fecha);
+            for (int s = 0; s < plantilla.inicios.length; s++) {
+                LocalDateTime fechaHora = LocalDateTime.of(fecha, plantilla.horas[s]);
+                int inicio = plantilla.inicios[s];
+                int fin = Math.min(inicio + horario.getMinutosSlot(), plantilla.cierres[s]);
+                Long citaId = ocupados.citaQueSolapa(inicio, fin);
+                Usuario veterinario = citaId != null ? citasPorId.get(citaId).getVeterinario() : null;
+                if (veterinario != null) {
+                    dia.getHorarios().add(new HorarioDisponibleDTO(fechaHora, false,
+                            veterinario.getNombres() + " " + veterinario.getApellidos(), veterinario.getDocumento()));
+                } else {
+                    dia.getHorarios().add(new HorarioDisponibleDTO(fechaHora, citaId == null));
+                }
+            }
+            
+            agenda.add(dia);
+        }
+        
+        return agenda;
     }
 }
-
@@ -0,0 +1,232 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.CitaResponse;
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Citas del día actual en memoria, con un contador por veterinaria.
+ * Se cargan con una consulta por rango la primera vez que se piden en el día y después
+ * se mantienen con cada escritura de citas, de modo que el dashboard y /api/citas/hoy
+ * no consultan la tabla. A medianoche se descarta el día anterior.
+ * Las lecturas de la base de datos se hacen fuera del lock: la carga del día se repite si
+ * hubo escrituras mientras tanto, y cada relectura de una cita lleva un turno por id para
+ * que una respuesta lenta no pise la de una relectura posterior.
+ */
+@Service
+public class CitasHoyService {
+
+    private static final int MAX_INTENTOS_CARGA = 3;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    private final Object lock = new Object();
+
+    // Día cargado; null si hay que cargarlo de nuevo
+    private LocalDate fecha;
+    private final Map<Long, CitaResponse> citas = new LinkedHashMap<>();
+    private final Map<Long, Integer> contadorPorVeterinaria = new HashMap<>();
+
+    // Se incrementa con cada escritura para descartar cargas del día concurrentes
+    private long generacion;
+
+    // Relecturas en curso: último turno pedido por cada cita; solo ese turno puede aplicarse
+    private long ultimoTurno;
+    private final Map<Long, Long> turnoPorCita = new HashMap<>();
+
+    // ==================== CONSULTAS ====================
+
+    public List<CitaResponse> getCitasDeHoy() {
+        return consultar(() -> {
+            List<CitaResponse> resultado = new ArrayList<>(citas.values());
+            resultado.sort(Comparator.comparing(CitaResponse::getFechaHora));
+            return resultado;
+        });
+    }
+
+    public List<CitaResponse> getCitasDeHoy(Long veterinariaId) {
+        return consultar(() -> {
+            List<CitaResponse> resultado = new ArrayList<>();
+            for (CitaResponse cita : citas.values()) {
+                if (Objects.equals(cita.getVeterinariaId(), veterinariaId)) {
+                    resultado.add(cita);
+                }
+            }
+            resultado.sort(Comparator.comparing(CitaResponse::getFechaHora));
+            return resultado;
+        });
+    }
+
+    public long countCitasHoy() {
+        return consultar(() -> (long) citas.size());
+    }
+
+    public long countCitasHoy(Long veterinariaId) {
+        return consultar(() -> (long) contadorPorVeterinaria.getOrDefault(veterinariaId, 0));
+    }
+
+    // ==================== ACTUALIZACIÓN ====================
+
+    /**
+     * Refleja una cita recién guardada: entra, se actualiza o sale de la lista de hoy.
+     */
+    public void registrar(Cita cita) {
+        if (cita == null || cita.getId() == null) {
+            return;
+        }
+        synchronized (lock) {
+            generacion++;
+            if (fecha == null) {
+                return;
+            }
+            if (cita.getFechaHora() == null || !fecha.equals(cita.getFechaHora().toLocalDate())) {
+                descartar(cita.getId());
+                return;
+            }
+        }
+        // La cita es de hoy: se relee con sus relaciones para no guardar proxies sin inicializar
+        refrescar(List.of(cita.getId()));
+    }
+
+    /**
+     * Relee de la base de datos las citas indicadas (p. ej. tras un UPDATE en lote).
+     */
+    public void refrescar(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> turnos = new HashMap<>();
+        synchronized (lock) {
+            generacion++;
+            if (fecha == null) {
+                return;
+            }
+            for (Long id : ids) {
+                turnos.put(id, ++ultimoTurno);
+                turnoPorCita.put(id, ultimoTurno);
+            }
+        }
+        Map<Long, CitaResponse> releidas = new HashMap<>();
+        for (Cita cita : citaRepository.findByIdInWithRelations(ids)) {
+            releidas.put(cita.getId(), new CitaResponse(cita));
+        }
+        synchronized (lock) {
+            if (fecha == null) {
+                return;
+            }
+            for (Map.Entry<Long, Long> turno : turnos.entrySet()) {
+                Long id = turno.getKey();
+                // Otra relectura posterior, una eliminación o el cambio de día dejan obsoleta esta
+                if (!turno.getValue().equals(turnoPorCita.get(id))) {
+                    continue;
+                }
+                turnoPorCita.remove(id);
+                quitar(id);
+                CitaResponse releida = releidas.get(id);
+                if (releida != null && fecha.equals(releida.getFechaHora().toLocalDate())) {
+                    poner(releida);
+                }
+            }
+        }
+    }
+
+    public void eliminar(Long citaId) {
+        synchronized (lock) {
+            generacion++;
+            descartar(citaId);
+        }
+    }
+
+    @Scheduled(cron = "0 0 0 * * *")
+    public void cambiarDeDia() {
+        synchronized (lock) {
+            generacion++;
+            fecha = null;
+            citas.clear();
+            contadorPorVeterinaria.clear();
+            turnoPorCita.clear();
+        }
+    }
+
+    // ==================== INTERNOS ====================
+
+    // Ejecuta la consulta bajo el lock con el día de hoy cargado; la carga se hace fuera del lock
+    private <T> T consultar(Supplier<T> consulta) {
+        for (int intento = 1; ; intento++) {
+            LocalDate hoy = LocalDate.now();
+            long generacionInicial;
+            synchronized (lock) {
+                if (hoy.equals(fecha)) {
+                    return consulta.get();
+                }
+                generacionInicial = generacion;
+                if (intento > MAX_INTENTOS_CARGA) {
+                    // Escrituras continuas durante la carga: se carga bajo el lock como último recurso
+                    instalar(hoy, cargar(hoy));
+                    return consulta.get();
+                }
+            }
+            List<CitaResponse> delDia = cargar(hoy);
+            synchronized (lock) {
+                if (hoy.equals(fecha)) {
+                    return consulta.get();
+                }
+                // Si hubo escrituras mientras se cargaba, el resultado puede estar desactualizado
+                if (generacion == generacionInicial) {
+                    instalar(hoy, delDia);
+                    return consulta.get();
+                }
+            }
+        }
+    }
+
+    private List<CitaResponse> cargar(LocalDate dia) {
+        LocalDateTime inicio = dia.atStartOfDay();
+        List<CitaResponse> delDia = new ArrayList<>();
+        for (Cita cita : citaRepository.findCitasDelRangoWithRelations(inicio, inicio.plusDays(1))) {
+            delDia.add(new CitaResponse(cita));
+        }
+        return delDia;
+    }
+
+    private void instalar(LocalDate dia, List<CitaResponse> delDia) {
+        citas.clear();
+        contadorPorVeterinaria.clear();
+        turnoPorCita.clear();
+        delDia.forEach(this::poner);
+        fecha = dia;
+    }
+
+    // Quita la cita y anula cualquier relectura en curso que pudiera volver a ponerla
+    private void descartar(Long citaId) {
+        turnoPorCita.remove(citaId);
+        quitar(citaId);
+    }
+
+    private void poner(CitaResponse cita) {
+        citas.put(cita.getId(), cita);
+        contadorPorVeterinaria.merge(cita.getVeterinariaId(), 1, Integer::sum);
+    }
+
+    private void quitar(Long citaId) {
+        CitaResponse anterior = citas.remove(citaId);
+        if (anterior != null) {
+            contadorPorVeterinaria.computeIfPresent(anterior.getVeterinariaId(), (id, n) -> n > 1 ? n - 1 : null);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.FiltroReporteCitas;
+import com.veterinaria.veterinaria.dto.ReporteCitaDTO;
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.CitaSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Consulta del reporte de citas: cualquier combinación de filtros de {@link FiltroReporteCitas}
+ * se traduce en una única consulta SQL que devuelve directamente {@link ReporteCitaDTO}, sin
+ * cargar entidades ni sus relaciones. La usan los endpoints JSON, CSV y PDF de reportes.
+ */
+@Service
+public class ConsultaReporteCitasService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    public List<ReporteCitaDTO> buscar(FiltroReporteCitas filtro) {
+        return crearConsulta(filtro, Sort.unsorted()).getResultList();
+    }
+
+    public Page<ReporteCitaDTO> buscar(FiltroReporteCitas filtro, Pageable pageable) {
+        TypedQuery<ReporteCitaDTO> consulta = crearConsulta(filtro, pageable.getSort());
+        if (pageable.isPaged()) {
+            consulta.setFirstResult((int) pageable.getOffset());
+            consulta.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(consulta.getResultList(), pageable, () -> contar(filtro));
+    }
+
+    public long contar(FiltroReporteCitas filtro) {
+        return citaRepository.count(CitaSpecifications.deFiltro(filtro));
+    }
+
+    /**
+     * Recorre las filas del reporte una a una sin cargarlo entero en memoria (para exportaciones).
+     */
+    @Transactional(readOnly = true)
+    public void recorrer(FiltroReporteCitas filtro, Consumer<ReporteCitaDTO> consumidor) {
+        TypedQuery<ReporteCitaDTO> consulta = crearConsulta(filtro, Sort.unsorted());
+        // Con MySQL, un fetch size de Integer.MIN_VALUE hace que el driver entregue las filas de una en una
+        consulta.setHint(HibernateHints.HINT_FETCH_SIZE, Integer.MIN_VALUE);
+        try (Stream<ReporteCitaDTO> filas = consulta.getResultStream()) {
+            filas.forEach(consumidor);
+        }
+    }
+
+    private TypedQuery<ReporteCitaDTO> crearConsulta(FiltroReporteCitas filtro, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ReporteCitaDTO> query = cb.createQuery(ReporteCitaDTO.class);
+        Root<Cita> cita = query.from(Cita.class);
+        Join<Cita, ?> cliente = CitaSpecifications.join(cita, "cliente", JoinType.INNER);
+        Join<Cita, ?> mascota = CitaSpecifications.join(cita, "mascota", JoinType.INNER);
+        Join<Cita, ?> veterinario = CitaSpecifications.join(cita, "veterinario", JoinType.LEFT);
+        Join<Cita, ?> veterinaria = CitaSpecifications.join(cita, "veterinaria", JoinType.LEFT);
+
+        query.select(cb.construct(ReporteCitaDTO.class,
+                cita.get("id"), cita.get("fechaHora"), cita.get("motivo"), cita.get("estado"),
+                cliente.get("documento"), cliente.get("nombres"), cliente.get("apellidos"),
+                mascota.get("id"), mascota.get("nombre"), mascota.get("especie"),
+                veterinario.get("documento"), veterinario.get("nombres"), veterinario.get("apellidos"),
+                veterinaria.get("nombre"), cita.get("fechaCreacion")));
+
+        Predicate condiciones = CitaSpecifications.deFiltro(filtro).toPredicate(cita, query, cb);
+        if (condiciones != null) {
+            query.where(condiciones);
+        }
+
+        // Orden pedido (si lo hay) y después cronológico, con el id para que la paginación sea estable
+        List<Order> ordenes = new ArrayList<>(QueryUtils.toOrders(sort, cita, cb));
+        ordenes.add(cb.asc(cita.get("fechaHora")));
+        ordenes.add(cb.asc(cita.get("id")));
+        query.orderBy(ordenes);
+        return entityManager.createQuery(query);
+    }
+}
@@ -0,0 +1,127 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.DashboardStatsResponse;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.service.EstadisticasService.Metrica;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dashboard acotado a un conjunto de veterinarias (la del usuario, o las que creó un admin).
+ * Los contadores en memoria de {@link EstadisticasService} se leen directamente; solo las citas
+ * de hoy, que pueden ir a la base de datos, se calculan en un pool con un plazo por petición.
+ * Si no terminan a tiempo se responde con su último valor conocido (o sin valor) y se marcan
+ * como desactualizadas, en lugar de hacer fallar toda la respuesta.
+ */
+@Service
+public class DashboardService {
+
+    private static final String CITAS_HOY = "CITAS_HOY";
+
+    // Alcances (listas de veterinarias) de los que se recuerda el último valor de citas de hoy
+    private static final int MAX_ALCANCES = 1000;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @Autowired
+    private CitasHoyService citasHoyService;
+
+    @Value("${app.dashboard.plazo-ms:500}")
+    private long plazoMs;
+
+    @Value("${app.dashboard.hilos:4}")
+    private int hilos;
+
+    // Java 17 no tiene hilos virtuales: pool acotado de hilos daemon para las citas de hoy
+    private ExecutorService executor;
+
+    // Último valor de citas de hoy por alcance, para respuestas parciales (LRU acotado)
+    private final Map<String, Long> ultimosValores = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_ALCANCES;
+                }
+            });
+
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "dashboard-citas-hoy-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    public DashboardStatsResponse getStats(List<Veterinaria> veterinarias) {
+        List<Long> ids = veterinarias.stream().map(Veterinaria::getId).sorted().toList();
+        String alcance = ids.toString();
+
+        Future<Long> futuroCitasHoy = executor.submit(() -> ids.stream().mapToLong(citasHoyService::countCitasHoy).sum());
+
+        // Mientras tanto, los contadores en memoria y las entidades (en el hilo de la petición,
+        // que es el que tiene la sesión abierta)
+        DashboardStatsResponse stats = new DashboardStatsResponse(
+            sumar(ids, Metrica.USUARIOS), sumar(ids, Metrica.USUARIOS_ACTIVOS),
+            sumar(ids, Metrica.MASCOTAS), sumar(ids, Metrica.MASCOTAS_ACTIVAS),
+            sumar(ids, Metrica.CITAS), null, sumar(ids, Metrica.CITAS_PROGRAMADAS), sumar(ids, Metrica.CITAS_CONFIRMADAS),
+            veterinarias.size(), veterinarias.stream().filter(v -> Boolean.TRUE.equals(v.getActivo())).count()
+        );
+
+        List<String> desactualizados = new ArrayList<>();
+        try {
+            Long citasHoy = futuroCitasHoy.get(plazoMs, TimeUnit.MILLISECONDS);
+            ultimosValores.put(alcance, citasHoy);
+            stats.setCitasHoy(citasHoy);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futuroCitasHoy.cancel(true);
+            stats.setCitasHoy(valorAnterior(alcance, desactualizados));
+        } catch (Exception e) {
+            // Plazo vencido o fallo de la consulta: se responde con el último valor conocido
+            futuroCitasHoy.cancel(true);
+            System.err.println("⚠️ Dashboard " + alcance + ": citas de hoy sin respuesta (" + e.getClass().getSimpleName() + ")");
+            stats.setCitasHoy(valorAnterior(alcance, desactualizados));
+        }
+
+        stats.setVeterinariaIds(ids);
+        stats.setParcial(!desactualizados.isEmpty());
+        stats.setAgregadosDesactualizados(desactualizados);
+        return stats;
+    }
+
+    private long sumar(List<Long> veterinariaIds, Metrica metrica) {
+        long total = 0;
+        for (Long id : veterinariaIds) {
+            total += estadisticasService.get(id, metrica);
+        }
+        return total;
+    }
+
+    // null si nunca se llegó a calcular para este alcance
+    private Long valorAnterior(String alcance, List<String> desactualizados) {
+        desactualizados.add(CITAS_HOY);
+        return ultimosValores.get(alcance);
+    }
+}
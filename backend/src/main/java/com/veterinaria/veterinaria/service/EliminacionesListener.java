@@ -0,0 +1,41 @@
+package com.veterinaria.veterinaria.service;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.sql.PreparedStatement;
+
+/**
+ * Listener de Hibernate que deja una marca en {@code eliminaciones} por cada cita, mascota o
+ * historia clínica borrada, también las que se borran en cascada. Se inserta con la conexión
+ * de la sesión, dentro de la misma transacción que el borrado, y con la hora de la base de
+ * datos, la misma que usa {@code fecha_actualizacion}.
+ */
+class EliminacionesListener implements PostDeleteEventListener {
+
+    private static final String INSERTAR =
+            "INSERT INTO eliminaciones (entidad, entidad_id, fecha_eliminacion) VALUES (?, ?, CURRENT_TIMESTAMP(3))";
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        ExportacionIncrementalService.Entidad entidad =
+                ExportacionIncrementalService.Entidad.deClase(event.getPersister().getMappedClass());
+        if (entidad == null) {
+            return;
+        }
+        // JDBC directo: una consulta de Hibernate aquí podría provocar un flush dentro del flush
+        event.getSession().doWork(conexion -> {
+            try (PreparedStatement insercion = conexion.prepareStatement(INSERTAR)) {
+                insercion.setString(1, entidad.name());
+                insercion.setLong(2, ((Number) event.getId()).longValue());
+                insercion.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
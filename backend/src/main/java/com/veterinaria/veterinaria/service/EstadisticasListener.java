@@ -0,0 +1,65 @@
+package com.veterinaria.veterinaria.service;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Listener de Hibernate que mantiene los contadores de {@link EstadisticasService}.
+ * El aporte anterior de una entidad se calcula con el estado que Hibernate tenía cargado
+ * (oldState / deletedState), así que las entidades no guardan nada para las estadísticas.
+ * Los cambios se entregan al servicio, que los aplica al confirmar la transacción.
+ */
+class EstadisticasListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EstadisticasService servicio;
+
+    EstadisticasListener(EstadisticasService servicio) {
+        this.servicio = servicio;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        servicio.registrarCambio(null, aporteDe(event.getPersister(), event.getState()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        // Sin estado anterior (entidad actualizada sin cargar) no hay diferencia que aplicar;
+        // lo corrige la reconciliación
+        if (event.getOldState() == null) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        servicio.registrarCambio(aporteDe(persister, event.getOldState()), aporteDe(persister, event.getState()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getDeletedState() == null) {
+            return;
+        }
+        servicio.registrarCambio(aporteDe(event.getPersister(), event.getDeletedState()), null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private static EstadisticasService.Aporte aporteDe(EntityPersister persister, Object[] estado) {
+        String[] propiedades = persister.getPropertyNames();
+        return EstadisticasService.aporteDe(persister.getMappedClass(), nombre -> {
+            for (int i = 0; i < propiedades.length; i++) {
+                if (propiedades[i].equals(nombre)) {
+                    return estado[i];
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,428 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Contadores del dashboard en memoria: uno global y uno por veterinaria (las mascotas cuentan
+ * en la veterinaria de su propietario).
+ * {@link EstadisticasListener} los ajusta en cada alta, cambio o baja de usuarios, mascotas,
+ * citas y veterinarias, y los UPDATE en lote avisan con {@link #aplicarTransicion}. Los ajustes
+ * se aplican al confirmar la transacción, así que un rollback no los mueve. Lo que no pasa por
+ * Hibernate (borrados en cascada de la base de datos, un usuario que se cambia de veterinaria
+ * con sus mascotas) lo corrige la reconciliación periódica, que suma a cada contador la
+ * diferencia con las consultas agrupadas sin descartar los ajustes que llegan mientras tanto.
+ */
+@Service
+public class EstadisticasService {
+
+    public enum Metrica {
+        USUARIOS, USUARIOS_ACTIVOS,
+        MASCOTAS, MASCOTAS_ACTIVAS,
+        CITAS, CITAS_PROGRAMADAS, CITAS_CONFIRMADAS,
+        VETERINARIAS, VETERINARIAS_ACTIVAS;
+
+        int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    private static final int NUM_METRICAS = Metrica.values().length;
+
+    /**
+     * Lo que una entidad suma a los contadores: un conjunto de métricas (máscara de bits)
+     * dentro de la veterinaria indicada (null si solo cuenta en el global).
+     */
+    record Aporte(Long veterinariaId, int metricas) {}
+
+    // Sustitución de un aporte por otro, pendiente de aplicar
+    private record Cambio(Aporte anterior, Aporte nuevo) {}
+
+    private static final class Contadores {
+        final AtomicLongArray global = new AtomicLongArray(NUM_METRICAS);
+        final ConcurrentHashMap<Long, AtomicLongArray> porVeterinaria = new ConcurrentHashMap<>();
+
+        void sumar(Long veterinariaId, Metrica metrica, long delta) {
+            global.addAndGet(metrica.ordinal(), delta);
+            if (veterinariaId != null) {
+                porVeterinaria.computeIfAbsent(veterinariaId, id -> new AtomicLongArray(NUM_METRICAS))
+                        .addAndGet(metrica.ordinal(), delta);
+            }
+        }
+    }
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private static final int MAX_INTENTOS_PRIMERA_CARGA = 3;
+
+    // Recurso de la transacción en curso con los ajustes pendientes de aplicar
+    private static final Object PENDIENTES = new Object();
+
+    private volatile Contadores contadores;
+
+    // Los ajustes toman el lock de lectura; la reconciliación toma el de escritura solo para
+    // fotografiar los contadores al empezar y para sumar las diferencias al terminar
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    // Contadores que recibieron ajustes durante la reconciliación en curso (null si no hay ninguna)
+    private Contadores tocados;
+
+    private final Object reconciliacion = new Object();
+
+    private volatile boolean cargado;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        EventListenerRegistry registro = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        EstadisticasListener listener = new EstadisticasListener(this);
+        registro.appendListeners(EventType.POST_INSERT, listener);
+        registro.appendListeners(EventType.POST_UPDATE, listener);
+        registro.appendListeners(EventType.POST_DELETE, listener);
+        try {
+            cargarSiHaceFalta();
+        } catch (IllegalStateException e) {
+            System.err.println("❌ Error al cargar estadísticas: " + e.getCause().getMessage());
+        }
+    }
+
+    // ==================== CONSULTAS ====================
+
+    public long get(Metrica metrica) {
+        return actuales().global.get(metrica.ordinal());
+    }
+
+    public long get(Long veterinariaId, Metrica metrica) {
+        AtomicLongArray valores = actuales().porVeterinaria.get(veterinariaId);
+        return valores != null ? valores.get(metrica.ordinal()) : 0;
+    }
+
+    // ==================== ACTUALIZACIÓN INCREMENTAL ====================
+
+    /**
+     * Aporte de una entidad a partir de sus propiedades (nombre de la propiedad -> valor),
+     * o null si la clase no cuenta en las estadísticas.
+     */
+    static Aporte aporteDe(Class<?> clase, Function<String, Object> propiedad) {
+        if (clase == Cita.class) {
+            return new Aporte(idDe((Veterinaria) propiedad.apply("veterinaria")),
+                    metricasDeCita((Cita.EstadoCita) propiedad.apply("estado")));
+        }
+        if (clase == Usuario.class) {
+            return new Aporte(idDe((Veterinaria) propiedad.apply("veterinaria")), Metrica.USUARIOS.bit()
+                    | (Boolean.TRUE.equals(propiedad.apply("activo")) ? Metrica.USUARIOS_ACTIVOS.bit() : 0));
+        }
+        if (clase == Mascota.class) {
+            // La mascota cuenta en la veterinaria de su propietario (EAGER, así que suele estar cargado);
+            // si no lo está solo se ajusta el global y la reconciliación corrige la veterinaria
+            Usuario propietario = (Usuario) propiedad.apply("propietario");
+            Long veterinariaId = propietario != null && Hibernate.isInitialized(propietario)
+                    ? idDe(propietario.getVeterinaria()) : null;
+            return new Aporte(veterinariaId, Metrica.MASCOTAS.bit()
+                    | (Boolean.TRUE.equals(propiedad.apply("activo")) ? Metrica.MASCOTAS_ACTIVAS.bit() : 0));
+        }
+        if (clase == Veterinaria.class) {
+            return new Aporte(null, Metrica.VETERINARIAS.bit()
+                    | (Boolean.TRUE.equals(propiedad.apply("activo")) ? Metrica.VETERINARIAS_ACTIVAS.bit() : 0));
+        }
+        return null;
+    }
+
+    // getId() de un proxy no lo inicializa
+    private static Long idDe(Veterinaria veterinaria) {
+        return veterinaria != null ? veterinaria.getId() : null;
+    }
+
+    /**
+     * Sustituye el aporte anterior de una entidad por el nuevo (null si no existía o ya no existe).
+     * Se aplica al confirmar la transacción en curso, o al momento si no hay ninguna.
+     */
+    void registrarCambio(Aporte anterior, Aporte nuevo) {
+        if (Objects.equals(anterior, nuevo)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            aplicar(List.of(new Cambio(anterior, nuevo)));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Cambio> pendientes = (List<Cambio>) TransactionSynchronizationManager.getResource(PENDIENTES);
+        if (pendientes == null) {
+            List<Cambio> deTransaccion = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(PENDIENTES, deTransaccion);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar(deTransaccion);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDIENTES);
+                }
+            });
+            pendientes = deTransaccion;
+        }
+        pendientes.add(new Cambio(anterior, nuevo));
+    }
+
+    /**
+     * Ajusta los contadores de una cita cambiada con un UPDATE en lote, que no pasa por el listener.
+     */
+    public void aplicarTransicion(Long veterinariaId, Cita.EstadoCita desde, Cita.EstadoCita hacia) {
+        registrarCambio(new Aporte(veterinariaId, metricasDeCita(desde)), new Aporte(veterinariaId, metricasDeCita(hacia)));
+    }
+
+    private void aplicar(List<Cambio> cambios) {
+        cerrojo.readLock().lock();
+        try {
+            Contadores actuales = contadores;
+            if (actuales == null) {
+                return;
+            }
+            Contadores enReconciliacion = tocados;
+            for (Cambio cambio : cambios) {
+                sumar(actuales, enReconciliacion, cambio.anterior(), -1);
+                sumar(actuales, enReconciliacion, cambio.nuevo(), 1);
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private static int metricasDeCita(Cita.EstadoCita estado) {
+        if (estado == Cita.EstadoCita.PROGRAMADA) {
+            return Metrica.CITAS.bit() | Metrica.CITAS_PROGRAMADAS.bit();
+        }
+        if (estado == Cita.EstadoCita.CONFIRMADA) {
+            return Metrica.CITAS.bit() | Metrica.CITAS_CONFIRMADAS.bit();
+        }
+        return Metrica.CITAS.bit();
+    }
+
+    private static void sumar(Contadores destino, Contadores tocados, Aporte aporte, long signo) {
+        if (aporte == null) {
+            return;
+        }
+        for (Metrica metrica : Metrica.values()) {
+            if ((aporte.metricas() & metrica.bit()) != 0) {
+                destino.sumar(aporte.veterinariaId(), metrica, signo);
+                if (tocados != null) {
+                    tocados.sumar(aporte.veterinariaId(), metrica, 1);
+                }
+            }
+        }
+    }
+
+    // ==================== RECONCILIACIÓN ====================
+
+    @Scheduled(fixedDelayString = "${app.estadisticas.reconciliacion-ms:300000}",
+               initialDelayString = "${app.estadisticas.reconciliacion-ms:300000}")
+    public void reconciliar() {
+        synchronized (reconciliacion) {
+            try {
+                reconciliarUnaVez();
+            } catch (Exception e) {
+                System.err.println("❌ Error al reconciliar estadísticas: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Suma a cada contador la diferencia entre las consultas agrupadas y su valor al empezar.
+     * Los contadores que recibieron ajustes mientras se consultaba se dejan para la siguiente
+     * vuelta, porque no se sabe si las consultas ya vieron esos cambios. Devuelve si quedó
+     * alguno pendiente.
+     */
+    private boolean reconciliarUnaVez() {
+        Contadores enReconciliacion = new Contadores();
+        Contadores inicio;
+        cerrojo.writeLock().lock();
+        try {
+            if (contadores == null) {
+                contadores = new Contadores();
+            }
+            tocados = enReconciliacion;
+            inicio = copia(contadores);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+
+        Contadores baseDeDatos;
+        try {
+            baseDeDatos = consultar();
+        } finally {
+            cerrojo.writeLock().lock();
+            try {
+                tocados = null;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+
+        boolean pendientes = false;
+        cerrojo.writeLock().lock();
+        try {
+            Contadores actuales = contadores;
+            for (Metrica metrica : Metrica.values()) {
+                int i = metrica.ordinal();
+                long desvio = baseDeDatos.global.get(i) - inicio.global.get(i);
+                if (desvio == 0) {
+                    continue;
+                }
+                if (enReconciliacion.global.get(i) != 0) {
+                    pendientes = true;
+                    continue;
+                }
+                actuales.global.addAndGet(i, desvio);
+                if (cargado) {
+                    System.out.println("⚠️ Estadísticas: " + metrica + " corregida en " + desvio);
+                }
+            }
+            Set<Long> veterinarias = new HashSet<>(baseDeDatos.porVeterinaria.keySet());
+            veterinarias.addAll(inicio.porVeterinaria.keySet());
+            for (Long veterinariaId : veterinarias) {
+                AtomicLongArray consultado = baseDeDatos.porVeterinaria.get(veterinariaId);
+                AtomicLongArray anterior = inicio.porVeterinaria.get(veterinariaId);
+                AtomicLongArray ajustes = enReconciliacion.porVeterinaria.get(veterinariaId);
+                for (Metrica metrica : Metrica.values()) {
+                    int i = metrica.ordinal();
+                    long desvio = (consultado != null ? consultado.get(i) : 0) - (anterior != null ? anterior.get(i) : 0);
+                    if (desvio == 0) {
+                        continue;
+                    }
+                    if (ajustes != null && ajustes.get(i) != 0) {
+                        pendientes = true;
+                        continue;
+                    }
+                    actuales.porVeterinaria.computeIfAbsent(veterinariaId, id -> new AtomicLongArray(NUM_METRICAS))
+                            .addAndGet(i, desvio);
+                }
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return pendientes;
+    }
+
+    private Contadores consultar() {
+        Contadores nuevos = new Contadores();
+        for (Object[] fila : citaRepository.countPorVeterinariaYEstado()) {
+            Long veterinariaId = (Long) fila[0];
+            Cita.EstadoCita estado = (Cita.EstadoCita) fila[1];
+            long total = (Long) fila[2];
+            nuevos.sumar(veterinariaId, Metrica.CITAS, total);
+            if (estado == Cita.EstadoCita.PROGRAMADA) {
+                nuevos.sumar(veterinariaId, Metrica.CITAS_PROGRAMADAS, total);
+            } else if (estado == Cita.EstadoCita.CONFIRMADA) {
+                nuevos.sumar(veterinariaId, Metrica.CITAS_CONFIRMADAS, total);
+            }
+        }
+        for (Object[] fila : usuarioRepository.countPorVeterinariaYActivo()) {
+            Long veterinariaId = (Long) fila[0];
+            long total = (Long) fila[2];
+            nuevos.sumar(veterinariaId, Metrica.USUARIOS, total);
+            if (Boolean.TRUE.equals(fila[1])) {
+                nuevos.sumar(veterinariaId, Metrica.USUARIOS_ACTIVOS, total);
+            }
+        }
+        for (Object[] fila : mascotaRepository.countPorVeterinariaYActivo()) {
+            Long veterinariaId = (Long) fila[0];
+            long total = (Long) fila[2];
+            nuevos.sumar(veterinariaId, Metrica.MASCOTAS, total);
+            if (Boolean.TRUE.equals(fila[1])) {
+                nuevos.sumar(veterinariaId, Metrica.MASCOTAS_ACTIVAS, total);
+            }
+        }
+        for (Object[] fila : veterinariaRepository.countPorActivo()) {
+            nuevos.sumar(null, Metrica.VETERINARIAS, (Long) fila[1]);
+            if (Boolean.TRUE.equals(fila[0])) {
+                nuevos.sumar(null, Metrica.VETERINARIAS_ACTIVAS, (Long) fila[1]);
+            }
+        }
+        return nuevos;
+    }
+
+    private static Contadores copia(Contadores origen) {
+        Contadores copia = new Contadores();
+        for (int i = 0; i < NUM_METRICAS; i++) {
+            copia.global.set(i, origen.global.get(i));
+        }
+        origen.porVeterinaria.forEach((veterinariaId, valores) -> {
+            AtomicLongArray copiaValores = new AtomicLongArray(NUM_METRICAS);
+            for (int i = 0; i < NUM_METRICAS; i++) {
+                copiaValores.set(i, valores.get(i));
+            }
+            copia.porVeterinaria.put(veterinariaId, copiaValores);
+        });
+        return copia;
+    }
+
+    // Primera carga: se repite mientras haya contadores que se movieron durante las consultas
+    private void cargarSiHaceFalta() {
+        if (cargado) {
+            return;
+        }
+        synchronized (reconciliacion) {
+            if (cargado) {
+                return;
+            }
+            try {
+                for (int intento = 1; intento <= MAX_INTENTOS_PRIMERA_CARGA; intento++) {
+                    if (!reconciliarUnaVez()) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Las estadísticas todavía no están disponibles", e);
+            }
+            cargado = true;
+        }
+    }
+
+    private Contadores actuales() {
+        cargarSiHaceFalta();
+        return contadores;
+    }
+}
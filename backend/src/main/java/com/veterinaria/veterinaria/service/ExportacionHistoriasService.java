@@ -0,0 +1,168 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exportación masiva de historias clínicas en un ZIP con un PDF por mascota. Los PDF se generan
+ * en un pool acotado y se escriben en el ZIP en el orden en que terminan. Cada exportación tiene
+ * como máximo {@code en-vuelo} PDF generándose o esperando a escribirse: si el cliente descarga
+ * despacio no se encargan más, así que la memoria no depende del número de mascotas.
+ */
+@Service
+public class ExportacionHistoriasService {
+
+    @Autowired
+    private PdfHistoriaClinicaService pdfHistoriaClinicaService;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Value("${app.historias.exportacion.hilos:4}")
+    private int hilos;
+
+    @Value("${app.historias.exportacion.en-vuelo:8}")
+    private int maxEnVuelo;
+
+    @Value("${app.historias.exportacion.max-mascotas:5000}")
+    private int maxMascotas;
+
+    private ExecutorService executor;
+
+    private record Resultado(Long mascotaId, byte[] pdf, String error) {}
+
+    @PostConstruct
+    public void configurar() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "historias-zip-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Mascotas a exportar: las de la veterinaria o la lista indicada (sin repetidos).
+     * Se valida antes de empezar la respuesta para poder contestar 400. Con
+     * {@code veterinariaPermitida} todas las mascotas tienen que ser de esa veterinaria;
+     * si no, AccessDeniedException (403).
+     */
+    public List<Long> resolverMascotas(Long veterinariaId, List<Long> mascotaIds, Long veterinariaPermitida) {
+        List<Long> ids;
+        if (mascotaIds != null && !mascotaIds.isEmpty()) {
+            ids = new ArrayList<>(new LinkedHashSet<>(mascotaIds));
+        } else if (veterinariaId != null) {
+            ids = mascotaRepository.findIdsByPropietarioVeterinariaId(veterinariaId);
+        } else {
+            throw new IllegalArgumentException("Debe indicar veterinariaId o mascotaIds");
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("No hay mascotas que exportar");
+        }
+        if (ids.size() > maxMascotas) {
+            throw new IllegalArgumentException("Se pueden exportar como máximo " + maxMascotas
+                    + " mascotas por descarga (se pidieron " + ids.size() + ")");
+        }
+        if (veterinariaPermitida != null
+                && mascotaRepository.countByIdInAndPropietarioVeterinariaId(ids, veterinariaPermitida) < ids.size()) {
+            throw new AccessDeniedException("Solo se pueden exportar historias clínicas de mascotas de su veterinaria");
+        }
+        return ids;
+    }
+
+    /**
+     * Escribe el ZIP en {@code salida} sin cerrarla. Las historias que fallan no cortan la
+     * exportación: se listan en errores.txt al final. Si falla la escritura (el cliente cortó
+     * la descarga) se cancelan los PDF pendientes.
+     */
+    public void escribirZip(List<Long> mascotaIds, OutputStream salida) {
+        long inicio = System.currentTimeMillis();
+        CompletionService<Resultado> completados = new ExecutorCompletionService<>(executor);
+        List<Future<Resultado>> enviados = new ArrayList<>();
+        List<String> errores = new ArrayList<>();
+        int escritos = 0;
+        try {
+            ZipOutputStream zip = new ZipOutputStream(salida);
+            // Los PDF ya van comprimidos: comprimir más solo gasta CPU
+            zip.setLevel(Deflater.BEST_SPEED);
+
+            while (escritos < mascotaIds.size()) {
+                // Se encargan PDF hasta el máximo en vuelo; el resto espera a que se escriban
+                while (enviados.size() < mascotaIds.size() && enviados.size() - escritos < maxEnVuelo) {
+                    Long mascotaId = mascotaIds.get(enviados.size());
+                    enviados.add(completados.submit(() -> generar(mascotaId)));
+                }
+                Resultado resultado = completados.take().get();
+                escritos++;
+                if (resultado.error() != null) {
+                    errores.add("Mascota " + resultado.mascotaId() + ": " + resultado.error());
+                    continue;
+                }
+                zip.putNextEntry(new ZipEntry("historia_clinica_mascota_" + resultado.mascotaId() + ".pdf"));
+                zip.write(resultado.pdf());
+                zip.closeEntry();
+                // Cada PDF se envía en cuanto está en el ZIP
+                zip.flush();
+            }
+
+            if (!errores.isEmpty()) {
+                zip.putNextEntry(new ZipEntry("errores.txt"));
+                zip.write(String.join("\n", errores).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+            System.out.println("✅ ZIP de historias clínicas: " + (escritos - errores.size()) + " PDF, "
+                    + errores.size() + " errores, " + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (IOException e) {
+            System.err.println("❌ Exportación de historias interrumpida tras " + escritos + " PDF: " + e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Exportación de historias interrumpida", e);
+        } catch (ExecutionException e) {
+            // generar() no lanza; solo llega aquí si la tarea se canceló
+            throw new IllegalStateException("Error al generar las historias clínicas", e.getCause());
+        } finally {
+            for (Future<Resultado> futuro : enviados) {
+                futuro.cancel(true);
+            }
+        }
+    }
+
+    private Resultado generar(Long mascotaId) {
+        try {
+            return new Resultado(mascotaId, pdfHistoriaClinicaService.generarHistoriaClinicaPdf(mascotaId, null), null);
+        } catch (Exception e) {
+            return new Resultado(mascotaId, null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.veterinaria.veterinaria.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Eliminacion;
+import com.veterinaria.veterinaria.entity.HistoriaClinica;
+import com.veterinaria.veterinaria.entity.Mascota;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Exportación incremental en NDJSON (un objeto JSON por línea) para el almacén de datos. Cada
+ * entidad lleva una columna {@code fecha_actualizacion} que mantiene MySQL y un índice sobre
+ * {@code (fecha_actualizacion, id)}, así que la consulta solo recorre las filas cambiadas. Las
+ * filas salen ordenadas por ese par, que sirve de cursor: quien consume reanuda desde la última
+ * línea recibida pasando su {@code fechaActualizacion} como {@code since} y su {@code id} como
+ * {@code despuesId}. Las filas se leen del cursor de la base de datos y se escriben según llegan.
+ * Los borrados se exportan como {@code {"id": ..., "eliminado": true, "fechaActualizacion": ...}}
+ * a partir de la tabla {@code eliminaciones}, intercalados en el mismo orden.
+ */
+@Service
+public class ExportacionIncrementalService {
+
+    // Filas entre cada envío al cliente
+    private static final int FILAS_POR_FLUSH = 1000;
+
+    // Marca de agua inicial cuando no se indica since: exporta todo
+    private static final LocalDateTime DESDE_EL_INICIO = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /**
+     * Entidades exportables y sus columnas: se leen escalares (con las claves de las relaciones),
+     * sin cargar entidades. Los alias son los nombres de los campos del JSON.
+     */
+    public enum Entidad {
+        CITAS(Cita.class, "select e.id as id, e.fechaHora as fechaHora, e.duracionMinutos as duracionMinutos, e.motivo as motivo, "
+                + "e.estado as estado, e.observaciones as observaciones, e.fechaCreacion as fechaCreacion, "
+                + "e.cliente.documento as clienteDocumento, e.mascota.id as mascotaId, "
+                + "e.veterinario.documento as veterinarioDocumento, e.veterinaria.id as veterinariaId, "
+                + "e.fechaActualizacion as fechaActualizacion from Cita e"),
+        MASCOTAS(Mascota.class, "select e.id as id, e.nombre as nombre, e.especie as especie, e.raza as raza, e.sexo as sexo, "
+                + "e.fechaNacimiento as fechaNacimiento, e.peso as peso, e.color as color, e.observaciones as observaciones, "
+                + "e.fechaRegistro as fechaRegistro, e.activo as activo, e.propietario.documento as propietarioDocumento, "
+                + "e.fechaActualizacion as fechaActualizacion from Mascota e"),
+        HISTORIAS(HistoriaClinica.class, "select e.id as id, e.fechaConsulta as fechaConsulta, e.motivoConsulta as motivoConsulta, "
+                + "e.sintomas as sintomas, e.diagnostico as diagnostico, e.tratamiento as tratamiento, "
+                + "e.medicamentos as medicamentos, e.peso as peso, e.temperatura as temperatura, "
+                + "e.frecuenciaCardiaca as frecuenciaCardiaca, e.frecuenciaRespiratoria as frecuenciaRespiratoria, "
+                + "e.observaciones as observaciones, e.recomendaciones as recomendaciones, "
+                + "e.fechaCreacion as fechaCreacion, e.activo as activo, e.mascota.id as mascotaId, "
+                + "e.veterinario.documento as veterinarioDocumento, e.cita.id as citaId, "
+                + "e.fechaActualizacion as fechaActualizacion from HistoriaClinica e");
+
+        private final Class<?> clase;
+        private final String select;
+
+        Entidad(Class<?> clase, String select) {
+            this.clase = clase;
+            this.select = select;
+        }
+
+        // Entidad exportable de una clase mapeada, o null si no se exporta
+        public static Entidad deClase(Class<?> clase) {
+            for (Entidad entidad : values()) {
+                if (entidad.clase == clase) {
+                    return entidad;
+                }
+            }
+            return null;
+        }
+
+        public static Entidad desdeRuta(String nombre) {
+            try {
+                return valueOf(nombre.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Entidad no exportable: " + nombre + " (citas, mascotas o historias)");
+            }
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.exportacion.limite-max:100000}")
+    private int limiteMax;
+
+    @Value("${app.exportacion.margen-segundos:60}")
+    private int margenSegundos;
+
+    // Con MySQL, un fetch size de Integer.MIN_VALUE hace que el driver entregue las filas de una en una
+    @Value("${app.exportacion.fetch-size:-2147483648}")
+    private int fetchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        EventListenerRegistry registro = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registro.appendListeners(EventType.POST_DELETE, new EliminacionesListener());
+    }
+
+    public int getLimiteMax() {
+        return limiteMax;
+    }
+
+    /**
+     * Cota superior de la exportación: las filas cambiadas en el último margen se dejan para la
+     * siguiente, porque una transacción que aún no ha confirmado puede tener una fecha anterior
+     * a las ya visibles y el cursor la saltaría. Se toma la hora de la base de datos, que es la
+     * que escribe {@code fecha_actualizacion}, para no depender del reloj de este servidor.
+     */
+    public LocalDateTime calcularHasta() {
+        Object ahora = entityManager.createNativeQuery("SELECT LOCALTIMESTAMP(3)").getSingleResult();
+        LocalDateTime baseDatos = ahora instanceof Timestamp marca ? marca.toLocalDateTime() : (LocalDateTime) ahora;
+        return baseDatos.minusSeconds(margenSegundos).truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Escribe en {@code salida} (sin cerrarla) las filas con {@code (fechaActualizacion, id)}
+     * posterior a {@code (since, despuesId)} y fecha anterior a {@code hasta}, como máximo
+     * {@code limite}. Como {@code hasta} queda fuera, la exportación siguiente empieza en él
+     * sin repetir ni saltar filas. Devuelve el número de filas escritas.
+     */
+    @Transactional(readOnly = true)
+    public long escribir(Entidad entidad, LocalDateTime since, Long despuesId, LocalDateTime hasta,
+                         int limite, OutputStream salida) {
+        long inicio = System.currentTimeMillis();
+        LocalDateTime desde = since != null ? since : DESDE_EL_INICIO;
+        // Los borrados son pocos: se leen antes de abrir el cursor, que en MySQL ocupa la conexión
+        List<Eliminacion> eliminaciones = entityManager.createQuery("select e from Eliminacion e"
+                        + " where e.entidad = :entidad and e.fechaEliminacion >= :desde"
+                        + " and (e.fechaEliminacion > :desde or e.entidadId > :despuesId)"
+                        + " and e.fechaEliminacion < :hasta"
+                        + " order by e.fechaEliminacion, e.entidadId", Eliminacion.class)
+                .setParameter("entidad", entidad.name())
+                .setParameter("desde", desde)
+                .setParameter("despuesId", despuesId != null ? despuesId : 0L)
+                .setParameter("hasta", hasta)
+                .setMaxResults(limite)
+                .getResultList();
+        TypedQuery<Tuple> consulta = entityManager.createQuery(entidad.select
+                + " where e.fechaActualizacion >= :desde"
+                + " and (e.fechaActualizacion > :desde or e.id > :despuesId)"
+                + " and e.fechaActualizacion < :hasta"
+                + " order by e.fechaActualizacion, e.id", Tuple.class);
+        consulta.setParameter("desde", desde);
+        consulta.setParameter("despuesId", despuesId != null ? despuesId : 0L);
+        consulta.setParameter("hasta", hasta);
+        consulta.setMaxResults(limite);
+        consulta.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+
+        long filas = 0;
+        try (JsonGenerator generador = objectMapper.createGenerator(salida, JsonEncoding.UTF8);
+             Stream<Tuple> resultados = consulta.getResultStream()) {
+            generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generador.setRootValueSeparator(null);
+            Iterator<Tuple> iterador = resultados.iterator();
+            Tuple fila = iterador.hasNext() ? iterador.next() : null;
+            int borradas = 0;
+            while (filas < limite && (fila != null || borradas < eliminaciones.size())) {
+                Eliminacion eliminacion = borradas < eliminaciones.size() ? eliminaciones.get(borradas) : null;
+                generador.writeStartObject();
+                if (eliminacion != null && (fila == null || antes(eliminacion, fila))) {
+                    generador.writeObjectField("id", eliminacion.getEntidadId());
+                    generador.writeBooleanField("eliminado", true);
+                    generador.writeObjectField("fechaActualizacion", eliminacion.getFechaEliminacion());
+                    borradas++;
+                } else {
+                    for (TupleElement<?> columna : fila.getElements()) {
+                        Object valor = fila.get(columna);
+                        // Igual que la API JSON: los campos nulos no se escriben
+                        if (valor != null) {
+                            generador.writeObjectField(columna.getAlias(), valor);
+                        }
+                    }
+                    fila = iterador.hasNext() ? iterador.next() : null;
+                }
+                generador.writeEndObject();
+                generador.writeRaw('\n');
+                if (++filas % FILAS_POR_FLUSH == 0) {
+                    generador.flush();
+                }
+            }
+            generador.flush();
+        } catch (IOException e) {
+            System.err.println("❌ Exportación incremental de " + entidad + " interrumpida tras " + filas + " filas: " + e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("✅ Exportación incremental de " + entidad + ": " + filas + " filas desde " + desde
+                + " en " + (System.currentTimeMillis() - inicio) + " ms");
+        return filas;
+    }
+
+    // Orden del cursor (fechaActualizacion, id) entre un borrado y una fila
+    private static boolean antes(Eliminacion eliminacion, Tuple fila) {
+        int porFecha = eliminacion.getFechaEliminacion().compareTo(fila.get("fechaActualizacion", LocalDateTime.class));
+        return porFecha != 0 ? porFecha < 0 : eliminacion.getEntidadId() < fila.get("id", Long.class);
+    }
+}
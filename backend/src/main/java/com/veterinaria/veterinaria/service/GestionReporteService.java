@@ -1,28 +1,38 @@
 package com.veterinaria.veterinaria.service;
 
 import com.veterinaria.veterinaria.dto.*;
-import com.veterinaria.veterinaria.entity.Cita;
-import com.veterinaria.veterinaria.entity.Mascota;
-import com.veterinaria.veterinaria.entity.Usuario;
-import com.veterinaria.veterinaria.repository.CitaRepository;
-import com.veterinaria.veterinaria.repository.HistoriaClinicaRepository;
 import com.veterinaria.veterinaria.repository.MascotaRepository;
 import com.veterinaria.veterinaria.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.Period;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class GestionReporteService {
 
+    private static final List<String> ROLES_PRINCIPALES =
+            List.of("ROLE_ADMIN", "ROLE_VETERINARIO", "ROLE_RECEPCIONISTA", "ROLE_CLIENTE");
+
+    // Límites (años cumplidos) de los tramos del histograma de edad: <1, 1-2, 3-5, 6-9, 10-14, 15+
+    private static final int[] LIMITES_EDAD = {1, 3, 6, 10, 15};
+
+    // Percentiles de peso que se calculan por especie
+    private static final int[] PERCENTILES_PESO = {25, 50, 75, 90};
+
     @Autowired
     private UsuarioRepository usuarioRepository;
 
@@ -30,55 +40,116 @@ public class GestionReporteService {
     private MascotaRepository mascotaRepository;
 
     @Autowired
-    private CitaRepository citaRepository;
+    private ResumenCitasService resumenCitasService;
+
+    @Autowired
+    private ConsultaReporteCitasService consultaReporteCitasService;
 
     @Autowired
-    private HistoriaClinicaRepository historiaClinicaRepository;
+    private CacheReportesService cacheReportesService;
 
     // ==================== REPORTES DE USUARIOS ====================
 
     public List<ReporteUsuarioDTO> getReporteUsuarios() {
-        List<Usuario> usuarios = usuarioRepository.findAll();
-        return usuarios.stream()
-                .map(usuario -> {
-                    Long totalMascotas = mascotaRepository.countByPropietario(usuario);
-                    Long totalCitas = citaRepository.countByCliente(usuario);
-                    return new ReporteUsuarioDTO(usuario, totalMascotas, totalCitas);
-                })
-                .collect(Collectors.toList());
+        return reporteUsuarios(null, null);
     }
 
     public List<ReporteUsuarioDTO> getReporteUsuariosPorRol(String rol) {
-        // Asegurar que el rol tenga el prefijo ROLE_ si no lo tiene
-        String rolConPrefijo = rol.startsWith("ROLE_") ? rol : "ROLE_" + rol;
-        List<Usuario> usuarios = usuarioRepository.findByRoles_Nombre(rolConPrefijo);
+        return reporteUsuarios(conPrefijoRol(rol), null);
+    }
+
+    /**
+     * Reporte de usuarios de las exportaciones: veterinaria, rol y búsqueda de texto opcionales.
+     */
+    public List<ReporteUsuarioDTO> getReporteUsuarios(Long veterinariaId, String rol, String busqueda) {
+        List<ReporteUsuarioDTO> usuarios = reporteUsuarios(conPrefijoRol(rol), veterinariaId);
+        if (busqueda == null || busqueda.isEmpty()) {
+            return usuarios;
+        }
+        String texto = busqueda.toLowerCase();
         return usuarios.stream()
-                .map(usuario -> {
-                    Long totalMascotas = mascotaRepository.countByPropietario(usuario);
-                    Long totalCitas = citaRepository.countByCliente(usuario);
-                    return new ReporteUsuarioDTO(usuario, totalMascotas, totalCitas);
-                })
+                .filter(u -> coincide(u, texto))
                 .collect(Collectors.toList());
     }
 
+    private static boolean coincide(ReporteUsuarioDTO u, String texto) {
+        return u.getUsername().toLowerCase().contains(texto) ||
+               (u.getNombres() != null && u.getNombres().toLowerCase().contains(texto)) ||
+               (u.getApellidos() != null && u.getApellidos().toLowerCase().contains(texto)) ||
+               (u.getEmail() != null && u.getEmail().toLowerCase().contains(texto)) ||
+               u.getDocumento().toLowerCase().contains(texto);
+    }
+
+    /**
+     * Página del reporte de usuarios; rol y veterinariaId son filtros opcionales.
+     */
+    public Page<ReporteUsuarioDTO> getReporteUsuariosPaginado(String rol, Long veterinariaId, Pageable pageable) {
+        return usuarioRepository.findReporteUsuarios(conPrefijoRol(rol), veterinariaId, pageable);
+    }
+
+    /**
+     * Recorre el reporte de usuarios fila a fila sin cargarlo entero en memoria (para exportaciones).
+     */
+    @Transactional(readOnly = true)
+    public void recorrerReporteUsuarios(Long veterinariaId, String rol, String busqueda, Consumer<ReporteUsuarioDTO> consumidor) {
+        String texto = busqueda == null || busqueda.isEmpty() ? null : busqueda.toLowerCase();
+        try (Stream<ReporteUsuarioDTO> filas = usuarioRepository.streamReporteUsuarios(conPrefijoRol(rol), veterinariaId)) {
+            filas.filter(u -> texto == null || coincide(u, texto)).forEach(consumidor);
+        }
+    }
+
+    // Reporte de usuarios compartido desde la caché: no se modifica, se filtra en listas nuevas
+    private List<ReporteUsuarioDTO> reporteUsuarios(String rol, Long veterinariaId) {
+        return cacheReportesService.obtener(CacheReportesService.TipoReporte.REPORTE_USUARIOS, veterinariaId,
+                "rol=" + rol, () -> Collections.unmodifiableList(usuarioRepository.findReporteUsuarios(rol, veterinariaId)));
+    }
+
+    private EstadisticasUsuariosDTO estadisticasUsuarios(Long veterinariaId) {
+        return cacheReportesService.obtener(CacheReportesService.TipoReporte.ESTADISTICAS_USUARIOS, veterinariaId,
+                "", () -> calcularEstadisticasUsuarios(veterinariaId));
+    }
+
+    // Asegurar que el rol tenga el prefijo ROLE_ si no lo tiene
+    private static String conPrefijoRol(String rol) {
+        if (rol == null || rol.isEmpty()) {
+            return null;
+        }
+        return rol.startsWith("ROLE_") ? rol : "ROLE_" + rol;
+    }
+
     public EstadisticasUsuariosDTO getEstadisticasUsuarios() {
-        Long totalUsuarios = usuarioRepository.count();
-        Long totalActivos = usuarioRepository.countByActivoTrue();
-        Long totalInactivos = totalUsuarios - totalActivos;
+        return estadisticasUsuarios(null);
+    }
+
+    /**
+     * Estadísticas de usuarios (de todos o de los de una veterinaria) con dos consultas agrupadas:
+     * una por activo y otra por rol. Un usuario con varios roles cuenta en cada uno de ellos.
+     */
+    private EstadisticasUsuariosDTO calcularEstadisticasUsuarios(Long veterinariaId) {
+        long totalUsuarios = 0;
+        long totalActivos = 0;
+        for (Object[] fila : usuarioRepository.countPorActivo(veterinariaId)) {
+            long total = (Long) fila[1];
+            totalUsuarios += total;
+            if (Boolean.TRUE.equals(fila[0])) {
+                totalActivos += total;
+            }
+        }
 
         EstadisticasUsuariosDTO estadisticas = new EstadisticasUsuariosDTO(
                 totalUsuarios, 
                 totalActivos, 
-                totalInactivos
+                totalUsuarios - totalActivos
         );
 
-        // Contar usuarios por rol
+        // Contar usuarios por rol (los roles principales aparecen aunque no tengan usuarios)
         Map<String, Long> totalPorRol = new HashMap<>();
-        totalPorRol.put("ROLE_ADMIN", (long) usuarioRepository.findByRoles_Nombre("ROLE_ADMIN").size());
-        totalPorRol.put("ROLE_VETERINARIO", (long) usuarioRepository.findByRoles_Nombre("ROLE_VETERINARIO").size());
-        totalPorRol.put("ROLE_RECEPCIONISTA", (long) usuarioRepository.findByRoles_Nombre("ROLE_RECEPCIONISTA").size());
-        totalPorRol.put("ROLE_CLIENTE", (long) usuarioRepository.findByRoles_Nombre("ROLE_CLIENTE").size());
-
+        for (String rol : ROLES_PRINCIPALES) {
+            totalPorRol.put(rol, 0L);
+        }
+        for (Object[] fila : usuarioRepository.countPorRol(veterinariaId)) {
+            totalPorRol.put((String) fila[0], (Long) fila[1]);
+        }
         estadisticas.setTotalPorRol(totalPorRol);
 
         return estadisticas;
@@ -87,327 +158,259 @@ public class GestionReporteService {
     // ==================== REPORTES DE MASCOTAS ====================
 
     public List<ReporteMascotaDTO> getReporteMascotas() {
-        List<Mascota> mascotas = mascotaRepository.findAll();
-        return mascotas.stream()
-                .map(mascota -> {
-                    Long totalCitas = citaRepository.countByMascota(mascota);
-                    Long totalHistorias = historiaClinicaRepository.countByMascota(mascota);
-                    LocalDateTime ultimaCita = citaRepository.findFirstByMascotaOrderByFechaHoraDesc(mascota)
-                            .map(Cita::getFechaHora)
-                            .orElse(null);
-                    return new ReporteMascotaDTO(mascota, totalCitas, totalHistorias, ultimaCita);
-                })
-                .collect(Collectors.toList());
+        return reporteMascotas(null, null);
     }
 
     public List<ReporteMascotaDTO> getReporteMascotasPorEspecie(String especie) {
-        List<Mascota> mascotas = mascotaRepository.findByEspecie(especie);
+        return reporteMascotas(especie, null);
+    }
+
+    /**
+     * Reporte de mascotas de las exportaciones: veterinaria, especie y búsqueda de texto opcionales.
+     */
+    public List<ReporteMascotaDTO> getReporteMascotas(Long veterinariaId, String especie, String busqueda) {
+        List<ReporteMascotaDTO> mascotas = reporteMascotas(
+                especie == null || especie.isEmpty() ? null : especie, veterinariaId);
+        if (busqueda == null || busqueda.isEmpty()) {
+            return mascotas;
+        }
+        String texto = busqueda.toLowerCase();
         return mascotas.stream()
-                .map(mascota -> {
-                    Long totalCitas = citaRepository.countByMascota(mascota);
-                    Long totalHistorias = historiaClinicaRepository.countByMascota(mascota);
-                    LocalDateTime ultimaCita = citaRepository.findFirstByMascotaOrderByFechaHoraDesc(mascota)
-                            .map(Cita::getFechaHora)
-                            .orElse(null);
-                    return new ReporteMascotaDTO(mascota, totalCitas, totalHistorias, ultimaCita);
-                })
+                .filter(m -> coincide(m, texto))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Recorre el reporte de mascotas fila a fila sin cargarlo entero en memoria (para exportaciones).
+     */
+    @Transactional(readOnly = true)
+    public void recorrerReporteMascotas(Long veterinariaId, String especie, String busqueda, Consumer<ReporteMascotaDTO> consumidor) {
+        String texto = busqueda == null || busqueda.isEmpty() ? null : busqueda.toLowerCase();
+        try (Stream<ReporteMascotaDTO> filas = mascotaRepository.streamReporteMascotas(
+                especie == null || especie.isEmpty() ? null : especie, veterinariaId)) {
+            filas.filter(m -> texto == null || coincide(m, texto)).forEach(consumidor);
+        }
+    }
+
+    private static boolean coincide(ReporteMascotaDTO m, String texto) {
+        return m.getNombre().toLowerCase().contains(texto) ||
+               (m.getPropietarioNombre() != null && m.getPropietarioNombre().toLowerCase().contains(texto)) ||
+               (m.getPropietarioApellido() != null && m.getPropietarioApellido().toLowerCase().contains(texto)) ||
+               (m.getRaza() != null && m.getRaza().toLowerCase().contains(texto));
+    }
+
+    // La edad depende del día, así que el día forma parte de la clave. La especie se compara sin
+    // distinguir mayúsculas (collation de la columna), igual que en la clave.
+    private List<ReporteMascotaDTO> reporteMascotas(String especie, Long veterinariaId) {
+        String filtros = "especie=" + (especie != null ? especie.toLowerCase() : null) + ";dia=" + LocalDate.now();
+        return cacheReportesService.obtener(CacheReportesService.TipoReporte.REPORTE_MASCOTAS, veterinariaId,
+                filtros, () -> Collections.unmodifiableList(mascotaRepository.findReporteMascotas(especie, veterinariaId)));
+    }
+
+    private EstadisticasMascotasDTO estadisticasMascotas(Long veterinariaId) {
+        return cacheReportesService.obtener(CacheReportesService.TipoReporte.ESTADISTICAS_MASCOTAS, veterinariaId,
+                "dia=" + LocalDate.now(), () -> calcularEstadisticasMascotas(veterinariaId));
+    }
+
     public EstadisticasMascotasDTO getEstadisticasMascotas() {
-        Long totalMascotas = mascotaRepository.count();
-        EstadisticasMascotasDTO estadisticas = new EstadisticasMascotasDTO(totalMascotas);
+        return estadisticasMascotas(null);
+    }
 
-        // Contar por especie
+    /**
+     * Estadísticas de mascotas (de todas o de los clientes de una veterinaria) calculadas con
+     * consultas agrupadas: solo viajan conteos por especie/sexo, por edad y por peso distinto,
+     * nunca las entidades, así que la memoria no crece con el número de mascotas.
+     */
+    private EstadisticasMascotasDTO calcularEstadisticasMascotas(Long veterinariaId) {
+        // Contar por especie y por sexo
         Map<String, Long> totalPorEspecie = new HashMap<>();
-        List<Mascota> mascotas = mascotaRepository.findAll();
-        
-        mascotas.stream()
-                .collect(Collectors.groupingBy(Mascota::getEspecie, Collectors.counting()))
-                .forEach(totalPorEspecie::put);
-        
-        estadisticas.setTotalPorEspecie(totalPorEspecie);
-
-        // Contar por sexo
         Map<String, Long> totalPorSexo = new HashMap<>();
-        mascotas.stream()
-                .filter(m -> m.getSexo() != null)
-                .collect(Collectors.groupingBy(Mascota::getSexo, Collectors.counting()))
-                .forEach(totalPorSexo::put);
-        
+        long totalMascotas = 0;
+        for (Object[] fila : mascotaRepository.countPorEspecieYSexo(veterinariaId)) {
+            long total = (Long) fila[2];
+            totalMascotas += total;
+            totalPorEspecie.merge((String) fila[0], total, Long::sum);
+            if (fila[1] != null) {
+                totalPorSexo.merge((String) fila[1], total, Long::sum);
+            }
+        }
+        EstadisticasMascotasDTO estadisticas = new EstadisticasMascotasDTO(totalMascotas);
+        estadisticas.setTotalPorEspecie(totalPorEspecie);
         estadisticas.setTotalPorSexo(totalPorSexo);
 
-        // Calcular promedio de edad
-        Double promedioEdad = mascotas.stream()
-                .filter(m -> m.getFechaNacimiento() != null)
-                .mapToInt(m -> Period.between(m.getFechaNacimiento(), LocalDate.now()).getYears())
-                .average()
-                .orElse(0.0);
-        estadisticas.setPromedioEdad(promedioEdad);
-
-        // Calcular promedio de peso
-        Double promedioPeso = mascotas.stream()
-                .filter(m -> m.getPeso() != null)
-                .mapToDouble(m -> m.getPeso().doubleValue())
-                .average()
-                .orElse(0.0);
-        estadisticas.setPromedioPeso(promedioPeso);
+        // Edad: promedio e histograma a partir del número de mascotas por años cumplidos
+        Map<String, Long> histogramaEdad = new LinkedHashMap<>();
+        for (int tramo = 0; tramo <= LIMITES_EDAD.length; tramo++) {
+            histogramaEdad.put(etiquetaTramoEdad(tramo), 0L);
+        }
+        long sumaEdades = 0;
+        long conEdad = 0;
+        for (Object[] fila : mascotaRepository.countPorEdad(LocalDate.now(), veterinariaId)) {
+            int edad = ((Number) fila[0]).intValue();
+            long total = ((Number) fila[1]).longValue();
+            sumaEdades += edad * total;
+            conEdad += total;
+            histogramaEdad.merge(etiquetaTramoEdad(tramoEdad(edad)), total, Long::sum);
+        }
+        estadisticas.setPromedioEdad(conEdad > 0 ? (double) sumaEdades / conEdad : 0.0);
+        estadisticas.setHistogramaEdad(histogramaEdad);
+
+        // Peso: promedio y percentiles por especie a partir del número de mascotas por peso
+        List<Object[]> pesos = mascotaRepository.countPorEspecieYPeso(veterinariaId);
+        Map<String, Map<String, Double>> percentilesPorEspecie = new HashMap<>();
+        BigDecimal sumaPesos = BigDecimal.ZERO;
+        long conPeso = 0;
+        int inicio = 0;
+        while (inicio < pesos.size()) {
+            String especie = (String) pesos.get(inicio)[0];
+            int fin = inicio;
+            long totalEspecie = 0;
+            // Las filas vienen ordenadas por especie; la comparación de la base de datos no distingue mayúsculas
+            while (fin < pesos.size() && especie.equalsIgnoreCase((String) pesos.get(fin)[0])) {
+                BigDecimal peso = (BigDecimal) pesos.get(fin)[1];
+                long total = (Long) pesos.get(fin)[2];
+                sumaPesos = sumaPesos.add(peso.multiply(BigDecimal.valueOf(total)));
+                totalEspecie += total;
+                fin++;
+            }
+            conPeso += totalEspecie;
+            percentilesPorEspecie.put(especie, percentilesPeso(pesos.subList(inicio, fin), totalEspecie));
+            inicio = fin;
+        }
+        estadisticas.setPromedioPeso(conPeso > 0 ? sumaPesos.doubleValue() / conPeso : 0.0);
+        estadisticas.setPercentilesPesoPorEspecie(percentilesPorEspecie);
 
         return estadisticas;
     }
 
+    private static int tramoEdad(int edad) {
+        int tramo = 0;
+        while (tramo < LIMITES_EDAD.length && edad >= LIMITES_EDAD[tramo]) {
+            tramo++;
+        }
+        return tramo;
+    }
+
+    private static String etiquetaTramoEdad(int tramo) {
+        if (tramo == 0) {
+            return "<" + LIMITES_EDAD[0];
+        }
+        if (tramo == LIMITES_EDAD.length) {
+            return LIMITES_EDAD[tramo - 1] + "+";
+        }
+        return LIMITES_EDAD[tramo - 1] + "-" + (LIMITES_EDAD[tramo] - 1);
+    }
+
+    // Percentiles por rango más cercano sobre filas (especie, peso, total) ordenadas por peso
+    private static Map<String, Double> percentilesPeso(List<Object[]> filas, long total) {
+        Map<String, Double> resultado = new LinkedHashMap<>();
+        for (int percentil : PERCENTILES_PESO) {
+            long rango = Math.max(1, (long) Math.ceil(percentil / 100.0 * total));
+            long acumulado = 0;
+            for (Object[] fila : filas) {
+                acumulado += (Long) fila[2];
+                if (acumulado >= rango) {
+                    resultado.put("p" + percentil, ((BigDecimal) fila[1]).doubleValue());
+                    break;
+                }
+            }
+        }
+        return resultado;
+    }
+
     // ==================== REPORTES DE CITAS ====================
 
     public List<ReporteCitaDTO> getReporteCitas() {
-        List<Cita> citas = citaRepository.findAll();
-        return citas.stream()
-                .map(ReporteCitaDTO::new)
-                .collect(Collectors.toList());
+        return consultaReporteCitasService.buscar(new FiltroReporteCitas());
+    }
+
+    /**
+     * Reporte de citas con cualquier combinación de filtros, resuelto en una sola consulta.
+     */
+    public List<ReporteCitaDTO> getReporteCitas(FiltroReporteCitas filtro) {
+        return consultaReporteCitasService.buscar(filtro);
+    }
+
+    /**
+     * Recorre el reporte de citas fila a fila sin cargarlo entero en memoria (para exportaciones).
+     */
+    public void recorrerReporteCitas(FiltroReporteCitas filtro, Consumer<ReporteCitaDTO> consumidor) {
+        consultaReporteCitasService.recorrer(filtro, consumidor);
+    }
+
+    public Page<ReporteCitaDTO> getReporteCitasPaginado(FiltroReporteCitas filtro, Pageable pageable) {
+        return consultaReporteCitasService.buscar(filtro, pageable);
     }
 
     public List<ReporteCitaDTO> getReporteCitasPorEstado(String estado) {
-        try {
-            Cita.EstadoCita estadoCita = Cita.EstadoCita.valueOf(estado);
-            List<Cita> citas = citaRepository.findByEstado(estadoCita);
-            return citas.stream()
-                    .map(ReporteCitaDTO::new)
-                    .collect(Collectors.toList());
-        } catch (IllegalArgumentException e) {
-            return List.of();
-        }
+        FiltroReporteCitas filtro = new FiltroReporteCitas();
+        filtro.setEstado(estado);
+        return consultaReporteCitasService.buscar(filtro);
     }
 
     public List<ReporteCitaDTO> getReporteCitasPorFecha(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
-        List<Cita> citas = citaRepository.findByFechaHoraBetween(fechaInicio, fechaFin);
-        return citas.stream()
-                .map(ReporteCitaDTO::new)
-                .collect(Collectors.toList());
+        FiltroReporteCitas filtro = new FiltroReporteCitas();
+        filtro.setDesde(fechaInicio);
+        filtro.setHasta(fechaFin);
+        return consultaReporteCitasService.buscar(filtro);
     }
 
     public EstadisticasCitasDTO getEstadisticasCitas() {
-        Long totalCitas = citaRepository.count();
-        EstadisticasCitasDTO estadisticas = new EstadisticasCitasDTO(totalCitas);
-
-        // Contar por estado
-        Map<String, Long> totalPorEstado = new HashMap<>();
-        for (Cita.EstadoCita estado : Cita.EstadoCita.values()) {
-            long count = citaRepository.countByEstado(estado);
-            totalPorEstado.put(estado.name(), count);
-        }
-        estadisticas.setTotalPorEstado(totalPorEstado);
-
-        // Citas de hoy
-        LocalDateTime inicioHoy = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime finHoy = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        Long citasHoy = citaRepository.countByFechaHoraBetween(inicioHoy, finHoy);
-        estadisticas.setCitasHoy(citasHoy);
-
-        // Citas de esta semana
-        LocalDateTime inicioSemana = LocalDateTime.of(LocalDate.now().minusDays(7), LocalTime.MIN);
-        LocalDateTime finSemana = LocalDateTime.now();
-        Long citasSemana = citaRepository.countByFechaHoraBetween(inicioSemana, finSemana);
-        estadisticas.setCitasSemana(citasSemana);
-
-        // Citas de este mes
-        LocalDateTime inicioMes = LocalDateTime.of(LocalDate.now().withDayOfMonth(1), LocalTime.MIN);
-        LocalDateTime finMes = LocalDateTime.now();
-        Long citasMes = citaRepository.countByFechaHoraBetween(inicioMes, finMes);
-        estadisticas.setCitasMes(citasMes);
+        return resumenCitasService.getEstadisticas(null);
+    }
 
-        return estadisticas;
+    public List<TendenciaCitasDTO> getTendenciaCitas(LocalDate desde, LocalDate hasta, Long veterinariaId, String veterinarioDocumento) {
+        return resumenCitasService.getTendencia(desde, hasta, veterinariaId, veterinarioDocumento);
     }
     
     // ==================== REPORTES FILTRADOS POR VETERINARIA ====================
     
     public List<ReporteUsuarioDTO> getReporteUsuariosPorVeterinaria(Long veterinariaId) {
-        List<Usuario> usuarios = usuarioRepository.findByVeterinaria_Id(veterinariaId);
-        return usuarios.stream()
-                .map(usuario -> {
-                    Long totalMascotas = mascotaRepository.countByPropietario(usuario);
-                    Long totalCitas = citaRepository.countByCliente(usuario);
-                    return new ReporteUsuarioDTO(usuario, totalMascotas, totalCitas);
-                })
-                .collect(Collectors.toList());
+        return reporteUsuarios(null, veterinariaId);
     }
     
     public List<ReporteUsuarioDTO> getReporteUsuariosPorRolYVeterinaria(String rol, Long veterinariaId) {
-        String rolConPrefijo = rol.startsWith("ROLE_") ? rol : "ROLE_" + rol;
-        List<Usuario> usuarios = usuarioRepository.findByVeterinaria_IdAndRoles_Nombre(veterinariaId, rolConPrefijo);
-        return usuarios.stream()
-                .map(usuario -> {
-                    Long totalMascotas = mascotaRepository.countByPropietario(usuario);
-                    Long totalCitas = citaRepository.countByCliente(usuario);
-                    return new ReporteUsuarioDTO(usuario, totalMascotas, totalCitas);
-                })
-                .collect(Collectors.toList());
+        return reporteUsuarios(conPrefijoRol(rol), veterinariaId);
     }
     
     public EstadisticasUsuariosDTO getEstadisticasUsuariosPorVeterinaria(Long veterinariaId) {
-        List<Usuario> todosUsuarios = usuarioRepository.findByVeterinaria_Id(veterinariaId);
-        Long totalUsuarios = (long) todosUsuarios.size();
-        Long totalActivos = todosUsuarios.stream().filter(Usuario::getActivo).count();
-        Long totalInactivos = totalUsuarios - totalActivos;
-
-        EstadisticasUsuariosDTO estadisticas = new EstadisticasUsuariosDTO(
-                totalUsuarios, 
-                totalActivos, 
-                totalInactivos
-        );
-
-        // Contar usuarios por rol en esta veterinaria
-        Map<String, Long> totalPorRol = new HashMap<>();
-        totalPorRol.put("ROLE_ADMIN", (long) usuarioRepository.findByVeterinaria_IdAndRoles_Nombre(veterinariaId, "ROLE_ADMIN").size());
-        totalPorRol.put("ROLE_VETERINARIO", (long) usuarioRepository.findByVeterinaria_IdAndRoles_Nombre(veterinariaId, "ROLE_VETERINARIO").size());
-        totalPorRol.put("ROLE_RECEPCIONISTA", (long) usuarioRepository.findByVeterinaria_IdAndRoles_Nombre(veterinariaId, "ROLE_RECEPCIONISTA").size());
-        totalPorRol.put("ROLE_CLIENTE", (long) usuarioRepository.findByVeterinaria_IdAndRoles_Nombre(veterinariaId, "ROLE_CLIENTE").size());
-
-        estadisticas.setTotalPorRol(totalPorRol);
-
-        return estadisticas;
+        return estadisticasUsuarios(veterinariaId);
     }
     
     public List<ReporteMascotaDTO> getReporteMascotasPorVeterinaria(Long veterinariaId) {
-        List<Mascota> mascotas = mascotaRepository.findByPropietarioVeterinariaId(veterinariaId);
-        return mascotas.stream()
-                .map(mascota -> {
-                    Long totalCitas = citaRepository.countByMascota(mascota);
-                    Long totalHistorias = historiaClinicaRepository.countByMascota(mascota);
-                    LocalDateTime ultimaCita = citaRepository.findFirstByMascotaOrderByFechaHoraDesc(mascota)
-                            .map(Cita::getFechaHora)
-                            .orElse(null);
-                    return new ReporteMascotaDTO(mascota, totalCitas, totalHistorias, ultimaCita);
-                })
-                .collect(Collectors.toList());
+        return reporteMascotas(null, veterinariaId);
     }
     
     public List<ReporteMascotaDTO> getReporteMascotasPorEspecieYVeterinaria(String especie, Long veterinariaId) {
-        List<Mascota> todasMascotas = mascotaRepository.findByPropietarioVeterinariaId(veterinariaId);
-        List<Mascota> mascotas = todasMascotas.stream()
-                .filter(m -> m.getEspecie().equalsIgnoreCase(especie))
-                .collect(Collectors.toList());
-        
-        return mascotas.stream()
-                .map(mascota -> {
-                    Long totalCitas = citaRepository.countByMascota(mascota);
-                    Long totalHistorias = historiaClinicaRepository.countByMascota(mascota);
-                    LocalDateTime ultimaCita = citaRepository.findFirstByMascotaOrderByFechaHoraDesc(mascota)
-                            .map(Cita::getFechaHora)
-                            .orElse(null);
-                    return new ReporteMascotaDTO(mascota, totalCitas, totalHistorias, ultimaCita);
-                })
-                .collect(Collectors.toList());
+        return reporteMascotas(especie, veterinariaId);
     }
     
     public EstadisticasMascotasDTO getEstadisticasMascotasPorVeterinaria(Long veterinariaId) {
-        List<Mascota> mascotas = mascotaRepository.findByPropietarioVeterinariaId(veterinariaId);
-        Long totalMascotas = (long) mascotas.size();
-        EstadisticasMascotasDTO estadisticas = new EstadisticasMascotasDTO(totalMascotas);
-
-        // Contar por especie
-        Map<String, Long> totalPorEspecie = new HashMap<>();
-        mascotas.stream()
-                .collect(Collectors.groupingBy(Mascota::getEspecie, Collectors.counting()))
-                .forEach(totalPorEspecie::put);
-        estadisticas.setTotalPorEspecie(totalPorEspecie);
-
-        // Contar por sexo
-        Map<String, Long> totalPorSexo = new HashMap<>();
-        mascotas.stream()
-                .filter(m -> m.getSexo() != null)
-                .collect(Collectors.groupingBy(Mascota::getSexo, Collectors.counting()))
-                .forEach(totalPorSexo::put);
-        estadisticas.setTotalPorSexo(totalPorSexo);
-
-        // Calcular promedio de edad
-        Double promedioEdad = mascotas.stream()
-                .filter(m -> m.getFechaNacimiento() != null)
-                .mapToInt(m -> Period.between(m.getFechaNacimiento(), LocalDate.now()).getYears())
-                .average()
-                .orElse(0.0);
-        estadisticas.setPromedioEdad(promedioEdad);
-
-        // Calcular promedio de peso
-        Double promedioPeso = mascotas.stream()
-                .filter(m -> m.getPeso() != null)
-                .mapToDouble(m -> m.getPeso().doubleValue())
-                .average()
-                .orElse(0.0);
-        estadisticas.setPromedioPeso(promedioPeso);
-
-        return estadisticas;
+        return estadisticasMascotas(veterinariaId);
     }
     
     public List<ReporteCitaDTO> getReporteCitasPorVeterinaria(Long veterinariaId) {
-        List<Cita> citas = citaRepository.findByVeterinariaId(veterinariaId);
-        return citas.stream()
-                .map(ReporteCitaDTO::new)
-                .collect(Collectors.toList());
+        FiltroReporteCitas filtro = new FiltroReporteCitas();
+        filtro.setVeterinariaId(veterinariaId);
+        return consultaReporteCitasService.buscar(filtro);
     }
     
     public List<ReporteCitaDTO> getReporteCitasPorEstadoYVeterinaria(String estado, Long veterinariaId) {
-        try {
-            Cita.EstadoCita estadoCita = Cita.EstadoCita.valueOf(estado);
-            List<Cita> todasCitas = citaRepository.findByVeterinariaId(veterinariaId);
-            List<Cita> citas = todasCitas.stream()
-                    .filter(c -> c.getEstado() == estadoCita)
-                    .collect(Collectors.toList());
-            return citas.stream()
-                    .map(ReporteCitaDTO::new)
-                    .collect(Collectors.toList());
-        } catch (IllegalArgumentException e) {
-            return List.of();
-        }
+        FiltroReporteCitas filtro = new FiltroReporteCitas();
+        filtro.setEstado(estado);
+        filtro.setVeterinariaId(veterinariaId);
+        return consultaReporteCitasService.buscar(filtro);
     }
     
     public List<ReporteCitaDTO> getReporteCitasPorFechaYVeterinaria(LocalDateTime fechaInicio, LocalDateTime fechaFin, Long veterinariaId) {
-        List<Cita> todasCitas = citaRepository.findByVeterinariaId(veterinariaId);
-        List<Cita> citas = todasCitas.stream()
-                .filter(c -> !c.getFechaHora().isBefore(fechaInicio) && !c.getFechaHora().isAfter(fechaFin))
-                .collect(Collectors.toList());
-        return citas.stream()
-                .map(ReporteCitaDTO::new)
-                .collect(Collectors.toList());
+        FiltroReporteCitas filtro = new FiltroReporteCitas();
+        filtro.setDesde(fechaInicio);
+        filtro.setHasta(fechaFin);
+        filtro.setVeterinariaId(veterinariaId);
+        return consultaReporteCitasService.buscar(filtro);
     }
     
     public EstadisticasCitasDTO getEstadisticasCitasPorVeterinaria(Long veterinariaId) {
-        List<Cita> todasCitas = citaRepository.findByVeterinariaId(veterinariaId);
-        Long totalCitas = (long) todasCitas.size();
-        EstadisticasCitasDTO estadisticas = new EstadisticasCitasDTO(totalCitas);
-
-        // Contar por estado
-        Map<String, Long> totalPorEstado = new HashMap<>();
-        for (Cita.EstadoCita estado : Cita.EstadoCita.values()) {
-            long count = todasCitas.stream()
-                    .filter(c -> c.getEstado() == estado)
-                    .count();
-            totalPorEstado.put(estado.name(), count);
-        }
-        estadisticas.setTotalPorEstado(totalPorEstado);
-
-        // Citas de hoy
-        LocalDateTime inicioHoy = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime finHoy = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        Long citasHoy = todasCitas.stream()
-                .filter(c -> !c.getFechaHora().isBefore(inicioHoy) && !c.getFechaHora().isAfter(finHoy))
-                .count();
-        estadisticas.setCitasHoy(citasHoy);
-
-        // Citas de esta semana
-        LocalDateTime inicioSemana = LocalDateTime.of(LocalDate.now().minusDays(7), LocalTime.MIN);
-        LocalDateTime finSemana = LocalDateTime.now();
-        Long citasSemana = todasCitas.stream()
-                .filter(c -> !c.getFechaHora().isBefore(inicioSemana) && !c.getFechaHora().isAfter(finSemana))
-                .count();
-        estadisticas.setCitasSemana(citasSemana);
-
-        // Citas de este mes
-        LocalDateTime inicioMes = LocalDateTime.of(LocalDate.now().withDayOfMonth(1), LocalTime.MIN);
-        LocalDateTime finMes = LocalDateTime.now();
-        Long citasMes = todasCitas.stream()
-                .filter(c -> !c.getFechaHora().isBefore(inicioMes) && !c.getFechaHora().isAfter(finMes))
-                .count();
-        estadisticas.setCitasMes(citasMes);
-
-        return estadisticas;
+        return resumenCitasService.getEstadisticas(veterinariaId);
     }
 }
@@ -0,0 +1,40 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Usuario;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Listener de Hibernate que olvida la veterinaria recordada de un veterinario en
+ * {@link HorarioAtencionService} cuando su usuario se modifica o se elimina.
+ */
+class HorarioAtencionListener implements PostUpdateEventListener, PostDeleteEventListener {
+
+    private final HorarioAtencionService servicio;
+
+    HorarioAtencionListener(HorarioAtencionService servicio) {
+        this.servicio = servicio;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Usuario usuario) {
+            servicio.invalidarVeterinario(usuario.getDocumento());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Usuario usuario) {
+            servicio.invalidarVeterinario(usuario.getDocumento());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
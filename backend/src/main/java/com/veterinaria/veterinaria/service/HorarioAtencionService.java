@@ -0,0 +1,136 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de horarios de atención compilados por veterinaria.
+ * El texto horarioAtencion se interpreta una sola vez; la entrada se invalida cuando
+ * se modifica o elimina la veterinaria. También recuerda la veterinaria de cada veterinario,
+ * que {@link HorarioAtencionListener} olvida cuando el usuario cambia.
+ */
+@Service
+public class HorarioAtencionService {
+
+    // Veterinario que no pertenece a ninguna veterinaria (el mapa no admite null)
+    private static final Long SIN_VETERINARIA = -1L;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ConcurrentHashMap<Long, HorarioSemanal> horarios = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Long> veterinariaDeVeterinario = new ConcurrentHashMap<>();
+
+    private volatile Set<LocalDate> festivos = Set.of();
+
+    private volatile HorarioSemanal horarioPorDefecto = HorarioSemanal.porDefecto(Set.of());
+
+    // Festivos en formato ISO separados por comas (app.horarios.festivos=2026-01-01,2026-12-25)
+    @Value("${app.horarios.festivos:}")
+    void setFestivos(String texto) {
+        Set<LocalDate> fechas = new HashSet<>();
+        for (String fecha : texto.split(",")) {
+            if (fecha.isBlank()) {
+                continue;
+            }
+            try {
+                fechas.add(LocalDate.parse(fecha.trim()));
+            } catch (DateTimeParseException e) {
+                System.err.println("❌ Festivo inválido en app.horarios.festivos: " + fecha);
+            }
+        }
+        festivos = Set.copyOf(fechas);
+        horarioPorDefecto = HorarioSemanal.porDefecto(festivos);
+        horarios.clear();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        EventListenerRegistry registro = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        HorarioAtencionListener listener = new HorarioAtencionListener(this);
+        registro.appendListeners(EventType.POST_UPDATE, listener);
+        registro.appendListeners(EventType.POST_DELETE, listener);
+    }
+
+    /**
+     * Horario compilado de la veterinaria; el horario por defecto si no existe o no se indica.
+     */
+    HorarioSemanal getHorario(Long veterinariaId) {
+        if (veterinariaId == null) {
+            return horarioPorDefecto;
+        }
+        // computeIfAbsent bloquea la entrada mientras se compila, así que una invalidación
+        // concurrente siempre se aplica después de la carga
+        return horarios.computeIfAbsent(veterinariaId, id -> veterinariaRepository.findById(id)
+                .map(Veterinaria::getHorarioAtencion)
+                .map(texto -> HorarioSemanal.compilar(texto, festivos))
+                .orElse(horarioPorDefecto));
+    }
+
+    /**
+     * Horario de la veterinaria en la que trabaja el veterinario.
+     */
+    HorarioSemanal getHorarioDeVeterinario(String veterinarioDocumento) {
+        // Un documento que no existe no se recuerda (computeIfAbsent no guarda null)
+        Long veterinariaId = veterinariaDeVeterinario.computeIfAbsent(veterinarioDocumento,
+                documento -> usuarioRepository.findById(documento)
+                        .map(usuario -> usuario.getVeterinaria() != null ? usuario.getVeterinaria().getId() : SIN_VETERINARIA)
+                        .orElse(null));
+        return getHorario(SIN_VETERINARIA.equals(veterinariaId) ? null : veterinariaId);
+    }
+
+    /**
+     * Lanza IllegalArgumentException si el texto de horarioAtencion no se puede interpretar.
+     */
+    public void validar(String horarioAtencion) {
+        HorarioSemanal.validar(horarioAtencion);
+    }
+
+    public void invalidar(Long veterinariaId) {
+        if (veterinariaId != null) {
+            horarios.remove(veterinariaId);
+            // Al eliminarla, la base de datos deja sin veterinaria a sus usuarios
+            veterinariaDeVeterinario.values().removeIf(veterinariaId::equals);
+        }
+    }
+
+    void invalidarVeterinario(String veterinarioDocumento) {
+        veterinariaDeVeterinario.remove(veterinarioDocumento);
+        // Se repite al terminar la transacción: una lectura concurrente pudo volver a cargar
+        // la veterinaria anterior antes del commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    veterinariaDeVeterinario.remove(veterinarioDocumento);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.veterinaria.veterinaria.service;
+
+import java.text.Normalizer;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Horario de atención de una veterinaria compilado a partir del texto libre de
+ * horarioAtencion (p. ej. "Lunes a Viernes: 8:00 AM - 6:00 PM, Sábados: 8:00 AM - 2:00 PM").
+ * Cada día de la semana queda como una plantilla inmutable con los tramos abiertos y el
+ * inicio de cada franja, de modo que generar la disponibilidad solo recorre arreglos.
+ *
+ * Además de días y horas, el texto admite:
+ *  - varios tramos por día para los descansos ("8:00 AM - 12:00 PM y 2:00 PM - 6:00 PM")
+ *  - "Descanso: 12:00 PM - 1:00 PM" (o "Almuerzo"), que se resta a todos los días
+ *  - "Festivos: 9:00 AM - 1:00 PM" o "Festivos: Cerrado"
+ *  - "Citas cada 20 minutos" para cambiar la duración de la franja (30 por defecto)
+ *  - "24 horas", abierto todo el día
+ * Los dos puntos tras los días son opcionales ("Lunes a Domingo 8am-8pm").
+ * Si el texto está vacío o no se reconoce, se usa el horario por defecto de 8:00 a 18:00 y se
+ * avisa en el log; al guardar una veterinaria, validar rechaza el texto que no se reconoce.
+ */
+class HorarioSemanal {
+
+    static final int MINUTOS_SLOT_POR_DEFECTO = 30;
+    static final int APERTURA_POR_DEFECTO = 8 * 60;
+    static final int CIERRE_POR_DEFECTO = 18 * 60;
+
+    private static final String HORA = "\\d{1,2}(?::\\d{2})?\\s*(?:am|pm)?";
+    private static final String RANGO = HORA + "\\s*(?:-|–|a|hasta)\\s*" + HORA;
+    private static final Pattern PATRON_SEGMENTO = Pattern.compile(
+            "([a-z ,/]+?)\\s*:?\\s*(cerrado|" + RANGO + "(?:\\s*(?:,|;|/|y)\\s*" + RANGO + ")*)");
+    private static final Pattern PATRON_RANGO = Pattern.compile(
+            "(\\d{1,2})(?::(\\d{2}))?\\s*(am|pm)?\\s*(?:-|–|a|hasta)\\s*(\\d{1,2})(?::(\\d{2}))?\\s*(am|pm)?");
+    private static final Pattern PATRON_SLOT = Pattern.compile(
+            "(?:cada|intervalos? de|turnos? de|franjas? de)\\s*(\\d{1,3})\\s*min[a-z]*");
+    private static final Pattern PATRON_DIAS_RANGO = Pattern.compile("([a-z]+)\\s+a\\s+([a-z]+)");
+
+    private final Map<DayOfWeek, Plantilla> plantillas;
+    private final Plantilla plantillaFestivos;
+    private final Set<LocalDate> festivos;
+    private final int minutosSlot;
+
+    /**
+     * Día compilado: tramos abiertos [apertura, cierre) en minutos del día y, para cada
+     * franja, su inicio, la hora precalculada y el cierre del tramo al que pertenece.
+     */
+    static final class Plantilla {
+        static final Plantilla CERRADO = new Plantilla(new int[0][], MINUTOS_SLOT_POR_DEFECTO);
+
+        final int[][] tramos;
+        final int[] inicios;
+        final int[] cierres;
+        final LocalTime[] horas;
+
+        Plantilla(int[][] tramos, int minutosSlot) {
+            this.tramos = tramos;
+            int total = 0;
+            for (int[] tramo : tramos) {
+                total += (tramo[1] - tramo[0] + minutosSlot - 1) / minutosSlot;
+            }
+            inicios = new int[total];
+            cierres = new int[total];
+            horas = new LocalTime[total];
+            int i = 0;
+            for (int[] tramo : tramos) {
+                for (int minuto = tramo[0]; minuto < tramo[1]; minuto += minutosSlot) {
+                    inicios[i] = minuto;
+                    cierres[i] = tramo[1];
+                    horas[i] = LocalTime.of(minuto / 60, minuto % 60);
+                    i++;
+                }
+            }
+        }
+
+        boolean isCerrado() {
+            return tramos.length == 0;
+        }
+    }
+
+    private HorarioSemanal(Map<DayOfWeek, List<int[]>> tramosPorDia, List<int[]> tramosFestivos,
+                           Set<LocalDate> festivos, int minutosSlot) {
+        this.minutosSlot = minutosSlot;
+        this.festivos = festivos;
+        this.plantillas = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            List<int[]> tramos = tramosPorDia.get(dia);
+            plantillas.put(dia, tramos == null || tramos.isEmpty()
+                    ? Plantilla.CERRADO : new Plantilla(tramos.toArray(new int[0][]), minutosSlot));
+        }
+        this.plantillaFestivos = tramosFestivos == null || tramosFestivos.isEmpty()
+                ? Plantilla.CERRADO : new Plantilla(tramosFestivos.toArray(new int[0][]), minutosSlot);
+    }
+
+    Plantilla plantillaDe(LocalDate fecha) {
+        return festivos.contains(fecha) ? plantillaFestivos : plantillas.get(fecha.getDayOfWeek());
+    }
+
+    int getMinutosSlot() {
+        return minutosSlot;
+    }
+
+    static HorarioSemanal porDefecto(Set<LocalDate> festivos) {
+        Map<DayOfWeek, List<int[]>> tramosPorDia = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            tramosPorDia.put(dia, List.of(new int[] {APERTURA_POR_DEFECTO, CIERRE_POR_DEFECTO}));
+        }
+        return new HorarioSemanal(tramosPorDia, null, festivos, MINUTOS_SLOT_POR_DEFECTO);
+    }
+
+    // ==================== COMPILACIÓN ====================
+
+    static HorarioSemanal compilar(String texto, Set<LocalDate> festivos) {
+        if (texto == null || texto.isBlank()) {
+            return porDefecto(festivos);
+        }
+        List<String> ignorados = new ArrayList<>();
+        HorarioSemanal horario = interpretar(texto, festivos, ignorados);
+        if (horario == null) {
+            System.out.println("⚠️ Horario de atención no reconocido, se usa el horario por defecto: " + texto);
+            return porDefecto(festivos);
+        }
+        if (!ignorados.isEmpty()) {
+            System.out.println("⚠️ Partes del horario de atención no reconocidas y omitidas " + ignorados + ": " + texto);
+        }
+        return horario;
+    }
+
+    /**
+     * Rechaza un horario que no se reconoce entero, para no guardar un texto que se
+     * atendería en silencio con el horario por defecto. Un texto vacío es válido.
+     */
+    static void validar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return;
+        }
+        List<String> ignorados = new ArrayList<>();
+        if (interpretar(texto, Set.of(), ignorados) == null || !ignorados.isEmpty()) {
+            throw new IllegalArgumentException("No se reconoce el horario de atención \"" + texto
+                    + "\". Ejemplo válido: \"Lunes a Viernes: 8:00 AM - 6:00 PM, Sábados: 8:00 AM - 2:00 PM\"");
+        }
+    }
+
+    // Devuelve null si no se reconoce nada; los segmentos con días desconocidos se añaden a ignorados
+    private static HorarioSemanal interpretar(String texto, Set<LocalDate> festivos, List<String> ignorados) {
+        String normalizado = normalizar(texto);
+
+        int minutosSlot = MINUTOS_SLOT_POR_DEFECTO;
+        Matcher slot = PATRON_SLOT.matcher(normalizado);
+        if (slot.find()) {
+            int valor = Integer.parseInt(slot.group(1));
+            if (valor >= 5 && valor <= 240) {
+                minutosSlot = valor;
+            }
+            normalizado = slot.replaceAll(" ");
+        }
+
+        Map<DayOfWeek, List<int[]>> tramosPorDia = new EnumMap<>(DayOfWeek.class);
+        List<int[]> tramosFestivos = null;
+        List<int[]> descansos = new ArrayList<>();
+        boolean reconocido = false;
+
+        Matcher segmento = PATRON_SEGMENTO.matcher(normalizado);
+        while (segmento.find()) {
+            String dias = segmento.group(1).trim();
+            List<int[]> tramos = "cerrado".equals(segmento.group(2)) ? List.of() : parsearRangos(segmento.group(2));
+
+            if (dias.contains("descanso") || dias.contains("almuerzo")) {
+                descansos.addAll(tramos);
+                reconocido = true;
+            } else if (dias.contains("festivo") || dias.contains("feriado")) {
+                tramosFestivos = tramos;
+                reconocido = true;
+            } else {
+                // Un segmento posterior redefine los días que nombra ("Lunes a Domingo ..., Domingos: ...")
+                Set<DayOfWeek> nombrados = parsearDias(dias);
+                if (nombrados.isEmpty()) {
+                    ignorados.add(segmento.group().trim());
+                }
+                for (DayOfWeek dia : nombrados) {
+                    tramosPorDia.put(dia, tramos);
+                    reconocido = true;
+                }
+            }
+        }
+        if (!reconocido && normalizado.contains("24 horas")) {
+            for (DayOfWeek dia : DayOfWeek.values()) {
+                tramosPorDia.put(dia, List.of(new int[] {0, IntervalosOcupados.MINUTOS_POR_DIA}));
+            }
+            tramosFestivos = List.of(new int[] {0, IntervalosOcupados.MINUTOS_POR_DIA});
+            reconocido = true;
+        }
+        if (!reconocido) {
+            return null;
+        }
+
+        tramosPorDia.replaceAll((dia, tramos) -> restar(tramos, descansos));
+        if (tramosFestivos != null) {
+            tramosFestivos = restar(tramosFestivos, descansos);
+        }
+        return new HorarioSemanal(tramosPorDia, tramosFestivos, festivos, minutosSlot);
+    }
+
+    private static String normalizar(String texto) {
+        String sinAcentos = Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinAcentos.toLowerCase()
+                .replace("a.m.", "am").replace("p.m.", "pm")
+                .replace("a. m.", "am").replace("p. m.", "pm")
+                .replaceAll("\\s+", " ");
+    }
+
+    private static List<int[]> parsearRangos(String texto) {
+        List<int[]> tramos = new ArrayList<>();
+        Matcher rango = PATRON_RANGO.matcher(texto);
+        while (rango.find()) {
+            int inicio = minutos(rango.group(1), rango.group(2), rango.group(3));
+            int fin = minutos(rango.group(4), rango.group(5), rango.group(6));
+            if (fin <= inicio && rango.group(6) == null && fin + 12 * 60 > inicio) {
+                fin += 12 * 60; // "8:00 - 6:00" sin AM/PM
+            } else if (fin == 0) {
+                fin = IntervalosOcupados.MINUTOS_POR_DIA; // hasta medianoche
+            }
+            if (inicio < fin && inicio < IntervalosOcupados.MINUTOS_POR_DIA) {
+                tramos.add(new int[] {inicio, Math.min(fin, IntervalosOcupados.MINUTOS_POR_DIA)});
+            }
+        }
+        return restar(tramos, List.of());
+    }
+
+    private static int minutos(String horas, String mins, String sufijo) {
+        int h = Integer.parseInt(horas) % 24;
+        int m = mins != null ? Integer.parseInt(mins) % 60 : 0;
+        if ("pm".equals(sufijo) && h < 12) {
+            h += 12;
+        } else if ("am".equals(sufijo) && h == 12) {
+            h = 0;
+        }
+        return h * 60 + m;
+    }
+
+    private static Set<DayOfWeek> parsearDias(String texto) {
+        Set<DayOfWeek> dias = EnumSet.noneOf(DayOfWeek.class);
+        if (texto.contains("todos") || texto.contains("diario")) {
+            return EnumSet.allOf(DayOfWeek.class);
+        }
+        for (String parte : texto.split("\\s*(?:,|/|\\by\\b)\\s*")) {
+            Matcher rango = PATRON_DIAS_RANGO.matcher(parte.trim());
+            if (rango.matches()) {
+                DayOfWeek desde = dia(rango.group(1));
+                DayOfWeek hasta = dia(rango.group(2));
+                if (desde != null && hasta != null) {
+                    for (DayOfWeek d = desde; ; d = d.plus(1)) {
+                        dias.add(d);
+                        if (d == hasta) {
+                            break;
+                        }
+                    }
+                }
+            } else {
+                DayOfWeek d = dia(parte.trim());
+                if (d != null) {
+                    dias.add(d);
+                }
+            }
+        }
+        return dias;
+    }
+
+    private static DayOfWeek dia(String nombre) {
+        if (nombre.length() < 3) {
+            return null;
+        }
+        switch (nombre.substring(0, 3)) {
+            case "lun": return DayOfWeek.MONDAY;
+            case "mar": return DayOfWeek.TUESDAY;
+            case "mie": return DayOfWeek.WEDNESDAY;
+            case "jue": return DayOfWeek.THURSDAY;
+            case "vie": return DayOfWeek.FRIDAY;
+            case "sab": return DayOfWeek.SATURDAY;
+            case "dom": return DayOfWeek.SUNDAY;
+            default: return null;
+        }
+    }
+
+    // Ordena y une los tramos, quitando los descansos
+    private static List<int[]> restar(List<int[]> tramos, List<int[]> descansos) {
+        int[] abierto = new int[IntervalosOcupados.MINUTOS_POR_DIA + 1];
+        for (int[] tramo : tramos) {
+            abierto[tramo[0]]++;
+            abierto[tramo[1]]--;
+        }
+        boolean[] cerrado = new boolean[IntervalosOcupados.MINUTOS_POR_DIA];
+        for (int[] descanso : descansos) {
+            for (int m = descanso[0]; m < descanso[1]; m++) {
+                cerrado[m] = true;
+            }
+        }
+        List<int[]> resultado = new ArrayList<>();
+        int nivel = 0;
+        int inicio = -1;
+        for (int m = 0; m < IntervalosOcupados.MINUTOS_POR_DIA; m++) {
+            nivel += abierto[m];
+            boolean libre = nivel > 0 && !cerrado[m];
+            if (libre && inicio < 0) {
+                inicio = m;
+            } else if (!libre && inicio >= 0) {
+                resultado.add(new int[] {inicio, m});
+                inicio = -1;
+            }
+        }
+        if (inicio >= 0) {
+            resultado.add(new int[] {inicio, IntervalosOcupados.MINUTOS_POR_DIA});
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,121 @@
+package com.veterinaria.veterinaria.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Índice ordenado de intervalos ocupados de un día, en minutos desde las 00:00.
+ * Como ninguna cita dura más de {@link #MAX_DURACION_MINUTOS}, los intervalos que
+ * pueden solapar con [inicio, fin) empiezan en [inicio - MAX_DURACION_MINUTOS, fin),
+ * lo que acota cada consulta a O(log n + k).
+ */
+class IntervalosOcupados {
+
+    static final int MAX_DURACION_MINUTOS = 8 * 60;
+    static final int MINUTOS_POR_DIA = 24 * 60;
+
+    private final Map<Long, int[]> intervaloPorCita = new HashMap<>();
+    private final TreeMap<Integer, Set<Long>> citasPorInicio = new TreeMap<>();
+
+    /**
+     * Parte de [inicio, fin) que cae dentro de la fecha, en minutos del día; null si no la toca.
+     */
+    static int[] tramoDelDia(LocalDate fecha, LocalDateTime inicio, LocalDateTime fin) {
+        LocalDateTime inicioDia = fecha.atStartOfDay();
+        long desde = Math.max(0, Duration.between(inicioDia, inicio).toMinutes());
+        long hasta = Math.min(MINUTOS_POR_DIA, Duration.between(inicioDia, fin).toMinutes());
+        return desde < hasta ? new int[] {(int) desde, (int) hasta} : null;
+    }
+
+    void agregar(Long citaId, int inicio, int fin) {
+        quitar(citaId);
+        intervaloPorCita.put(citaId, new int[] {inicio, fin});
+        citasPorInicio.computeIfAbsent(inicio, k -> new HashSet<>()).add(citaId);
+    }
+
+    void quitar(Long citaId) {
+        int[] intervalo = intervaloPorCita.remove(citaId);
+        if (intervalo == null) {
+            return;
+        }
+        Set<Long> ids = citasPorInicio.get(intervalo[0]);
+        if (ids != null) {
+            ids.remove(citaId);
+            if (ids.isEmpty()) {
+                citasPorInicio.remove(intervalo[0]);
+            }
+        }
+    }
+
+    Set<Long> getCitaIds() {
+        return intervaloPorCita.keySet();
+    }
+
+    boolean solapa(int inicio, int fin) {
+        return citaQueSolapa(inicio, fin, null) != null;
+    }
+
+    /**
+     * Como solapa, sin contar la cita indicada (la que se está reprogramando).
+     */
+    boolean solapa(int inicio, int fin, Long excluida) {
+        return citaQueSolapa(inicio, fin, excluida) != null;
+    }
+
+    /**
+     * Devuelve el id de alguna cita que solapa con [inicio, fin), o null si el intervalo está libre.
+     */
+    Long citaQueSolapa(int inicio, int fin) {
+        return citaQueSolapa(inicio, fin, null);
+    }
+
+    private Long citaQueSolapa(int inicio, int fin, Long excluida) {
+        for (Map.Entry<Integer, Set<Long>> entry
+                : citasPorInicio.subMap(inicio - MAX_DURACION_MINUTOS, true, fin, false).entrySet()) {
+            for (Long citaId : entry.getValue()) {
+                if (intervaloPorCita.get(citaId)[1] > inicio && !citaId.equals(excluida)) {
+                    return citaId;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Busca el primer inicio >= desde tal que [inicio, inicio + duracion) esté libre y termine
+     * antes de limite. Devuelve -1 si no hay hueco.
+     */
+    int buscarHueco(int desde, int duracion, int limite) {
+        int candidato = desde;
+        while (candidato + duracion <= limite) {
+            int finOcupado = -1;
+            for (Map.Entry<Integer, Set<Long>> entry
+                    : citasPorInicio.subMap(candidato - MAX_DURACION_MINUTOS, true, candidato + duracion, false).entrySet()) {
+                for (Long citaId : entry.getValue()) {
+                    int fin = intervaloPorCita.get(citaId)[1];
+                    if (fin > candidato) {
+                        finOcupado = Math.max(finOcupado, fin);
+                    }
+                }
+            }
+            if (finOcupado < 0) {
+                return candidato;
+            }
+            // Saltar al final del bloque ocupado
+            candidato = finOcupado;
+        }
+        return -1;
+    }
+
+    IntervalosOcupados copia() {
+        IntervalosOcupados copia = new IntervalosOcupados();
+        intervaloPorCita.forEach((citaId, intervalo) -> copia.agregar(citaId, intervalo[0], intervalo[1]));
+        return copia;
+    }
+}
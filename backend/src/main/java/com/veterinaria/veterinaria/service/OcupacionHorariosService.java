@@ -0,0 +1,299 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Índice en memoria de horarios ocupados por veterinaria y por veterinario.
+ * Cada día se representa con un índice ordenado de intervalos (inicio + duración
+ * de cada cita activa); los días se cargan bajo demanda desde la base de datos y
+ * se descartan por LRU.
+ */
+@Service
+public class OcupacionHorariosService {
+
+    public static final int DURACION_POR_DEFECTO = 30;
+    public static final int MAX_DURACION_MINUTOS = IntervalosOcupados.MAX_DURACION_MINUTOS;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Value("${app.citas.ocupacion.max-dias:2000}")
+    private int maxDias;
+
+    private final Object lock = new Object();
+
+    // Días en memoria, ordenados por acceso para el desalojo LRU
+    private final LinkedHashMap<Clave, IntervalosOcupados> dias = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Clave, IntervalosOcupados> eldest) {
+            if (size() > maxDias) {
+                desindexar(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Índice inverso: días cargados en los que aparece cada cita
+    private final Map<Long, Set<Clave>> clavesPorCita = new HashMap<>();
+
+    // Se incrementa con cada escritura para descartar cargas concurrentes
+    private long generacion;
+
+    // Recurso de la transacción en curso con los cambios pendientes de aplicar al índice
+    private static final Object PENDIENTES = new Object();
+
+    private record Clave(Long veterinariaId, String veterinarioDocumento, LocalDate fecha) {
+        static Clave deVeterinaria(Long veterinariaId, LocalDate fecha) {
+            return new Clave(veterinariaId, null, fecha);
+        }
+
+        static Clave deVeterinario(String veterinarioDocumento, LocalDate fecha) {
+            return new Clave(null, veterinarioDocumento, fecha);
+        }
+    }
+
+    // ==================== CONSULTAS ====================
+
+    public boolean isHorarioDisponible(LocalDateTime fechaHora, int duracionMinutos, Long veterinariaId) {
+        return isHorarioDisponible(fechaHora, duracionMinutos, veterinariaId, null);
+    }
+
+    public boolean isHorarioDisponibleParaVeterinario(LocalDateTime fechaHora, int duracionMinutos, String veterinarioDocumento) {
+        return isHorarioDisponibleParaVeterinario(fechaHora, duracionMinutos, veterinarioDocumento, null);
+    }
+
+    /**
+     * Variantes que ignoran la cita excluida, para reprogramar una cita sin que choque consigo misma.
+     */
+    public boolean isHorarioDisponible(LocalDateTime fechaHora, int duracionMinutos, Long veterinariaId, Long excluirCitaId) {
+        return estaLibre(fechaHora, duracionMinutos, excluirCitaId, fecha -> Clave.deVeterinaria(veterinariaId, fecha));
+    }
+
+    public boolean isHorarioDisponibleParaVeterinario(LocalDateTime fechaHora, int duracionMinutos, String veterinarioDocumento,
+                                                      Long excluirCitaId) {
+        return estaLibre(fechaHora, duracionMinutos, excluirCitaId, fecha -> Clave.deVeterinario(veterinarioDocumento, fecha));
+    }
+
+    /**
+     * Primer inicio libre para el veterinario entre desde y hasta (mismo día) con la duración indicada.
+     */
+    public Optional<LocalDateTime> buscarHuecoParaVeterinario(String veterinarioDocumento, LocalDateTime desde,
+                                                              LocalDateTime hasta, int duracionMinutos) {
+        LocalDate fecha = desde.toLocalDate();
+        int limite = hasta.toLocalDate().isAfter(fecha) ? IntervalosOcupados.MINUTOS_POR_DIA : minutoDelDia(hasta);
+        int inicio = consultar(Clave.deVeterinario(veterinarioDocumento, fecha),
+                dia -> dia.buscarHueco(minutoDelDia(desde), duracionMinutos, limite));
+        return inicio < 0 ? Optional.empty() : Optional.of(fecha.atStartOfDay().plusMinutes(inicio));
+    }
+
+    /**
+     * Devuelve una copia del índice de intervalos ocupados de la veterinaria en la fecha.
+     */
+    IntervalosOcupados getOcupacionDia(LocalDate fecha, Long veterinariaId) {
+        return consultar(Clave.deVeterinaria(veterinariaId, fecha), IntervalosOcupados::copia);
+    }
+
+    public static int minutoDelDia(LocalDateTime fechaHora) {
+        return fechaHora.getHour() * 60 + fechaHora.getMinute();
+    }
+
+    public static int duracionDe(Cita cita) {
+        return cita.getDuracionMinutos() != null ? cita.getDuracionMinutos() : DURACION_POR_DEFECTO;
+    }
+
+    public static boolean ocupaHorario(Cita.EstadoCita estado) {
+        return estado != Cita.EstadoCita.CANCELADA && estado != Cita.EstadoCita.NO_ASISTIO;
+    }
+
+    // ==================== ACTUALIZACIÓN INCREMENTAL ====================
+
+    /**
+     * Refleja en el índice el estado actual de una cita recién guardada.
+     */
+    public void registrar(Cita cita) {
+        if (cita == null || cita.getId() == null) {
+            return;
+        }
+        // Se copian los datos ahora: al confirmar, la entidad puede estar desligada o haber cambiado
+        Long citaId = cita.getId();
+        LocalDateTime inicio = cita.getFechaHora();
+        LocalDateTime fin = inicio != null ? inicio.plusMinutes(duracionDe(cita)) : null;
+        boolean ocupa = inicio != null && ocupaHorario(cita.getEstado());
+        Long veterinariaId = cita.getVeterinaria() != null ? cita.getVeterinaria().getId() : null;
+        String veterinarioDocumento = cita.getVeterinario() != null ? cita.getVeterinario().getDocumento() : null;
+        alConfirmar(() -> {
+            synchronized (lock) {
+                generacion++;
+                quitarDeIndice(citaId);
+                if (!ocupa) {
+                    return;
+                }
+                for (LocalDate fecha = inicio.toLocalDate(); fecha.atStartOfDay().isBefore(fin); fecha = fecha.plusDays(1)) {
+                    if (veterinariaId != null) {
+                        agregarSiCargado(Clave.deVeterinaria(veterinariaId, fecha), citaId, inicio, fin);
+                    }
+                    if (veterinarioDocumento != null) {
+                        agregarSiCargado(Clave.deVeterinario(veterinarioDocumento, fecha), citaId, inicio, fin);
+                    }
+                }
+            }
+        });
+    }
+
+    public void eliminar(Long citaId) {
+        alConfirmar(() -> {
+            synchronized (lock) {
+                generacion++;
+                quitarDeIndice(citaId);
+            }
+        });
+    }
+
+    /**
+     * Aplica el cambio al confirmar la transacción en curso (o al momento si no hay ninguna),
+     * para que un rollback no deje horarios ocupados o libres que no existen. Las reservas de
+     * ReservaCitaService guardan sin transacción externa, así que el índice ya refleja la cita
+     * cuando se liberan sus locks.
+     */
+    private void alConfirmar(Runnable cambio) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cambio.run();
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Runnable> pendientes = (List<Runnable>) TransactionSynchronizationManager.getResource(PENDIENTES);
+        if (pendientes == null) {
+            List<Runnable> deTransaccion = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(PENDIENTES, deTransaccion);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deTransaccion.forEach(Runnable::run);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDIENTES);
+                }
+            });
+            pendientes = deTransaccion;
+        }
+        pendientes.add(cambio);
+    }
+
+    // ==================== INTERNOS ====================
+
+    private boolean estaLibre(LocalDateTime inicio, int duracionMinutos, Long excluirCitaId, Function<LocalDate, Clave> clave) {
+        LocalDateTime fin = inicio.plusMinutes(duracionMinutos);
+        // Un intervalo que cruza la medianoche se verifica en cada día que toca
+        for (LocalDate fecha = inicio.toLocalDate(); fecha.atStartOfDay().isBefore(fin); fecha = fecha.plusDays(1)) {
+            int[] tramo = IntervalosOcupados.tramoDelDia(fecha, inicio, fin);
+            if (tramo != null && consultar(clave.apply(fecha), dia -> dia.solapa(tramo[0], tramo[1], excluirCitaId))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Ejecuta la consulta bajo el lock sobre el día indicado, cargándolo si está frío
+    private <T> T consultar(Clave clave, Function<IntervalosOcupados, T> consulta) {
+        long generacionInicial;
+        synchronized (lock) {
+            IntervalosOcupados dia = dias.get(clave);
+            if (dia != null) {
+                return consulta.apply(dia);
+            }
+            generacionInicial = generacion;
+        }
+
+        // Día frío: reconstruir desde la base de datos fuera del lock
+        IntervalosOcupados nuevo = cargar(clave);
+
+        synchronized (lock) {
+            IntervalosOcupados existente = dias.get(clave);
+            if (existente != null) {
+                return consulta.apply(existente);
+            }
+            // Si hubo escrituras mientras se cargaba, el resultado puede estar desactualizado
+            if (generacion == generacionInicial) {
+                dias.put(clave, nuevo);
+                nuevo.getCitaIds()
+                        .forEach(citaId -> clavesPorCita.computeIfAbsent(citaId, k -> new HashSet<>()).add(clave));
+            }
+            return consulta.apply(nuevo);
+        }
+    }
+
+    private IntervalosOcupados cargar(Clave clave) {
+        // Se incluyen las citas del día anterior que pueden prolongarse hasta este día
+        LocalDateTime inicio = clave.fecha().atStartOfDay().minusMinutes(MAX_DURACION_MINUTOS);
+        LocalDateTime fin = clave.fecha().plusDays(1).atStartOfDay();
+        List<Object[]> filas = clave.veterinariaId() != null
+                ? citaRepository.findOcupacionPorVeterinaria(clave.veterinariaId(), inicio, fin)
+                : citaRepository.findOcupacionPorVeterinario(clave.veterinarioDocumento(), inicio, fin);
+
+        IntervalosOcupados dia = new IntervalosOcupados();
+        for (Object[] fila : filas) {
+            LocalDateTime fechaHora = (LocalDateTime) fila[1];
+            int duracion = fila[2] != null ? (Integer) fila[2] : DURACION_POR_DEFECTO;
+            int[] tramo = IntervalosOcupados.tramoDelDia(clave.fecha(), fechaHora, fechaHora.plusMinutes(duracion));
+            if (tramo != null) {
+                dia.agregar((Long) fila[0], tramo[0], tramo[1]);
+            }
+        }
+        return dia;
+    }
+
+    private void agregarSiCargado(Clave clave, Long citaId, LocalDateTime inicio, LocalDateTime fin) {
+        IntervalosOcupados dia = dias.get(clave);
+        int[] tramo = IntervalosOcupados.tramoDelDia(clave.fecha(), inicio, fin);
+        if (dia != null && tramo != null) {
+            dia.agregar(citaId, tramo[0], tramo[1]);
+            clavesPorCita.computeIfAbsent(citaId, k -> new HashSet<>()).add(clave);
+        }
+    }
+
+    private void quitarDeIndice(Long citaId) {
+        Set<Clave> claves = clavesPorCita.remove(citaId);
+        if (claves == null) {
+            return;
+        }
+        for (Clave clave : claves) {
+            IntervalosOcupados dia = dias.get(clave);
+            if (dia != null) {
+                dia.quitar(citaId);
+            }
+        }
+    }
+
+    private void desindexar(Clave clave, IntervalosOcupados dia) {
+        for (Long citaId : dia.getCitaIds()) {
+            Set<Clave> claves = clavesPorCita.get(citaId);
+            if (claves != null) {
+                claves.remove(clave);
+                if (claves.isEmpty()) {
+                    clavesPorCita.remove(citaId);
+                }
+            }
+        }
+    }
+}
@@ -16,11 +16,13 @@ import com.itextpdf.layout.properties.UnitValue;
 import com.veterinaria.veterinaria.dto.*;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public class PDFExportService {
@@ -30,12 +32,17 @@ public class PDFExportService {
     private static final DeviceRgb HEADER_COLOR = new DeviceRgb(41, 128, 185);
     private static final DeviceRgb ALT_ROW_COLOR = new DeviceRgb(236, 240, 241);
 
+    // Cada cuántas filas se maqueta la tabla y se envía lo generado
+    private static final int FILAS_POR_BLOQUE = 200;
+
     /**
-     * Genera un PDF con el reporte de usuarios
+     * Escribe el PDF del reporte de usuarios en {@code salida} a medida que {@code recorrido}
+     * entrega las filas
      */
-    public byte[] generarReporteUsuariosPDF(List<ReporteUsuarioDTO> usuarios, EstadisticasUsuariosDTO estadisticas) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfWriter writer = new PdfWriter(baos);
+    public void escribirReporteUsuariosPDF(OutputStream salida, EstadisticasUsuariosDTO estadisticas,
+                                           Consumer<Consumer<ReporteUsuarioDTO>> recorrido) {
+        try {
+            PdfWriter writer = abrir(salida);
             PdfDocument pdf = new PdfDocument(writer);
             Document document = new Document(pdf, PageSize.A4.rotate());
 
@@ -63,7 +70,8 @@ public class PDFExportService {
 
             // Tabla de usuarios
             float[] columnWidths = {1, 2, 2, 2, 3, 2, 2, 1, 1, 1, 2};
-            Table table = new Table(UnitValue.createPercentArray(columnWidths));
+            // Tabla grande: se maqueta y se escribe por bloques de filas en vez de entera al final
+            Table table = new Table(UnitValue.createPercentArray(columnWidths), true);
             table.setWidth(UnitValue.createPercentValue(100));
 
             // Encabezados
@@ -72,11 +80,12 @@ public class PDFExportService {
             for (String header : headers) {
                 table.addHeaderCell(createHeaderCell(header));
             }
+            document.add(table);
+            TablaIncremental tabla = new TablaIncremental(table, writer);
 
             // Datos
-            int row = 0;
-            for (ReporteUsuarioDTO usuario : usuarios) {
-                boolean altRow = row++ % 2 == 1;
+            recorrido.accept(usuario -> {
+                boolean altRow = tabla.siguienteFila();
                 table.addCell(createDataCell(usuario.getDocumento(), altRow));
                 table.addCell(createDataCell(usuario.getUsername(), altRow));
                 table.addCell(createDataCell(usuario.getNombres(), altRow));
@@ -90,24 +99,25 @@ public class PDFExportService {
                 table.addCell(createDataCell(
                     usuario.getFechaRegistro() != null ? usuario.getFechaRegistro().format(DATE_FORMATTER) : "", 
                     altRow));
-            }
+            });
 
-            document.add(table);
-            addFooter(document, usuarios.size());
+            tabla.terminar();
+            addFooter(document, tabla.getFilas());
 
             document.close();
-            return baos.toByteArray();
         } catch (Exception e) {
             throw new RuntimeException("Error al generar PDF de usuarios", e);
         }
     }
 
     /**
-     * Genera un PDF con el reporte de mascotas
+     * Escribe el PDF del reporte de mascotas en {@code salida} a medida que {@code recorrido}
+     * entrega las filas
      */
-    public byte[] generarReporteMascotasPDF(List<ReporteMascotaDTO> mascotas, EstadisticasMascotasDTO estadisticas) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfWriter writer = new PdfWriter(baos);
+    public void escribirReporteMascotasPDF(OutputStream salida, EstadisticasMascotasDTO estadisticas,
+                                           Consumer<Consumer<ReporteMascotaDTO>> recorrido) {
+        try {
+            PdfWriter writer = abrir(salida);
             PdfDocument pdf = new PdfDocument(writer);
             Document document = new Document(pdf, PageSize.A4.rotate());
 
@@ -139,7 +149,8 @@ public class PDFExportService {
 
             // Tabla de mascotas
             float[] columnWidths = {1, 2, 2, 2, 1, 1, 1, 3, 1, 1, 2, 2};
-            Table table = new Table(UnitValue.createPercentArray(columnWidths));
+            // Tabla grande: se maqueta y se escribe por bloques de filas en vez de entera al final
+            Table table = new Table(UnitValue.createPercentArray(columnWidths), true);
             table.setWidth(UnitValue.createPercentValue(100));
 
             // Encabezados
@@ -148,11 +159,12 @@ public class PDFExportService {
             for (String header : headers) {
                 table.addHeaderCell(createHeaderCell(header));
             }
+            document.add(table);
+            TablaIncremental tabla = new TablaIncremental(table, writer);
 
             // Datos
-            int row = 0;
-            for (ReporteMascotaDTO mascota : mascotas) {
-                boolean altRow = row++ % 2 == 1;
+            recorrido.accept(mascota -> {
+                boolean altRow = tabla.siguienteFila();
                 table.addCell(createDataCell(String.valueOf(mascota.getId()), altRow));
                 table.addCell(createDataCell(mascota.getNombre(), altRow));
                 table.addCell(createDataCell(mascota.getEspecie(), altRow));
@@ -172,24 +184,25 @@ public class PDFExportService {
                 table.addCell(createDataCell(
                     mascota.getFechaRegistro() != null ? mascota.getFechaRegistro().format(DATE_FORMATTER) : "", 
                     altRow));
-            }
+            });
 
-            document.add(table);
-            addFooter(document, mascotas.size());
+            tabla.terminar();
+            addFooter(document, tabla.getFilas());
 
             document.close();
-            return baos.toByteArray();
         } catch (Exception e) {
             throw new RuntimeException("Error al generar PDF de mascotas", e);
         }
     }
 
     /**
-     * Genera un PDF con el reporte de citas
+     * Escribe el PDF del reporte de citas en {@code salida} a medida que {@code recorrido}
+     * entrega las filas
      */
-    public byte[] generarReporteCitasPDF(List<ReporteCitaDTO> citas, EstadisticasCitasDTO estadisticas) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfWriter writer = new PdfWriter(baos);
+    public void escribirReporteCitasPDF(OutputStream salida, EstadisticasCitasDTO estadisticas,
+                                        Consumer<Consumer<ReporteCitaDTO>> recorrido) {
+        try {
+            PdfWriter writer = abrir(salida);
             PdfDocument pdf = new PdfDocument(writer);
             Document document = new Document(pdf, PageSize.A4.rotate());
 
@@ -220,7 +233,8 @@ public class PDFExportService {
 
             // Tabla de citas
             float[] columnWidths = {1, 2, 3, 2, 2, 3, 3, 3, 2};
-            Table table = new Table(UnitValue.createPercentArray(columnWidths));
+            // Tabla grande: se maqueta y se escribe por bloques de filas en vez de entera al final
+            Table table = new Table(UnitValue.createPercentArray(columnWidths), true);
             table.setWidth(UnitValue.createPercentValue(100));
 
             // Encabezados
@@ -229,11 +243,12 @@ public class PDFExportService {
             for (String header : headers) {
                 table.addHeaderCell(createHeaderCell(header));
             }
+            document.add(table);
+            TablaIncremental tabla = new TablaIncremental(table, writer);
 
             // Datos
-            int row = 0;
-            for (ReporteCitaDTO cita : citas) {
-                boolean altRow = row++ % 2 == 1;
+            recorrido.accept(cita -> {
+                boolean altRow = tabla.siguienteFila();
                 table.addCell(createDataCell(String.valueOf(cita.getId()), altRow));
                 table.addCell(createDataCell(
                     cita.getFechaHora() != null ? cita.getFechaHora().format(DATETIME_FORMATTER) : "", 
@@ -245,13 +260,12 @@ public class PDFExportService {
                 table.addCell(createDataCell(cita.getVeterinariaNombre(), altRow));
                 table.addCell(createDataCell(cita.getMotivo(), altRow));
                 table.addCell(createDataCell(cita.getEstado(), altRow));
-            }
+            });
 
-            document.add(table);
-            addFooter(document, citas.size());
+            tabla.terminar();
+            addFooter(document, tabla.getFilas());
 
             document.close();
-            return baos.toByteArray();
         } catch (Exception e) {
             throw new RuntimeException("Error al generar PDF de citas", e);
         }
@@ -259,6 +273,54 @@ public class PDFExportService {
 
     // ==================== MÉTODOS AUXILIARES ====================
 
+    /**
+     * Escritor PDF sobre la salida, sin cerrarla al terminar el documento
+     */
+    private static PdfWriter abrir(OutputStream salida) {
+        PdfWriter writer = new PdfWriter(salida);
+        writer.setCloseStream(false);
+        return writer;
+    }
+
+    /**
+     * Cuenta las filas de una tabla grande y la vacía cada {@link #FILAS_POR_BLOQUE}: las filas
+     * ya añadidas se maquetan, las páginas completas se escriben y se liberan, y lo escrito se
+     * envía al cliente. Un error de escritura corta el recorrido de la consulta.
+     */
+    private static final class TablaIncremental {
+        private final Table table;
+        private final PdfWriter writer;
+        private int filas;
+
+        TablaIncremental(Table table, PdfWriter writer) {
+            this.table = table;
+            this.writer = writer;
+        }
+
+        /**
+         * Vacía el bloque anterior si está completo y dice si la nueva fila es alterna
+         */
+        boolean siguienteFila() {
+            if (filas > 0 && filas % FILAS_POR_BLOQUE == 0) {
+                table.flush();
+                try {
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return filas++ % 2 == 1;
+        }
+
+        void terminar() {
+            table.complete();
+        }
+
+        int getFilas() {
+            return filas;
+        }
+    }
+
     private void addTitle(Document document, String title) {
         Paragraph titleParagraph = new Paragraph(title)
             .setFontSize(18)
@@ -11,6 +11,10 @@ import com.itextpdf.layout.properties.UnitValue;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.font.PdfFont;
 import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
 import com.itextpdf.layout.borders.Border;
 
 import com.itextpdf.kernel.geom.PageSize;
@@ -24,11 +28,15 @@ import com.veterinaria.veterinaria.repository.CitaRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Optional;
 
 @Service
 public class PdfHistoriaClinicaService {
@@ -42,23 +50,54 @@ public class PdfHistoriaClinicaService {
     @Autowired
     private CitaRepository citaRepository;
     
+    @Autowired
+    private CacheHistoriasPdfService cacheHistoriasPdfService;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     
+    private TransactionTemplate lectura;
+    
+    // Fuentes estándar cargadas una sola vez al arrancar
+    private FontProgram fuenteNegrita;
+    private FontProgram fuenteNormal;
+    
+    @PostConstruct
+    public void preparar() throws IOException {
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        fuenteNegrita = FontProgramFactory.createFont(StandardFonts.HELVETICA_BOLD);
+        fuenteNormal = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+    }
+    
+    /**
+     * PDF de la historia clínica de la mascota. Se sirve desde {@link CacheHistoriasPdfService}
+     * mientras no cambien la mascota, sus historias ni sus citas.
+     */
     public byte[] generarHistoriaClinicaPdf(Long mascotaId, String propietarioDocumento) throws Exception {
-        // Verificar que la mascota existe
-        Optional<Mascota> mascotaOpt = mascotaRepository.findById(mascotaId);
-        if (!mascotaOpt.isPresent()) {
-            throw new RuntimeException("Mascota no encontrada");
-        }
-        
-        Mascota mascota = mascotaOpt.get();
-        
         // Si se proporciona documento de propietario, verificar que coincida (para clientes)
-        if (propietarioDocumento != null && !mascota.getPropietario().getDocumento().equals(propietarioDocumento)) {
-            throw new RuntimeException("No tiene permisos para acceder a esta mascota");
+        if (propietarioDocumento != null) {
+            String documento = mascotaRepository.findPropietarioDocumentoById(mascotaId)
+                .orElseThrow(() -> new RuntimeException("Mascota no encontrada"));
+            if (!documento.equals(propietarioDocumento)) {
+                throw new RuntimeException("No tiene permisos para acceder a esta mascota");
+            }
         }
         
+        // Transacción de solo lectura: también se genera desde los hilos de la exportación masiva,
+        // que no tienen la sesión de la petición para cargar las relaciones perezosas
+        return cacheHistoriasPdfService.obtener(mascotaId,
+            () -> lectura.execute(estado -> renderizar(mascotaId)));
+    }
+    
+    private byte[] renderizar(Long mascotaId) {
+        // Verificar que la mascota existe
+        Mascota mascota = mascotaRepository.findById(mascotaId)
+            .orElseThrow(() -> new RuntimeException("Mascota no encontrada"));
+        
         // Obtener historias clínicas y citas
         List<HistoriaClinica> historias = historiaClinicaRepository.findByMascotaIdOrderByFechaConsultaDesc(mascotaId);
         List<Cita> citas = citaRepository.findByMascotaIdOrderByFechaHoraDesc(mascotaId);
@@ -70,9 +109,9 @@ public class PdfHistoriaClinicaService {
         Document document = new Document(pdfDoc, PageSize.A4);
         
         try {
-            // Fuentes
-            PdfFont boldFont = PdfFontFactory.createFont("Helvetica-Bold");
-            PdfFont normalFont = PdfFontFactory.createFont("Helvetica");
+            // Un PdfFont pertenece a un solo documento: se crea a partir de los programas ya cargados
+            PdfFont boldFont = PdfFontFactory.createFont(fuenteNegrita, PdfEncodings.WINANSI);
+            PdfFont normalFont = PdfFontFactory.createFont(fuenteNormal, PdfEncodings.WINANSI);
             
             // Título del documento
             Paragraph titulo = new Paragraph("HISTORIA CLÍNICA COMPLETA")
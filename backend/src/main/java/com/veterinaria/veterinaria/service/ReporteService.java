@@ -69,8 +69,7 @@ public class ReporteService {
         reporteRepository.deleteById(id);
     }
     
-    public Reporte generarReporteCitas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Long veterinariaId) {
-        // Obtener usuario actual
+    public Usuario getUsuarioActual() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
         Optional<Usuario> usuarioOpt = usuarioRepository.findByUsername(username);
@@ -79,8 +78,20 @@ public class ReporteService {
             throw new RuntimeException("Usuario no encontrado");
         }
         
-        Usuario usuario = usuarioOpt.get();
-        
+        return usuarioOpt.get();
+    }
+    
+    public Reporte generarReporteCitas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Long veterinariaId) {
+        Reporte reporte = new Reporte();
+        reporte.setGeneradoPor(getUsuarioActual());
+        completarReporteCitas(reporte, fechaInicio, fechaFin, veterinariaId);
+        return reporteRepository.save(reporte);
+    }
+    
+    /**
+     * Calcula el contenido del reporte de citas sobre un reporte ya creado (sin guardarlo).
+     */
+    public void completarReporteCitas(Reporte reporte, LocalDateTime fechaInicio, LocalDateTime fechaFin, Long veterinariaId) {
         // Contar citas en el rango de fechas (filtrado por veterinaria si se proporciona)
         long totalCitas;
         long citasConfirmadas;
@@ -111,8 +122,7 @@ public class ReporteService {
         contenido.append("Citas canceladas: ").append(citasCanceladas).append("\n");
         contenido.append("Citas pendientes: ").append(citasPendientes).append("\n\n");
         
-        // Crear y guardar el reporte
-        Reporte reporte = new Reporte();
+        // Completar el reporte
         String titulo = "Reporte de Citas - " + fechaInicio.toLocalDate() + " a " + fechaFin.toLocalDate();
         if (veterinariaId != null) {
             titulo += " (Veterinaria ID: " + veterinariaId + ")";
@@ -123,23 +133,17 @@ public class ReporteService {
         reporte.setFechaInicio(fechaInicio.toLocalDate());
         reporte.setFechaFin(fechaFin.toLocalDate());
         reporte.setContenido(contenido.toString());
-        reporte.setGeneradoPor(usuario);
-        
-        return reporteRepository.save(reporte);
+        reporte.setFormato("TEXTO");
     }
     
     public Reporte generarReporteMascotas(Long veterinariaId) {
-        // Obtener usuario actual
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByUsername(username);
-        
-        if (usuarioOpt.isEmpty()) {
-            throw new RuntimeException("Usuario no encontrado");
-        }
-        
-        Usuario usuario = usuarioOpt.get();
-        
+        Reporte reporte = new Reporte();
+        reporte.setGeneradoPor(getUsuarioActual());
+        completarReporteMascotas(reporte, veterinariaId);
+        return reporteRepository.save(reporte);
+    }
+    
+    public void completarReporteMascotas(Reporte reporte, Long veterinariaId) {
         // Estadísticas de mascotas (filtrado por veterinaria si se proporciona)
         long totalMascotas;
         long mascotasActivas;
@@ -165,8 +169,7 @@ public class ReporteService {
         contenido.append("Mascotas activas: ").append(mascotasActivas).append("\n");
         contenido.append("Mascotas inactivas: ").append(mascotasInactivas).append("\n\n");
         
-        // Crear y guardar el reporte
-        Reporte reporte = new Reporte();
+        // Completar el reporte
         String titulo = "Reporte de Mascotas Registradas - " + LocalDateTime.now().toLocalDate();
         if (veterinariaId != null) {
             titulo += " (Veterinaria ID: " + veterinariaId + ")";
@@ -175,23 +178,17 @@ public class ReporteService {
         reporte.setTipo(Reporte.TipoReporte.MASCOTAS_REGISTRADAS);
         reporte.setDescripcion("Reporte general de mascotas registradas en el sistema");
         reporte.setContenido(contenido.toString());
-        reporte.setGeneradoPor(usuario);
-        
-        return reporteRepository.save(reporte);
+        reporte.setFormato("TEXTO");
     }
     
     public Reporte generarReporteUsuarios(Long veterinariaId) {
-        // Obtener usuario actual
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByUsername(username);
-        
-        if (usuarioOpt.isEmpty()) {
-            throw new RuntimeException("Usuario no encontrado");
-        }
-        
-        Usuario usuario = usuarioOpt.get();
-        
+        Reporte reporte = new Reporte();
+        reporte.setGeneradoPor(getUsuarioActual());
+        completarReporteUsuarios(reporte, veterinariaId);
+        return reporteRepository.save(reporte);
+    }
+    
+    public void completarReporteUsuarios(Reporte reporte, Long veterinariaId) {
         // Estadísticas de usuarios (filtrado por veterinaria si se proporciona)
         long totalUsuarios;
         long usuariosActivos;
@@ -217,8 +214,7 @@ public class ReporteService {
         contenido.append("Usuarios activos: ").append(usuariosActivos).append("\n");
         contenido.append("Usuarios inactivos: ").append(usuariosInactivos).append("\n\n");
         
-        // Crear y guardar el reporte
-        Reporte reporte = new Reporte();
+        // Completar el reporte
         String titulo = "Reporte de Usuarios - " + LocalDateTime.now().toLocalDate();
         if (veterinariaId != null) {
             titulo += " (Veterinaria ID: " + veterinariaId + ")";
@@ -227,8 +223,6 @@ public class ReporteService {
         reporte.setTipo(Reporte.TipoReporte.USUARIOS_ACTIVOS);
         reporte.setDescripcion("Reporte general de usuarios registrados en el sistema");
         reporte.setContenido(contenido.toString());
-        reporte.setGeneradoPor(usuario);
-        
-        return reporteRepository.save(reporte);
+        reporte.setFormato("TEXTO");
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reserva de citas sin doble asignación.
+ * Una cita activa ocupa su horario en su veterinaria y en su veterinario. En un nodo, las
+ * reservas que compiten por la misma veterinaria o veterinario en horarios que se solapan se
+ * serializan con locks particionados; entre nodos, las restricciones únicas
+ * uk_citas_reserva_veterinaria y uk_citas_reserva_veterinario de la tabla citas aplican la
+ * misma regla a citas con el mismo inicio y rechazan el segundo INSERT.
+ */
+@Service
+public class ReservaCitaService {
+
+    private static final int NUM_PARTICIONES = 256; // potencia de 2
+    private static final int MINUTOS_BLOQUE = 30;
+    private static final String PREFIJO_RESTRICCION_RESERVA = "uk_citas_reserva_";
+
+    @Autowired
+    private CitaService citaService;
+
+    private final ReentrantLock[] locks = new ReentrantLock[NUM_PARTICIONES];
+
+    public ReservaCitaService() {
+        for (int i = 0; i < NUM_PARTICIONES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public static class HorarioNoDisponibleException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public HorarioNoDisponibleException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Verifica la disponibilidad y guarda la cita de forma atómica respecto a
+     * otras reservas que puedan solapar con ella en la misma veterinaria o con
+     * el mismo veterinario. Sirve también para reprogramar una cita existente:
+     * su horario anterior no cuenta como ocupado.
+     */
+    public Cita reservar(Cita cita) {
+        if (cita.getDuracionMinutos() == null) {
+            cita.setDuracionMinutos(OcupacionHorariosService.DURACION_POR_DEFECTO);
+        }
+        int duracion = cita.getDuracionMinutos();
+        if (duracion <= 0 || duracion > OcupacionHorariosService.MAX_DURACION_MINUTOS) {
+            throw new IllegalArgumentException("La duración de la cita debe estar entre 1 y "
+                    + OcupacionHorariosService.MAX_DURACION_MINUTOS + " minutos");
+        }
+        Long veterinariaId = cita.getVeterinaria() != null ? cita.getVeterinaria().getId() : null;
+        String veterinarioDocumento = cita.getVeterinario() != null ? cita.getVeterinario().getDocumento() : null;
+        LocalDateTime fechaHora = cita.getFechaHora();
+        if (fechaHora == null) {
+            throw new IllegalArgumentException("La fecha y hora de la cita son obligatorias");
+        }
+        // Una cita cancelada o no asistida no ocupa horario: no hay nada que verificar
+        if (!OcupacionHorariosService.ocupaHorario(cita.getEstado())) {
+            veterinariaId = null;
+            veterinarioDocumento = null;
+        }
+        Long citaId = cita.getId();
+
+        List<ReentrantLock> adquiridos = bloquear(particiones(veterinariaId, veterinarioDocumento, fechaHora, duracion));
+        try {
+            if (veterinariaId != null && !citaService.isHorarioDisponible(fechaHora, duracion, veterinariaId, citaId)) {
+                throw new HorarioNoDisponibleException("El horario seleccionado ya está ocupado. Por favor, elija otro horario.");
+            }
+            if (veterinarioDocumento != null
+                    && !citaService.isHorarioDisponibleParaVeterinario(fechaHora, duracion, veterinarioDocumento, citaId)) {
+                throw new HorarioNoDisponibleException("El veterinario ya tiene una cita en ese horario. Por favor, elija otro horario.");
+            }
+            try {
+                return citaService.save(cita);
+            } catch (DataIntegrityViolationException e) {
+                // Otro nodo reservó el mismo horario entre la verificación y el INSERT
+                String detalle = e.getMostSpecificCause() != null ? e.getMostSpecificCause().getMessage() : e.getMessage();
+                if (detalle != null && detalle.toLowerCase(Locale.ROOT).contains(PREFIJO_RESTRICCION_RESERVA)) {
+                    throw new HorarioNoDisponibleException("El horario seleccionado acaba de ser reservado. Por favor, elija otro horario.");
+                }
+                throw e;
+            }
+        } finally {
+            for (int i = adquiridos.size() - 1; i >= 0; i--) {
+                adquiridos.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Particiones que cubren la cita: una por cada bloque de 30 minutos que toca, tanto
+     * para la veterinaria como para el veterinario. Dos citas que se solapan comparten
+     * al menos un bloque, y por tanto al menos una partición.
+     */
+    private static SortedSet<Integer> particiones(Long veterinariaId, String veterinarioDocumento,
+                                                  LocalDateTime fechaHora, int duracion) {
+        SortedSet<Integer> particiones = new TreeSet<>();
+        LocalDateTime inicioBloque = fechaHora.truncatedTo(ChronoUnit.HOURS)
+                .plusMinutes(fechaHora.getMinute() / MINUTOS_BLOQUE * MINUTOS_BLOQUE);
+        LocalDateTime fin = fechaHora.plusMinutes(duracion);
+        for (LocalDateTime bloque = inicioBloque; bloque.isBefore(fin); bloque = bloque.plusMinutes(MINUTOS_BLOQUE)) {
+            particiones.add(particion(veterinariaId, bloque));
+            if (veterinarioDocumento != null) {
+                particiones.add(particion(veterinarioDocumento, bloque));
+            }
+        }
+        return particiones;
+    }
+
+    // Se adquieren en orden ascendente para evitar interbloqueos
+    private List<ReentrantLock> bloquear(SortedSet<Integer> particiones) {
+        List<ReentrantLock> adquiridos = new ArrayList<>(particiones.size());
+        for (Integer particion : particiones) {
+            ReentrantLock lock = locks[particion];
+            lock.lock();
+            adquiridos.add(lock);
+        }
+        return adquiridos;
+    }
+
+    private static int particion(Object clave, LocalDateTime bloque) {
+        int h = Objects.hash(clave, bloque);
+        h ^= (h >>> 16);
+        return h & (NUM_PARTICIONES - 1);
+    }
+}
@@ -0,0 +1,66 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Listener de Hibernate que mantiene el resumen diario de {@link ResumenCitasService}.
+ * La clave anterior de la cita (veterinaria, veterinario, día y estado) sale del estado que
+ * Hibernate tenía cargado (oldState / deletedState), así que la entidad no guarda nada.
+ */
+class ResumenCitasListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final ResumenCitasService servicio;
+
+    ResumenCitasListener(ResumenCitasService servicio) {
+        this.servicio = servicio;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Cita) {
+            servicio.registrarCambio(null, claveDe(event.getPersister(), event.getState()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        // Sin estado anterior no se sabe qué fila restar; lo corrige la reconstrucción nocturna
+        if (!(event.getEntity() instanceof Cita) || event.getOldState() == null) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        servicio.registrarCambio(claveDe(persister, event.getOldState()), claveDe(persister, event.getState()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof Cita) || event.getDeletedState() == null) {
+            return;
+        }
+        servicio.registrarCambio(claveDe(event.getPersister(), event.getDeletedState()), null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private static ResumenCitasService.Clave claveDe(EntityPersister persister, Object[] estado) {
+        String[] propiedades = persister.getPropertyNames();
+        return ResumenCitasService.claveDe(nombre -> {
+            for (int i = 0; i < propiedades.length; i++) {
+                if (propiedades[i].equals(nombre)) {
+                    return estado[i];
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,290 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.EstadisticasCitasDTO;
+import com.veterinaria.veterinaria.dto.TendenciaCitasDTO;
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.ResumenCitaDiario;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.ResumenCitaDiarioRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Resumen diario de citas: cuántas hay por (veterinaria, veterinario, día, estado).
+ * {@link ResumenCitasListener} acumula los cambios de cada transacción y se aplican al
+ * confirmarla, así una transacción revertida no mueve el resumen; los UPDATE en lote avisan
+ * con {@link #aplicarTransicion}. La reconstrucción nocturna recalcula la tabla mes a mes
+ * desde las citas y corrige lo que no pasa por JPA (p. ej. el ON DELETE SET NULL de la base
+ * de datos). Las estadísticas y tendencias de citas se leen de aquí, sin recorrer las citas.
+ */
+@Service
+public class ResumenCitasService {
+
+    // Rango máximo de una consulta de tendencia
+    public static final int MAX_DIAS_TENDENCIA = 1096;
+
+    record Clave(Long veterinariaId, String veterinarioDocumento, LocalDate fecha, Cita.EstadoCita estado) {}
+
+    // Orden fijo de las filas al actualizarlas, para que dos transacciones no se bloqueen en cruz
+    private static final Comparator<Clave> ORDEN_CLAVES = Comparator.comparing(Clave::fecha)
+            .thenComparing(Clave::veterinariaId)
+            .thenComparing(Clave::veterinarioDocumento)
+            .thenComparing(Clave::estado);
+
+    // Recurso de la transacción en curso con los cambios pendientes de aplicar
+    private static final Object PENDIENTES = new Object();
+
+    @Autowired
+    private ResumenCitaDiarioRepository resumenRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private TransactionTemplate transaccionNueva;
+
+    @PostConstruct
+    public void configurar() {
+        // Tras el commit la transacción original sigue enlazada al hilo: se abre siempre una nueva
+        transaccionNueva = new TransactionTemplate(transactionManager);
+        transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        EventListenerRegistry registro = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        ResumenCitasListener listener = new ResumenCitasListener(this);
+        registro.appendListeners(EventType.POST_INSERT, listener);
+        registro.appendListeners(EventType.POST_UPDATE, listener);
+        registro.appendListeners(EventType.POST_DELETE, listener);
+        if (resumenRepository.count() == 0) {
+            // Primera puesta en marcha: se rellena el resumen con las citas existentes
+            reconstruir();
+        }
+    }
+
+    // ==================== CONSULTAS ====================
+
+    /**
+     * Estadísticas de citas de una veterinaria (o de todas si veterinariaId es null).
+     * Semana = los últimos 7 días más hoy; mes = desde el día 1 hasta hoy, ambos con el día completo.
+     */
+    public EstadisticasCitasDTO getEstadisticas(Long veterinariaId) {
+        LocalDate hoy = LocalDate.now();
+        List<Object[]> filas = resumenRepository.resumenPorEstado(hoy, hoy.minusDays(7), hoy.withDayOfMonth(1), veterinariaId);
+
+        Map<String, Long> totalPorEstado = new HashMap<>();
+        for (Cita.EstadoCita estado : Cita.EstadoCita.values()) {
+            totalPorEstado.put(estado.name(), 0L);
+        }
+        long total = 0;
+        long citasHoy = 0;
+        long citasSemana = 0;
+        long citasMes = 0;
+        for (Object[] fila : filas) {
+            long totalEstado = ((Number) fila[1]).longValue();
+            totalPorEstado.put(((Cita.EstadoCita) fila[0]).name(), totalEstado);
+            total += totalEstado;
+            citasHoy += ((Number) fila[2]).longValue();
+            citasSemana += ((Number) fila[3]).longValue();
+            citasMes += ((Number) fila[4]).longValue();
+        }
+
+        EstadisticasCitasDTO estadisticas = new EstadisticasCitasDTO(total);
+        estadisticas.setTotalPorEstado(totalPorEstado);
+        estadisticas.setCitasHoy(citasHoy);
+        estadisticas.setCitasSemana(citasSemana);
+        estadisticas.setCitasMes(citasMes);
+        return estadisticas;
+    }
+
+    /**
+     * Serie diaria de citas por estado entre dos fechas (incluidas), con un elemento por día
+     * aunque no haya citas. Los filtros de veterinaria y veterinario son opcionales.
+     */
+    public List<TendenciaCitasDTO> getTendencia(LocalDate desde, LocalDate hasta, Long veterinariaId, String veterinarioDocumento) {
+        if (hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("La fecha de fin es anterior a la de inicio");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) >= MAX_DIAS_TENDENCIA) {
+            throw new IllegalArgumentException("El rango no puede superar " + MAX_DIAS_TENDENCIA + " días");
+        }
+
+        Map<LocalDate, TendenciaCitasDTO> serie = new LinkedHashMap<>();
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            TendenciaCitasDTO dia = new TendenciaCitasDTO(fecha);
+            for (Cita.EstadoCita estado : Cita.EstadoCita.values()) {
+                dia.getTotalPorEstado().put(estado.name(), 0L);
+            }
+            serie.put(fecha, dia);
+        }
+        for (Object[] fila : resumenRepository.findSerie(desde, hasta, veterinariaId, veterinarioDocumento)) {
+            TendenciaCitasDTO dia = serie.get((LocalDate) fila[0]);
+            long total = ((Number) fila[2]).longValue();
+            dia.getTotalPorEstado().put(((Cita.EstadoCita) fila[1]).name(), total);
+            dia.setTotal(dia.getTotal() + total);
+        }
+        return new ArrayList<>(serie.values());
+    }
+
+    // ==================== ACTUALIZACIÓN INCREMENTAL ====================
+
+    static Clave claveDe(Function<String, Object> propiedad) {
+        LocalDateTime fechaHora = (LocalDateTime) propiedad.apply("fechaHora");
+        Cita.EstadoCita estado = (Cita.EstadoCita) propiedad.apply("estado");
+        if (fechaHora == null || estado == null) {
+            return null;
+        }
+        // getId() / getDocumento() de un proxy no lo inicializan
+        Veterinaria veterinaria = (Veterinaria) propiedad.apply("veterinaria");
+        Usuario veterinario = (Usuario) propiedad.apply("veterinario");
+        return new Clave(
+                veterinaria != null ? veterinaria.getId() : ResumenCitaDiario.SIN_VETERINARIA,
+                veterinario != null ? veterinario.getDocumento() : ResumenCitaDiario.SIN_VETERINARIO,
+                fechaHora.toLocalDate(),
+                estado);
+    }
+
+    /**
+     * Mueve una cita de la fila anterior a la nueva (null si no existía o ya no existe).
+     */
+    void registrarCambio(Clave anterior, Clave nueva) {
+        if (Objects.equals(anterior, nueva)) {
+            return;
+        }
+        Map<Clave, Long> cambios = new HashMap<>();
+        if (anterior != null) {
+            cambios.merge(anterior, -1L, Long::sum);
+        }
+        if (nueva != null) {
+            cambios.merge(nueva, 1L, Long::sum);
+        }
+        acumular(cambios);
+    }
+
+    /**
+     * Ajusta el resumen de una cita cambiada con un UPDATE en lote, que no pasa por el listener.
+     */
+    public void aplicarTransicion(Long veterinariaId, String veterinarioDocumento, LocalDateTime fechaHora,
+                                  Cita.EstadoCita desde, Cita.EstadoCita hacia) {
+        Long veterinaria = veterinariaId != null ? veterinariaId : ResumenCitaDiario.SIN_VETERINARIA;
+        String veterinario = veterinarioDocumento != null ? veterinarioDocumento : ResumenCitaDiario.SIN_VETERINARIO;
+        registrarCambio(new Clave(veterinaria, veterinario, fechaHora.toLocalDate(), desde),
+                        new Clave(veterinaria, veterinario, fechaHora.toLocalDate(), hacia));
+    }
+
+    private void acumular(Map<Clave, Long> cambios) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            aplicar(cambios);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Clave, Long> pendientes = (Map<Clave, Long>) TransactionSynchronizationManager.getResource(PENDIENTES);
+        if (pendientes == null) {
+            Map<Clave, Long> deTransaccion = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(PENDIENTES, deTransaccion);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar(deTransaccion);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDIENTES);
+                }
+            });
+            pendientes = deTransaccion;
+        }
+        Map<Clave, Long> destino = pendientes;
+        cambios.forEach((clave, delta) -> destino.merge(clave, delta, Long::sum));
+    }
+
+    private void aplicar(Map<Clave, Long> cambios) {
+        Map<Clave, Long> ordenados = new TreeMap<>(ORDEN_CLAVES);
+        ordenados.putAll(cambios);
+        try {
+            transaccionNueva.executeWithoutResult(estado -> ordenados.forEach((clave, delta) -> {
+                if (delta != 0) {
+                    resumenRepository.sumar(clave.veterinariaId(), clave.veterinarioDocumento(),
+                            clave.fecha(), clave.estado().name(), delta);
+                }
+            }));
+        } catch (Exception e) {
+            // El resumen queda desviado hasta la próxima reconstrucción
+            System.err.println("❌ Error al actualizar el resumen diario de citas: " + e.getMessage());
+        }
+    }
+
+    // ==================== RECONSTRUCCIÓN ====================
+
+    /**
+     * Recalcula el resumen desde la tabla de citas, un mes por transacción para no bloquear
+     * la tabla entera. Un cambio confirmado justo mientras se recalcula su mes puede contarse
+     * dos veces; la siguiente reconstrucción lo corrige.
+     */
+    @Scheduled(cron = "${app.citas.resumen.reconstruccion-cron:0 30 3 * * *}")
+    public void reconstruir() {
+        try {
+            long inicio = System.currentTimeMillis();
+            List<Object[]> rango = citaRepository.findRangoFechas();
+            Object[] fila = rango.isEmpty() ? null : rango.get(0);
+            if (fila == null || fila[0] == null) {
+                transaccionNueva.executeWithoutResult(estado -> resumenRepository.deleteAllInBatch());
+                return;
+            }
+            LocalDate primerMes = ((LocalDateTime) fila[0]).toLocalDate().withDayOfMonth(1);
+            LocalDate finRango = ((LocalDateTime) fila[1]).toLocalDate().withDayOfMonth(1).plusMonths(1);
+            transaccionNueva.executeWithoutResult(estado -> resumenRepository.deleteFueraDeRango(primerMes, finRango));
+
+            int meses = 0;
+            for (LocalDate mes = primerMes; mes.isBefore(finRango); mes = mes.plusMonths(1)) {
+                LocalDate desde = mes;
+                LocalDate hasta = mes.plusMonths(1);
+                transaccionNueva.executeWithoutResult(estado -> {
+                    resumenRepository.deleteByFechaRango(desde, hasta);
+                    resumenRepository.reconstruirRango(desde.atStartOfDay(), hasta.atStartOfDay());
+                });
+                meses++;
+            }
+            System.out.println("=== Resumen diario de citas reconstruido: " + meses + " meses en "
+                    + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (Exception e) {
+            System.err.println("❌ Error al reconstruir el resumen diario de citas: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.veterinaria.veterinaria.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rueda temporal jerárquica con resolución de un minuto.
+ * Tres niveles de 64 ranuras cubren 64 minutos, ~68 horas y ~182 días; lo que vence más
+ * allá queda en una lista de desbordamiento. Programar un vencimiento es O(1) y avanzar
+ * un minuto solo toca la ranura actual de cada nivel, sin recorrer los elementos pendientes.
+ * Los tiempos se expresan como minutos absolutos (p. ej. minutos desde la época).
+ */
+class RuedaTemporal<E> {
+
+    private static final int BITS = 6;
+    private static final int RANURAS = 1 << BITS;
+    private static final int MASCARA = RANURAS - 1;
+    private static final int NIVELES = 3;
+
+    private record Entrada<E>(long vencimiento, E elemento) {}
+
+    private final List<List<Entrada<E>>> ranuras = new ArrayList<>(NIVELES * RANURAS);
+    private final List<Entrada<E>> desbordamiento = new ArrayList<>();
+    private long ahora;
+    private int tamanio;
+
+    RuedaTemporal(long minutoInicial) {
+        for (int i = 0; i < NIVELES * RANURAS; i++) {
+            ranuras.add(new ArrayList<>());
+        }
+        this.ahora = minutoInicial;
+    }
+
+    synchronized void programar(long vencimiento, E elemento) {
+        // El minuto actual ya se entregó: lo vencido sale en el siguiente avance
+        insertar(new Entrada<>(vencimiento, elemento), ahora + 1);
+        tamanio++;
+    }
+
+    /**
+     * Avanza la rueda hasta el minuto indicado y devuelve los elementos vencidos.
+     */
+    synchronized List<E> avanzarHasta(long minuto) {
+        List<E> vencidos = new ArrayList<>();
+        while (ahora < minuto) {
+            ahora++;
+            // Al completar una vuelta de un nivel se reparte la ranura correspondiente del nivel superior
+            if ((ahora & ((1L << (BITS * NIVELES)) - 1)) == 0) {
+                List<Entrada<E>> pendientes = new ArrayList<>(desbordamiento);
+                desbordamiento.clear();
+                reinsertar(pendientes);
+            }
+            for (int nivel = NIVELES - 1; nivel >= 1; nivel--) {
+                if ((ahora & ((1L << (BITS * nivel)) - 1)) == 0) {
+                    redistribuir(nivel, (int) ((ahora >>> (BITS * nivel)) & MASCARA));
+                }
+            }
+            List<Entrada<E>> ranura = ranuras.get((int) (ahora & MASCARA));
+            for (Entrada<E> entrada : ranura) {
+                vencidos.add(entrada.elemento());
+            }
+            tamanio -= ranura.size();
+            ranura.clear();
+        }
+        return vencidos;
+    }
+
+    synchronized int size() {
+        return tamanio;
+    }
+
+    private void redistribuir(int nivel, int indice) {
+        List<Entrada<E>> ranura = ranuras.get(nivel * RANURAS + indice);
+        if (ranura.isEmpty()) {
+            return;
+        }
+        List<Entrada<E>> pendientes = new ArrayList<>(ranura);
+        ranura.clear();
+        reinsertar(pendientes);
+    }
+
+    // Durante el avance la ranura del minuto actual aún no se ha vaciado: lo que vence
+    // ahora va a ella y se entrega en este mismo avance
+    private void reinsertar(List<Entrada<E>> pendientes) {
+        for (Entrada<E> entrada : pendientes) {
+            insertar(entrada, ahora);
+        }
+    }
+
+    /**
+     * Coloca la entrada en el nivel que corresponde a su distancia; si ya venció, en la
+     * ranura de nivel 0 del minuto minutoVencidos.
+     */
+    private void insertar(Entrada<E> entrada, long minutoVencidos) {
+        long delta = entrada.vencimiento() - ahora;
+        if (delta <= 0) {
+            ranuras.get((int) (minutoVencidos & MASCARA)).add(entrada);
+            return;
+        }
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            if (delta < (1L << (BITS * (nivel + 1)))) {
+                int indice = (int) ((entrada.vencimiento() >>> (BITS * nivel)) & MASCARA);
+                ranuras.get(nivel * RANURAS + indice).add(entrada);
+                return;
+            }
+        }
+        desbordamiento.add(entrada);
+    }
+}
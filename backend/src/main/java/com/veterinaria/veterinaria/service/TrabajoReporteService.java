@@ -0,0 +1,347 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.*;
+import com.veterinaria.veterinaria.entity.Reporte;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.repository.ReporteRepository;
+import com.veterinaria.veterinaria.service.AlmacenArtefactosService.EscrituraArchivo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generación de reportes y exportaciones en segundo plano. Cada trabajo es un {@link Reporte}
+ * con su estado persistido: el cliente lo envía, consulta su estado y descarga el
+ * resultado cuando termina, sin ocupar un hilo de Tomcat mientras tanto. Los trabajos corren
+ * en un pool acotado con cola acotada, y los idénticos que se piden a la vez comparten una
+ * única ejecución. Los archivos se guardan en {@link AlmacenArtefactosService}.
+ */
+@Service
+public class TrabajoReporteService {
+
+    private static final DateTimeFormatter SELLO_ARCHIVO = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    /**
+     * Trabajo a ejecutar: completa el reporte y, si produce un archivo, lo devuelve.
+     * Las tareas no informan avance por filas; el progreso del reporte solo indica la fase
+     * (0 en cola o generando, 90 guardando el archivo, 100 terminado).
+     */
+    @FunctionalInterface
+    private interface Tarea {
+        ArchivoGenerado ejecutar(Reporte reporte) throws Exception;
+    }
+
+    private record ArchivoGenerado(EscrituraArchivo escritura, String extension, String tipoContenido, boolean comprimir) {}
+
+    @Autowired
+    private ReporteRepository reporteRepository;
+
+    @Autowired
+    private ReporteService reporteService;
+
+    @Autowired
+    private GestionReporteService gestionReporteService;
+
+    @Autowired
+    private CSVExportService csvExportService;
+
+    @Autowired
+    private PDFExportService pdfExportService;
+
+    @Autowired
+    private AlmacenArtefactosService almacenArtefactosService;
+
+    @Value("${app.reportes.trabajos.hilos:2}")
+    private int hilos;
+
+    @Value("${app.reportes.trabajos.cola:50}")
+    private int capacidadCola;
+
+    private ThreadPoolExecutor executor;
+
+    // Trabajos en cola o en ejecución por clave (tipo, formato y parámetros) -> id del reporte
+    private final Map<String, Long> enCurso = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void configurar() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola), tarea -> {
+                    Thread hilo = new Thread(tarea, "reportes-trabajo-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        // Lo que quedó en cola o a medias en el proceso anterior ya no se va a terminar
+        int interrumpidos = reporteRepository.marcarInterrumpidos("Generación interrumpida por un reinicio del servidor", LocalDateTime.now());
+        if (interrumpidos > 0) {
+            System.out.println("=== Reportes en segundo plano: " + interrumpidos + " trabajos interrumpidos marcados como ERROR");
+        }
+    }
+
+    // ==================== ENVÍO DE TRABAJOS ====================
+
+    public Reporte enviarReporteCitas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Long veterinariaId, Usuario usuario) {
+        String clave = clave("CITAS", "TEXTO", fechaInicio, fechaFin, veterinariaId);
+        Reporte reporte = nuevoTrabajo("Reporte de Citas - " + fechaInicio.toLocalDate() + " a " + fechaFin.toLocalDate(),
+                Reporte.TipoReporte.CITAS_DIARIAS, "TEXTO", usuario);
+        return enviar(clave, reporte, r -> {
+            reporteService.completarReporteCitas(r, fechaInicio, fechaFin, veterinariaId);
+            return null;
+        });
+    }
+
+    public Reporte enviarReporteMascotas(Long veterinariaId, Usuario usuario) {
+        String clave = clave("MASCOTAS", "TEXTO", veterinariaId);
+        Reporte reporte = nuevoTrabajo("Reporte de Mascotas Registradas", Reporte.TipoReporte.MASCOTAS_REGISTRADAS, "TEXTO", usuario);
+        return enviar(clave, reporte, r -> {
+            reporteService.completarReporteMascotas(r, veterinariaId);
+            return null;
+        });
+    }
+
+    public Reporte enviarReporteUsuarios(Long veterinariaId, Usuario usuario) {
+        String clave = clave("USUARIOS", "TEXTO", veterinariaId);
+        Reporte reporte = nuevoTrabajo("Reporte de Usuarios", Reporte.TipoReporte.USUARIOS_ACTIVOS, "TEXTO", usuario);
+        return enviar(clave, reporte, r -> {
+            reporteService.completarReporteUsuarios(r, veterinariaId);
+            return null;
+        });
+    }
+
+    public Reporte enviarExportacionUsuarios(String formato, Long veterinariaId, String rol, String busqueda, Usuario usuario) {
+        String formatoArchivo = validarFormato(formato);
+        String clave = clave("EXPORT_USUARIOS", formatoArchivo, veterinariaId, rol, busqueda);
+        Reporte reporte = nuevoTrabajo("Exportación " + formatoArchivo + " de usuarios", Reporte.TipoReporte.USUARIOS_ACTIVOS, formatoArchivo, usuario);
+        return enviar(clave, reporte, r -> {
+            if ("CSV".equals(formatoArchivo)) {
+                // El archivo se escribe directamente desde el cursor
+                return csv(salida -> csvExportService.escribirUsuariosCSV(salida,
+                        fila -> gestionReporteService.recorrerReporteUsuarios(veterinariaId, rol, busqueda, fila)));
+            }
+            EstadisticasUsuariosDTO estadisticas = veterinariaId != null
+                    ? gestionReporteService.getEstadisticasUsuariosPorVeterinaria(veterinariaId)
+                    : gestionReporteService.getEstadisticasUsuarios();
+            return pdf(salida -> pdfExportService.escribirReporteUsuariosPDF(salida, estadisticas,
+                    fila -> gestionReporteService.recorrerReporteUsuarios(veterinariaId, rol, busqueda, fila)));
+        });
+    }
+
+    public Reporte enviarExportacionMascotas(String formato, Long veterinariaId, String especie, String busqueda, Usuario usuario) {
+        String formatoArchivo = validarFormato(formato);
+        String clave = clave("EXPORT_MASCOTAS", formatoArchivo, veterinariaId, especie, busqueda);
+        Reporte reporte = nuevoTrabajo("Exportación " + formatoArchivo + " de mascotas", Reporte.TipoReporte.MASCOTAS_REGISTRADAS, formatoArchivo, usuario);
+        return enviar(clave, reporte, r -> {
+            if ("CSV".equals(formatoArchivo)) {
+                // El archivo se escribe directamente desde el cursor
+                return csv(salida -> csvExportService.escribirMascotasCSV(salida,
+                        fila -> gestionReporteService.recorrerReporteMascotas(veterinariaId, especie, busqueda, fila)));
+            }
+            EstadisticasMascotasDTO estadisticas = veterinariaId != null
+                    ? gestionReporteService.getEstadisticasMascotasPorVeterinaria(veterinariaId)
+                    : gestionReporteService.getEstadisticasMascotas();
+            return pdf(salida -> pdfExportService.escribirReporteMascotasPDF(salida, estadisticas,
+                    fila -> gestionReporteService.recorrerReporteMascotas(veterinariaId, especie, busqueda, fila)));
+        });
+    }
+
+    public Reporte enviarExportacionCitas(String formato, FiltroReporteCitas filtro, Usuario usuario) {
+        String formatoArchivo = validarFormato(formato);
+        String clave = clave("EXPORT_CITAS", formatoArchivo, filtro.getVeterinariaId(), filtro.getEstado(), filtro.getDesde(),
+                filtro.getHasta(), filtro.getVeterinarioDocumento(), filtro.getEspecie(), filtro.getBusqueda());
+        Reporte reporte = nuevoTrabajo("Exportación " + formatoArchivo + " de citas", Reporte.TipoReporte.CITAS_DIARIAS, formatoArchivo, usuario);
+        if (filtro.getDesde() != null) {
+            reporte.setFechaInicio(filtro.getDesde().toLocalDate());
+            reporte.setFechaFin(filtro.getHasta().toLocalDate());
+        }
+        return enviar(clave, reporte, r -> {
+            if ("CSV".equals(formatoArchivo)) {
+                return csv(salida -> csvExportService.escribirCitasCSV(salida,
+                        fila -> gestionReporteService.recorrerReporteCitas(filtro, fila)));
+            }
+            EstadisticasCitasDTO estadisticas = filtro.getVeterinariaId() != null
+                    ? gestionReporteService.getEstadisticasCitasPorVeterinaria(filtro.getVeterinariaId())
+                    : gestionReporteService.getEstadisticasCitas();
+            return pdf(salida -> pdfExportService.escribirReporteCitasPDF(salida, estadisticas,
+                    fila -> gestionReporteService.recorrerReporteCitas(filtro, fila)));
+        });
+    }
+
+    // ==================== CONSULTA Y DESCARGA ====================
+
+    /**
+     * Trabajo visible para el solicitante. Solo cuentan los reportes enviados como trabajo
+     * (con clave); los puede ver quien los generó y un administrador de la misma veterinaria
+     * que el autor, o cualquier administrador sin veterinaria asignada. En cualquier otro
+     * caso se responde como si no existiera, para no revelar qué ids hay.
+     */
+    public Optional<Reporte> findTrabajo(Long id, Usuario solicitante, boolean admin) {
+        return reporteRepository.findTrabajoConAutor(id)
+                .filter(reporte -> puedeVer(reporte.getGeneradoPor(), solicitante, admin));
+    }
+
+    public Path getRutaArchivo(Reporte reporte) {
+        return reporte.getArchivoRuta() != null ? Paths.get(reporte.getArchivoRuta()) : null;
+    }
+
+    public void registrarDescarga(Reporte reporte) {
+        reporteRepository.registrarAcceso(reporte.getId(), LocalDateTime.now());
+    }
+
+    // ==================== EJECUCIÓN ====================
+
+    /**
+     * Registra el trabajo y lo pone en cola, o devuelve el que ya está en curso con la misma clave.
+     * Solo se comparte entre peticiones del mismo usuario, que es quien puede consultarlo.
+     * Lanza RejectedExecutionException si la cola está llena.
+     */
+    private Reporte enviar(String claveParametros, Reporte reporte, Tarea tarea) {
+        String clave = reporte.getGeneradoPor().getDocumento() + '|' + claveParametros;
+        synchronized (enCurso) {
+            Long existente = enCurso.get(clave);
+            if (existente != null) {
+                Optional<Reporte> enEjecucion = reporteRepository.findById(existente);
+                if (enEjecucion.isPresent()) {
+                    return enEjecucion.get();
+                }
+            }
+
+            reporte.setClaveTrabajo(clave.length() > 500 ? clave.substring(0, 500) : clave);
+            Reporte guardado = reporteRepository.save(reporte);
+            enCurso.put(clave, guardado.getId());
+            try {
+                executor.execute(() -> ejecutar(clave, guardado, tarea));
+            } catch (RejectedExecutionException e) {
+                enCurso.remove(clave);
+                terminarConError(guardado, "Cola de reportes llena, inténtelo más tarde");
+                throw e;
+            }
+            return guardado;
+        }
+    }
+
+    private void ejecutar(String clave, Reporte reporte, Tarea tarea) {
+        Long id = reporte.getId();
+        try {
+            reporteRepository.actualizarProgreso(id, Reporte.EstadoTrabajo.EN_PROCESO, 0);
+            ArchivoGenerado archivo = tarea.ejecutar(reporte);
+            if (archivo != null) {
+                reporteRepository.actualizarProgreso(id, Reporte.EstadoTrabajo.EN_PROCESO, 90);
+                guardarArchivo(reporte, archivo);
+            }
+            reporte.setEstadoTrabajo(Reporte.EstadoTrabajo.COMPLETADO);
+            reporte.setProgreso(100);
+            reporte.setFechaFinTrabajo(LocalDateTime.now());
+            reporte.setFechaUltimoAcceso(reporte.getFechaFinTrabajo());
+            reporteRepository.save(reporte);
+            System.out.println("✅ Reporte en segundo plano " + id + " completado");
+        } catch (Exception e) {
+            System.err.println("❌ Error generando el reporte en segundo plano " + id + ": " + e.getMessage());
+            terminarConError(reporte, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            enCurso.remove(clave, id);
+        }
+    }
+
+    private void guardarArchivo(Reporte reporte, ArchivoGenerado archivo) throws IOException {
+        almacenArtefactosService.guardar(reporte, archivo.escritura(), archivo.extension(), archivo.comprimir());
+
+        String prefijo = switch (reporte.getTipo()) {
+            case USUARIOS_ACTIVOS -> "reporte_usuarios_";
+            case MASCOTAS_REGISTRADAS -> "reporte_mascotas_";
+            default -> "reporte_citas_";
+        };
+        reporte.setArchivoNombre(prefijo + LocalDateTime.now().format(SELLO_ARCHIVO) + "." + archivo.extension());
+        reporte.setArchivoTipo(archivo.tipoContenido());
+    }
+
+    private void terminarConError(Reporte reporte, String mensaje) {
+        try {
+            reporte.setEstadoTrabajo(Reporte.EstadoTrabajo.ERROR);
+            reporte.setMensajeError(mensaje);
+            reporte.setFechaFinTrabajo(LocalDateTime.now());
+            reporteRepository.save(reporte);
+        } catch (Exception e) {
+            System.err.println("❌ No se pudo registrar el error del reporte " + reporte.getId() + ": " + e.getMessage());
+        }
+    }
+
+    // ==================== AUXILIARES ====================
+
+    private static boolean puedeVer(Usuario autor, Usuario solicitante, boolean admin) {
+        if (autor.getDocumento().equals(solicitante.getDocumento())) {
+            return true;
+        }
+        if (!admin) {
+            return false;
+        }
+        if (solicitante.getVeterinaria() == null) {
+            return true;
+        }
+        return autor.getVeterinaria() != null
+                && autor.getVeterinaria().getId().equals(solicitante.getVeterinaria().getId());
+    }
+
+    private Reporte nuevoTrabajo(String titulo, Reporte.TipoReporte tipo, String formato, Usuario usuario) {
+        Reporte reporte = new Reporte(titulo, tipo, usuario);
+        reporte.setDescripcion("Reporte generado en segundo plano");
+        reporte.setFormato(formato);
+        reporte.setEstadoTrabajo(Reporte.EstadoTrabajo.PENDIENTE);
+        reporte.setProgreso(0);
+        return reporte;
+    }
+
+    private static String validarFormato(String formato) {
+        String formatoArchivo = formato == null ? "" : formato.toUpperCase(Locale.ROOT);
+        if (!formatoArchivo.equals("CSV") && !formatoArchivo.equals("PDF")) {
+            throw new IllegalArgumentException("Formato no soportado: " + formato + " (se espera csv o pdf)");
+        }
+        return formatoArchivo;
+    }
+
+    private static String clave(String tipo, String formato, Object... parametros) {
+        StringBuilder clave = new StringBuilder(tipo).append('|').append(formato);
+        for (Object parametro : parametros) {
+            clave.append('|').append(Objects.toString(parametro, ""));
+        }
+        return clave.toString();
+    }
+
+    private static ArchivoGenerado csv(EscrituraArchivo escritura) {
+        return new ArchivoGenerado(escritura, "csv", "text/csv", true);
+    }
+
+    private static ArchivoGenerado pdf(EscrituraArchivo escritura) {
+        // El PDF ya va comprimido por dentro
+        return new ArchivoGenerado(escritura, "pdf", "application/pdf", false);
+    }
+}
@@ -17,6 +17,9 @@ public class VeterinariaService {
     @Autowired
     private VeterinariaRepository veterinariaRepository;
     
+    @Autowired
+    private HorarioAtencionService horarioAtencionService;
+    
     public List<Veterinaria> findAll() {
         return veterinariaRepository.findAll();
     }
@@ -46,6 +49,8 @@ public class VeterinariaService {
     }
     
     public Veterinaria save(Veterinaria veterinaria) {
+        // Un horario que no se entiende se atendería en silencio con el horario por defecto
+        horarioAtencionService.validar(veterinaria.getHorarioAtencion());
         return veterinariaRepository.save(veterinaria);
     }
     
@@ -0,0 +1,65 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Reporte;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.repository.ReporteRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AlmacenArtefactosServiceTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Autowired
+    private AlmacenArtefactosService almacenArtefactosService;
+
+    @Autowired
+    private ReporteRepository reporteRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    /**
+     * Con el disco lleno se libera el archivo usado hace más tiempo: uno generado antes pero
+     * descargado hace poco se conserva.
+     */
+    @Test
+    void elTopeDeDiscoLiberaPrimeroElArchivoMenosUsado() {
+        Usuario autor = usuarioRepository.save(DatosPrueba.usuario("almacen-autor", null));
+        LocalDateTime ahora = LocalDateTime.now();
+        Reporte antiguoDescargado = reporteRepository.save(conArchivo(autor, "/almacen/antiguo.csv.gz", ahora.minusHours(3)));
+        Reporte recienteSinUso = reporteRepository.save(conArchivo(autor, "/almacen/reciente.csv.gz", ahora.minusHours(1)));
+        reporteRepository.registrarAcceso(antiguoDescargado.getId(), ahora);
+
+        Object maximoOriginal = ReflectionTestUtils.getField(almacenArtefactosService, "maxDiscoMb");
+        ReflectionTestUtils.setField(almacenArtefactosService, "maxDiscoMb", 4L);
+        try {
+            almacenArtefactosService.limpiar();
+        } finally {
+            ReflectionTestUtils.setField(almacenArtefactosService, "maxDiscoMb", maximoOriginal);
+        }
+
+        assertEquals("/almacen/antiguo.csv.gz", reporteRepository.findById(antiguoDescargado.getId()).orElseThrow().getArchivoRuta());
+        assertNull(reporteRepository.findById(recienteSinUso.getId()).orElseThrow().getArchivoRuta());
+    }
+
+    private static Reporte conArchivo(Usuario autor, String ruta, LocalDateTime fin) {
+        Reporte reporte = new Reporte("Exportación", Reporte.TipoReporte.CITAS_DIARIAS, autor);
+        reporte.setArchivoRuta(ruta);
+        reporte.setArchivoTamanoAlmacenado(3 * MB);
+        reporte.setFechaFinTrabajo(fin);
+        reporte.setFechaUltimoAcceso(fin);
+        return reporte;
+    }
+}
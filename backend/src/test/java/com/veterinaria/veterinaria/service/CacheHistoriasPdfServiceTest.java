@@ -0,0 +1,88 @@
+package com.veterinaria.veterinaria.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheHistoriasPdfServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private CacheHistoriasPdfService cache;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        cache = new CacheHistoriasPdfService();
+        // 1 KB en memoria: el segundo PDF de 600 bytes manda el primero a disco
+        ReflectionTestUtils.setField(cache, "memoriaMaxKb", 1L);
+        ReflectionTestUtils.setField(cache, "discoMaxMb", 1L);
+        ReflectionTestUtils.setField(cache, "directorio", carpeta.toString());
+        ReflectionTestUtils.setField(cache, "versionesMax", 10);
+        cache.preparar();
+    }
+
+    /**
+     * El nivel de disco sirve el PDF leyendo el archivo, y al invalidarlo el archivo se borra
+     * en el momento (no queda mapeado).
+     */
+    @Test
+    void elArchivoDeDiscoSeBorraAlInvalidar() throws Exception {
+        AtomicInteger generados = new AtomicInteger();
+        byte[] primero = obtener(1L, (byte) 1, generados);
+        obtener(2L, (byte) 2, generados);
+        assertEquals(1, archivos());
+
+        assertArrayEquals(primero, obtener(1L, (byte) 1, generados));
+        assertEquals(2, generados.get(), "El PDF en disco no debería regenerarse");
+
+        cache.registrarCambio(1L);
+        cache.registrarCambio(2L);
+        assertEquals(0, archivos());
+        obtener(1L, (byte) 1, generados);
+        assertEquals(3, generados.get());
+    }
+
+    /**
+     * Las versiones de mascotas sin PDF en caché se olvidan al pasar del máximo, sin perder
+     * lo que sí está en caché.
+     */
+    @Test
+    void lasVersionesRecordadasEstanAcotadas() throws Exception {
+        AtomicInteger generados = new AtomicInteger();
+        obtener(1L, (byte) 1, generados);
+        for (long mascotaId = 100; mascotaId < 1100; mascotaId++) {
+            cache.registrarCambio(mascotaId);
+        }
+        assertTrue((Integer) cache.getMetricas().get("versiones") <= 10);
+
+        obtener(1L, (byte) 1, generados);
+        assertEquals(1, generados.get(), "La poda no debe invalidar lo que está en caché");
+    }
+
+    private byte[] obtener(Long mascotaId, byte relleno, AtomicInteger generados) throws Exception {
+        return cache.obtener(mascotaId, () -> {
+            generados.incrementAndGet();
+            byte[] pdf = new byte[600];
+            Arrays.fill(pdf, relleno);
+            return pdf;
+        });
+    }
+
+    private long archivos() throws Exception {
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.count();
+        }
+    }
+}
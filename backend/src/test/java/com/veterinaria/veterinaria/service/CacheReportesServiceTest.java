@@ -0,0 +1,67 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CacheReportesServiceTest {
+
+    @Autowired
+    private CacheReportesService cacheReportesService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    /**
+     * Cambiar un usuario de veterinaria invalida los reportes de la veterinaria de origen y
+     * de la de destino, cargue como se cargue el usuario.
+     */
+    @Test
+    void cambiarDeVeterinariaInvalidaOrigenYDestino() {
+        Veterinaria origen = crearVeterinaria("Origen");
+        Veterinaria destino = crearVeterinaria("Destino");
+        usuarioRepository.save(DatosPrueba.usuario("cache-mudanza", origen));
+
+        AtomicInteger calculosOrigen = new AtomicInteger();
+        AtomicInteger calculosDestino = new AtomicInteger();
+        obtener(origen, calculosOrigen);
+        obtener(destino, calculosDestino);
+        obtener(origen, calculosOrigen);
+        assertEquals(1, calculosOrigen.get());
+
+        // Se carga en una transacción y se guarda desligado en otra
+        Usuario usuario = usuarioRepository.findById("cache-mudanza").orElseThrow();
+        usuario.setVeterinaria(destino);
+        usuarioRepository.save(usuario);
+
+        obtener(origen, calculosOrigen);
+        obtener(destino, calculosDestino);
+        assertEquals(2, calculosOrigen.get());
+        assertEquals(2, calculosDestino.get());
+    }
+
+    private void obtener(Veterinaria veterinaria, AtomicInteger calculos) {
+        cacheReportesService.obtener(CacheReportesService.TipoReporte.ESTADISTICAS_USUARIOS, veterinaria.getId(), "",
+                calculos::incrementAndGet);
+    }
+
+    private Veterinaria crearVeterinaria(String nombre) {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre(nombre);
+        return veterinariaRepository.save(veterinaria);
+    }
+}
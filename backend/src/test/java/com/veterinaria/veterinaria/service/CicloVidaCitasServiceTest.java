@@ -0,0 +1,77 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CicloVidaCitasServiceTest {
+
+    @Autowired
+    private CicloVidaCitasService cicloVidaCitasService;
+
+    @Autowired
+    private CacheHistoriasPdfService cacheHistoriasPdfService;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    /**
+     * La transición en lote (sin listeners JPA) también invalida el PDF de historia clínica
+     * de la mascota, que muestra el estado de sus citas.
+     */
+    @Test
+    void laTransicionEnLoteRegeneraElPdfDeLaMascota() throws Exception {
+        Usuario cliente = usuarioRepository.save(DatosPrueba.usuario("ciclo-pdf-cliente", null));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Ciclo", cliente));
+        Cita cita = new Cita(LocalDateTime.now().minusMinutes(2), "Empieza ya", cliente, mascota);
+        cita.setEstado(Cita.EstadoCita.CONFIRMADA);
+        cita = citaRepository.save(cita);
+
+        AtomicInteger generados = new AtomicInteger();
+        CacheHistoriasPdfService.Generador generador = () -> {
+            generados.incrementAndGet();
+            return new byte[]{1};
+        };
+        cacheHistoriasPdfService.obtener(mascota.getId(), generador);
+        cacheHistoriasPdfService.obtener(mascota.getId(), generador);
+        assertEquals(1, generados.get());
+
+        // Rueda un minuto atrasada para que el siguiente tic entregue la cita vencida sin esperar
+        // al cambio de minuto; la cita se guardó en el repositorio y solo entra al programarla aquí
+        Object ruedaOriginal = ReflectionTestUtils.getField(cicloVidaCitasService, "rueda");
+        long minuto = Math.floorDiv(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC), 60);
+        ReflectionTestUtils.setField(cicloVidaCitasService, "rueda", new RuedaTemporal<>(minuto - 1));
+        try {
+            cicloVidaCitasService.programar(cita);
+            cicloVidaCitasService.tic();
+        } finally {
+            ReflectionTestUtils.setField(cicloVidaCitasService, "rueda", ruedaOriginal);
+        }
+
+        assertEquals(Cita.EstadoCita.EN_CURSO, citaRepository.findById(cita.getId()).orElseThrow().getEstado());
+        cacheHistoriasPdfService.obtener(mascota.getId(), generador);
+        assertEquals(2, generados.get(), "El PDF debería regenerarse tras el cambio de estado");
+    }
+}
@@ -0,0 +1,82 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CitasHoyServiceTest {
+
+    @Autowired
+    private CitasHoyService citasHoyService;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    /**
+     * Relecturas concurrentes de la misma cita mientras cambia de estado: al terminar,
+     * la lista de hoy muestra el último estado guardado y el contador no se descuadra.
+     */
+    @Test
+    void lasRelecturasConcurrentesTerminanEnElUltimoEstado() throws Exception {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre("Citas de hoy");
+        veterinaria = veterinariaRepository.save(veterinaria);
+        Long veterinariaId = veterinaria.getId();
+        Usuario cliente = usuarioRepository.save(DatosPrueba.usuario("hoy-cliente", veterinaria));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Hoy", cliente));
+
+        // Día cargado antes de escribir
+        citasHoyService.getCitasDeHoy(veterinariaId);
+        Cita cita = new Cita(LocalDate.now().atTime(LocalTime.of(23, 0)), "Hoy", cliente, mascota);
+        cita.setVeterinaria(veterinaria);
+        Cita guardada = citaService.save(cita);
+        assertEquals(1, citasHoyService.countCitasHoy(veterinariaId));
+
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tareas.add(hilos.submit(() -> citasHoyService.refrescar(List.of(guardada.getId()))));
+        }
+        citaService.updateEstado(guardada.getId(), Cita.EstadoCita.CONFIRMADA);
+        for (Future<?> tarea : tareas) {
+            tarea.get(1, TimeUnit.MINUTES);
+        }
+        hilos.shutdown();
+
+        assertEquals(1, citasHoyService.countCitasHoy(veterinariaId));
+        assertEquals(Cita.EstadoCita.CONFIRMADA.name(), citasHoyService.getCitasDeHoy(veterinariaId).get(0).getEstado());
+
+        citaService.deleteById(guardada.getId());
+        assertEquals(0, citasHoyService.countCitasHoy(veterinariaId));
+    }
+}
@@ -0,0 +1,33 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+
+/**
+ * Entidades mínimas válidas para las pruebas.
+ */
+final class DatosPrueba {
+
+    private DatosPrueba() {}
+
+    static Usuario usuario(String documento, Veterinaria veterinaria) {
+        Usuario usuario = new Usuario();
+        usuario.setDocumento(documento);
+        usuario.setUsername(documento);
+        usuario.setPassword("clave");
+        usuario.setNombres("Nombre " + documento);
+        usuario.setApellidos("Apellido");
+        usuario.setEmail(documento + "@prueba.com");
+        usuario.setVeterinaria(veterinaria);
+        return usuario;
+    }
+
+    static Mascota mascota(String nombre, Usuario propietario) {
+        Mascota mascota = new Mascota();
+        mascota.setNombre(nombre);
+        mascota.setEspecie("Perro");
+        mascota.setPropietario(propietario);
+        return mascota;
+    }
+}
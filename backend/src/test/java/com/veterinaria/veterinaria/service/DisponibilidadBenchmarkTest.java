@@ -0,0 +1,150 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.HorarioDisponibleDTO;
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de disponibilidad diaria: compara la consulta por franja (una consulta
+ * existsCitaEnHorario por cada horario del día, como antes) con getHorariosDisponibles,
+ * que carga la ocupación del día con una sola consulta de rango. Verifica que ambos
+ * caminos dan el mismo resultado y cuenta las sentencias SQL de cada uno.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class DisponibilidadBenchmarkTest {
+
+    private static final int DIAS = 60;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private HorarioAtencionService horarioAtencionService;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void motorDeDisponibilidadUsaUnaConsultaPorDiaYCoincideConLaConsultaPorFranja() {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre("Benchmark disponibilidad");
+        veterinaria = veterinariaRepository.save(veterinaria);
+        Long veterinariaId = veterinaria.getId();
+
+        Usuario cliente = DatosPrueba.usuario("bench-disp-cliente", null);
+        usuarioRepository.save(cliente);
+        Mascota mascota = DatosPrueba.mascota("Bench", cliente);
+        mascotaRepository.save(mascota);
+
+        // Días futuros con una cita de cada tres horarios, en distinto orden cada día
+        LocalDate primerDia = LocalDate.now().plusDays(1);
+        List<Cita> citas = new ArrayList<>();
+        for (int d = 0; d < DIAS; d++) {
+            LocalDate fecha = primerDia.plusDays(d);
+            for (LocalDateTime hora : horasDelDia(veterinariaId, fecha)) {
+                if ((hora.getHour() * 2 + hora.getMinute() / 30 + d) % 3 == 0) {
+                    Cita cita = new Cita(hora, "Benchmark", cliente, mascota);
+                    cita.setVeterinaria(veterinaria);
+                    citas.add(cita);
+                }
+            }
+        }
+        citaRepository.saveAll(citas);
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Camino anterior: una consulta por franja
+        estadisticas.clear();
+        long inicio = System.nanoTime();
+        List<List<Boolean>> porFranja = new ArrayList<>();
+        for (int d = 0; d < DIAS; d++) {
+            List<Boolean> dia = new ArrayList<>();
+            for (LocalDateTime hora : horasDelDia(veterinariaId, primerDia.plusDays(d))) {
+                dia.add(!citaRepository.existsCitaEnHorario(hora, veterinariaId));
+            }
+            porFranja.add(dia);
+        }
+        long nanosPorFranja = System.nanoTime() - inicio;
+        long consultasPorFranja = estadisticas.getPrepareStatementCount();
+
+        // Motor nuevo con el índice frío: una consulta de rango por día
+        estadisticas.clear();
+        inicio = System.nanoTime();
+        List<List<Boolean>> motor = disponibilidad(veterinariaId, primerDia);
+        long nanosMotor = System.nanoTime() - inicio;
+        long consultasMotor = estadisticas.getPrepareStatementCount();
+
+        // Segunda pasada con los días ya en memoria: sin SQL
+        estadisticas.clear();
+        inicio = System.nanoTime();
+        List<List<Boolean>> enCaliente = disponibilidad(veterinariaId, primerDia);
+        long nanosEnCaliente = System.nanoTime() - inicio;
+        long consultasEnCaliente = estadisticas.getPrepareStatementCount();
+
+        System.out.println("📊 Disponibilidad de " + DIAS + " días: por franja " + nanosPorFranja / 1_000_000 + " ms ("
+                + consultasPorFranja + " consultas), motor en frío " + nanosMotor / 1_000_000 + " ms ("
+                + consultasMotor + " consultas), en caliente " + nanosEnCaliente / 1_000_000 + " ms ("
+                + consultasEnCaliente + " consultas)");
+
+        assertEquals(porFranja, motor);
+        assertEquals(porFranja, enCaliente);
+        assertTrue(consultasMotor <= DIAS, "Más de una consulta por día: " + consultasMotor);
+        assertEquals(0, consultasEnCaliente);
+        assertTrue(consultasPorFranja > consultasMotor);
+    }
+
+    private List<List<Boolean>> disponibilidad(Long veterinariaId, LocalDate primerDia) {
+        List<List<Boolean>> resultado = new ArrayList<>();
+        for (int d = 0; d < DIAS; d++) {
+            List<Boolean> dia = new ArrayList<>();
+            for (HorarioDisponibleDTO horario : citaService.getHorariosDisponibles(primerDia.plusDays(d), veterinariaId)) {
+                dia.add(horario.isDisponible());
+            }
+            resultado.add(dia);
+        }
+        return resultado;
+    }
+
+    private List<LocalDateTime> horasDelDia(Long veterinariaId, LocalDate fecha) {
+        HorarioSemanal.Plantilla plantilla = horarioAtencionService.getHorario(veterinariaId).plantillaDe(fecha);
+        List<LocalDateTime> horas = new ArrayList<>(plantilla.horas.length);
+        for (int i = 0; i < plantilla.horas.length; i++) {
+            horas.add(LocalDateTime.of(fecha, plantilla.horas[i]));
+        }
+        return horas;
+    }
+}
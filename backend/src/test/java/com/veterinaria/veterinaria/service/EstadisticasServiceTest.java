@@ -0,0 +1,118 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import com.veterinaria.veterinaria.service.EstadisticasService.Metrica;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EstadisticasServiceTest {
+
+    private static final int HILOS = 4;
+    private static final int MASCOTAS_POR_HILO = 50;
+
+    @Autowired
+    private EstadisticasService estadisticasService;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void losAjustesSeAplicanAlConfirmarYPorVeterinaria() {
+        Veterinaria veterinaria = crearVeterinaria("Estadísticas commit");
+        Usuario propietario = usuarioRepository.save(DatosPrueba.usuario("estad-commit", veterinaria));
+        long globalInicial = estadisticasService.get(Metrica.MASCOTAS);
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            mascotaRepository.save(DatosPrueba.mascota("Revertida", propietario));
+            estado.setRollbackOnly();
+        });
+        assertEquals(globalInicial, estadisticasService.get(Metrica.MASCOTAS));
+        assertEquals(0, estadisticasService.get(veterinaria.getId(), Metrica.MASCOTAS));
+
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Confirmada", propietario));
+        assertEquals(globalInicial + 1, estadisticasService.get(Metrica.MASCOTAS));
+        assertEquals(1, estadisticasService.get(veterinaria.getId(), Metrica.MASCOTAS));
+        assertEquals(1, estadisticasService.get(veterinaria.getId(), Metrica.MASCOTAS_ACTIVAS));
+
+        mascota.setActivo(false);
+        mascotaRepository.save(mascota);
+        assertEquals(1, estadisticasService.get(veterinaria.getId(), Metrica.MASCOTAS));
+        assertEquals(0, estadisticasService.get(veterinaria.getId(), Metrica.MASCOTAS_ACTIVAS));
+
+        mascotaRepository.deleteById(mascota.getId());
+        assertEquals(0, estadisticasService.get(veterinaria.getId(), Metrica.MASCOTAS));
+        assertEquals(globalInicial, estadisticasService.get(Metrica.MASCOTAS));
+    }
+
+    /**
+     * Altas concurrentes mientras se reconcilia sin parar: al terminar, los contadores
+     * coinciden con la base de datos sin necesidad de otra reconciliación.
+     */
+    @Test
+    void laReconciliacionNoPierdeAjustesConcurrentes() throws Exception {
+        Veterinaria veterinaria = crearVeterinaria("Estadísticas concurrentes");
+        Usuario propietario = usuarioRepository.save(DatosPrueba.usuario("estad-concurrentes", veterinaria));
+        estadisticasService.reconciliar();
+
+        AtomicBoolean terminado = new AtomicBoolean();
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS + 1);
+        Future<?> reconciliador = hilos.submit(() -> {
+            while (!terminado.get()) {
+                estadisticasService.reconciliar();
+            }
+        });
+        List<Future<?>> altas = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            int hilo = h;
+            altas.add(hilos.submit(() -> {
+                for (int i = 0; i < MASCOTAS_POR_HILO; i++) {
+                    mascotaRepository.save(DatosPrueba.mascota("Concurrente " + hilo + "-" + i, propietario));
+                }
+            }));
+        }
+        for (Future<?> alta : altas) {
+            alta.get(2, TimeUnit.MINUTES);
+        }
+        terminado.set(true);
+        reconciliador.get(1, TimeUnit.MINUTES);
+        hilos.shutdown();
+
+        assertEquals(HILOS * MASCOTAS_POR_HILO, estadisticasService.get(veterinaria.getId(), Metrica.MASCOTAS));
+        assertEquals(mascotaRepository.count(), estadisticasService.get(Metrica.MASCOTAS));
+    }
+
+    private Veterinaria crearVeterinaria(String nombre) {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre(nombre);
+        return veterinariaRepository.save(veterinaria);
+    }
+}
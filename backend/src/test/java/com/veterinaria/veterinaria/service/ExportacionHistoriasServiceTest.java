@@ -0,0 +1,65 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportacionHistoriasServiceTest {
+
+    @Autowired
+    private ExportacionHistoriasService exportacionHistoriasService;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    /**
+     * Con una veterinaria permitida se aceptan sus mascotas y se rechaza cualquier lista
+     * que incluya una de otra veterinaria.
+     */
+    @Test
+    void conVeterinariaPermitidaSoloSeExportanSusMascotas() {
+        Veterinaria propia = crearVeterinaria("Zip propia");
+        Veterinaria otra = crearVeterinaria("Zip otra");
+        Usuario clientePropia = usuarioRepository.save(DatosPrueba.usuario("zip-cliente-propia", propia));
+        Usuario clienteOtra = usuarioRepository.save(DatosPrueba.usuario("zip-cliente-otra", otra));
+        Mascota mascotaPropia = mascotaRepository.save(DatosPrueba.mascota("Propia", clientePropia));
+        Mascota mascotaOtra = mascotaRepository.save(DatosPrueba.mascota("Otra", clienteOtra));
+
+        assertEquals(List.of(mascotaPropia.getId()),
+                exportacionHistoriasService.resolverMascotas(null, List.of(mascotaPropia.getId()), propia.getId()));
+        assertEquals(List.of(mascotaPropia.getId()),
+                exportacionHistoriasService.resolverMascotas(propia.getId(), null, propia.getId()));
+        assertThrows(AccessDeniedException.class, () -> exportacionHistoriasService.resolverMascotas(
+                null, List.of(mascotaPropia.getId(), mascotaOtra.getId()), propia.getId()));
+        // Sin restricción (administrador) se acepta cualquiera
+        assertEquals(2, exportacionHistoriasService.resolverMascotas(
+                null, List.of(mascotaPropia.getId(), mascotaOtra.getId()), null).size());
+    }
+
+    private Veterinaria crearVeterinaria(String nombre) {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre(nombre);
+        return veterinariaRepository.save(veterinaria);
+    }
+}
@@ -0,0 +1,73 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportacionIncrementalServiceTest {
+
+    @Autowired
+    private ExportacionIncrementalService exportacionIncrementalService;
+
+    @Autowired
+    private MascotaService mascotaService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    /**
+     * Un borrado físico deja una marca que la exportación emite como línea eliminada, y el
+     * cursor posterior a ella ya no la repite.
+     */
+    @Test
+    void elBorradoDeUnaMascotaSaleEnLaExportacion() {
+        Usuario propietario = usuarioRepository.save(DatosPrueba.usuario("export-borrado", null));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Borrada", propietario));
+        LocalDateTime antes = LocalDateTime.now().minusMinutes(1);
+        mascotaService.deleteById(mascota.getId());
+        LocalDateTime hasta = LocalDateTime.now().plusMinutes(1);
+
+        String lineas = exportar(antes, null, hasta);
+        String esperada = "{\"id\":" + mascota.getId() + ",\"eliminado\":true,";
+        assertTrue(lineas.contains(esperada), lineas);
+
+        String ultima = lineas.lines().filter(linea -> linea.startsWith(esperada)).findFirst().orElseThrow();
+        String fecha = ultima.replaceAll(".*\"fechaActualizacion\":\"([^\"]+)\".*", "$1");
+        assertEquals("", exportar(LocalDateTime.parse(fecha), mascota.getId(), hasta));
+    }
+
+    /**
+     * El corte sale del reloj de la base de datos menos el margen configurado.
+     */
+    @Test
+    void elCorteUsaLaHoraDeLaBaseDeDatos() {
+        LocalDateTime hasta = exportacionIncrementalService.calcularHasta();
+        Duration margen = Duration.between(hasta, LocalDateTime.now());
+        assertTrue(margen.toSeconds() >= 55 && margen.toSeconds() <= 65, "Margen de " + margen);
+    }
+
+    private String exportar(LocalDateTime desde, Long despuesId, LocalDateTime hasta) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportacionIncrementalService.escribir(ExportacionIncrementalService.Entidad.MASCOTAS, desde, despuesId,
+                hasta, 100, salida);
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+}
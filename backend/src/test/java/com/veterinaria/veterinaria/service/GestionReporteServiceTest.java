@@ -0,0 +1,139 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.EstadisticasUsuariosDTO;
+import com.veterinaria.veterinaria.dto.ReporteMascotaDTO;
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.HistoriaClinica;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Rol;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.HistoriaClinicaRepository;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.RolRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class GestionReporteServiceTest {
+
+    private static final int USUARIOS = 60;
+
+    @Autowired
+    private GestionReporteService gestionReporteService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private RolRepository rolRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private HistoriaClinicaRepository historiaClinicaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Las estadísticas de usuarios salen de dos consultas agrupadas, sin importar cuántos
+     * usuarios y roles haya (antes se cargaba cada usuario con sus roles).
+     */
+    @Test
+    void estadisticasDeUsuariosUsanComoMaximoDosConsultas() {
+        Rol veterinario = rol(9101L, "ROLE_VETERINARIO");
+        Rol cliente = rol(9102L, "ROLE_CLIENTE");
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre("Consultas de estadísticas");
+        veterinaria = veterinariaRepository.save(veterinaria);
+        for (int i = 0; i < USUARIOS; i++) {
+            Usuario usuario = DatosPrueba.usuario("consultas-" + i, veterinaria);
+            usuario.setActivo(i % 4 != 0);
+            usuario.setRoles(i % 3 == 0 ? Set.of(veterinario, cliente) : Set.of(cliente));
+            usuarioRepository.save(usuario);
+        }
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        EstadisticasUsuariosDTO resultado = gestionReporteService.getEstadisticasUsuariosPorVeterinaria(veterinaria.getId());
+        long consultas = estadisticas.getPrepareStatementCount();
+
+        System.out.println("📊 Estadísticas de " + USUARIOS + " usuarios: " + consultas + " consultas");
+        assertTrue(consultas <= 2, "Demasiadas consultas: " + consultas);
+        assertEquals(USUARIOS, resultado.getTotalUsuarios());
+        assertEquals(USUARIOS - USUARIOS / 4, resultado.getTotalActivos());
+        assertEquals(USUARIOS / 4, resultado.getTotalInactivos());
+        assertEquals(USUARIOS, resultado.getTotalPorRol().get("ROLE_CLIENTE"));
+        assertEquals(USUARIOS / 3, resultado.getTotalPorRol().get("ROLE_VETERINARIO"));
+        assertEquals(0L, resultado.getTotalPorRol().get("ROLE_ADMIN"));
+    }
+
+    /**
+     * El reporte de mascotas trae en una consulta los conteos de citas e historias y la última
+     * cita de cada mascota, con cero y sin fecha para la que no tiene ninguna.
+     */
+    @Test
+    void reporteDeMascotasConConteosYUltimaCita() {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre("Reporte de mascotas");
+        veterinaria = veterinariaRepository.save(veterinaria);
+        Usuario propietario = usuarioRepository.save(DatosPrueba.usuario("reporte-mascotas", veterinaria));
+        Usuario veterinario = usuarioRepository.save(DatosPrueba.usuario("reporte-mascotas-vet", veterinaria));
+        Mascota conCitas = mascotaRepository.save(DatosPrueba.mascota("Con citas", propietario));
+        Mascota sinCitas = mascotaRepository.save(DatosPrueba.mascota("Sin citas", propietario));
+        LocalDateTime ultima = LocalDateTime.of(2030, 5, 20, 9, 30);
+        citaRepository.save(new Cita(ultima.minusDays(10), "Primera", propietario, conCitas));
+        citaRepository.save(new Cita(ultima, "Segunda", propietario, conCitas));
+        historiaClinicaRepository.save(new HistoriaClinica(ultima.minusDays(10), "Control", conCitas, veterinario));
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        List<ReporteMascotaDTO> reporte = mascotaRepository.findReporteMascotas(null, veterinaria.getId());
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+
+        assertEquals(2, reporte.size());
+        ReporteMascotaDTO primera = reporte.get(0);
+        assertEquals(conCitas.getId(), primera.getId());
+        assertEquals(2L, primera.getTotalCitas());
+        assertEquals(1L, primera.getTotalHistorias());
+        assertEquals(ultima, primera.getUltimaCita());
+        ReporteMascotaDTO segunda = reporte.get(1);
+        assertEquals(sinCitas.getId(), segunda.getId());
+        assertEquals(0L, segunda.getTotalCitas());
+        assertEquals(0L, segunda.getTotalHistorias());
+        assertNull(segunda.getUltimaCita());
+    }
+
+    private Rol rol(Long id, String nombre) {
+        return rolRepository.findByNombre(nombre).orElseGet(() -> {
+            Rol rol = new Rol(nombre, nombre);
+            rol.setId(id);
+            return rolRepository.save(rol);
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class HorarioAtencionServiceTest {
+
+    @Autowired
+    private HorarioAtencionService horarioAtencionService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    /**
+     * La veterinaria de un veterinario se recuerda, y se olvida al cambiarlo de veterinaria.
+     */
+    @Test
+    void cambiarDeVeterinariaCambiaElHorarioDelVeterinario() {
+        Veterinaria manana = crearVeterinaria("Mañana", "Lunes a Viernes: 7:00 AM - 12:00 PM");
+        Veterinaria tarde = crearVeterinaria("Tarde", "Lunes a Viernes: 2:00 PM - 8:00 PM");
+        usuarioRepository.save(DatosPrueba.usuario("horario-vet", manana));
+
+        HorarioSemanal horario = horarioAtencionService.getHorarioDeVeterinario("horario-vet");
+        assertSame(horarioAtencionService.getHorario(manana.getId()), horario);
+        assertSame(horario, horarioAtencionService.getHorarioDeVeterinario("horario-vet"));
+
+        Usuario veterinario = usuarioRepository.findById("horario-vet").orElseThrow();
+        veterinario.setVeterinaria(tarde);
+        usuarioRepository.save(veterinario);
+
+        HorarioSemanal nuevo = horarioAtencionService.getHorarioDeVeterinario("horario-vet");
+        assertSame(horarioAtencionService.getHorario(tarde.getId()), nuevo);
+        assertNotSame(horario, nuevo);
+    }
+
+    private Veterinaria crearVeterinaria(String nombre, String horarioAtencion) {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre(nombre);
+        veterinaria.setHorarioAtencion(horarioAtencion);
+        return veterinariaRepository.save(veterinaria);
+    }
+}
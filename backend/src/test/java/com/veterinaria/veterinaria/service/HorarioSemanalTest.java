@@ -0,0 +1,58 @@
+package com.veterinaria.veterinaria.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HorarioSemanalTest {
+
+    private static final LocalDate LUNES = LocalDate.of(2026, 1, 5).with(TemporalAdjusters.nextOrSame(DayOfWeek.MONDAY));
+    private static final LocalDate DOMINGO = LUNES.plusDays(6);
+
+    @Test
+    void aceptaDiasSinDosPuntos() {
+        HorarioSemanal horario = HorarioSemanal.compilar("Lunes a Domingo 8am-8pm", Set.of());
+        assertArrayEquals(new int[] {8 * 60, 20 * 60}, horario.plantillaDe(DOMINGO).tramos[0]);
+        assertEquals(LocalTime.of(19, 30), ultimaFranja(horario.plantillaDe(LUNES)));
+    }
+
+    @Test
+    void losHorariosDeLosDatosInicialesSonValidos() {
+        for (String texto : new String[] {
+                "Lunes a Domingo: 24 horas",
+                "Lunes a Sábado: 9:00 AM - 7:00 PM",
+                "Lunes a Viernes: 7:00 AM - 7:00 PM, Sábados: 8:00 AM - 4:00 PM",
+                "Lunes a Viernes: 8:00 AM - 8:00 PM, Sábados y Domingos: 10:00 AM - 4:00 PM",
+                "", null}) {
+            assertDoesNotThrow(() -> HorarioSemanal.validar(texto), texto);
+        }
+        HorarioSemanal horario = HorarioSemanal.compilar(
+                "Lunes a Viernes: 8:00 AM - 8:00 PM, Sábados y Domingos: 10:00 AM - 4:00 PM", Set.of());
+        assertArrayEquals(new int[] {10 * 60, 16 * 60}, horario.plantillaDe(DOMINGO).tramos[0]);
+    }
+
+    @Test
+    void rechazaTextoNoReconocido() {
+        assertThrows(IllegalArgumentException.class, () -> HorarioSemanal.validar("Abierto todo el año"));
+        assertThrows(IllegalArgumentException.class, () -> HorarioSemanal.validar("Weekdays: 8:00 AM - 6:00 PM"));
+        // Al compilar un texto ya guardado se cae al horario por defecto en lugar de fallar
+        HorarioSemanal horario = HorarioSemanal.compilar("Abierto todo el año", Set.of());
+        assertArrayEquals(new int[] {HorarioSemanal.APERTURA_POR_DEFECTO, HorarioSemanal.CIERRE_POR_DEFECTO},
+                horario.plantillaDe(LUNES).tramos[0]);
+        assertTrue(horario.plantillaDe(DOMINGO).tramos.length > 0);
+    }
+
+    private static LocalTime ultimaFranja(HorarioSemanal.Plantilla plantilla) {
+        return plantilla.horas[plantilla.horas.length - 1];
+    }
+}
@@ -0,0 +1,71 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OcupacionHorariosServiceTest {
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void elIndiceSoloCambiaCuandoLaTransaccionConfirma() {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre("Ocupación rollback");
+        Veterinaria guardada = veterinariaRepository.save(veterinaria);
+        Usuario cliente = usuarioRepository.save(DatosPrueba.usuario("ocupacion-cliente", null));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Ocupa", cliente));
+        LocalDateTime hora = LocalDate.now().plusDays(3).atTime(LocalTime.of(10, 0));
+
+        // Día cargado en memoria antes de escribir
+        assertTrue(citaService.isHorarioDisponible(hora, guardada.getId()));
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            Cita cita = new Cita(hora, "Se deshace", cliente, mascota);
+            cita.setVeterinaria(guardada);
+            citaService.save(cita);
+            // Dentro de la transacción todavía no se refleja
+            assertTrue(citaService.isHorarioDisponible(hora, guardada.getId()));
+            estado.setRollbackOnly();
+        });
+        assertTrue(citaService.isHorarioDisponible(hora, guardada.getId()), "El rollback dejó un horario fantasma");
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            Cita cita = new Cita(hora, "Se confirma", cliente, mascota);
+            cita.setVeterinaria(guardada);
+            citaService.save(cita);
+        });
+        assertFalse(citaService.isHorarioDisponible(hora, guardada.getId()));
+    }
+}
@@ -0,0 +1,96 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.EstadisticasUsuariosDTO;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de la exportación PDF por streaming: genera el reporte de usuarios con 100.000
+ * filas (-Dbenchmark.pdf.filas=N para cambiarlo) e informa del pico de heap, el tiempo hasta el
+ * primer byte y el tiempo total. Las filas se crean al vuelo, como las entrega el cursor, así
+ * que el pico de heap es el de la maquetación del PDF y no depende del número de filas.
+ * Tiempos y memoria dependen de la máquina, así que solo se informan; corre con -Pbenchmark.
+ */
+@Tag("benchmark")
+class PDFExportBenchmarkTest {
+
+    private static final int FILAS = Integer.getInteger("benchmark.pdf.filas", 100_000);
+
+    @Test
+    void pdfDeCienMilFilas() throws Exception {
+        PDFExportService servicio = new PDFExportService();
+        EstadisticasUsuariosDTO estadisticas = new EstadisticasUsuariosDTO();
+        estadisticas.setTotalPorRol(new HashMap<>());
+
+        List<MemoryPoolMXBean> poolsHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        long base = heapUsado(poolsHeap);
+        poolsHeap.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        SalidaMedida salida = new SalidaMedida();
+        int[] entregadas = {0};
+        servicio.escribirReporteUsuariosPDF(salida, estadisticas, fila -> {
+            for (int i = 0; i < FILAS; i++) {
+                fila.accept(PDFExportServiceTest.fila(i));
+                entregadas[0]++;
+            }
+        });
+        long totalMs = (System.nanoTime() - salida.inicio) / 1_000_000;
+        long picoMb = Math.max(0, picoHeap(poolsHeap) - base) / (1024 * 1024);
+        long primerByteMs = salida.primerByte / 1_000_000;
+
+        System.out.println("📊 PDF de " + FILAS + " filas: " + salida.bytes / 1024 + " KB, primer byte a los "
+                + primerByteMs + " ms, total " + totalMs + " ms, pico de heap " + picoMb + " MB");
+
+        assertEquals(FILAS, entregadas[0]);
+        assertTrue(salida.bytes > 0);
+    }
+
+    private static long heapUsado(List<MemoryPoolMXBean> pools) {
+        return pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    }
+
+    // Suma de los picos de cada zona: cota superior del pico real del heap
+    private static long picoHeap(List<MemoryPoolMXBean> pools) {
+        return pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    }
+
+    /**
+     * Descarta lo escrito contando bytes y anotando cuándo llegó el primero.
+     */
+    private static final class SalidaMedida extends OutputStream {
+        private final long inicio = System.nanoTime();
+        private long primerByte = -1;
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            marcar();
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int desde, int cantidad) {
+            marcar();
+            bytes += cantidad;
+        }
+
+        private void marcar() {
+            if (primerByte < 0) {
+                primerByte = System.nanoTime() - inicio;
+            }
+        }
+    }
+}
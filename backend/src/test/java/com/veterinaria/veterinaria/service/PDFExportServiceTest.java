@@ -0,0 +1,46 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.EstadisticasUsuariosDTO;
+import com.veterinaria.veterinaria.dto.ReporteUsuarioDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PDFExportServiceTest {
+
+    private static final int FILAS = 2000;
+
+    /**
+     * El PDF se envía por bloques mientras llegan las filas (ya hay bytes escritos antes de
+     * entregar la última) y el resultado es un documento completo.
+     */
+    @Test
+    void elReporteDeUsuariosSeEscribeMientrasLleganLasFilas() {
+        EstadisticasUsuariosDTO estadisticas = new EstadisticasUsuariosDTO();
+        estadisticas.setTotalPorRol(new HashMap<>());
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        int[] bytesAntesDelFinal = {0};
+
+        new PDFExportService().escribirReporteUsuariosPDF(salida, estadisticas, fila -> {
+            for (int i = 0; i < FILAS; i++) {
+                fila.accept(fila(i));
+            }
+            bytesAntesDelFinal[0] = salida.size();
+        });
+
+        String pdf = new String(salida.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(bytesAntesDelFinal[0] > 0, "No se escribió nada hasta recibir todas las filas");
+        assertTrue(pdf.startsWith("%PDF-"));
+        assertTrue(pdf.trim().endsWith("%%EOF"));
+    }
+
+    static ReporteUsuarioDTO fila(int i) {
+        return new ReporteUsuarioDTO("D" + i, "usuario" + i, "Nombre " + i, "Apellido " + i, "usuario" + i + "@prueba.com",
+                "300" + i, "CLIENTE", i % 3 != 0, LocalDateTime.now(), (long) (i % 5), (long) (i % 7));
+    }
+}
@@ -0,0 +1,204 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReservaCitaServiceTest {
+
+    private static final int HILOS = 32;
+    private static final int RESERVAS_POR_HILO = 100;
+
+    @Autowired
+    private ReservaCitaService reservaCitaService;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Muchas reservas concurrentes sobre pocos horarios, con duraciones y veterinarios
+     * distintos: ninguna pareja de citas activas puede solaparse en la misma veterinaria
+     * ni con el mismo veterinario.
+     */
+    @Test
+    void reservasConcurrentesNoProducenDobleAsignacion() throws Exception {
+        Veterinaria veterinaria = crearVeterinaria("Estrés reservas");
+        Usuario cliente = usuarioRepository.save(DatosPrueba.usuario("estres-cliente", veterinaria));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Estrés", cliente));
+        List<Usuario> veterinarios = new ArrayList<>();
+        veterinarios.add(null);
+        for (int i = 0; i < 3; i++) {
+            veterinarios.add(usuarioRepository.save(DatosPrueba.usuario("estres-vet-" + i, veterinaria)));
+        }
+        LocalDateTime apertura = LocalDate.now().plusDays(5).atTime(LocalTime.of(8, 0));
+
+        AtomicInteger reservadas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            tareas.add(hilos.submit(() -> {
+                salida.await();
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                for (int i = 0; i < RESERVAS_POR_HILO; i++) {
+                    // Inicios cada 15 minutos en cuatro horas y duraciones de 15 a 90 minutos: muchos solapes
+                    Cita cita = new Cita(apertura.plusMinutes(15L * aleatorio.nextInt(16)), "Estrés", cliente, mascota);
+                    cita.setDuracionMinutos(15 * (1 + aleatorio.nextInt(6)));
+                    cita.setVeterinaria(veterinaria);
+                    cita.setVeterinario(veterinarios.get(aleatorio.nextInt(veterinarios.size())));
+                    try {
+                        reservaCitaService.reservar(cita);
+                        reservadas.incrementAndGet();
+                    } catch (ReservaCitaService.HorarioNoDisponibleException e) {
+                        rechazadas.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(2, TimeUnit.MINUTES);
+        }
+        long milis = (System.nanoTime() - inicio) / 1_000_000;
+        hilos.shutdown();
+
+        int total = HILOS * RESERVAS_POR_HILO;
+        System.out.println("📊 Reservas concurrentes: " + total + " intentos en " + milis + " ms ("
+                + (total * 1000L / Math.max(1, milis)) + "/s), " + reservadas.get() + " reservadas, "
+                + rechazadas.get() + " rechazadas");
+
+        List<Cita> activas = citaRepository.findCitasDelDia(apertura.toLocalDate().atStartOfDay(),
+                apertura.toLocalDate().plusDays(1).atStartOfDay(), veterinaria.getId());
+        assertEquals(reservadas.get(), activas.size());
+        assertEquals(total, reservadas.get() + rechazadas.get());
+        assertTrue(reservadas.get() > 0);
+        assertSinSolapes(activas, "la veterinaria");
+        Map<String, List<Cita>> porVeterinario = activas.stream()
+                .filter(cita -> cita.getVeterinario() != null)
+                .collect(Collectors.groupingBy(cita -> cita.getVeterinario().getDocumento()));
+        porVeterinario.forEach((documento, citas) -> assertSinSolapes(citas, "el veterinario " + documento));
+    }
+
+    /**
+     * Otro nodo guarda una cita que este no tiene en su índice: la restricción única la
+     * detecta al insertar y la reserva se rechaza como horario no disponible.
+     */
+    @Test
+    void laRestriccionUnicaRechazaLaReservaDeOtroNodo() {
+        Veterinaria veterinaria = crearVeterinaria("Otro nodo");
+        Usuario cliente = usuarioRepository.save(DatosPrueba.usuario("nodo-cliente", veterinaria));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Nodo", cliente));
+        LocalDateTime hora = LocalDate.now().plusDays(6).atTime(LocalTime.of(9, 0));
+
+        // Día cargado en el índice de este nodo antes de que el otro escriba
+        assertTrue(citaService.isHorarioDisponible(hora, veterinaria.getId()));
+        jdbcTemplate.update("INSERT INTO citas (fecha_hora, duracion_minutos, estado, fecha_creacion, cliente_documento, "
+                        + "mascota_id, veterinaria_id) VALUES (?, 30, 'PROGRAMADA', ?, ?, ?, ?)",
+                Timestamp.valueOf(hora), Timestamp.valueOf(LocalDateTime.now()), cliente.getDocumento(),
+                mascota.getId(), veterinaria.getId());
+
+        Cita cita = new Cita(hora, "Mismo horario", cliente, mascota);
+        cita.setVeterinaria(veterinaria);
+        assertThrows(ReservaCitaService.HorarioNoDisponibleException.class, () -> reservaCitaService.reservar(cita));
+    }
+
+    /**
+     * Reprogramar una cita no choca con su propio horario anterior, pero sí con el de otra.
+     */
+    @Test
+    void reprogramarVerificaElNuevoHorarioSinContarElPropio() {
+        Veterinaria veterinaria = crearVeterinaria("Reprogramar");
+        Usuario cliente = usuarioRepository.save(DatosPrueba.usuario("reprogramar-cliente", veterinaria));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Reprogramar", cliente));
+        LocalDateTime hora = LocalDate.now().plusDays(7).atTime(LocalTime.of(10, 0));
+
+        Cita primera = new Cita(hora, "Primera", cliente, mascota);
+        primera.setVeterinaria(veterinaria);
+        primera = reservaCitaService.reservar(primera);
+        Cita segunda = new Cita(hora.plusHours(2), "Segunda", cliente, mascota);
+        segunda.setVeterinaria(veterinaria);
+        segunda = reservaCitaService.reservar(segunda);
+
+        // Alargar la primera sobre su propio horario es válido
+        primera.setDuracionMinutos(60);
+        reservaCitaService.reservar(primera);
+        assertFalse(citaService.isHorarioDisponible(hora.plusMinutes(30), veterinaria.getId()));
+
+        // Moverla encima de la segunda no
+        Cita movida = primera;
+        movida.setFechaHora(hora.plusHours(2).minusMinutes(30));
+        assertThrows(ReservaCitaService.HorarioNoDisponibleException.class, () -> reservaCitaService.reservar(movida));
+        assertTrue(citaService.isHorarioDisponible(hora.plusHours(3), veterinaria.getId()));
+        assertEquals(hora, citaRepository.findById(primera.getId()).orElseThrow().getFechaHora());
+        assertEquals(segunda.getFechaHora(), citaRepository.findById(segunda.getId()).orElseThrow().getFechaHora());
+    }
+
+    private Veterinaria crearVeterinaria(String nombre) {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre(nombre);
+        return veterinariaRepository.save(veterinaria);
+    }
+
+    private static void assertSinSolapes(List<Cita> citas, String ambito) {
+        List<Cita> ordenadas = new ArrayList<>(citas);
+        ordenadas.sort((a, b) -> a.getFechaHora().compareTo(b.getFechaHora()));
+        for (int i = 1; i < ordenadas.size(); i++) {
+            Cita anterior = ordenadas.get(i - 1);
+            Cita actual = ordenadas.get(i);
+            LocalDateTime finAnterior = anterior.getFechaHora().plusMinutes(anterior.getDuracionMinutos());
+            assertTrue(!actual.getFechaHora().isBefore(finAnterior),
+                    "Doble asignación en " + ambito + ": citas " + anterior.getId() + " y " + actual.getId());
+        }
+    }
+}
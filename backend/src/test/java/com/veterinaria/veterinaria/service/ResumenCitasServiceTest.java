@@ -0,0 +1,69 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.dto.TendenciaCitasDTO;
+import com.veterinaria.veterinaria.entity.Cita;
+import com.veterinaria.veterinaria.entity.Mascota;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.repository.CitaRepository;
+import com.veterinaria.veterinaria.repository.MascotaRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ResumenCitasServiceTest {
+
+    @Autowired
+    private ResumenCitasService resumenCitasService;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    /**
+     * Crear, cambiar de estado y de día, y borrar una cita mueve su conteo usando la clave
+     * anterior que Hibernate tenía cargada.
+     */
+    @Test
+    void elResumenSigueLosCambiosDeLaCita() {
+        Usuario cliente = usuarioRepository.save(DatosPrueba.usuario("resumen-cliente", null));
+        Usuario veterinario = usuarioRepository.save(DatosPrueba.usuario("resumen-vet", null));
+        Mascota mascota = mascotaRepository.save(DatosPrueba.mascota("Resumen", cliente));
+        LocalDate dia = LocalDate.of(2031, 3, 10);
+
+        Cita cita = new Cita(dia.atTime(10, 0), "Control", cliente, mascota);
+        cita.setVeterinario(veterinario);
+        cita = citaRepository.save(cita);
+        assertEquals(1, total(dia, veterinario, Cita.EstadoCita.PROGRAMADA));
+
+        Cita cargada = citaRepository.findById(cita.getId()).orElseThrow();
+        cargada.setEstado(Cita.EstadoCita.CONFIRMADA);
+        cargada.setFechaHora(dia.plusDays(1).atTime(10, 0));
+        citaRepository.save(cargada);
+        assertEquals(0, total(dia, veterinario, Cita.EstadoCita.PROGRAMADA));
+        assertEquals(1, total(dia.plusDays(1), veterinario, Cita.EstadoCita.CONFIRMADA));
+
+        citaRepository.deleteById(cita.getId());
+        assertEquals(0, total(dia.plusDays(1), veterinario, Cita.EstadoCita.CONFIRMADA));
+    }
+
+    private long total(LocalDate dia, Usuario veterinario, Cita.EstadoCita estado) {
+        TendenciaCitasDTO tendencia = resumenCitasService.getTendencia(dia, dia, null, veterinario.getDocumento()).get(0);
+        Map<String, Long> porEstado = tendencia.getTotalPorEstado();
+        return porEstado.get(estado.name());
+    }
+}
@@ -0,0 +1,112 @@
+package com.veterinaria.veterinaria.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuedaTemporalTest {
+
+    private static final long NIVEL_1 = 1L << 6;
+    private static final long NIVEL_2 = 1L << 12;
+    private static final long HORIZONTE = 1L << 18;
+
+    // Tres minutos antes de completar una vuelta entera de la rueda
+    private static final long INICIO = 100 * HORIZONTE - 3;
+
+    /**
+     * Cada elemento sale justo en su minuto, también a ambos lados de los límites de cada
+     * nivel y del horizonte, avanzando minuto a minuto.
+     */
+    @Test
+    void entregaCadaElementoEnSuMinutoEnLosLimitesDeNivel() {
+        RuedaTemporal<Long> rueda = new RuedaTemporal<>(INICIO);
+        List<Long> vencimientos = new ArrayList<>();
+        for (long limite : new long[] {NIVEL_1, NIVEL_2, HORIZONTE}) {
+            for (long delta = limite - 2; delta <= limite + 2; delta++) {
+                vencimientos.add(INICIO + delta);
+            }
+        }
+        // Límites absolutos: vueltas de cada nivel contadas desde cero, no desde el inicio
+        vencimientos.add(100 * HORIZONTE);
+        vencimientos.add(100 * HORIZONTE + NIVEL_1);
+        vencimientos.add(100 * HORIZONTE + NIVEL_2);
+        vencimientos.add(101 * HORIZONTE);
+        vencimientos.forEach(vencimiento -> rueda.programar(vencimiento, vencimiento));
+
+        Map<Long, Long> entregados = new HashMap<>();
+        long fin = INICIO + HORIZONTE + NIVEL_2;
+        for (long minuto = INICIO + 1; minuto <= fin; minuto++) {
+            for (Long vencimiento : rueda.avanzarHasta(minuto)) {
+                entregados.put(vencimiento, minuto);
+            }
+        }
+
+        assertEquals(vencimientos.size(), entregados.size());
+        for (Long vencimiento : vencimientos) {
+            assertEquals(vencimiento, entregados.get(vencimiento), "Vencimiento " + vencimiento);
+        }
+        assertEquals(0, rueda.size());
+    }
+
+    /**
+     * Lo programado en el pasado (o en el minuto actual) se entrega en el siguiente avance.
+     */
+    @Test
+    void loVencidoSaleEnElSiguienteAvance() {
+        RuedaTemporal<String> rueda = new RuedaTemporal<>(INICIO);
+        rueda.programar(INICIO - 500, "atrasado");
+        rueda.programar(INICIO, "ahora");
+
+        assertEquals(List.of(), rueda.avanzarHasta(INICIO));
+        assertEquals(2, rueda.size());
+        assertEquals(List.of("atrasado", "ahora"), rueda.avanzarHasta(INICIO + 1));
+        assertEquals(0, rueda.size());
+    }
+
+    /**
+     * Más allá del horizonte el elemento espera en el desbordamiento y aun así sale en su minuto,
+     * aunque tenga que pasar por él varias vueltas.
+     */
+    @Test
+    void masAllaDelHorizonteSaleEnSuMinuto() {
+        RuedaTemporal<String> rueda = new RuedaTemporal<>(INICIO);
+        long vencimiento = INICIO + 3 * HORIZONTE + 7;
+        rueda.programar(vencimiento, "lejano");
+
+        assertEquals(List.of(), rueda.avanzarHasta(vencimiento - 1));
+        assertEquals(1, rueda.size());
+        assertEquals(List.of("lejano"), rueda.avanzarHasta(vencimiento));
+        assertEquals(0, rueda.size());
+    }
+
+    /**
+     * Un solo avance que salta muchos minutos (p. ej. tras una pausa larga) entrega todo lo
+     * vencido en el salto, en orden de vencimiento, y nada de lo posterior.
+     */
+    @Test
+    void unSaltoLargoEntregaTodoLoVencidoEnOrden() {
+        RuedaTemporal<Long> rueda = new RuedaTemporal<>(INICIO);
+        long salto = HORIZONTE + 1000;
+        List<Long> esperados = new ArrayList<>();
+        for (long delta = 1; delta <= salto; delta = delta * 3 + 1) {
+            esperados.add(INICIO + delta);
+        }
+        // Se programan en desorden
+        for (int i = esperados.size() - 1; i >= 0; i--) {
+            rueda.programar(esperados.get(i), esperados.get(i));
+        }
+        rueda.programar(INICIO + salto + 1, INICIO + salto + 1);
+
+        List<Long> vencidos = rueda.avanzarHasta(INICIO + salto);
+        assertEquals(esperados, vencidos);
+        assertEquals(1, rueda.size());
+        assertTrue(rueda.avanzarHasta(INICIO + salto).isEmpty());
+        assertEquals(List.of(INICIO + salto + 1), rueda.avanzarHasta(INICIO + salto + 1));
+    }
+}
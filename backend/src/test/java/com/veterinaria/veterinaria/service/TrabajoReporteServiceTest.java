@@ -0,0 +1,68 @@
+package com.veterinaria.veterinaria.service;
+
+import com.veterinaria.veterinaria.entity.Reporte;
+import com.veterinaria.veterinaria.entity.Usuario;
+import com.veterinaria.veterinaria.entity.Veterinaria;
+import com.veterinaria.veterinaria.repository.ReporteRepository;
+import com.veterinaria.veterinaria.repository.UsuarioRepository;
+import com.veterinaria.veterinaria.repository.VeterinariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TrabajoReporteServiceTest {
+
+    @Autowired
+    private TrabajoReporteService trabajoReporteService;
+
+    @Autowired
+    private ReporteRepository reporteRepository;
+
+    @Autowired
+    private VeterinariaRepository veterinariaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    /**
+     * Un trabajo solo lo ven su autor y los administradores de su veterinaria (o sin
+     * veterinaria); los reportes que no son trabajos no se sirven por esta vía.
+     */
+    @Test
+    void soloElAutorYLosAdministradoresDeSuVeterinariaVenElTrabajo() {
+        Veterinaria propia = crearVeterinaria("Trabajos propia");
+        Veterinaria otra = crearVeterinaria("Trabajos otra");
+        Usuario autor = usuarioRepository.save(DatosPrueba.usuario("trabajo-autor", propia));
+        Usuario companero = usuarioRepository.save(DatosPrueba.usuario("trabajo-companero", propia));
+        Usuario adminPropia = usuarioRepository.save(DatosPrueba.usuario("trabajo-admin-propia", propia));
+        Usuario adminOtra = usuarioRepository.save(DatosPrueba.usuario("trabajo-admin-otra", otra));
+        Usuario adminGlobal = usuarioRepository.save(DatosPrueba.usuario("trabajo-admin-global", null));
+
+        Reporte trabajo = new Reporte("Exportación", Reporte.TipoReporte.CITAS_DIARIAS, autor);
+        trabajo.setClaveTrabajo("prueba|trabajo");
+        Long id = reporteRepository.save(trabajo).getId();
+        Reporte antiguo = new Reporte("Reporte antiguo", Reporte.TipoReporte.CITAS_DIARIAS, autor);
+        antiguo.setContenido("Datos del reporte");
+        Long idAntiguo = reporteRepository.save(antiguo).getId();
+
+        assertTrue(trabajoReporteService.findTrabajo(id, autor, false).isPresent());
+        assertTrue(trabajoReporteService.findTrabajo(id, adminPropia, true).isPresent());
+        assertTrue(trabajoReporteService.findTrabajo(id, adminGlobal, true).isPresent());
+        assertFalse(trabajoReporteService.findTrabajo(id, companero, false).isPresent());
+        assertFalse(trabajoReporteService.findTrabajo(id, adminOtra, true).isPresent());
+        assertFalse(trabajoReporteService.findTrabajo(idAntiguo, autor, false).isPresent());
+        assertFalse(trabajoReporteService.findTrabajo(idAntiguo, adminGlobal, true).isPresent());
+    }
+
+    private Veterinaria crearVeterinaria(String nombre) {
+        Veterinaria veterinaria = new Veterinaria();
+        veterinaria.setNombre(nombre);
+        return veterinariaRepository.save(veterinaria);
+    }
+}
@@ -0,0 +1,9 @@
+-- Partes de DATABASE_DDL.sql que no salen de las entidades: se aplican sobre el esquema que genera Hibernate
+
+-- Restricciones únicas de reserva (ver ReservaCitaService)
+ALTER TABLE citas ADD COLUMN reserva_veterinaria BIGINT GENERATED ALWAYS AS (
+    CASE WHEN estado IN ('CANCELADA', 'NO_ASISTIO') THEN NULL ELSE veterinaria_id END);
+ALTER TABLE citas ADD COLUMN reserva_veterinario VARCHAR(20) GENERATED ALWAYS AS (
+    CASE WHEN estado IN ('CANCELADA', 'NO_ASISTIO') THEN NULL ELSE veterinario_documento END);
+CREATE UNIQUE INDEX uk_citas_reserva_veterinaria ON citas (reserva_veterinaria, fecha_hora);
+CREATE UNIQUE INDEX uk_citas_reserva_veterinario ON citas (reserva_veterinario, fecha_hora);